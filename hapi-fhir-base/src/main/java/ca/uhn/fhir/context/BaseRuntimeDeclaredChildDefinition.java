@@ -24,9 +24,13 @@ import ca.uhn.fhir.model.api.annotation.Child;
 import ca.uhn.fhir.model.api.annotation.Description;
 import ca.uhn.fhir.util.ParametersUtil;
 import ca.uhn.fhir.util.ValidateUtil;
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBase;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,6 +38,11 @@ import java.util.List;
 import java.util.Optional;
 
 public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChildDefinition {
+	private static final org.slf4j.Logger ourLog =
+			org.slf4j.LoggerFactory.getLogger(BaseRuntimeDeclaredChildDefinition.class);
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
 	private final IAccessor myAccessor;
 	private final String myElementName;
 	private final Field myField;
@@ -41,6 +50,8 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 	private final int myMax;
 	private final int myMin;
 	private final IMutator myMutator;
+	private MethodHandle myGetter;
+	private MethodHandle mySetter;
 	private final String myShortDefinition;
 	private String myBindingValueSet;
 	private boolean myModifier;
@@ -140,11 +151,44 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		return mySummary;
 	}
 
+	/**
+	 * Switches the accessor and mutator for this child from {@link Field} reflection to
+	 * getter and setter {@link MethodHandle method handles}, which avoid the per-call access
+	 * checks performed by reflection. If the handles can not be created (e.g. because of
+	 * module restrictions), reflection continues to be used.
+	 *
+	 * @see PerformanceOptionsEnum#METHOD_HANDLE_CHILD_ACCESSORS
+	 */
+	void useMethodHandleAccessors() {
+		if (myGetter != null) {
+			return;
+		}
+		try {
+			MethodHandles.Lookup lookup =
+					MethodHandles.privateLookupIn(myField.getDeclaringClass(), MethodHandles.lookup());
+			MethodHandle getter = lookup.unreflectGetter(myField).asType(GETTER_TYPE);
+			mySetter = lookup.unreflectSetter(myField).asType(SETTER_TYPE);
+			myGetter = getter;
+		} catch (IllegalAccessException | RuntimeException e) {
+			ourLog.warn(
+					"Unable to create method handle accessors for field {}.{}, falling back to reflection: {}",
+					myField.getDeclaringClass().getName(),
+					myField.getName(),
+					e.toString());
+			mySetter = null;
+		}
+	}
+
+	@VisibleForTesting
+	boolean isUsingMethodHandleAccessors() {
+		return myGetter != null && mySetter != null;
+	}
+
 	private final class FieldListAccessor implements IAccessor {
 		@SuppressWarnings("unchecked")
 		@Override
 		public List<IBase> getValues(IBase theTarget) {
-			List<IBase> retVal = (List<IBase>) getFieldValue(theTarget, myField);
+			List<IBase> retVal = (List<IBase>) getFieldValue(theTarget);
 			if (retVal == null) {
 				retVal = Collections.emptyList();
 			}
@@ -160,10 +204,10 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 
 		private void addValue(IBase theTarget, IBase theValue, boolean theClear) {
 			@SuppressWarnings("unchecked")
-			List<IBase> existingList = (List<IBase>) getFieldValue(theTarget, myField);
+			List<IBase> existingList = (List<IBase>) getFieldValue(theTarget);
 			if (existingList == null) {
 				existingList = new ArrayList<>(2);
-				setFieldValue(theTarget, existingList, myField);
+				setFieldValue(theTarget, existingList);
 			}
 			if (theClear) {
 				existingList.clear();
@@ -181,7 +225,7 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 
 		@Override
 		public void remove(IBase theTarget, int theIndex) {
-			List<IBase> existingList = (List<IBase>) getFieldValue(theTarget, myField);
+			List<IBase> existingList = (List<IBase>) getFieldValue(theTarget);
 			if (existingList == null) {
 				throw new IndexOutOfBoundsException(
 						Msg.code(2143) + "Can not remove element at index " + theIndex + " from list - List is null");
@@ -197,7 +241,7 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 	private final class FieldPlainAccessor implements IAccessor {
 		@Override
 		public List<IBase> getValues(IBase theTarget) {
-			Object values = getFieldValue(theTarget, myField);
+			Object values = getFieldValue(theTarget);
 			if (values == null) {
 				return Collections.emptyList();
 			}
@@ -206,14 +250,14 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 
 		@Override
 		public <T extends IBase> Optional<T> getFirstValueOrNull(IBase theTarget) {
-			return Optional.ofNullable(((T) getFieldValue(theTarget, myField)));
+			return Optional.ofNullable(((T) getFieldValue(theTarget)));
 		}
 	}
 
 	protected final class FieldPlainMutator implements IMutator {
 		@Override
 		public void addValue(IBase theTarget, IBase theValue) {
-			setFieldValue(theTarget, theValue, myField);
+			setFieldValue(theTarget, theValue);
 		}
 
 		@Override
@@ -229,17 +273,38 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		}
 	}
 
-	private static void setFieldValue(IBase theTarget, Object theValue, Field theField) {
+	private void setFieldValue(IBase theTarget, Object theValue) {
+		MethodHandle setter = mySetter;
+		if (setter != null) {
+			try {
+				setter.invokeExact((Object) theTarget, theValue);
+				return;
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new ConfigurationException(Msg.code(2653) + "Failed to set value", t);
+			}
+		}
 		try {
-			theField.set(theTarget, theValue);
+			myField.set(theTarget, theValue);
 		} catch (IllegalAccessException e) {
 			throw new ConfigurationException(Msg.code(1736) + "Failed to set value", e);
 		}
 	}
 
-	private static Object getFieldValue(IBase theTarget, Field theField) {
+	private Object getFieldValue(IBase theTarget) {
+		MethodHandle getter = myGetter;
+		if (getter != null) {
+			try {
+				return (Object) getter.invokeExact((Object) theTarget);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new ConfigurationException(Msg.code(2654) + "Failed to get value", t);
+			}
+		}
 		try {
-			return theField.get(theTarget);
+			return myField.get(theTarget);
 		} catch (IllegalAccessException e) {
 			throw new ConfigurationException(Msg.code(1737) + "Failed to get value", e);
 		}
@@ -558,8 +558,13 @@ public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> ext
 
 			super.sealAndInitialize(theContext, theClassToElementDefinitions);
 
+			boolean useMethodHandleAccessors =
+					theContext.getPerformanceOptions().contains(PerformanceOptionsEnum.METHOD_HANDLE_CHILD_ACCESSORS);
 			for (BaseRuntimeChildDefinition next : myChildren) {
 				next.sealAndInitialize(theContext, theClassToElementDefinitions);
+				if (useMethodHandleAccessors && next instanceof BaseRuntimeDeclaredChildDefinition) {
+					((BaseRuntimeDeclaredChildDefinition) next).useMethodHandleAccessors();
+				}
 			}
 
 			myNameToChild = new HashMap<>();
@@ -119,16 +119,17 @@ public class FhirContext {
 	private volatile Map<String, RuntimeResourceDefinition> myIdToResourceDefinition = Collections.emptyMap();
 	private volatile boolean myInitialized;
 	private volatile boolean myInitializing = false;
-	private HapiLocalizer myLocalizer = new HapiLocalizer();
+	private volatile HapiLocalizer myLocalizer = new HapiLocalizer();
 	private volatile Map<String, BaseRuntimeElementDefinition<?>> myNameToElementDefinition = Collections.emptyMap();
 	private volatile Map<String, RuntimeResourceDefinition> myNameToResourceDefinition = Collections.emptyMap();
 	private volatile Map<String, Class<? extends IBaseResource>> myNameToResourceType;
+	private volatile Map<String, String> myNameToResourceClassName = Collections.emptyMap();
 	private volatile INarrativeGenerator myNarrativeGenerator;
 	private volatile IParserErrorHandler myParserErrorHandler = new LenientErrorHandler();
 	private ParserOptions myParserOptions = new ParserOptions();
 	private volatile IRestfulClientFactory myRestfulClientFactory;
 	private volatile RuntimeChildUndeclaredExtensionDefinition myRuntimeChildUndeclaredExtensionDefinition;
-	private IValidationSupport myValidationSupport;
+	private volatile IValidationSupport myValidationSupport;
 	private Map<FhirVersionEnum, Map<String, Class<? extends IBaseResource>>> myVersionToNameToResourceType =
 			Collections.emptyMap();
 	private volatile Set<String> myResourceNames;
@@ -400,10 +401,17 @@ public class FhirContext {
 	 * caution
 	 */
 	public HapiLocalizer getLocalizer() {
-		if (myLocalizer == null) {
-			myLocalizer = new HapiLocalizer();
+		HapiLocalizer retVal = myLocalizer;
+		if (retVal == null) {
+			synchronized (this) {
+				retVal = myLocalizer;
+				if (retVal == null) {
+					retVal = new HapiLocalizer();
+					myLocalizer = retVal;
+				}
+			}
 		}
-		return myLocalizer;
+		return retVal;
 	}
 
 	/**
@@ -525,7 +533,7 @@ public class FhirContext {
 		if (nameToType == null) {
 			nameToType = new HashMap<>();
 			Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> existing = new HashMap<>();
-			ModelScanner.scanVersionPropertyFile(null, nameToType, theVersion, existing);
+			ModelScanner.scanVersionPropertyFile(null, nameToType, null, theVersion, existing);
 
 			Map<FhirVersionEnum, Map<String, Class<? extends IBaseResource>>> newVersionToNameToResourceType =
 					new HashMap<>();
@@ -598,6 +606,12 @@ public class FhirContext {
 
 		if (retVal == null) {
 			Class<? extends IBaseResource> clazz = myNameToResourceType.get(resourceName.toLowerCase());
+			if (clazz == null) {
+				String className = myNameToResourceClassName.get(resourceName);
+				if (className != null) {
+					clazz = ModelScanner.loadResourceClass(theResourceName, className);
+				}
+			}
 			if (clazz == null) {
 				// ***********************************************************************
 				// Multiple spots in HAPI FHIR and Smile CDR depend on DataFormatException
@@ -712,52 +726,59 @@ public class FhirContext {
 	public IValidationSupport getValidationSupport() {
 		IValidationSupport retVal = myValidationSupport;
 		if (retVal == null) {
-			retVal = new DefaultProfileValidationSupport(this);
-
-			/*
-			 * If hapi-fhir-validation is on the classpath, we can create a much more robust
-			 * validation chain using the classes found in that package
-			 */
-			String inMemoryTermSvcType =
-					"org.hl7.fhir.common.hapi.validation.support.InMemoryTerminologyServerValidationSupport";
-			String commonCodeSystemsSupportType =
-					"org.hl7.fhir.common.hapi.validation.support.CommonCodeSystemsTerminologyService";
-			String snapshotGeneratingType =
-					"org.hl7.fhir.common.hapi.validation.support.SnapshotGeneratingValidationSupport";
-			if (ReflectionUtil.typeExists(inMemoryTermSvcType)) {
-				IValidationSupport inMemoryTermSvc = ReflectionUtil.newInstanceOrReturnNull(
-						inMemoryTermSvcType,
-						IValidationSupport.class,
-						new Class<?>[] {FhirContext.class},
-						new Object[] {this});
-				IValidationSupport commonCodeSystemsSupport = ReflectionUtil.newInstanceOrReturnNull(
-						commonCodeSystemsSupportType,
+			synchronized (this) {
+				retVal = myValidationSupport;
+				if (retVal == null) {
+					retVal = createDefaultValidationSupport();
+					myValidationSupport = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	private IValidationSupport createDefaultValidationSupport() {
+		IValidationSupport retVal = new DefaultProfileValidationSupport(this);
+
+		/*
+		 * If hapi-fhir-validation is on the classpath, we can create a much more robust
+		 * validation chain using the classes found in that package
+		 */
+		String inMemoryTermSvcType =
+				"org.hl7.fhir.common.hapi.validation.support.InMemoryTerminologyServerValidationSupport";
+		String commonCodeSystemsSupportType =
+				"org.hl7.fhir.common.hapi.validation.support.CommonCodeSystemsTerminologyService";
+		String snapshotGeneratingType =
+				"org.hl7.fhir.common.hapi.validation.support.SnapshotGeneratingValidationSupport";
+		if (ReflectionUtil.typeExists(inMemoryTermSvcType)) {
+			IValidationSupport inMemoryTermSvc = ReflectionUtil.newInstanceOrReturnNull(
+					inMemoryTermSvcType, IValidationSupport.class, new Class<?>[] {FhirContext.class}, new Object[] {
+						this
+					});
+			IValidationSupport commonCodeSystemsSupport = ReflectionUtil.newInstanceOrReturnNull(
+					commonCodeSystemsSupportType,
+					IValidationSupport.class,
+					new Class<?>[] {FhirContext.class},
+					new Object[] {this});
+			IValidationSupport snapshotGeneratingSupport = null;
+			if (getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
+				snapshotGeneratingSupport = ReflectionUtil.newInstanceOrReturnNull(
+						snapshotGeneratingType,
 						IValidationSupport.class,
 						new Class<?>[] {FhirContext.class},
 						new Object[] {this});
-				IValidationSupport snapshotGeneratingSupport = null;
-				if (getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
-					snapshotGeneratingSupport = ReflectionUtil.newInstanceOrReturnNull(
-							snapshotGeneratingType,
-							IValidationSupport.class,
-							new Class<?>[] {FhirContext.class},
-							new Object[] {this});
-				}
-				retVal = ReflectionUtil.newInstanceOrReturnNull(
-						"org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain",
-						IValidationSupport.class,
-						new Class<?>[] {IValidationSupport[].class},
-						new Object[] {
-							new IValidationSupport[] {
-								retVal, inMemoryTermSvc, commonCodeSystemsSupport, snapshotGeneratingSupport
-							}
-						});
-				assert retVal != null
-						: "Failed to instantiate "
-								+ "org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain";
 			}
-
-			myValidationSupport = retVal;
+			retVal = ReflectionUtil.newInstanceOrReturnNull(
+					"org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain",
+					IValidationSupport.class,
+					new Class<?>[] {IValidationSupport[].class},
+					new Object[] {
+						new IValidationSupport[] {
+							retVal, inMemoryTermSvc, commonCodeSystemsSupport, snapshotGeneratingSupport
+						}
+					});
+			assert retVal != null
+					: "Failed to instantiate " + "org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain";
 		}
 		return retVal;
 	}
@@ -1066,7 +1087,18 @@ public class FhirContext {
 		return defs.get(theResourceType);
 	}
 
-	private RuntimeResourceDefinition scanResourceType(final Class<? extends IBaseResource> theResourceType) {
+	private synchronized RuntimeResourceDefinition scanResourceType(
+			final Class<? extends IBaseResource> theResourceType) {
+		/*
+		 * Resource types can be loaded on demand by several threads at once (e.g. by
+		 * getResourceDefinition(String) when resource classes are loaded lazily), so check
+		 * whether another thread has scanned this type while we were waiting for the lock
+		 */
+		BaseRuntimeElementDefinition<?> existing = myClassToElementDefinition.get(theResourceType);
+		if (existing instanceof RuntimeResourceDefinition) {
+			return (RuntimeResourceDefinition) existing;
+		}
+
 		ArrayList<Class<? extends IElement>> resourceTypes = new ArrayList<>();
 		resourceTypes.add(theResourceType);
 		Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> defs = scanResourceTypes(resourceTypes);
@@ -1139,6 +1171,7 @@ public class FhirContext {
 		myNameToResourceDefinition = nameToResourceDefinition;
 
 		myNameToResourceType = scanner.getNameToResourceType();
+		myNameToResourceClassName = scanner.getNameToResourceClassName();
 
 		myInitialized = true;
 		return classToElementDefinition;
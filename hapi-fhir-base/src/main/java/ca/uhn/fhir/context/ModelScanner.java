@@ -39,6 +39,7 @@ import ca.uhn.fhir.model.primitive.XhtmlDt;
 import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
 import ca.uhn.fhir.util.ReflectionUtil;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBackboneElement;
 import org.hl7.fhir.instance.model.api.IBaseDatatype;
@@ -79,6 +80,7 @@ class ModelScanner {
 	private Map<String, BaseRuntimeElementDefinition<?>> myNameToElementDefinitions = new HashMap<>();
 	private Map<String, RuntimeResourceDefinition> myNameToResourceDefinitions = new HashMap<>();
 	private Map<String, Class<? extends IBaseResource>> myNameToResourceType = new HashMap<>();
+	private Map<String, String> myNameToResourceClassName = new HashMap<>();
 	private RuntimeChildUndeclaredExtensionDefinition myRuntimeChildUndeclaredExtensionDefinition;
 	private Set<Class<? extends IBase>> myScanAlso = new HashSet<>();
 	private FhirVersionEnum myVersion;
@@ -118,6 +120,10 @@ class ModelScanner {
 		return myNameToResourceType;
 	}
 
+	Map<String, String> getNameToResourceClassName() {
+		return myNameToResourceClassName;
+	}
+
 	RuntimeChildUndeclaredExtensionDefinition getRuntimeChildUndeclaredExtensionDefinition() {
 		return myRuntimeChildUndeclaredExtensionDefinition;
 	}
@@ -133,8 +139,14 @@ class ModelScanner {
 		long start = System.currentTimeMillis();
 		Map<String, Class<? extends IBaseResource>> resourceTypes = myNameToResourceType;
 
+		Map<String, String> resourceClassNames = null;
+		if (myContext.getPerformanceOptions().contains(PerformanceOptionsEnum.DEFERRED_RESOURCE_CLASS_LOADING)) {
+			resourceClassNames = myNameToResourceClassName;
+		}
+
 		Set<Class<? extends IBase>> typesToScan = theTypesToScan;
-		myVersionTypes = scanVersionPropertyFile(typesToScan, resourceTypes, myVersion, myClassToElementDefinitions);
+		myVersionTypes = scanVersionPropertyFile(
+				typesToScan, resourceTypes, resourceClassNames, myVersion, myClassToElementDefinitions);
 
 		do {
 			for (Class<? extends IBase> nextClass : typesToScan) {
@@ -342,9 +354,11 @@ class ModelScanner {
 
 		String resourceNameLowerCase = resourceName.toLowerCase();
 		Class<? extends IBaseResource> builtInType = myNameToResourceType.get(resourceNameLowerCase);
-		boolean standardType = builtInType != null && builtInType.equals(theClass) == true;
+		String builtInClassName =
+				builtInType != null ? builtInType.getName() : myNameToResourceClassName.get(resourceNameLowerCase);
+		boolean standardType = builtInClassName != null && builtInClassName.equals(theClass.getName());
 		if (primaryNameProvider) {
-			if (builtInType != null && builtInType.equals(theClass) == false) {
+			if (builtInClassName != null && !standardType) {
 				primaryNameProvider = false;
 			}
 		}
@@ -571,6 +585,7 @@ class ModelScanner {
 	static Set<Class<? extends IBase>> scanVersionPropertyFile(
 			Set<Class<? extends IBase>> theDatatypes,
 			Map<String, Class<? extends IBaseResource>> theResourceTypes,
+			@Nullable Map<String, String> theResourceClassNames,
 			FhirVersionEnum theVersion,
 			Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> theExistingElementDefinitions) {
 		Set<Class<? extends IBase>> retVal = new HashSet<>();
@@ -617,26 +632,17 @@ class ModelScanner {
 					}
 				} else if (nextKey.startsWith("resource.")) {
 					// Resources
-					String resName = nextKey.substring("resource.".length()).toLowerCase();
-					try {
-						@SuppressWarnings("unchecked")
-						Class<? extends IBaseResource> nextClass =
-								(Class<? extends IBaseResource>) Class.forName(nextValue);
-						if (theExistingElementDefinitions.containsKey(nextClass)) {
-							continue;
-						}
-						if (!IBaseResource.class.isAssignableFrom(nextClass)) {
-							throw new ConfigurationException(Msg.code(1726) + "Class is not assignable from "
-									+ IBaseResource.class.getSimpleName() + ": " + nextValue);
-						}
+					String resName = nextKey.substring("resource.".length());
+					if (theResourceClassNames != null) {
+						theResourceClassNames.put(resName.toLowerCase(), nextValue);
+						continue;
+					}
 
-						theResourceTypes.put(resName, nextClass);
-					} catch (ClassNotFoundException e) {
-						throw new ConfigurationException(
-								Msg.code(1727) + "Unknown class[" + nextValue + "] for resource definition: "
-										+ nextKey.substring("resource.".length()),
-								e);
+					Class<? extends IBaseResource> nextClass = loadResourceClass(resName, nextValue);
+					if (theExistingElementDefinitions.containsKey(nextClass)) {
+						continue;
 					}
+					theResourceTypes.put(resName.toLowerCase(), nextClass);
 				} else {
 					throw new ConfigurationException(Msg.code(1728) + "Unexpected property in version property file: "
 							+ nextKey + "=" + nextValue);
@@ -649,4 +655,27 @@ class ModelScanner {
 
 		return retVal;
 	}
+
+	/**
+	 * Loads a resource class named in the version property file
+	 *
+	 * @param theResourceName The resource name, used in error messages
+	 * @param theClassName    The fully qualified name of the implementing class
+	 */
+	@SuppressWarnings("unchecked")
+	static Class<? extends IBaseResource> loadResourceClass(String theResourceName, String theClassName) {
+		Class<?> retVal;
+		try {
+			retVal = Class.forName(theClassName);
+		} catch (ClassNotFoundException e) {
+			throw new ConfigurationException(
+					Msg.code(1727) + "Unknown class[" + theClassName + "] for resource definition: " + theResourceName,
+					e);
+		}
+		if (!IBaseResource.class.isAssignableFrom(retVal)) {
+			throw new ConfigurationException(Msg.code(1726) + "Class is not assignable from "
+					+ IBaseResource.class.getSimpleName() + ": " + theClassName);
+		}
+		return (Class<? extends IBaseResource>) retVal;
+	}
 }
@@ -48,6 +48,7 @@ public class ParserOptions {
 	private boolean myAutoContainReferenceTargetsWithNoId = true;
 	private Set<String> myEncodeElementsForSummaryMode = null;
 	private Set<String> myDontEncodeElementsForSummaryMode = null;
+	private boolean myStreamingJsonParsing = false;
 
 	/**
 	 * If set to {@literal true} (which is the default), contained resources may be specified by
@@ -337,4 +338,34 @@ public class ParserOptions {
 	public Set<String> getDontEncodeElementsForSummaryMode() {
 		return myDontEncodeElementsForSummaryMode;
 	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will parse
+	 * resources directly from the JSON token stream instead of first reading the entire document
+	 * into an intermediate tree. This roughly halves the peak memory used to parse large resources
+	 * such as Bundles. Small parts of the document are still read into a tree where the parser needs
+	 * to look ahead, e.g. primitive values and their <code>_element</code> counterparts, extensions,
+	 * and resources where <code>resourceType</code> is not the first property.
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isStreamingJsonParsing() {
+		return myStreamingJsonParsing;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will parse
+	 * resources directly from the JSON token stream instead of first reading the entire document
+	 * into an intermediate tree. This roughly halves the peak memory used to parse large resources
+	 * such as Bundles. Small parts of the document are still read into a tree where the parser needs
+	 * to look ahead, e.g. primitive values and their <code>_element</code> counterparts, extensions,
+	 * and resources where <code>resourceType</code> is not the first property.
+	 *
+	 * @since 8.4.0
+	 */
+	@Nonnull
+	public ParserOptions setStreamingJsonParsing(boolean theStreamingJsonParsing) {
+		myStreamingJsonParsing = theStreamingJsonParsing;
+		return this;
+	}
 }
@@ -34,5 +34,38 @@ public enum PerformanceOptionsEnum {
 	 * Android or low powered devices.
 	 * </p>
 	 */
-	DEFERRED_MODEL_SCANNING
+	DEFERRED_MODEL_SCANNING,
+
+	/**
+	 * When this option is set, the accessors and mutators used to read and write the
+	 * values of model fields (e.g. by the parsers, the {@link ca.uhn.fhir.util.FhirTerser}
+	 * and search parameter extraction) are backed by {@link java.lang.invoke.MethodHandle method handles}
+	 * which are created when the model is scanned, instead of by {@link java.lang.reflect.Field}
+	 * reflection.
+	 * <p>
+	 * This option must be set before the model is scanned (i.e. before the context is first used).
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	METHOD_HANDLE_CHILD_ACCESSORS,
+
+	/**
+	 * When this option is set, the resource classes listed in the version property file
+	 * which is generated as a part of each structures module's build (e.g.
+	 * <code>fhirversion.properties</code>) are not loaded when the context is initialized.
+	 * Instead, the property file is used as an index of resource names, and the class for
+	 * a given resource type is only loaded (and its static initializers run) the first time
+	 * that type is requested by name, e.g. because it is being parsed.
+	 * <p>
+	 * Because most applications only ever use a small fraction of the resource types in
+	 * a FHIR version, this can substantially reduce the time taken to initialize a new
+	 * context. Note that an invalid entry in the property file will cause an error the
+	 * first time the corresponding resource type is requested instead of during
+	 * initialization.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	DEFERRED_RESOURCE_CLASS_LOADING
 }
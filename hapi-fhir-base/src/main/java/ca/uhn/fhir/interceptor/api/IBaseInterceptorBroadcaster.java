@@ -105,6 +105,13 @@ public interface IBaseInterceptorBroadcaster<POINTCUT extends IPointcut> {
 	 */
 	boolean hasHooks(POINTCUT thePointcut);
 
+	/**
+	 * Returns the invokers registered for the given pointcut, sorted by their order.
+	 * <p>
+	 * Since 8.4.0 the returned list may be an immutable shared snapshot. Callers which
+	 * need to modify the list must copy it first.
+	 * </p>
+	 */
 	List<IInvoker> getInvokersForPointcut(POINTCUT thePointcut);
 
 	interface IInvoker extends Comparable<IInvoker> {
@@ -45,9 +45,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -75,13 +79,41 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 	private static final AttributeKey<String> OTEL_INTERCEPTOR_METHOD_NAME_ATT_KEY =
 			AttributeKey.stringKey("hapifhir.interceptor.method_name");
 
+	/**
+	 * Hook methods with more parameters than this are invoked through a spreading
+	 * {@link MethodHandle} which accepts an argument array. Hooks with this many
+	 * parameters or fewer are invoked without allocating an argument array.
+	 */
+	private static final int MAX_UNSPREAD_HOOK_PARAMETERS = 4;
+
+	private static final MethodHandle ourWrapHookTargetException;
+
+	static {
+		try {
+			ourWrapHookTargetException = MethodHandles.lookup()
+					.findStatic(
+							BaseInterceptorService.class,
+							"wrapHookTargetException",
+							MethodType.methodType(Object.class, Throwable.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
 	private final List<Object> myInterceptors = new ArrayList<>();
 	private final ListMultimap<POINTCUT, IInvoker> myGlobalInvokers = ArrayListMultimap.create();
 	private final ListMultimap<POINTCUT, IInvoker> myAnonymousInvokers = ArrayListMultimap.create();
 	private final Object myRegistryMutex = new Object();
 	private final Class<POINTCUT> myPointcutType;
-	private volatile EnumSet<POINTCUT> myRegisteredPointcuts;
+	/**
+	 * Immutable snapshot of the sorted invokers for each pointcut, indexed by the
+	 * pointcut ordinal. This is rebuilt whenever an interceptor is registered or
+	 * unregistered so that dispatching hooks never needs to lock or allocate.
+	 */
+	private volatile List<IInvoker>[] myInvokerSnapshots;
+
 	private boolean myWarnOnInterceptorWithNoHooks = true;
+	private volatile boolean myUseMethodHandleInvokers = false;
 
 	/**
 	 * Constructor which uses a default name of "default"
@@ -100,7 +132,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 	public BaseInterceptorService(Class<POINTCUT> thePointcutType, String theName) {
 		super();
 		myPointcutType = thePointcutType;
-		rebuildRegisteredPointcutSet();
+		rebuildInvokerSnapshots();
 	}
 
 	/**
@@ -110,6 +142,33 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		myWarnOnInterceptorWithNoHooks = theWarnOnInterceptorWithNoHooks;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), each {@link Hook} method
+	 * is bound to a {@link MethodHandle} once, when its interceptor is registered, and hooks
+	 * are then dispatched through that handle using a precomputed mapping from {@link HookParams}
+	 * to method parameters. Otherwise hooks are dispatched using reflection.
+	 * <p>
+	 * This setting only applies to interceptors registered after it is changed, so it should
+	 * normally be set before any interceptors are registered.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setUseMethodHandleInvokers(boolean theUseMethodHandleInvokers) {
+		myUseMethodHandleInvokers = theUseMethodHandleInvokers;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), each {@link Hook} method
+	 * is bound to a {@link MethodHandle} once, when its interceptor is registered, and hooks
+	 * are then dispatched through that handle instead of using reflection.
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isUseMethodHandleInvokers() {
+		return myUseMethodHandleInvokers;
+	}
+
 	@VisibleForTesting
 	List<Object> getGlobalInterceptorsForUnitTest() {
 		return myInterceptors;
@@ -132,7 +191,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 				myInterceptors.add(theInterceptor);
 			}
 
-			rebuildRegisteredPointcutSet();
+			rebuildInvokerSnapshots();
 		}
 	}
 
@@ -193,7 +252,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 				}
 			}
 
-			rebuildRegisteredPointcutSet();
+			rebuildInvokerSnapshots();
 		}
 	}
 
@@ -218,17 +277,31 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 			myInterceptors.add(theInterceptor);
 			sortByOrderAnnotation(myInterceptors);
 
-			rebuildRegisteredPointcutSet();
+			rebuildInvokerSnapshots();
 
 			return true;
 		}
 	}
 
-	private void rebuildRegisteredPointcutSet() {
+	/**
+	 * Must be called while holding {@link #myRegistryMutex} any time the registered invokers change
+	 */
+	private void rebuildInvokerSnapshots() {
 		EnumSet<POINTCUT> registeredPointcuts = EnumSet.noneOf(myPointcutType);
 		registeredPointcuts.addAll(myAnonymousInvokers.keySet());
 		registeredPointcuts.addAll(myGlobalInvokers.keySet());
-		myRegisteredPointcuts = registeredPointcuts;
+
+		@SuppressWarnings("unchecked")
+		List<IInvoker>[] invokerSnapshots = new List[myPointcutType.getEnumConstants().length];
+		Arrays.fill(invokerSnapshots, Collections.emptyList());
+		for (POINTCUT nextPointcut : registeredPointcuts) {
+			List<IInvoker> globalInvokers = myGlobalInvokers.get(nextPointcut);
+			List<IInvoker> anonymousInvokers = myAnonymousInvokers.get(nextPointcut);
+			List<IInvoker> invokers = union(Arrays.asList(globalInvokers, anonymousInvokers));
+			invokerSnapshots[nextPointcut.ordinal()] = List.copyOf(invokers);
+		}
+
+		myInvokerSnapshots = invokerSnapshots;
 	}
 
 	private boolean isInterceptorAlreadyRegistered(Object theInterceptor) {
@@ -246,7 +319,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 			boolean removed = myInterceptors.removeIf(t -> t == theInterceptor);
 			removed |= myGlobalInvokers.entries().removeIf(t -> t.getValue().getInterceptor() == theInterceptor);
 			removed |= myAnonymousInvokers.entries().removeIf(t -> t.getValue().getInterceptor() == theInterceptor);
-			rebuildRegisteredPointcutSet();
+			rebuildInvokerSnapshots();
 			return removed;
 		}
 	}
@@ -276,7 +349,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 
 	@Override
 	public boolean hasHooks(POINTCUT thePointcut) {
-		return myRegisteredPointcuts.contains(thePointcut);
+		return !myInvokerSnapshots[thePointcut.ordinal()].isEmpty();
 	}
 
 	protected Class<?> getBooleanReturnType() {
@@ -295,6 +368,9 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 
 	private Object doCallHooks(POINTCUT thePointcut, HookParams theParams) {
 		List<IInvoker> invokers = getInvokersForPointcut(thePointcut);
+		if (invokers.isEmpty()) {
+			return null;
+		}
 		return callInvokers(thePointcut, theParams, invokers);
 	}
 
@@ -310,19 +386,12 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 	 * is ordered by the invoker order (specified on the {@link Interceptor#order()}
 	 * and {@link Hook#order()} values.
 	 *
-	 * @return The list returned by this method will always be a newly created list, so it will be stable and can be modified.
+	 * @return The list returned by this method is an immutable snapshot which is replaced (not modified) when
+	 * 	interceptors are registered or unregistered, so it is stable and can be iterated without locking.
 	 */
 	@Override
 	public List<IInvoker> getInvokersForPointcut(POINTCUT thePointcut) {
-		List<IInvoker> invokers;
-
-		synchronized (myRegistryMutex) {
-			List<IInvoker> globalInvokers = myGlobalInvokers.get(thePointcut);
-			List<IInvoker> anonymousInvokers = myAnonymousInvokers.get(thePointcut);
-			invokers = union(Arrays.asList(globalInvokers, anonymousInvokers));
-		}
-
-		return invokers;
+		return myInvokerSnapshots[thePointcut.ordinal()];
 	}
 
 	/**
@@ -522,9 +591,20 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		return theParameterTypes.stream().sorted().collect(Collectors.joining(","));
 	}
 
+	/**
+	 * Returns <code>true</code> if the given invoker calls its hook method through a bound
+	 * {@link MethodHandle} rather than through reflection (see {@link #setUseMethodHandleInvokers(boolean)})
+	 */
+	@VisibleForTesting
+	static boolean isMethodHandleInvoker(IInvoker theInvoker) {
+		return theInvoker instanceof BaseInterceptorService<?>.HookInvoker
+				&& ((BaseInterceptorService<?>.HookInvoker) theInvoker).isUsingMethodHandle();
+	}
+
 	private class HookInvoker extends BaseInvoker {
 
 		private final Method myMethod;
+		private final MethodHandle myMethodHandle;
 		private final Class<?>[] myParameterTypes;
 		private final int[] myParameterIndexes;
 		private final POINTCUT myPointcut;
@@ -564,6 +644,44 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 			}
 
 			myMethod.setAccessible(true);
+			myMethodHandle = myUseMethodHandleInvokers ? createMethodHandle(theHookMethod, theInterceptor) : null;
+		}
+
+		/**
+		 * Binds the hook method to the interceptor instance and adapts it to a generic
+		 * signature, so that it can be called using {@link MethodHandle#invokeExact(Object...)}.
+		 *
+		 * @return Returns <code>null</code> if no handle could be created, in which case we fall back to reflection
+		 */
+		@Nullable
+		private MethodHandle createMethodHandle(Method theHookMethod, Object theInterceptor) {
+			try {
+				MethodHandle retVal = MethodHandles.lookup().unreflect(theHookMethod);
+				if (!Modifier.isStatic(theHookMethod.getModifiers())) {
+					retVal = retVal.bindTo(theInterceptor);
+				}
+
+				// Wrap anything thrown by the hook method itself, so that it can be told apart from
+				// failures adapting the arguments (e.g. a ClassCastException thrown by asType)
+				MethodHandle wrapTargetException = ourWrapHookTargetException.asType(
+						MethodType.methodType(retVal.type().returnType(), Throwable.class));
+				wrapTargetException = MethodHandles.dropArguments(
+						wrapTargetException, 1, retVal.type().parameterList());
+				retVal = MethodHandles.catchException(retVal, Throwable.class, wrapTargetException);
+
+				int parameterCount = theHookMethod.getParameterCount();
+				if (parameterCount > MAX_UNSPREAD_HOOK_PARAMETERS) {
+					retVal = retVal.asSpreader(Object[].class, parameterCount);
+					return retVal.asType(MethodType.methodType(Object.class, Object[].class));
+				}
+				return retVal.asType(MethodType.genericMethodType(parameterCount));
+			} catch (IllegalAccessException | RuntimeException e) {
+				ourLog.warn(
+						"Unable to create method handle for hook method {}, falling back to reflection",
+						theHookMethod,
+						e);
+				return null;
+			}
 		}
 
 		@Override
@@ -588,21 +706,9 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		@Override
 		public Object invoke(HookParams theParams) {
 
-			Object[] args = new Object[myParameterTypes.length];
-			for (int i = 0; i < myParameterTypes.length; i++) {
-				Class<?> nextParamType = myParameterTypes[i];
-				if (nextParamType.equals(Pointcut.class)) {
-					args[i] = myPointcut;
-				} else {
-					int nextParamIndex = myParameterIndexes[i];
-					Object nextParamValue = theParams.get(nextParamType, nextParamIndex);
-					args[i] = nextParamValue;
-				}
-			}
-
 			// Invoke the method
 			try {
-				return invokeMethod(args);
+				return invokeMethod(theParams);
 			} catch (InvocationTargetException e) {
 				Throwable targetException = e.getTargetException();
 				if (myPointcut.isShouldLogAndSwallowException(targetException)) {
@@ -623,7 +729,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		}
 
 		@WithSpan("hapifhir.interceptor")
-		private Object invokeMethod(Object[] args) throws InvocationTargetException, IllegalAccessException {
+		private Object invokeMethod(HookParams theParams) throws InvocationTargetException, IllegalAccessException {
 			// Add attributes to the opentelemetry span
 			Span currentSpan = Span.current();
 			currentSpan.setAttribute(OTEL_INTERCEPTOR_POINTCUT_NAME_ATT_KEY, myPointcut.name());
@@ -632,8 +738,80 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 					myMethod.getDeclaringClass().getName());
 			currentSpan.setAttribute(OTEL_INTERCEPTOR_METHOD_NAME_ATT_KEY, myMethod.getName());
 
+			if (myMethodHandle != null) {
+				try {
+					return invokeMethodHandle(theParams);
+				} catch (HookTargetException e) {
+					// Mirror the behaviour of Method#invoke so that callers see the same exceptions
+					throw new InvocationTargetException(e.getCause());
+				} catch (Error e) {
+					throw e;
+				} catch (Throwable t) {
+					// The arguments couldn't be adapted to the hook method, which Method#invoke
+					// reports as an IllegalArgumentException
+					throw new IllegalArgumentException(t);
+				}
+			}
+
+			Object[] args = new Object[myParameterTypes.length];
+			for (int i = 0; i < myParameterTypes.length; i++) {
+				args[i] = getArgument(theParams, i);
+			}
 			return myMethod.invoke(getInterceptor(), args);
 		}
+
+		private Object invokeMethodHandle(HookParams theParams) throws Throwable {
+			switch (myParameterTypes.length) {
+				case 0:
+					return (Object) myMethodHandle.invokeExact();
+				case 1:
+					return (Object) myMethodHandle.invokeExact(getArgument(theParams, 0));
+				case 2:
+					return (Object) myMethodHandle.invokeExact(getArgument(theParams, 0), getArgument(theParams, 1));
+				case 3:
+					return (Object) myMethodHandle.invokeExact(
+							getArgument(theParams, 0), getArgument(theParams, 1), getArgument(theParams, 2));
+				case 4:
+					return (Object) myMethodHandle.invokeExact(
+							getArgument(theParams, 0),
+							getArgument(theParams, 1),
+							getArgument(theParams, 2),
+							getArgument(theParams, 3));
+				default:
+					Object[] args = new Object[myParameterTypes.length];
+					for (int i = 0; i < myParameterTypes.length; i++) {
+						args[i] = getArgument(theParams, i);
+					}
+					return (Object) myMethodHandle.invokeExact(args);
+			}
+		}
+
+		boolean isUsingMethodHandle() {
+			return myMethodHandle != null;
+		}
+
+		private Object getArgument(HookParams theParams, int theParameterIndex) {
+			Class<?> nextParamType = myParameterTypes[theParameterIndex];
+			if (nextParamType.equals(Pointcut.class)) {
+				return myPointcut;
+			}
+			return theParams.get(nextParamType, myParameterIndexes[theParameterIndex]);
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static Object wrapHookTargetException(Throwable theThrowable) throws HookTargetException {
+		throw new HookTargetException(theThrowable);
+	}
+
+	/**
+	 * Thrown by method handle invokers to wrap anything thrown by the hook method itself
+	 */
+	private static class HookTargetException extends Exception {
+
+		HookTargetException(Throwable theCause) {
+			super(null, theCause, false, false);
+		}
 	}
 
 	protected class HookDescriptor {
@@ -26,6 +26,7 @@ import ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum;
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.context.ParserOptions;
 import ca.uhn.fhir.context.RuntimeChildContainedResources;
 import ca.uhn.fhir.context.RuntimeChildDeclaredExtensionDefinition;
 import ca.uhn.fhir.context.RuntimeChildNarrativeDefinition;
@@ -51,10 +52,12 @@ import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ScalarType;
 import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ValueType;
 import ca.uhn.fhir.parser.json.BaseJsonLikeWriter;
 import ca.uhn.fhir.parser.json.JsonLikeStructure;
+import ca.uhn.fhir.parser.json.jackson.JacksonStreamingReader;
 import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
 import ca.uhn.fhir.util.FhirTerser;
+import com.fasterxml.jackson.core.JsonToken;
 import jakarta.annotation.Nonnull;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -73,14 +76,18 @@ import org.hl7.fhir.instance.model.api.INarrative;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum.ID_DATATYPE;
 import static ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum.PRIMITIVE_DATATYPE;
@@ -226,6 +233,15 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		eventWriter.close();
 	}
 
+	@Override
+	protected void doEncodeResourceToOutputStream(
+			IBaseResource theResource, OutputStream theOutputStream, EncodeContext theEncodeContext)
+			throws IOException {
+		BaseJsonLikeWriter eventWriter = new JacksonStructure().getJsonLikeWriter(theOutputStream);
+		doEncodeResourceToJsonLikeWriter(theResource, eventWriter, theEncodeContext);
+		eventWriter.close();
+	}
+
 	@Override
 	protected void doEncodeToWriter(IBase theElement, Writer theWriter, EncodeContext theEncodeContext)
 			throws IOException, DataFormatException {
@@ -238,20 +254,37 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	protected void doParseIntoComplexStructure(Reader theSource, IBase theTarget) {
-		JsonLikeStructure jsonStructure = new JacksonStructure();
-		jsonStructure.load(theSource);
+		ParserState<IBase> state;
+		if (isStreamingJsonParsing()) {
+			try (JacksonStreamingReader reader = JacksonStructure.newStreamingReader(theSource)) {
+				reader.nextToken();
+				state = ParserState.getComplexObjectState(
+						this, getContext(), getContext(), true, theTarget, getErrorHandler());
+				state.enteringNewElement(null, null);
+				reader.nextToken();
+				parseChildrenStreaming(reader, state);
+				reader.verifyNoTrailingContent();
+			}
+		} else {
+			JsonLikeStructure jsonStructure = new JacksonStructure();
+			jsonStructure.load(theSource);
 
-		ParserState<IBase> state =
-				ParserState.getComplexObjectState(this, getContext(), getContext(), true, theTarget, getErrorHandler());
-		state.enteringNewElement(null, null);
+			state = ParserState.getComplexObjectState(
+					this, getContext(), getContext(), true, theTarget, getErrorHandler());
+			state.enteringNewElement(null, null);
 
-		parseChildren(jsonStructure.getRootObject(), state);
+			parseChildren(jsonStructure.getRootObject(), state);
+		}
 
 		state.endingElement();
 	}
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (isStreamingJsonParsing()) {
+			return doParseResourceStreaming(theResourceType, theReader);
+		}
+
 		JsonLikeStructure jsonStructure = new JacksonStructure();
 		jsonStructure.load(theReader);
 
@@ -260,9 +293,59 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		return retVal;
 	}
 
+	private boolean isStreamingJsonParsing() {
+		return getContext().getParserOptions().isStreamingJsonParsing();
+	}
+
+	/**
+	 * Parses a resource directly from the JSON token stream, without first reading the
+	 * whole document into a tree.
+	 *
+	 * @see ParserOptions#setStreamingJsonParsing(boolean)
+	 */
+	private <T extends IBaseResource> T doParseResourceStreaming(Class<T> theResourceType, Reader theReader) {
+		try (JacksonStreamingReader reader = JacksonStructure.newStreamingReader(theReader)) {
+			reader.nextToken();
+			reader.nextToken();
+
+			if (reader.currentToken() != JsonToken.FIELD_NAME || !"resourceType".equals(reader.currentName())) {
+				// We need to know the resource type before we can parse anything else, so if it
+				// isn't the first property we fall back to reading the whole resource into a tree
+				BaseJsonLikeObject object = reader.readRemainingObject();
+				reader.verifyNoTrailingContent();
+				return doParseResource(theResourceType, object);
+			}
+
+			reader.nextToken();
+			String resourceType = reader.currentToken() == JsonToken.VALUE_STRING ? reader.getText() : null;
+			if (isBlank(resourceType)) {
+				throw new DataFormatException(
+						Msg.code(2650) + "Invalid JSON content detected, missing required element: 'resourceType'");
+			}
+
+			ParserState<? extends IBaseResource> state =
+					ParserState.getPreResourceInstance(this, theResourceType, getContext(), true, getErrorHandler());
+			state.enteringNewElement(null, resourceType);
+
+			reader.nextToken();
+			parseChildrenStreaming(reader, state);
+			reader.verifyNoTrailingContent();
+
+			state.endingElement();
+			state.endingElement();
+
+			@SuppressWarnings("unchecked")
+			T retVal = (T) state.getObject();
+
+			return retVal;
+		}
+	}
+
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, JsonLikeStructure theJsonStructure) {
-		BaseJsonLikeObject object = theJsonStructure.getRootObject();
+		return doParseResource(theResourceType, theJsonStructure.getRootObject());
+	}
 
+	private <T extends IBaseResource> T doParseResource(Class<T> theResourceType, BaseJsonLikeObject object) {
 		BaseJsonLikeValue resourceTypeObj = object.get("resourceType");
 		if (resourceTypeObj == null || !resourceTypeObj.isString() || isBlank(resourceTypeObj.getAsString())) {
 			throw new DataFormatException(
@@ -1251,7 +1334,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 	}
 
 	private BaseJsonLikeArray grabJsonArray(BaseJsonLikeObject theObject, String nextName, String thePosition) {
-		BaseJsonLikeValue object = theObject.get(nextName);
+		return grabJsonArray(theObject.get(nextName), thePosition);
+	}
+
+	private BaseJsonLikeArray grabJsonArray(BaseJsonLikeValue object, String thePosition) {
 		if (object == null || object.isNull()) {
 			return null;
 		}
@@ -1485,6 +1571,194 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
+	/**
+	 * Streaming equivalent of {@link #parseChildren(BaseJsonLikeObject, ParserState)}. The reader must be
+	 * positioned on the first field name of the object (or its end), and is left on the end of the object.
+	 * <p>
+	 * Complex values are parsed as they are read. Primitive values are read into small trees and are
+	 * only parsed once the end of the object is reached, since their <code>_element</code> counterparts
+	 * may appear anywhere in the object. Extensions are read into trees too, since their <code>url</code>
+	 * may appear after their value.
+	 * </p>
+	 */
+	private void parseChildrenStreaming(JacksonStreamingReader theReader, ParserState<?> theState) {
+		Map<String, BaseJsonLikeValue> primitiveValues = null;
+		Map<String, BaseJsonLikeValue> alternateValues = null;
+		Set<String> complexNames = null;
+
+		for (JsonToken token = theReader.currentToken(); token == JsonToken.FIELD_NAME; token = theReader.nextToken()) {
+			String nextName = theReader.currentName();
+			JsonToken valueToken = theReader.nextToken();
+
+			if ("resourceType".equals(nextName) && theState.isToplevelResourceElement()) {
+				theReader.skipValue();
+			} else if ("extension".equals(nextName) || "modifierExtension".equals(nextName)) {
+				BaseJsonLikeArray array = grabJsonArray(theReader.readValue(), nextName);
+				parseExtension(theState, array, "modifierExtension".equals(nextName));
+			} else if ("fhir_comments".equals(nextName)) {
+				parseFhirComments(theReader.readValue(), theState);
+			} else if (nextName.charAt(0) == '_') {
+				if (alternateValues == null) {
+					alternateValues = new LinkedHashMap<>();
+				}
+				alternateValues.put(nextName, theReader.readValue());
+			} else {
+				// For arrays, we look at the first element to decide whether this is a complex element
+				JsonToken firstToken = valueToken == JsonToken.START_ARRAY ? theReader.nextToken() : valueToken;
+				if (firstToken != JsonToken.START_OBJECT) {
+					BaseJsonLikeValue nextVal = valueToken == JsonToken.START_ARRAY
+							? theReader.readRemainingArray()
+							: theReader.readValue();
+					if (primitiveValues == null) {
+						primitiveValues = new LinkedHashMap<>();
+					}
+					primitiveValues.put(nextName, nextVal);
+					continue;
+				}
+
+				if (complexNames == null) {
+					complexNames = new HashSet<>();
+				}
+				complexNames.add(nextName);
+				String alternateName = '_' + nextName;
+				BaseJsonLikeValue alternateVal = alternateValues != null ? alternateValues.remove(alternateName) : null;
+				if (valueToken == JsonToken.START_OBJECT) {
+					parseObjectStreaming(theReader, theState, nextName, alternateVal, alternateName, false);
+				} else {
+					parseArrayStreaming(theReader, theState, nextName, alternateVal, alternateName);
+				}
+			}
+		}
+
+		if (primitiveValues != null) {
+			for (Map.Entry<String, BaseJsonLikeValue> next : primitiveValues.entrySet()) {
+				String alternateName = '_' + next.getKey();
+				BaseJsonLikeValue alternateVal = alternateValues != null ? alternateValues.remove(alternateName) : null;
+				parseChildren(theState, next.getKey(), next.getValue(), alternateVal, alternateName, false);
+			}
+		}
+
+		/*
+		 * Anything left over is an "_element" with no corresponding "element" (see the
+		 * equivalent comment in the tree-based parseChildren method), or an "_element"
+		 * that followed a complex element, which isn't valid since only primitives can
+		 * have an "_element".
+		 */
+		if (alternateValues != null) {
+			for (Map.Entry<String, BaseJsonLikeValue> next : alternateValues.entrySet()) {
+				String alternateName = next.getKey();
+				BaseJsonLikeValue nextValue = next.getValue();
+				if (alternateName.length() <= 1) {
+					continue;
+				}
+
+				String nextName = alternateName.substring(1);
+				if (complexNames != null && complexNames.contains(nextName)) {
+					getErrorHandler().unknownElement(null, alternateName);
+				} else if (nextValue.isObject()) {
+					theState.enteringNewElement(null, nextName);
+					parseAlternates(nextValue, theState, alternateName, alternateName);
+					theState.endingElement();
+				} else {
+					getErrorHandler()
+							.incorrectJsonType(
+									null, alternateName, ValueType.OBJECT, null, nextValue.getJsonType(), null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Streaming equivalent of the object branch of
+	 * {@link #parseChildren(ParserState, String, BaseJsonLikeValue, BaseJsonLikeValue, String, boolean)}.
+	 * The reader must be positioned on the start of the object, and is left on the end of the object.
+	 */
+	private void parseObjectStreaming(
+			JacksonStreamingReader theReader,
+			ParserState<?> theState,
+			String theName,
+			BaseJsonLikeValue theAlternateVal,
+			String theAlternateName,
+			boolean theInArray) {
+		if (theName.equals("id")) {
+			getErrorHandler()
+					.incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.OBJECT, null);
+		}
+		if (!theInArray && theState.elementIsRepeating(theName)) {
+			getErrorHandler().incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+		}
+
+		theState.enteringNewElement(null, theName);
+		parseAlternates(theAlternateVal, theState, theAlternateName, theAlternateName);
+		theReader.nextToken();
+
+		if (theState.isPreResource()) {
+			if (theReader.currentToken() == JsonToken.FIELD_NAME && "resourceType".equals(theReader.currentName())) {
+				if (theReader.nextToken() != JsonToken.VALUE_STRING) {
+					throw new DataFormatException(Msg.code(2651)
+							+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
+				}
+				theState.enteringNewElement(null, theReader.getText());
+				theReader.nextToken();
+				parseChildrenStreaming(theReader, theState);
+			} else {
+				// The resource type isn't the first property, so we need to read ahead to find it
+				BaseJsonLikeObject nextObject = theReader.readRemainingObject();
+				BaseJsonLikeValue resType = nextObject.get("resourceType");
+				if (resType == null || !resType.isString()) {
+					throw new DataFormatException(Msg.code(2652)
+							+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
+				}
+				theState.enteringNewElement(null, resType.getAsString());
+				parseChildren(nextObject, theState);
+			}
+			theState.endingElement();
+		} else {
+			parseChildrenStreaming(theReader, theState);
+		}
+
+		theState.endingElement();
+	}
+
+	/**
+	 * Streaming equivalent of the array branch of
+	 * {@link #parseChildren(ParserState, String, BaseJsonLikeValue, BaseJsonLikeValue, String, boolean)}.
+	 * The reader must be positioned on the first element of the array (or its end), and is left on
+	 * the end of the array.
+	 */
+	private void parseArrayStreaming(
+			JacksonStreamingReader theReader,
+			ParserState<?> theState,
+			String theName,
+			BaseJsonLikeValue theAlternateVal,
+			String theAlternateName) {
+		if (theName.equals("id")) {
+			getErrorHandler().incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.ARRAY, null);
+		}
+
+		BaseJsonLikeValue alternateVal = theAlternateVal;
+		if (alternateVal != null && alternateVal.isArray() == false) {
+			getErrorHandler()
+					.incorrectJsonType(null, theAlternateName, ValueType.ARRAY, null, alternateVal.getJsonType(), null);
+			alternateVal = null;
+		}
+
+		BaseJsonLikeArray nextAlternateArray = BaseJsonLikeValue.asArray(alternateVal); // could be null
+		int i = 0;
+		for (JsonToken token = theReader.currentToken(); token != JsonToken.END_ARRAY; token = theReader.nextToken()) {
+			BaseJsonLikeValue nextAlternate = null;
+			if (nextAlternateArray != null && nextAlternateArray.size() >= (i + 1)) {
+				nextAlternate = nextAlternateArray.get(i);
+			}
+			if (token == JsonToken.START_OBJECT) {
+				parseObjectStreaming(theReader, theState, theName, nextAlternate, theAlternateName, true);
+			} else {
+				parseChildren(theState, theName, theReader.readValue(), nextAlternate, theAlternateName, true);
+			}
+			i++;
+		}
+	}
+
 	private void parseExtension(ParserState<?> theState, BaseJsonLikeArray theValues, boolean theIsModifier) {
 		int allUnderscoreNames = 0;
 		int handledUnderscoreNames = 0;
@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser.json.jackson;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.json.BaseJsonLikeObject;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A thin wrapper around a Jackson token stream, used by the FHIR JSON parser when parsing
+ * without building an intermediate tree. Individual values can still be read as
+ * {@link BaseJsonLikeValue trees} where the parser needs random access to them.
+ * <p>
+ * All methods translate Jackson failures into {@link DataFormatException} using the same
+ * messages as {@link JacksonStructure#load(java.io.Reader)}.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public class JacksonStreamingReader implements Closeable {
+
+	private final ObjectReader myObjectReader;
+	private final JsonParser myParser;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theObjectReader The reader used to read individual values into trees. This must not fail on
+	 *                        trailing tokens, since values are read from the middle of the stream.
+	 */
+	JacksonStreamingReader(ObjectReader theObjectReader, JsonParser theParser) {
+		myObjectReader = theObjectReader;
+		myParser = theParser;
+	}
+
+	/**
+	 * Advances to the next token
+	 */
+	public JsonToken nextToken() {
+		try {
+			return myParser.nextToken();
+		} catch (IOException e) {
+			throw JacksonStructure.newParseFailureException(e);
+		}
+	}
+
+	public JsonToken currentToken() {
+		return myParser.currentToken();
+	}
+
+	/**
+	 * Returns the name of the current field, if the reader is positioned on a field name
+	 */
+	public String currentName() {
+		try {
+			return myParser.currentName();
+		} catch (IOException e) {
+			throw JacksonStructure.newParseFailureException(e);
+		}
+	}
+
+	/**
+	 * Returns the text of the current scalar value
+	 */
+	public String getText() {
+		try {
+			return myParser.getText();
+		} catch (IOException e) {
+			throw JacksonStructure.newParseFailureException(e);
+		}
+	}
+
+	/**
+	 * Skips the value the reader is positioned on, leaving the reader on the
+	 * last token of that value
+	 */
+	public void skipValue() {
+		try {
+			myParser.skipChildren();
+		} catch (IOException e) {
+			throw JacksonStructure.newParseFailureException(e);
+		}
+	}
+
+	/**
+	 * Reads the value the reader is positioned on into a tree, leaving the reader
+	 * on the last token of that value
+	 */
+	public BaseJsonLikeValue readValue() {
+		return JacksonStructure.wrap(readNode());
+	}
+
+	/**
+	 * Reads the remainder of the object the reader is currently inside of into a tree.
+	 * The reader must be positioned on a field name or on the end of the object, and is
+	 * left on the end of the object.
+	 */
+	public BaseJsonLikeObject readRemainingObject() {
+		ObjectNode retVal = myObjectReader.getConfig().getNodeFactory().objectNode();
+		while (currentToken() == JsonToken.FIELD_NAME) {
+			String name = currentName();
+			nextToken();
+			retVal.set(name, readNode());
+			nextToken();
+		}
+		return JacksonStructure.wrap(retVal).getAsObject();
+	}
+
+	/**
+	 * Reads the remainder of the array the reader is currently inside of into a tree.
+	 * The reader must be positioned on an element of the array or on the end of the array,
+	 * and is left on the end of the array.
+	 */
+	public BaseJsonLikeValue readRemainingArray() {
+		ArrayNode retVal = myObjectReader.getConfig().getNodeFactory().arrayNode();
+		while (currentToken() != JsonToken.END_ARRAY) {
+			retVal.add(readNode());
+			nextToken();
+		}
+		return JacksonStructure.wrap(retVal);
+	}
+
+	/**
+	 * Verifies that there is no further content after the root value
+	 */
+	public void verifyNoTrailingContent() {
+		JsonToken trailingToken = nextToken();
+		if (trailingToken != null) {
+			throw new DataFormatException(Msg.code(2648)
+					+ "Failed to parse JSON encoded FHIR content: Trailing token (of type " + trailingToken
+					+ ") found after the root object");
+		}
+	}
+
+	private JsonNode readNode() {
+		try {
+			JsonNode retVal = myObjectReader.readTree(myParser);
+			if (retVal == null) {
+				throw new DataFormatException(
+						Msg.code(2649) + "Failed to parse JSON encoded FHIR content: " + "Unexpected end of content");
+			}
+			return retVal;
+		} catch (IOException e) {
+			throw JacksonStructure.newParseFailureException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			myParser.close();
+		} catch (IOException e) {
+			throw JacksonStructure.newParseFailureException(e);
+		}
+	}
+}
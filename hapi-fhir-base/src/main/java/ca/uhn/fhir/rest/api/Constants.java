@@ -188,6 +188,13 @@ public class Constants {
 	 * @since 7.0.0
 	 */
 	public static final String PARAM_LANGUAGE = "_language";
+	/**
+	 * Used in paging links for searches which are paged using the sort key of the last
+	 * returned resource (keyset paging) instead of an offset
+	 *
+	 * @since 8.4.0
+	 */
+	public static final String PARAM_KEYSET = "_keyset";
 
 	public static final String PARAM_INCLUDE_QUALIFIER_RECURSE = ":recurse";
 	public static final String PARAM_INCLUDE_RECURSE = "_include" + PARAM_INCLUDE_QUALIFIER_RECURSE;
@@ -260,6 +267,14 @@ public class Constants {
 	public static final String OO_INFOSTATUS_PROCESSING = "processing";
 	public static final String PARAM_GRAPHQL_QUERY = "query";
 	public static final String HEADER_X_CACHE = "X-Cache";
+	/**
+	 * Response header indicating whether the total in a search result bundle is
+	 * exact (<code>accurate</code>) or approximate (<code>estimated</code>)
+	 *
+	 * @since 8.4.0
+	 */
+	public static final String HEADER_X_SEARCH_TOTAL_MODE = "X-Search-Total-Mode";
+
 	public static final String HEADER_X_SECURITY_CONTEXT = "X-Security-Context";
 	public static final String POWERED_BY_HEADER = "X-Powered-By";
 	public static final Charset CHARSET_US_ASCII;
@@ -38,6 +38,11 @@ public enum SearchTotalModeEnum {
 		return myCode;
 	}
 
+	/**
+	 * Returns the mode for the given <code>_total</code> code. In addition to the codes
+	 * declared by this enum, the code <code>estimate</code> (which is the value used by
+	 * the FHIR specification) is accepted as an alias for {@link #ESTIMATED}.
+	 */
 	public static SearchTotalModeEnum fromCode(String theCode) {
 		Map<String, SearchTotalModeEnum> map = ourCodeToEnum;
 		if (map == null) {
@@ -45,6 +50,7 @@ public enum SearchTotalModeEnum {
 			for (SearchTotalModeEnum next : values()) {
 				map.put(next.getCode(), next);
 			}
+			map.put("estimate", ESTIMATED);
 			ourCodeToEnum = map;
 		}
 		return map.get(theCode);
@@ -19,9 +19,14 @@
  */
 package ca.uhn.fhir.util;
 
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
+import org.slf4j.MDC;
 import org.slf4j.event.Level;
 
+import java.util.Map;
+import java.util.function.Supplier;
+
 /**
  * Utility to fill a glaring gap in SLF4j's API - The fact that you can't
  * specify a log level at runtime.
@@ -50,4 +55,52 @@ public class LogUtil {
 				break;
 		}
 	}
+
+	/**
+	 * Wraps the given task so that it runs with the logging context (MDC) of the thread
+	 * calling this method, and restores the running thread's own context afterwards. Use
+	 * this when handing work to a pool thread.
+	 *
+	 * @since 8.4.0
+	 */
+	public static Runnable withLoggingContext(Runnable theRunnable) {
+		Map<String, String> context = MDC.getCopyOfContextMap();
+		return () -> {
+			Map<String, String> previous = MDC.getCopyOfContextMap();
+			setLoggingContext(context);
+			try {
+				theRunnable.run();
+			} finally {
+				setLoggingContext(previous);
+			}
+		};
+	}
+
+	/**
+	 * Wraps the given supplier so that it runs with the logging context (MDC) of the thread
+	 * calling this method, and restores the running thread's own context afterwards. Use
+	 * this when handing work to a pool thread.
+	 *
+	 * @since 8.4.0
+	 */
+	public static <T> Supplier<T> withLoggingContext(Supplier<T> theSupplier) {
+		Map<String, String> context = MDC.getCopyOfContextMap();
+		return () -> {
+			Map<String, String> previous = MDC.getCopyOfContextMap();
+			setLoggingContext(context);
+			try {
+				return theSupplier.get();
+			} finally {
+				setLoggingContext(previous);
+			}
+		};
+	}
+
+	private static void setLoggingContext(@Nullable Map<String, String> theContext) {
+		if (theContext != null) {
+			MDC.setContextMap(theContext);
+		} else {
+			MDC.clear();
+		}
+	}
 }
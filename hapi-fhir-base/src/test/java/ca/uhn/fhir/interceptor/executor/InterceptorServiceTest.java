@@ -737,6 +737,191 @@ class InterceptorServiceTest {
 		}
 	}
 
+	@Test
+	void testGetInvokersForPointcutReturnsImmutableSnapshot() {
+		InterceptorService svc = new InterceptorService();
+		assertThat(svc.getInvokersForPointcut(Pointcut.TEST_RB)).isEmpty();
+		assertFalse(svc.hasHooks(Pointcut.TEST_RB));
+
+		MyTestInterceptorTwo interceptor2 = new MyTestInterceptorTwo();
+		svc.registerInterceptor(interceptor2);
+		svc.registerAnonymousInterceptor(Pointcut.TEST_RB, new MyTestAnonymousInterceptorOne());
+		List<IBaseInterceptorBroadcaster.IInvoker> snapshot = svc.getInvokersForPointcut(Pointcut.TEST_RB);
+		assertThat(snapshot).hasSize(2);
+		assertTrue(svc.hasHooks(Pointcut.TEST_RB));
+		assertFalse(svc.hasHooks(Pointcut.TEST_RO));
+
+		// Repeated calls return the same instance, and it can't be modified
+		assertThat(svc.getInvokersForPointcut(Pointcut.TEST_RB)).isSameAs(snapshot);
+		assertThatThrownBy(snapshot::clear).isInstanceOf(UnsupportedOperationException.class);
+
+		// Registering replaces the snapshot but doesn't modify the old one
+		svc.registerInterceptor(new MyTestInterceptorOne());
+		assertThat(snapshot).hasSize(2);
+		assertThat(svc.getInterceptorsWithInvokersForPointcut(Pointcut.TEST_RB))
+			.extracting(t -> t.getClass().getSimpleName())
+			.containsExactly("MyTestAnonymousInterceptorOne", "MyTestInterceptorOne", "MyTestInterceptorTwo");
+
+		svc.unregisterAllInterceptors();
+		assertThat(svc.getInvokersForPointcut(Pointcut.TEST_RB)).isEmpty();
+		assertFalse(svc.hasHooks(Pointcut.TEST_RB));
+	}
+
+	@Nested
+	class MethodHandleInvokers {
+		private final InterceptorService mySvc = new InterceptorService();
+
+		@BeforeEach
+		void beforeEach() {
+			mySvc.setUseMethodHandleInvokers(true);
+		}
+
+		@Test
+		void testCallHooks() {
+			MyTestInterceptorOne interceptor1 = new MyTestInterceptorOne();
+			MyTestInterceptorTwo interceptor2 = new MyTestInterceptorTwo();
+			mySvc.registerInterceptor(interceptor1);
+			mySvc.registerInterceptor(interceptor2);
+			mySvc.registerInterceptor(new MyTestInterceptorManual());
+
+			assertThat(mySvc.getInvokersForPointcut(Pointcut.TEST_RB)).allMatch(BaseInterceptorService::isMethodHandleInvoker);
+
+			boolean outcome = mySvc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+			assertTrue(outcome);
+
+			assertThat(myInvocations).containsExactly("MyTestInterceptorOne.testRb", "MyTestInterceptorManual.testRb", "MyTestInterceptorTwo.testRb");
+			assertEquals("A", interceptor1.myLastString0);
+			assertEquals("A", interceptor2.myLastString0);
+			assertEquals("B", interceptor2.myLastString1);
+		}
+
+		@Test
+		void testCallHooksReturnsFalse() {
+			MyTestInterceptorOne interceptor1 = new MyTestInterceptorOne();
+			interceptor1.myNextReturn = false;
+			mySvc.registerInterceptor(interceptor1);
+			mySvc.registerInterceptor(new MyTestInterceptorTwo());
+
+			boolean outcome = mySvc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+			assertFalse(outcome);
+			assertThat(myInvocations).containsExactly("MyTestInterceptorOne.testRb");
+		}
+
+		@Test
+		void testCallHooksAndReturnObject() {
+			class InterceptorReturningObject {
+				@Hook(Pointcut.TEST_RO)
+				public BaseServerResponseException hook(String theValue0) {
+					return new InvalidRequestException(theValue0);
+				}
+			}
+			mySvc.registerInterceptor(new InterceptorReturningObject());
+
+			Object outcome = mySvc.callHooksAndReturnObject(Pointcut.TEST_RO, new HookParams("A", "B"));
+			assertInstanceOf(InvalidRequestException.class, outcome);
+			assertEquals("A", ((InvalidRequestException) outcome).getMessage());
+		}
+
+		@Test
+		void testCallHooksWithManyParameters() {
+			class InterceptorWithManyParameters {
+				private final List<Object> myValues = new ArrayList<>();
+
+				@Hook(Pointcut.TEST_RB)
+				public void hook(String theValue0, Pointcut thePointcut, String theValue1, String theValue2, String theValue3) {
+					myValues.add(theValue0);
+					myValues.add(thePointcut);
+					myValues.add(theValue1);
+					myValues.add(theValue2);
+					myValues.add(theValue3);
+				}
+			}
+			InterceptorWithManyParameters interceptor = new InterceptorWithManyParameters();
+			mySvc.registerInterceptor(interceptor);
+			assertTrue(BaseInterceptorService.isMethodHandleInvoker(mySvc.getInvokersForPointcut(Pointcut.TEST_RB).get(0)));
+
+			mySvc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+			assertThat(interceptor.myValues).containsExactly("A", Pointcut.TEST_RB, "B", null, null);
+		}
+
+		@Test
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		void testArgumentOfWrongType() {
+			mySvc.registerInterceptor(new MyTestInterceptorOne());
+			HookParams params = new HookParams();
+			params.add((Class) String.class, 123);
+			params.add(String.class, "B");
+
+			// A failure adapting the arguments isn't reported as an exception thrown by the hook
+			IBaseInterceptorBroadcaster.IInvoker invoker = mySvc.getInvokersForPointcut(Pointcut.TEST_RB).get(0);
+			assertThatThrownBy(() -> invoker.invoke(params))
+				.isInstanceOf(InternalErrorException.class)
+				.hasMessageContaining(Msg.code(1911))
+				.hasMessageContaining(ClassCastException.class.getName());
+		}
+
+		@Test
+		void testInterceptorThrowsClassCastException() {
+			class InterceptorThrowingException {
+				@Hook(Pointcut.TEST_RB)
+				void test(String theValue) {
+					throw new ClassCastException(theValue);
+				}
+			}
+			mySvc.registerInterceptor(new InterceptorThrowingException());
+
+			assertThatThrownBy(() -> mySvc.callHooks(Pointcut.TEST_RB, new HookParams("A MESSAGE", "B")))
+				.isInstanceOf(ClassCastException.class)
+				.hasMessage("A MESSAGE");
+		}
+
+		@Test
+		void testInterceptorThrowsException() {
+			class InterceptorThrowingException {
+				@Hook(Pointcut.TEST_RB)
+				void test(String theValue) {
+					throw new AuthenticationException(theValue);
+				}
+			}
+			mySvc.registerInterceptor(new InterceptorThrowingException());
+
+			assertThatThrownBy(() -> mySvc.callHooks(Pointcut.TEST_RB, new HookParams("A MESSAGE", "B")))
+				.isInstanceOf(AuthenticationException.class)
+				.hasMessage("A MESSAGE");
+		}
+
+		@Test
+		void testInterceptorThrowsCheckedException() {
+			class InterceptorThrowingCheckedException {
+				@Hook(Pointcut.TEST_RB)
+				public void test(String theValue) throws Exception {
+					throw new Exception(theValue);
+				}
+			}
+			mySvc.registerInterceptor(new InterceptorThrowingCheckedException());
+
+			assertThatThrownBy(() -> mySvc.callHooks(Pointcut.TEST_RB, new HookParams("A MESSAGE", "B")))
+				.isInstanceOf(InternalErrorException.class)
+				.hasMessageContaining(Msg.code(1910))
+				.hasRootCauseMessage("A MESSAGE");
+		}
+
+		@Test
+		void testSettingOnlyAppliesToNewlyRegisteredInterceptors() {
+			mySvc.setUseMethodHandleInvokers(false);
+			mySvc.registerInterceptor(new MyTestInterceptorOne());
+			mySvc.setUseMethodHandleInvokers(true);
+			mySvc.registerInterceptor(new MyTestInterceptorTwo());
+			assertTrue(mySvc.isUseMethodHandleInvokers());
+			assertThat(mySvc.getInvokersForPointcut(Pointcut.TEST_RB))
+				.extracting(BaseInterceptorService::isMethodHandleInvoker)
+				.containsExactly(false, true);
+
+			mySvc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+			assertThat(myInvocations).containsExactly("MyTestInterceptorOne.testRb", "MyTestInterceptorTwo.testRb");
+		}
+	}
+
 	@BeforeEach
 	void before() {
 		myInvocations.clear();
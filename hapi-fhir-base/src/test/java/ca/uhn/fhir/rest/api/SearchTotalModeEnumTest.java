@@ -0,0 +1,24 @@
+package ca.uhn.fhir.rest.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SearchTotalModeEnumTest {
+
+	@Test
+	public void fromCode() {
+		assertEquals(SearchTotalModeEnum.NONE, SearchTotalModeEnum.fromCode("none"));
+		assertEquals(SearchTotalModeEnum.ACCURATE, SearchTotalModeEnum.fromCode("accurate"));
+		assertEquals(SearchTotalModeEnum.ESTIMATED, SearchTotalModeEnum.fromCode("estimated"));
+		assertNull(SearchTotalModeEnum.fromCode("foo"));
+	}
+
+	@Test
+	public void fromCodeAcceptsSpecEstimateCode() {
+		assertEquals(SearchTotalModeEnum.ESTIMATED, SearchTotalModeEnum.fromCode("estimate"));
+		assertEquals("estimated", SearchTotalModeEnum.fromCode("estimate").getCode());
+	}
+
+}
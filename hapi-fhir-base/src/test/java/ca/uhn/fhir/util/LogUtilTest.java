@@ -2,8 +2,15 @@ package ca.uhn.fhir.util;
 
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
+import org.slf4j.MDC;
 import org.slf4j.event.Level;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
@@ -30,4 +37,28 @@ public class LogUtilTest {
 		verifyNoMoreInteractions(log);
 	}
 
+	@Test
+	public void testWithLoggingContext() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			executor.submit(() -> MDC.put("key", "pool-value")).get();
+
+			MDC.put("key", "caller-value");
+			Supplier<String> supplier = LogUtil.withLoggingContext(() -> MDC.get("key"));
+			String[] fromRunnable = new String[1];
+			Runnable runnable = LogUtil.withLoggingContext((Runnable) () -> fromRunnable[0] = MDC.get("key"));
+			MDC.remove("key");
+
+			assertThat(executor.submit(supplier::get).get()).isEqualTo("caller-value");
+			executor.submit(runnable).get();
+			assertThat(fromRunnable[0]).isEqualTo("caller-value");
+
+			// The pool thread gets its own context back once the task is done
+			assertThat(executor.submit(() -> MDC.get("key")).get()).isEqualTo("pool-value");
+		} finally {
+			executor.shutdown();
+			MDC.clear();
+		}
+	}
+
 }
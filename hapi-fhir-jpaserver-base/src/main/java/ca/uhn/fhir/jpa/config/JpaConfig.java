@@ -59,6 +59,7 @@ import ca.uhn.fhir.jpa.dao.ResourceHistoryCalculator;
 import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
 import ca.uhn.fhir.jpa.dao.TransactionProcessor;
 import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamIdentityDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceLinkDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceModifiedDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceSearchUrlDao;
@@ -70,11 +71,13 @@ import ca.uhn.fhir.jpa.dao.expunge.IExpungeEverythingService;
 import ca.uhn.fhir.jpa.dao.expunge.IResourceExpungeService;
 import ca.uhn.fhir.jpa.dao.expunge.JpaResourceExpungeService;
 import ca.uhn.fhir.jpa.dao.expunge.ResourceTableFKProvider;
+import ca.uhn.fhir.jpa.dao.index.ConditionalUrlMembershipFilterSvcImpl;
 import ca.uhn.fhir.jpa.dao.index.DaoResourceLinkResolver;
 import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.dao.index.SearchParamWithInlineReferencesExtractor;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.dao.validation.SearchParameterDaoValidator;
 import ca.uhn.fhir.jpa.delete.DeleteConflictFinderService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictService;
@@ -141,12 +144,14 @@ import ca.uhn.fhir.jpa.search.builder.predicate.UriPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryExecutor;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryTemplateCache;
 import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchTask;
 import ca.uhn.fhir.jpa.search.cache.DatabaseSearchCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.DatabaseSearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
+import ca.uhn.fhir.jpa.search.cache.OffHeapSearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.elastic.IndexNamePrefixLayoutStrategy;
 import ca.uhn.fhir.jpa.search.reindex.IInstanceReindexService;
 import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
@@ -174,10 +179,13 @@ import ca.uhn.fhir.jpa.term.api.ITermConceptMappingSvc;
 import ca.uhn.fhir.jpa.term.api.ITermReadSvc;
 import ca.uhn.fhir.jpa.term.api.ITermReindexingSvc;
 import ca.uhn.fhir.jpa.term.config.TermCodeSystemConfig;
+import ca.uhn.fhir.jpa.util.IResourceBodyCacheSvc;
+import ca.uhn.fhir.jpa.util.ISecondLevelMemoryCache;
 import ca.uhn.fhir.jpa.util.JpaHapiTransactionService;
 import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.jpa.util.PartitionedIdModeVerificationSvc;
 import ca.uhn.fhir.jpa.util.PersistenceContextProvider;
+import ca.uhn.fhir.jpa.util.ResourceBodyCacheSvcImpl;
 import ca.uhn.fhir.jpa.validation.JpaValidationSupportChain;
 import ca.uhn.fhir.jpa.validation.ResourceLoaderImpl;
 import ca.uhn.fhir.jpa.validation.ValidationSettings;
@@ -365,8 +373,17 @@ public class JpaConfig {
 	}
 
 	@Bean
-	public MemoryCacheService memoryCacheService(JpaStorageSettings theStorageSettings) {
-		return new MemoryCacheService(theStorageSettings);
+	public MemoryCacheService memoryCacheService(
+			JpaStorageSettings theStorageSettings,
+			@Autowired(required = false) ISecondLevelMemoryCache theSecondLevelCache) {
+		MemoryCacheService retVal = new MemoryCacheService(theStorageSettings);
+		retVal.setSecondLevelCache(theSecondLevelCache);
+		return retVal;
+	}
+
+	@Bean
+	public IResourceBodyCacheSvc resourceBodyCacheSvc(JpaStorageSettings theStorageSettings) {
+		return new ResourceBodyCacheSvcImpl(theStorageSettings);
 	}
 
 	@Bean
@@ -396,7 +413,10 @@ public class JpaConfig {
 	}
 
 	@Bean
-	public ISearchResultCacheSvc searchResultCacheSvc() {
+	public ISearchResultCacheSvc searchResultCacheSvc(JpaStorageSettings theStorageSettings) {
+		if (theStorageSettings.getSearchResultOffHeapCacheMaximumBytes() > 0) {
+			return new OffHeapSearchResultCacheSvcImpl(theStorageSettings);
+		}
 		return new DatabaseSearchResultCacheSvcImpl();
 	}
 
@@ -570,6 +590,11 @@ public class JpaConfig {
 		return new SqlObjectFactory();
 	}
 
+	@Bean
+	public SearchQueryTemplateCache searchQueryTemplateCache(JpaStorageSettings theStorageSettings) {
+		return new SearchQueryTemplateCache(theStorageSettings.getSearchSqlTemplateCacheSize());
+	}
+
 	@Bean
 	public HibernatePropertiesProvider HibernatePropertiesProvider() {
 		return new HibernatePropertiesProvider();
@@ -823,6 +848,15 @@ public class JpaConfig {
 		return new DaoSearchParamSynchronizer();
 	}
 
+	@Bean
+	public ConditionalUrlMembershipFilterSvcImpl conditionalUrlMembershipFilterSvc(
+			PartitionSettings thePartitionSettings,
+			IHapiTransactionService theTxService,
+			IResourceIndexedSearchParamTokenDao theResourceIndexedSearchParamTokenDao) {
+		return new ConditionalUrlMembershipFilterSvcImpl(
+				myStorageSettings, thePartitionSettings, theTxService, theResourceIndexedSearchParamTokenDao);
+	}
+
 	@Bean
 	public ResourceTableFKProvider resourceTableFKProvider() {
 		return new ResourceTableFKProvider();
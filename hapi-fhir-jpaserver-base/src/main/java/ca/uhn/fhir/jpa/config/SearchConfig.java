@@ -37,9 +37,13 @@ import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.search.ExceptionService;
 import ca.uhn.fhir.jpa.search.ISynchronousSearchSvc;
+import ca.uhn.fhir.jpa.search.KeysetPagingSvc;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProviderFactory;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
 import ca.uhn.fhir.jpa.search.SearchStrategyFactory;
+import ca.uhn.fhir.jpa.search.builder.ChainTargetMaterializationSvc;
+import ca.uhn.fhir.jpa.search.builder.IncludeLoadingExecutorSvc;
+import ca.uhn.fhir.jpa.search.builder.PartitionFanOutSearchSvc;
 import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchContinuationTask;
@@ -151,7 +155,28 @@ public class SearchConfig {
 				mySearchParamRegistry,
 				mySearchStrategyFactory,
 				exceptionService(),
-				myBeanFactory);
+				myBeanFactory,
+				keysetPagingSvc());
+	}
+
+	@Bean
+	public KeysetPagingSvc keysetPagingSvc() {
+		return new KeysetPagingSvc();
+	}
+
+	@Bean
+	public IncludeLoadingExecutorSvc includeLoadingExecutorSvc() {
+		return new IncludeLoadingExecutorSvc(myStorageSettings, myHapiTransactionService);
+	}
+
+	@Bean
+	public ChainTargetMaterializationSvc chainTargetMaterializationSvc() {
+		return new ChainTargetMaterializationSvc(myStorageSettings, myContext, myDaoRegistry, mySearchBuilderFactory);
+	}
+
+	@Bean
+	public PartitionFanOutSearchSvc partitionFanOutSearchSvc() {
+		return new PartitionFanOutSearchSvc(myStorageSettings, myHapiTransactionService, mySqlBuilderFactory);
 	}
 
 	@Bean
@@ -19,11 +19,14 @@
  */
 package ca.uhn.fhir.jpa.config.util;
 
+import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.config.HapiFhirHibernateJpaDialect;
 import ca.uhn.fhir.jpa.config.HapiFhirLocalContainerEntityManagerFactoryBean;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.dialect.TimeOrderedSequenceValueMassager;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
 import ca.uhn.fhir.jpa.util.ISequenceValueMassager;
 import ca.uhn.fhir.util.ReflectionUtil;
@@ -135,6 +138,16 @@ public final class HapiEntityManagerFactoryUtil {
 						super.getStandardServiceRegistryBuilder(theBootstrapServiceRegistry);
 				ISequenceValueMassager sequenceValueMassager =
 						ReflectionUtil.newInstance(myStorageSettings.getSequenceValueMassagerClass());
+				if (sequenceValueMassager instanceof TimeOrderedSequenceValueMassager) {
+					Integer nodeId = myStorageSettings.getSequenceGeneratorNodeId();
+					if (nodeId == null) {
+						throw new ConfigurationException(Msg.code(2673)
+								+ "A sequence generator node ID must be configured when using "
+								+ TimeOrderedSequenceValueMassager.class.getSimpleName()
+								+ ", and every server node writing to the same database must use a different ID");
+					}
+					((TimeOrderedSequenceValueMassager) sequenceValueMassager).setNodeId(nodeId);
+				}
 				retVal.addService(ISequenceValueMassager.class, sequenceValueMassager);
 				retVal.addService(HapiHibernateDialectSettingsService.class, service);
 				return retVal;
@@ -43,6 +43,7 @@ import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeService;
 import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
+import ca.uhn.fhir.jpa.dao.index.ResourceIndexFingerprint;
 import ca.uhn.fhir.jpa.dao.index.SearchParamWithInlineReferencesExtractor;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictService;
@@ -930,6 +931,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 		ResourceIndexedSearchParams newParams = null;
 
+		// Only set if the existing indexes haven't been loaded yet, see isUnchanged(..) below
+		ResourceIndexFingerprint existingIndexFingerprint = null;
+
 		EncodedResource changed;
 		if (theDeletedTimestampOrNull != null) {
 			// DELETE
@@ -948,7 +952,25 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			IdentityHashMap<ResourceTable, ResourceIndexedSearchParams> existingSearchParams =
 					getSearchParamsMapFromTransaction(theTransactionDetails);
 			existingParams = existingSearchParams.get(entity);
-			if (existingParams == null) {
+			if (existingParams == null && thePerformIndexing && theUpdateVersion) {
+				/*
+				 * Reindexing ($reindex) doesn't create a new version, and is used to repair index rows
+				 * which don't match the resource (e.g. after they were modified or deleted by hand),
+				 * so the fingerprint of what we think we wrote can't be trusted there
+				 */
+				existingIndexFingerprint = myDaoSearchParamSynchronizer.getIndexFingerprint(entity);
+			}
+			if (existingParams == null && existingIndexFingerprint != null) {
+				/*
+				 * We know which indexes were written for this version, so the new ones might not
+				 * need to be compared to the existing ones at all. Only the links are needed in order
+				 * to extract the new indexes. The rest are loaded later if they turn out to be needed.
+				 */
+				existingParams = ResourceIndexedSearchParams.withSets();
+				if (entity.isHasLinks()) {
+					existingParams.myLinks.addAll(entity.getResourceLinks());
+				}
+			} else if (existingParams == null) {
 				existingParams = ResourceIndexedSearchParams.withLists(entity);
 				/*
 				 * If we have lots of resource links, this proactively fetches the targets so
@@ -1071,6 +1093,20 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			createHistoryEntry(theRequest, theResource, entity, changed);
 		}
 
+		/*
+		 * If the new indexes are identical to the ones we wrote for the previous version,
+		 * there's nothing to synchronize
+		 */
+		boolean indexesUnchanged = false;
+		if (existingIndexFingerprint != null && newParams != null) {
+			indexesUnchanged = myDaoSearchParamSynchronizer.isUnchanged(existingIndexFingerprint, entity, newParams);
+			if (indexesUnchanged) {
+				myDaoSearchParamSynchronizer.recordIndexFingerprint(entity, existingIndexFingerprint);
+			} else {
+				existingParams = ResourceIndexedSearchParams.withLists(entity);
+			}
+		}
+
 		/*
 		 * Update the "search param present" table which is used for the
 		 * ?foo:missing=true queries
@@ -1081,7 +1117,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		 * index table for resource links (reference indexes) because we index
 		 * those by path and not by parameter name.
 		 */
-		if (thePerformIndexing && newParams != null) {
+		if (thePerformIndexing && newParams != null && !indexesUnchanged) {
 			AddRemoveCount presenceCount =
 					mySearchParamPresenceSvc.updatePresence(entity, newParams.mySearchParamPresentEntities);
 
@@ -1107,10 +1143,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		/*
 		 * Indexing
 		 */
-		if (thePerformIndexing) {
+		if (thePerformIndexing && !indexesUnchanged) {
 			if (newParams == null) {
 				myExpungeService.deleteAllSearchParams(entity.getPersistentId());
 				entity.clearAllParamsPopulated();
+				myDaoSearchParamSynchronizer.invalidateIndexFingerprint(entity);
 			} else {
 
 				// Synchronize search param indexes
@@ -1142,6 +1179,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 				// Put the final set of search params into the transaction
 				getSearchParamsMapFromTransaction(theTransactionDetails).put(entity, newParams);
+				myDaoSearchParamSynchronizer.recordIndexFingerprint(entity, newParams);
 			}
 		}
 
@@ -1258,6 +1296,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			encodedResource = populateResourceIntoEntity(theTransactionDetails, theRequest, theResource, entity, true);
 			// For some reason the current version entity is not attached until after using updateEntity
 			historyEntity = ((ResourceTable) readEntity(theResourceId, theRequest)).getCurrentVersionEntity();
+			// Keep the history row in sync with the resource, which also means that any body cached
+			// for this version by IResourceBodyCacheSvc is no longer found
+			historyEntity.setUpdated(theTransactionDetails.getTransactionDate());
 
 			// Update version/lastUpdated so that interceptors see the correct version
 			myJpaStorageResourceParser.updateResourceMetadata(savedEntity, theResource);
@@ -22,10 +22,13 @@ package ca.uhn.fhir.jpa.dao;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.BaseTag;
 import ca.uhn.fhir.jpa.model.entity.IBaseResourceEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface IJpaStorageResourceParser extends IStorageResourceParser<JpaPid> {
 
@@ -39,6 +42,21 @@ public interface IJpaStorageResourceParser extends IStorageResourceParser<JpaPid
 			Collection<BaseTag> theTagList,
 			boolean theForHistoryOperation);
 
+	/**
+	 * Converts a list of history entities (typically a page of search results) into FHIR resource
+	 * model instances, exactly as {@link #toResource(Class, IBaseResourceEntity, Collection, boolean)}
+	 * would for each one. The returned list has the same size and order as the input, with
+	 * <code>null</code> for any entity which could not be converted. Depending on the storage settings,
+	 * large lists may have their resource bodies decoded and parsed concurrently.
+	 *
+	 * @param theTagMap The tags for each resource, as loaded in bulk by the caller
+	 * @since 8.4.0
+	 */
+	List<IBaseResource> toResources(
+			List<ResourceHistoryTable> theEntities,
+			Map<JpaPid, Collection<BaseTag>> theTagMap,
+			boolean theForHistoryOperation);
+
 	/**
 	 * Populate the metadata (Resource.meta.*) from a storage entity and other related
 	 * objects pulled from the database
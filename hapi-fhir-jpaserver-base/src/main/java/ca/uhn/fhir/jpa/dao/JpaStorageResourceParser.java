@@ -44,6 +44,9 @@ import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.entity.TagDefinition;
 import ca.uhn.fhir.jpa.model.entity.TagTypeEnum;
 import ca.uhn.fhir.jpa.partition.IPartitionLookupSvc;
+import ca.uhn.fhir.jpa.util.IResourceBodyCacheSvc;
+import ca.uhn.fhir.jpa.util.IResourceBodyCacheSvc.BodyKey;
+import ca.uhn.fhir.jpa.util.IResourceBodyCacheSvc.CachedResourceBody;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.model.api.Tag;
@@ -56,25 +59,36 @@ import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.parser.LenientErrorHandler;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.IMetaTagSorter;
+import ca.uhn.fhir.util.LazyThreadPool;
 import ca.uhn.fhir.util.MetaUtil;
+import ca.uhn.fhir.util.ThreadPoolUtil;
 import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseCoding;
 import org.hl7.fhir.instance.model.api.IBaseMetaType;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IDomainResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static ca.uhn.fhir.jpa.dao.BaseHapiFhirDao.decodeResource;
 import static java.util.Objects.nonNull;
@@ -85,6 +99,12 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	public static final LenientErrorHandler LENIENT_ERROR_HANDLER = new LenientErrorHandler(false).disableAllErrors();
 	private static final Logger ourLog = LoggerFactory.getLogger(JpaStorageResourceParser.class);
 
+	/**
+	 * Search result pages are only parsed concurrently if they can be split into at least
+	 * two chunks of this size, since the hand-off isn't worth it for smaller pages
+	 */
+	static final int MIN_PARSING_CHUNK_SIZE = 25;
+
 	@Autowired
 	private FhirContext myFhirContext;
 
@@ -109,6 +129,14 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	@Autowired
 	IMetaTagSorter myMetaTagSorter;
 
+	@Autowired
+	private IResourceBodyCacheSvc myResourceBodyCacheSvc;
+
+	private final LazyThreadPool myParsingExecutor = new LazyThreadPool(() -> ThreadPoolUtil.newRequestWorkerThreadPool(
+			myStorageSettings.getSearchResultParsingThreadCount(),
+			"search-result-parsing-",
+			new ThreadPoolExecutor.CallerRunsPolicy()));
+
 	@Override
 	public IBaseResource toResource(IBasePersistedResource theEntity, boolean theForHistoryOperation) {
 		RuntimeResourceDefinition type = myFhirContext.getResourceDefinition(theEntity.getResourceType());
@@ -122,6 +150,63 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			IBaseResourceEntity<?> theEntity,
 			Collection<BaseTag> theTagList,
 			boolean theForHistoryOperation) {
+		LoadedResource<R> loaded = loadResource(theResourceType, theEntity, theTagList);
+		if (loaded == null) {
+			return null;
+		}
+		decodeAndParse(loaded);
+		return finishResource(loaded, theForHistoryOperation);
+	}
+
+	@Override
+	public List<IBaseResource> toResources(
+			List<ResourceHistoryTable> theEntities,
+			Map<JpaPid, Collection<BaseTag>> theTagMap,
+			boolean theForHistoryOperation) {
+		List<IBaseResource> retVal = new ArrayList<>(theEntities.size());
+		ThreadPoolTaskExecutor executor = getParsingExecutor();
+		if (executor == null || theEntities.size() < 2 * MIN_PARSING_CHUNK_SIZE) {
+			for (ResourceHistoryTable next : theEntities) {
+				retVal.add(toResource(
+						getImplementingClass(next), next, theTagMap.get(next.getResourceId()), theForHistoryOperation));
+			}
+			return retVal;
+		}
+
+		// Everything which touches the database or the current transaction happens on this thread
+		List<LoadedResource<IBaseResource>> loaded = new ArrayList<>(theEntities.size());
+		for (ResourceHistoryTable next : theEntities) {
+			loaded.add(loadResource(getImplementingClass(next), next, theTagMap.get(next.getResourceId())));
+		}
+
+		// Decode and parse in chunks, with this thread taking the last chunk itself
+		int threadCount = myStorageSettings.getSearchResultParsingThreadCount();
+		int chunkSize = Math.max(MIN_PARSING_CHUNK_SIZE, (loaded.size() + threadCount) / (threadCount + 1));
+		List<List<LoadedResource<IBaseResource>>> chunks = ListUtils.partition(loaded, chunkSize);
+		List<Future<?>> futures = new ArrayList<>(chunks.size() - 1);
+		for (int i = 0; i < chunks.size() - 1; i++) {
+			List<LoadedResource<IBaseResource>> chunk = chunks.get(i);
+			futures.add(executor.submit(() -> chunk.forEach(this::decodeAndParseIfPresent)));
+		}
+		chunks.get(chunks.size() - 1).forEach(this::decodeAndParseIfPresent);
+		for (Future<?> next : futures) {
+			awaitParsing(next);
+		}
+
+		for (LoadedResource<IBaseResource> next : loaded) {
+			retVal.add(next != null ? finishResource(next, theForHistoryOperation) : null);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Loads everything needed in order to produce a resource from the given entity, other than
+	 * the decoded and parsed resource body. Returns <code>null</code> if the entity can't be
+	 * converted into a resource.
+	 */
+	@Nullable
+	private <R extends IBaseResource> LoadedResource<R> loadResource(
+			Class<R> theResourceType, IBaseResourceEntity<?> theEntity, Collection<BaseTag> theTagList) {
 
 		// 1. get resource, it's encoding and the tags if any
 		byte[] resourceBytes;
@@ -131,6 +216,8 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		long version;
 		String provenanceSourceUri = null;
 		String provenanceRequestId = null;
+		BodyKey bodyKey;
+		CachedResourceBody cachedBody;
 
 		if (theEntity instanceof ResourceHistoryTable) {
 			ResourceHistoryTable history = (ResourceHistoryTable) theEntity;
@@ -161,9 +248,11 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			}
 
 			version = history.getVersion();
+			bodyKey = BodyKey.forHistoryEntity(history);
+			cachedBody = myResourceBodyCacheSvc.getIfPresent(bodyKey);
 			provenanceSourceUri = history.getSourceUri();
 			provenanceRequestId = history.getRequestId();
-			if (isBlank(provenanceSourceUri) && isBlank(provenanceRequestId)) {
+			if (cachedBody == null && isBlank(provenanceSourceUri) && isBlank(provenanceRequestId)) {
 				if (myStorageSettings.isAccessMetaSourceInformationFromProvenanceTable()) {
 					Optional<ResourceHistoryProvenanceEntity> provenanceOpt = myResourceHistoryProvenanceDao.findById(
 							history.getId().asIdAndPartitionId());
@@ -214,9 +303,11 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 					break;
 			}
 			version = history.getVersion();
+			bodyKey = BodyKey.forHistoryEntity(history);
+			cachedBody = myResourceBodyCacheSvc.getIfPresent(bodyKey);
 			provenanceSourceUri = history.getSourceUri();
 			provenanceRequestId = history.getRequestId();
-			if (isBlank(provenanceSourceUri) && isBlank(provenanceRequestId)) {
+			if (cachedBody == null && isBlank(provenanceSourceUri) && isBlank(provenanceRequestId)) {
 				if (myStorageSettings.isAccessMetaSourceInformationFromProvenanceTable()) {
 					Optional<ResourceHistoryProvenanceEntity> provenanceOpt = myResourceHistoryProvenanceDao.findById(
 							history.getId().asIdAndPartitionId());
@@ -232,23 +323,110 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			return null;
 		}
 
-		// 2. get The text
-		String decodedResourceText = decodedResourceText(resourceBytes, resourceText, resourceEncoding);
+		LoadedResource<R> retVal = new LoadedResource<>(theEntity, bodyKey, version, tagList);
+		retVal.myCachedBody = cachedBody;
+		retVal.myResourceBytes = resourceBytes;
+		retVal.myResourceText = resourceText;
+		retVal.myEncoding = resourceEncoding;
+		if (cachedBody != null) {
+			retVal.myProvenanceSourceUri = cachedBody.getSourceUri();
+			retVal.myProvenanceRequestId = cachedBody.getRequestId();
+		} else {
+			retVal.myProvenanceSourceUri = provenanceSourceUri;
+			retVal.myProvenanceRequestId = provenanceRequestId;
+		}
+
+		// 2. Use the appropriate custom type if one is specified in the context
+		retVal.myResourceType = determineTypeToParse(theResourceType, tagList);
+
+		return retVal;
+	}
+
+	private void decodeAndParseIfPresent(@Nullable LoadedResource<?> theLoaded) {
+		if (theLoaded != null) {
+			decodeAndParse(theLoaded);
+		}
+	}
+
+	/**
+	 * Decodes the resource text and, unless it is externally stored or deleted, parses it.
+	 * If the parsed body is cached, a clone of the cached instance is used instead.
+	 * This doesn't touch the database or any thread-bound state, so it can safely be
+	 * called from any thread. Parsing failures are reported by {@link #finishResource}.
+	 */
+	@SuppressWarnings("unchecked")
+	private <R extends IBaseResource> void decodeAndParse(LoadedResource<R> theLoaded) {
+		IBaseResourceEntity<?> entity = theLoaded.myEntity;
+		FhirContext context = getContext(entity.getFhirVersion());
+
+		// 3. use a copy of the cached body if it has the type we want, otherwise decode the text
+		CachedResourceBody cachedBody = theLoaded.myCachedBody;
+		if (cachedBody != null && cachedBody.getResource().getClass().equals(theLoaded.myResourceType)) {
+			theLoaded.myResource = (R) context.newTerser().clone(cachedBody.getResource());
+			return;
+		}
 
-		// 3. Use the appropriate custom type if one is specified in the context
-		Class<R> resourceType = determineTypeToParse(theResourceType, tagList);
+		theLoaded.myDecodedResourceText =
+				decodedResourceText(theLoaded.myResourceBytes, theLoaded.myResourceText, theLoaded.myEncoding);
 
 		// 4. parse the text to FHIR
-		R retVal = parseResource(theEntity, resourceEncoding, decodedResourceText, resourceType);
+		if (theLoaded.myEncoding != ResourceEncodingEnum.ESR && theLoaded.myEncoding != ResourceEncodingEnum.DEL) {
+			IParser parser = new TolerantJsonParser(context, LENIENT_ERROR_HANDLER, entity.getResourceId());
+			try {
+				theLoaded.myResource = parser.parseResource(theLoaded.myResourceType, theLoaded.myDecodedResourceText);
+			} catch (Exception e) {
+				theLoaded.myParseFailure = e;
+				return;
+			}
+
+			if (cachedBody == null && isCacheable(context, theLoaded.myResource)) {
+				theLoaded.myBodyToCache = new CachedResourceBody(
+						context.newTerser().clone(theLoaded.myResource),
+						theLoaded.myDecodedResourceText.length(),
+						theLoaded.myProvenanceSourceUri,
+						theLoaded.myProvenanceRequestId);
+			}
+		}
+	}
+
+	/**
+	 * Only plain (i.e. not custom typed) DSTU3+ resources without contained resources are cached,
+	 * since {@link ca.uhn.fhir.util.FhirTerser#clone(IBaseResource)} shares the resource metadata
+	 * map of DSTU2 resources and the targets of references to contained resources with the copy
+	 */
+	private boolean isCacheable(FhirContext theContext, IBaseResource theResource) {
+		if (!myResourceBodyCacheSvc.isEnabled()
+				|| !theContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
+			return false;
+		}
+		if (theResource instanceof IDomainResource
+				&& !((IDomainResource) theResource).getContained().isEmpty()) {
+			return false;
+		}
+		RuntimeResourceDefinition definition =
+				theContext.getResourceDefinition(theContext.getResourceType(theResource));
+		return definition.getImplementingClass().equals(theResource.getClass());
+	}
+
+	private <R extends IBaseResource> R finishResource(LoadedResource<R> theLoaded, boolean theForHistoryOperation) {
+		IBaseResourceEntity<?> entity = theLoaded.myEntity;
+
+		if (theLoaded.myBodyToCache != null) {
+			myResourceBodyCacheSvc.putAfterCommit(theLoaded.myBodyKey, theLoaded.myBodyToCache);
+		}
+
+		R retVal = parseResource(theLoaded);
 
 		// 5. fill MetaData
-		retVal = populateResourceMetadata(theEntity, theForHistoryOperation, tagList, version, retVal);
+		retVal = populateResourceMetadata(
+				entity, theForHistoryOperation, theLoaded.myTagList, theLoaded.myVersion, retVal);
 
 		// 6. Handle source (provenance)
-		MetaUtil.populateResourceSource(myFhirContext, provenanceSourceUri, provenanceRequestId, retVal);
+		MetaUtil.populateResourceSource(
+				myFhirContext, theLoaded.myProvenanceSourceUri, theLoaded.myProvenanceRequestId, retVal);
 
 		// 7. Add partition information
-		populateResourcePartitionInformation(theEntity, retVal);
+		populateResourcePartitionInformation(entity, retVal);
 
 		// 8. sort tags, security labels and profiles
 		myMetaTagSorter.sort(retVal.getMeta());
@@ -256,6 +434,39 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		return retVal;
 	}
 
+	@Nullable
+	private ThreadPoolTaskExecutor getParsingExecutor() {
+		if (myStorageSettings.getSearchResultParsingThreadCount() > 1) {
+			return myParsingExecutor.get();
+		}
+		return null;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		myParsingExecutor.shutdown();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Class<IBaseResource> getImplementingClass(ResourceHistoryTable theEntity) {
+		return (Class<IBaseResource>)
+				myFhirContext.getResourceDefinition(theEntity.getResourceType()).getImplementingClass();
+	}
+
+	private static void awaitParsing(Future<?> theFuture) {
+		try {
+			theFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2657) + "Interrupted while parsing search results", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2658) + "Failed to parse search results: " + e.getCause(), e);
+		}
+	}
+
 	private <R extends IBaseResource> void populateResourcePartitionInformation(
 			IBaseResourceEntity theEntity, R retVal) {
 		if (myPartitionSettings.isPartitioningEnabled()) {
@@ -271,52 +482,47 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	}
 
 	@SuppressWarnings("unchecked")
-	private <R extends IBaseResource> R parseResource(
-			IBaseResourceEntity<?> theEntity,
-			ResourceEncodingEnum theResourceEncoding,
-			String theDecodedResourceText,
-			Class<R> theResourceType) {
+	private <R extends IBaseResource> R parseResource(LoadedResource<R> theLoaded) {
+		IBaseResourceEntity<?> entity = theLoaded.myEntity;
+		String decodedResourceText = theLoaded.myDecodedResourceText;
 		R retVal;
-		if (theResourceEncoding == ResourceEncodingEnum.ESR) {
-
-			int colonIndex = theDecodedResourceText.indexOf(':');
-			Validate.isTrue(colonIndex > 0, "Invalid ESR address: %s", theDecodedResourceText);
-			String providerId = theDecodedResourceText.substring(0, colonIndex);
-			String address = theDecodedResourceText.substring(colonIndex + 1);
-			Validate.notBlank(providerId, "No provider ID in ESR address: %s", theDecodedResourceText);
-			Validate.notBlank(address, "No address in ESR address: %s", theDecodedResourceText);
+		if (theLoaded.myEncoding == ResourceEncodingEnum.ESR) {
+
+			int colonIndex = decodedResourceText.indexOf(':');
+			Validate.isTrue(colonIndex > 0, "Invalid ESR address: %s", decodedResourceText);
+			String providerId = decodedResourceText.substring(0, colonIndex);
+			String address = decodedResourceText.substring(colonIndex + 1);
+			Validate.notBlank(providerId, "No provider ID in ESR address: %s", decodedResourceText);
+			Validate.notBlank(address, "No address in ESR address: %s", decodedResourceText);
 			IExternallyStoredResourceService provider =
 					myExternallyStoredResourceServiceRegistry.getProvider(providerId);
 			retVal = (R) provider.fetchResource(address);
 
-		} else if (theResourceEncoding != ResourceEncodingEnum.DEL) {
+		} else if (theLoaded.myEncoding != ResourceEncodingEnum.DEL) {
 
-			IParser parser = new TolerantJsonParser(
-					getContext(theEntity.getFhirVersion()), LENIENT_ERROR_HANDLER, theEntity.getResourceId());
-
-			try {
-				retVal = parser.parseResource(theResourceType, theDecodedResourceText);
-			} catch (Exception e) {
+			if (theLoaded.myParseFailure != null) {
+				Exception e = theLoaded.myParseFailure;
 				StringBuilder b = new StringBuilder();
 				b.append("Failed to parse database resource[");
-				b.append(myFhirContext.getResourceType(theResourceType));
+				b.append(myFhirContext.getResourceType(theLoaded.myResourceType));
 				b.append("/");
-				b.append(theEntity.getIdDt().getIdPart());
+				b.append(entity.getIdDt().getIdPart());
 				b.append(" (pid ");
-				b.append(theEntity.getId());
+				b.append(entity.getId());
 				b.append(", version ");
-				b.append(theEntity.getFhirVersion().name());
+				b.append(entity.getFhirVersion().name());
 				b.append("): ");
 				b.append(e.getMessage());
 				String msg = b.toString();
 				ourLog.error(msg, e);
 				throw new DataFormatException(Msg.code(928) + msg, e);
 			}
+			retVal = theLoaded.myResource;
 
 		} else {
 
 			retVal = (R) myFhirContext
-					.getResourceDefinition(theEntity.getResourceType())
+					.getResourceDefinition(entity.getResourceType())
 					.newInstance();
 		}
 		return retVal;
@@ -581,4 +787,40 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		}
 		return retVal;
 	}
+
+	/**
+	 * Holds the state of a single resource being converted from a storage entity
+	 */
+	private static class LoadedResource<R extends IBaseResource> {
+
+		private final IBaseResourceEntity<?> myEntity;
+		private final BodyKey myBodyKey;
+		private final long myVersion;
+
+		@Nullable
+		private final Collection<? extends BaseTag> myTagList;
+
+		private Class<R> myResourceType;
+		private CachedResourceBody myCachedBody;
+		private CachedResourceBody myBodyToCache;
+		private byte[] myResourceBytes;
+		private String myResourceText;
+		private ResourceEncodingEnum myEncoding;
+		private String myProvenanceSourceUri;
+		private String myProvenanceRequestId;
+		private String myDecodedResourceText;
+		private R myResource;
+		private Exception myParseFailure;
+
+		private LoadedResource(
+				IBaseResourceEntity<?> theEntity,
+				BodyKey theBodyKey,
+				long theVersion,
+				@Nullable Collection<? extends BaseTag> theTagList) {
+			myEntity = theEntity;
+			myBodyKey = theBodyKey;
+			myVersion = theVersion;
+			myTagList = theTagList;
+		}
+	}
 }
@@ -63,6 +63,7 @@ import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
 import org.apache.commons.lang3.Validate;
 import org.hibernate.internal.SessionImpl;
 import org.hl7.fhir.instance.model.api.IBase;
@@ -134,6 +135,9 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 	@Autowired
 	private IRequestPartitionHelperSvc myRequestPartitionHelperSvc;
 
+	@Autowired(required = false)
+	private IConditionalUrlMembershipFilterSvc myConditionalUrlMembershipFilterSvc;
+
 	public void setEntityManagerForUnitTest(EntityManager theEntityManager) {
 		myEntityManager = theEntityManager;
 	}
@@ -357,8 +361,7 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 				 * pointing to that resource elsewhere in the bundle)
 				 */
 				if ("PUT".equals(verb) || "POST".equals(verb)) {
-					for (ResourceReferenceInfo referenceInfo : terser.getAllResourceReferences(resource)) {
-						IIdType reference = referenceInfo.getResourceReference().getReferenceElement();
+					for (IIdType reference : getReferences(theTransactionDetails, terser, nextEntry, resource)) {
 						if (reference != null
 								&& !reference.isLocal()
 								&& !reference.isUuid()
@@ -412,6 +415,29 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		}
 	}
 
+	/**
+	 * Returns the references within the given entry resource, reusing the references found
+	 * when the transaction entries were prepared if possible
+	 */
+	private List<IIdType> getReferences(
+			TransactionDetails theTransactionDetails, FhirTerser theTerser, IBase theEntry, IBaseResource theResource) {
+		TransactionDependencyGraph graph =
+				theTransactionDetails.getUserData(TransactionDependencyGraph.TRANSACTION_DETAILS_KEY);
+		if (graph != null) {
+			TransactionDependencyGraph.PreparedEntry preparedEntry = graph.getPreparedEntry(theEntry);
+			if (preparedEntry != null && preparedEntry.getReferences() != null) {
+				return preparedEntry.getReferences();
+			}
+		}
+
+		List<ResourceReferenceInfo> referenceInfos = theTerser.getAllResourceReferences(theResource);
+		List<IIdType> retVal = new ArrayList<>(referenceInfos.size());
+		for (ResourceReferenceInfo next : referenceInfos) {
+			retVal.add(next.getResourceReference().getReferenceElement());
+		}
+		return retVal;
+	}
+
 	@Override
 	protected void handleVerbChangeInTransactionWriteOperations() {
 		super.handleVerbChangeInTransactionWriteOperations();
@@ -461,12 +487,10 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 				}
 
 				if (myStorageSettings.isAllowInlineMatchUrlReferences()) {
-					List<ResourceReferenceInfo> references =
-							myFhirContext.newTerser().getAllResourceReferences(resource);
-					for (ResourceReferenceInfo next : references) {
-						String referenceUrl = next.getResourceReference()
-								.getReferenceElement()
-								.getValue();
+					List<IIdType> references =
+							getReferences(theTransactionDetails, myFhirContext.newTerser(), nextEntry, resource);
+					for (IIdType next : references) {
+						String referenceUrl = next.getValue();
 						String refResourceType = determineResourceTypeInResourceUrl(myFhirContext, referenceUrl);
 						if (refResourceType != null) {
 							processConditionalUrlForPreFetching(
@@ -523,8 +547,21 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 
 		Set<Long> systemAndValueHashes = new HashSet<>();
 		Set<Long> valueHashes = new HashSet<>();
+		ListMultimap<List<String>, MatchUrlToResolve> multiTokenShapeToMatchUrls = ArrayListMultimap.create();
 
 		for (MatchUrlToResolve next : theInputParameters) {
+			if (myConditionalUrlMembershipFilterSvc != null) {
+				IConditionalUrlMembershipFilterSvc.MembershipEnum membership =
+						myConditionalUrlMembershipFilterSvc.check(
+								next.myResourceDefinition.getName(), next.myMatchUrlSearchMap, theRequestPartitionId);
+				if (membership == IConditionalUrlMembershipFilterSvc.MembershipEnum.ABSENT) {
+					// Left unresolved, so it gets tagged as not found below
+					continue;
+				}
+				next.myMembershipMaybePresent =
+						membership == IConditionalUrlMembershipFilterSvc.MembershipEnum.MAYBE_PRESENT;
+			}
+
 			Collection<List<List<IQueryParameterType>>> values = next.myMatchUrlSearchMap.values();
 
 			/*
@@ -534,37 +571,42 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			 *
 			 * We could potentially add other patterns in the future, but it's much more
 			 * tricky to implement this when there are multiple parameters, and non-token
-			 * parameter types aren't often used on their own in conditional URLs. So for
-			 * now we handle single-token only, and that's probably good enough.
+			 * parameter types aren't often used on their own in conditional URLs. So by
+			 * default we handle single-token only. If multi-token pre-fetching is enabled,
+			 * URLs consisting only of token parameters (e.g. several identifiers) are
+			 * grouped by shape and resolved using one query per shape, see
+			 * preFetchSearchParameterMapsMultiToken(..).
 			 */
 			boolean canBeHandledInAggregateQuery = false;
 
 			if (values.size() == 1) {
 				List<List<IQueryParameterType>> andList = values.iterator().next();
-				IQueryParameterType param = andList.get(0).get(0);
+				if (andList.size() == 1 && andList.get(0).size() == 1) {
+					IQueryParameterType param = andList.get(0).get(0);
 
-				if (param instanceof TokenParam) {
-					TokenParam tokenParam = (TokenParam) param;
-					canBeHandledInAggregateQuery = buildHashPredicateFromTokenParam(
-							tokenParam, theRequestPartitionId, next, systemAndValueHashes, valueHashes);
+					if (param instanceof TokenParam) {
+						TokenParam tokenParam = (TokenParam) param;
+						canBeHandledInAggregateQuery = buildHashPredicateFromTokenParam(
+								tokenParam, theRequestPartitionId, next, systemAndValueHashes, valueHashes);
+					}
 				}
 			}
 
+			if (!canBeHandledInAggregateQuery
+					&& myStorageSettings.isTransactionMultiTokenConditionalUrlPreFetchEnabled()
+					&& buildMultiTokenHashes(theRequestPartitionId, next)) {
+				multiTokenShapeToMatchUrls.put(next.myMultiTokenHashColumns, next);
+				canBeHandledInAggregateQuery = true;
+			}
+
 			if (!canBeHandledInAggregateQuery) {
-				Set<JpaPid> matchUrlResults = myMatchResourceUrlService.processMatchUrl(
-						next.myRequestUrl,
-						next.myResourceDefinition.getImplementingClass(),
-						theTransactionDetails,
+				resolveMatchUrlUsingSearch(
 						theRequestDetails,
-						theRequestPartitionId);
-				for (JpaPid matchUrlResult : matchUrlResults) {
-					handleFoundPreFetchResourceId(
-							theTransactionDetails,
-							theOutputPidsToLoadBodiesFor,
-							theOutputPidsToLoadVersionsFor,
-							next,
-							matchUrlResult);
-				}
+						theTransactionDetails,
+						theRequestPartitionId,
+						next,
+						theOutputPidsToLoadBodiesFor,
+						theOutputPidsToLoadVersionsFor);
 			}
 		}
 
@@ -584,6 +626,32 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 				theInputParameters,
 				theOutputPidsToLoadBodiesFor,
 				theOutputPidsToLoadVersionsFor);
+		for (List<String> nextShape : multiTokenShapeToMatchUrls.keySet()) {
+			List<MatchUrlToResolve> ambiguousMatchUrls = preFetchSearchParameterMapsMultiToken(
+					nextShape,
+					multiTokenShapeToMatchUrls.get(nextShape),
+					theTransactionDetails,
+					theRequestPartitionId,
+					theOutputPidsToLoadBodiesFor,
+					theOutputPidsToLoadVersionsFor);
+			for (MatchUrlToResolve nextAmbiguous : ambiguousMatchUrls) {
+				resolveMatchUrlUsingSearch(
+						theRequestDetails,
+						theTransactionDetails,
+						theRequestPartitionId,
+						nextAmbiguous,
+						theOutputPidsToLoadBodiesFor,
+						theOutputPidsToLoadVersionsFor);
+			}
+		}
+
+		if (myConditionalUrlMembershipFilterSvc != null) {
+			for (MatchUrlToResolve next : theInputParameters) {
+				if (next.myMembershipMaybePresent) {
+					myConditionalUrlMembershipFilterSvc.recordMaybePresentOutcome(next.myResolved);
+				}
+			}
+		}
 
 		// For each SP Map which did not return a result, tag it as not found.
 		theInputParameters.stream()
@@ -681,6 +749,136 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		}
 	}
 
+	/**
+	 * Resolves a group of conditional URLs which all consist of the same number of token
+	 * parameters, hashed into the same columns (see {@link #buildMultiTokenHashes(RequestPartitionId, MatchUrlToResolve)}).
+	 * The {@link ResourceIndexedSearchParamToken} table is joined to itself once per parameter
+	 * on the resource PID, so that a single query returns every resource matching any of the URLs
+	 * along with the hashes it matched on, which are then used to map each row back to its URL.
+	 *
+	 * @return Returns any URLs which could not be unambiguously resolved by this query (because
+	 * 		they matched more than one resource, or because the query hit its row limit). These
+	 * 		need to be resolved using a normal search.
+	 */
+	private List<MatchUrlToResolve> preFetchSearchParameterMapsMultiToken(
+			List<String> theIndexColumnNames,
+			List<MatchUrlToResolve> theMatchUrls,
+			TransactionDetails theTransactionDetails,
+			RequestPartitionId theRequestPartitionId,
+			Set<JpaPid> theOutputPidsToLoadFully,
+			Set<JpaPid> theOutputPidsToLoadVersionsFor) {
+		int columnCount = theIndexColumnNames.size();
+		CriteriaBuilder cb = myEntityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+
+		List<Root<ResourceIndexedSearchParamToken>> roots = new ArrayList<>(columnCount);
+		List<Selection<?>> selections = new ArrayList<>(columnCount + 2);
+		for (int i = 0; i < columnCount; i++) {
+			Root<ResourceIndexedSearchParamToken> root = cq.from(ResourceIndexedSearchParamToken.class);
+			if (i == 0) {
+				selections.add(root.get("myPartitionIdValue"));
+				selections.add(root.get("myResourcePid"));
+			}
+			selections.add(root.get(theIndexColumnNames.get(i)));
+			roots.add(root);
+		}
+		cq.multiselect(selections);
+		cq.distinct(true);
+
+		List<Predicate> matchUrlPredicates = new ArrayList<>(theMatchUrls.size());
+		for (MatchUrlToResolve next : theMatchUrls) {
+			Predicate[] hashPredicates = new Predicate[columnCount];
+			for (int i = 0; i < columnCount; i++) {
+				hashPredicates[i] =
+						cb.equal(roots.get(i).get(theIndexColumnNames.get(i)), next.myMultiTokenHashes.get(i));
+			}
+			matchUrlPredicates.add(cb.and(hashPredicates));
+		}
+
+		List<Predicate> masterPredicates = new ArrayList<>();
+		masterPredicates.add(cb.or(matchUrlPredicates.toArray(new Predicate[0])));
+		Root<ResourceIndexedSearchParamToken> firstRoot = roots.get(0);
+		for (int i = 1; i < columnCount; i++) {
+			masterPredicates.add(cb.equal(roots.get(i).get("myResourcePid"), firstRoot.get("myResourcePid")));
+		}
+
+		if (myPartitionSettings.isPartitioningEnabled() && !myPartitionSettings.isIncludePartitionInSearchHashes()) {
+			if (myRequestPartitionHelperSvc.isDefaultPartition(theRequestPartitionId)
+					&& myPartitionSettings.getDefaultPartitionId() == null) {
+				masterPredicates.add(cb.isNull(firstRoot.get("myPartitionIdValue")));
+			} else if (!theRequestPartitionId.isAllPartitions()) {
+				masterPredicates.add(firstRoot.get("myPartitionIdValue").in(theRequestPartitionId.getPartitionIds()));
+			}
+		}
+
+		cq.where(masterPredicates.toArray(new Predicate[0]));
+
+		TypedQuery<Tuple> query = myEntityManager.createQuery(cq);
+
+		/*
+		 * As with the single token query, each valid conditional URL should match
+		 * 0..1 resources so we shouldn't ever see more rows than URLs. If we do,
+		 * some of the URLs are ambiguous and we can't tell which ones from a truncated
+		 * result, so we let the normal search handle all of them.
+		 */
+		query.setMaxResults(theMatchUrls.size() + 1);
+		List<Tuple> results = query.getResultList();
+		if (results.size() > theMatchUrls.size()) {
+			return theMatchUrls;
+		}
+
+		ListMultimap<List<Long>, JpaPid> hashesToPids = ArrayListMultimap.create();
+		for (Tuple nextResult : results) {
+			Integer nextPartitionId = nextResult.get(0, Integer.class);
+			Long nextResourcePid = nextResult.get(1, Long.class);
+			List<Long> nextHashes = new ArrayList<>(columnCount);
+			for (int i = 0; i < columnCount; i++) {
+				nextHashes.add(nextResult.get(i + 2, Long.class));
+			}
+			hashesToPids.put(nextHashes, JpaPid.fromId(nextResourcePid, nextPartitionId));
+		}
+
+		List<MatchUrlToResolve> retVal = new ArrayList<>();
+		for (MatchUrlToResolve next : theMatchUrls) {
+			Set<JpaPid> pids = new HashSet<>(hashesToPids.get(next.myMultiTokenHashes));
+			if (pids.size() == 1) {
+				ourLog.debug("Matched url {} from database", next.myRequestUrl);
+				handleFoundPreFetchResourceId(
+						theTransactionDetails,
+						theOutputPidsToLoadFully,
+						theOutputPidsToLoadVersionsFor,
+						next,
+						pids.iterator().next());
+			} else if (pids.size() > 1) {
+				retVal.add(next);
+			}
+		}
+		return retVal;
+	}
+
+	private void resolveMatchUrlUsingSearch(
+			RequestDetails theRequestDetails,
+			TransactionDetails theTransactionDetails,
+			RequestPartitionId theRequestPartitionId,
+			MatchUrlToResolve theMatchUrl,
+			Set<JpaPid> theOutputPidsToLoadBodiesFor,
+			Set<JpaPid> theOutputPidsToLoadVersionsFor) {
+		Set<JpaPid> matchUrlResults = myMatchResourceUrlService.processMatchUrl(
+				theMatchUrl.myRequestUrl,
+				theMatchUrl.myResourceDefinition.getImplementingClass(),
+				theTransactionDetails,
+				theRequestDetails,
+				theRequestPartitionId);
+		for (JpaPid matchUrlResult : matchUrlResults) {
+			handleFoundPreFetchResourceId(
+					theTransactionDetails,
+					theOutputPidsToLoadBodiesFor,
+					theOutputPidsToLoadVersionsFor,
+					theMatchUrl,
+					matchUrlResult);
+		}
+	}
+
 	private void handleFoundPreFetchResourceId(
 			TransactionDetails theTransactionDetails,
 			Set<JpaPid> theOutputPidsToLoadFully,
@@ -790,6 +988,81 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		return false;
 	}
 
+	/**
+	 * Determines whether a conditional URL consists only of plain token parameters
+	 * (no modifiers, no <code>:missing</code>, no OR lists and no special <code>_</code>
+	 * parameters) and if so, calculates the index hash for each parameter value.
+	 * The hashes are sorted so that URLs which differ only in parameter order
+	 * end up with the same shape.
+	 *
+	 * @return Returns {@literal true} if the URL can be resolved by
+	 * 		{@link #preFetchSearchParameterMapsMultiToken(List, List, TransactionDetails, RequestPartitionId, Set, Set)}
+	 */
+	private boolean buildMultiTokenHashes(RequestPartitionId theRequestPartitionId, MatchUrlToResolve theMatchUrl) {
+		SearchParameterMap map = theMatchUrl.myMatchUrlSearchMap;
+		if (map.isEmpty() || map.getLastUpdated() != null) {
+			return false;
+		}
+
+		String resourceType = theMatchUrl.myResourceDefinition.getName();
+		TreeMap<String, List<Long>> columnToHashes = new TreeMap<>();
+		for (Map.Entry<String, List<List<IQueryParameterType>>> nextEntry : map.entrySet()) {
+			String paramName = nextEntry.getKey();
+			if (paramName.startsWith("_")) {
+				return false;
+			}
+			for (List<IQueryParameterType> nextOrList : nextEntry.getValue()) {
+				if (nextOrList.size() != 1 || !(nextOrList.get(0) instanceof TokenParam)) {
+					return false;
+				}
+				TokenParam tokenParam = (TokenParam) nextOrList.get(0);
+				if (tokenParam.getModifier() != null
+						|| tokenParam.getMissing() != null
+						|| tokenParam.isText()
+						|| !isNotBlank(tokenParam.getValue())) {
+					return false;
+				}
+
+				String system = tokenParam.getSystem();
+				if (system == null) {
+					long hash = ResourceIndexedSearchParamToken.calculateHashValue(
+							myPartitionSettings, theRequestPartitionId, resourceType, paramName, tokenParam.getValue());
+					columnToHashes
+							.computeIfAbsent("myHashValue", t -> new ArrayList<>())
+							.add(hash);
+				} else if (isNotBlank(system)) {
+					long hash = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(
+							myPartitionSettings,
+							theRequestPartitionId,
+							resourceType,
+							paramName,
+							system,
+							tokenParam.getValue());
+					columnToHashes
+							.computeIfAbsent("myHashSystemAndValue", t -> new ArrayList<>())
+							.add(hash);
+				} else {
+					// An explicitly empty system means "no system", which the value hash can't express
+					return false;
+				}
+			}
+		}
+
+		List<String> columns = new ArrayList<>();
+		List<Long> hashes = new ArrayList<>();
+		for (Map.Entry<String, List<Long>> nextEntry : columnToHashes.entrySet()) {
+			List<Long> nextHashes = new ArrayList<>(nextEntry.getValue());
+			nextHashes.sort(null);
+			for (Long nextHash : nextHashes) {
+				columns.add(nextEntry.getKey());
+				hashes.add(nextHash);
+			}
+		}
+		theMatchUrl.myMultiTokenHashColumns = columns;
+		theMatchUrl.myMultiTokenHashes = hashes;
+		return true;
+	}
+
 	private ListMultimap<Long, MatchUrlToResolve> buildHashToSearchMap(
 			List<MatchUrlToResolve> searchParameterMapsToResolve, String theIndex) {
 		ListMultimap<Long, MatchUrlToResolve> hashToSearch = ArrayListMultimap.create();
@@ -898,6 +1171,9 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		public boolean myResolved;
 		private Long myHashValue;
 		private Long myHashSystemAndValue;
+		private List<String> myMultiTokenHashColumns;
+		private List<Long> myMultiTokenHashes;
+		private boolean myMembershipMaybePresent;
 
 		public MatchUrlToResolve(
 				String theRequestUrl,
@@ -26,6 +26,8 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.stream.Stream;
+
 public interface IResourceIndexedSearchParamTokenDao
 		extends JpaRepository<ResourceIndexedSearchParamToken, Long>, IHapiFhirJpaRepository {
 
@@ -35,4 +37,11 @@ public interface IResourceIndexedSearchParamTokenDao
 	@Modifying
 	@Query("delete from ResourceIndexedSearchParamToken t WHERE t.myResource.myPid = :resid")
 	void deleteByResourceId(@Param("resid") JpaPid theResourcePid);
+
+	@Query("select count(*) from ResourceIndexedSearchParamToken t WHERE t.myHashIdentity = :hash_identity")
+	long countForHashIdentity(@Param("hash_identity") Long theHashIdentity);
+
+	@Query(
+			"select t.myHashSystemAndValue from ResourceIndexedSearchParamToken t WHERE t.myHashIdentity = :hash_identity")
+	Stream<Long> streamHashSystemAndValueForHashIdentity(@Param("hash_identity") Long theHashIdentity);
 }
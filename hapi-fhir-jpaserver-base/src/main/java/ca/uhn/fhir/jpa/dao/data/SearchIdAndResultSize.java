@@ -22,16 +22,19 @@ package ca.uhn.fhir.jpa.dao.data;
 import java.util.Objects;
 
 /**
- * Record for search result returning the PK of a Search, and the number of associated SearchResults
+ * Record for search result returning the PK and UUID of a Search, and the number of associated SearchResults
  */
 public class SearchIdAndResultSize {
 	/** Search PK */
 	public final long searchId;
+	/** Search UUID */
+	public final String searchUuid;
 	/** Number of SearchResults attached */
 	public final int size;
 
-	public SearchIdAndResultSize(long theSearchId, Integer theSize) {
+	public SearchIdAndResultSize(long theSearchId, String theSearchUuid, Integer theSize) {
 		searchId = theSearchId;
+		searchUuid = theSearchUuid;
 		size = Objects.requireNonNullElse(theSize, 0);
 	}
 }
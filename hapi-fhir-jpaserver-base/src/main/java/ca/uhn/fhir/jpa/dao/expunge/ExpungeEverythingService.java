@@ -72,6 +72,7 @@ import ca.uhn.fhir.jpa.model.entity.SearchParamPresentEntity;
 import ca.uhn.fhir.jpa.model.entity.TagDefinition;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
+import ca.uhn.fhir.jpa.util.IResourceBodyCacheSvc;
 import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.provider.ProviderConstants;
@@ -118,6 +119,9 @@ public class ExpungeEverythingService implements IExpungeEverythingService {
 	@Autowired
 	private MemoryCacheService myMemoryCacheService;
 
+	@Autowired
+	private IResourceBodyCacheSvc myResourceBodyCacheSvc;
+
 	@Autowired
 	private IRequestPartitionHelperSvc myRequestPartitionHelperSvc;
 
@@ -275,6 +279,7 @@ public class ExpungeEverythingService implements IExpungeEverythingService {
 
 	private void purgeAllCaches() {
 		myMemoryCacheService.invalidateAllCaches();
+		myResourceBodyCacheSvc.evictAll();
 	}
 
 	protected <T> int expungeEverythingByTypeWithoutPurging(
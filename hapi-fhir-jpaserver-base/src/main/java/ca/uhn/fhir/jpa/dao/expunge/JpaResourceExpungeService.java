@@ -23,6 +23,7 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.dao.IJpaStorageResourceParser;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryProvenanceDao;
@@ -42,11 +43,13 @@ import ca.uhn.fhir.jpa.dao.data.IResourceLinkDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchParamPresentDao;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryProvenanceEntity;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTablePk;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.util.IResourceBodyCacheSvc;
 import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
@@ -69,9 +72,15 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
@@ -138,9 +147,15 @@ public class JpaResourceExpungeService implements IResourceExpungeService<JpaPid
 	@Autowired
 	private MemoryCacheService myMemoryCacheService;
 
+	@Autowired
+	private IResourceBodyCacheSvc myResourceBodyCacheSvc;
+
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
 
+	@Autowired
+	private PartitionSettings myPartitionSettings;
+
 	@Override
 	@Transactional
 	public List<ResourceHistoryTablePk> findHistoricalVersionsOfNonDeletedResources(
@@ -202,28 +217,75 @@ public class JpaResourceExpungeService implements IResourceExpungeService<JpaPid
 	@Transactional
 	public void expungeCurrentVersionOfResources(
 			RequestDetails theRequestDetails, List<JpaPid> theResourceIds, AtomicInteger theRemainingCount) {
+		List<ResourceTable> expunged = new ArrayList<>(theResourceIds.size());
 		for (JpaPid next : theResourceIds) {
+			myResourceTableDao.findById(next).ifPresent(expunged::add);
 			expungeCurrentVersionOfResource(theRequestDetails, next, theRemainingCount);
 			if (expungeLimitReached(theRemainingCount)) {
-				return;
+				break;
 			}
 		}
 
 		/*
-		 * Once this transaction is committed, we will invalidate all memory caches
+		 * Once this transaction is committed, we will invalidate all local memory caches
 		 * in order to avoid any caches having references to things that no longer
 		 * exist. This is a pretty brute-force way of addressing this, and could probably
 		 * be optimized, but expunge is hopefully not frequently called on busy servers
-		 * so it shouldn't be too big a deal.
+		 * so it shouldn't be too big a deal. The second-level cache (if any) is shared
+		 * by every node though, so only the entries for the expunged resources are
+		 * invalidated there. When partitioning is enabled, forced ID lookups may have
+		 * been cached under any combination of partitions, so their keys can't be
+		 * enumerated and the second-level cache is flushed entirely.
 		 */
+		Map<MemoryCacheService.CacheEnum, Collection<?>> secondLevelKeys =
+				myPartitionSettings.isPartitioningEnabled() ? null : toSecondLevelCacheKeys(expunged);
 		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
 			@Override
 			public void afterCommit() {
-				myMemoryCacheService.invalidateAllCaches();
+				if (secondLevelKeys != null) {
+					myMemoryCacheService.invalidateAllCaches(secondLevelKeys);
+				} else {
+					myMemoryCacheService.invalidateAllCaches();
+				}
+				myResourceBodyCacheSvc.evictAll();
 			}
 		});
 	}
 
+	/**
+	 * Returns the keys of every cache entry which can refer to the given resources. This is only
+	 * complete when partitioning is disabled, in which case forced ID lookups are only ever cached
+	 * for all partitions or for the default partition.
+	 */
+	private Map<MemoryCacheService.CacheEnum, Collection<?>> toSecondLevelCacheKeys(List<ResourceTable> theResources) {
+		List<JpaPid> pids = new ArrayList<>(theResources.size());
+		Set<MemoryCacheService.ForcedIdCacheKey> forcedIdKeys = new HashSet<>();
+		Set<MemoryCacheService.HistoryCountKey> historyCountKeys = new HashSet<>();
+		historyCountKeys.add(MemoryCacheService.HistoryCountKey.forSystem());
+		for (ResourceTable next : theResources) {
+			pids.add(next.getId());
+			historyCountKeys.add(MemoryCacheService.HistoryCountKey.forType(next.getResourceType()));
+			historyCountKeys.add(MemoryCacheService.HistoryCountKey.forInstance(next.getId()));
+
+			Integer partitionId =
+					next.getPartitionId() != null ? next.getPartitionId().getPartitionId() : null;
+			for (RequestPartitionId nextPartition :
+					List.of(RequestPartitionId.allPartitions(), RequestPartitionId.fromPartitionId(partitionId))) {
+				forcedIdKeys.add(new MemoryCacheService.ForcedIdCacheKey(
+						next.getResourceType(), next.getFhirId(), nextPartition));
+				forcedIdKeys.add(new MemoryCacheService.ForcedIdCacheKey(null, next.getFhirId(), nextPartition));
+			}
+		}
+
+		Map<MemoryCacheService.CacheEnum, Collection<?>> retVal = new EnumMap<>(MemoryCacheService.CacheEnum.class);
+		retVal.put(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, pids);
+		retVal.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, pids);
+		retVal.put(MemoryCacheService.CacheEnum.RESOURCE_INDEX_FINGERPRINT, pids);
+		retVal.put(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, forcedIdKeys);
+		retVal.put(MemoryCacheService.CacheEnum.HISTORY_COUNT, historyCountKeys);
+		return retVal;
+	}
+
 	private void expungeHistoricalVersion(
 			RequestDetails theRequestDetails,
 			ResourceHistoryTablePk theNextVersionId,
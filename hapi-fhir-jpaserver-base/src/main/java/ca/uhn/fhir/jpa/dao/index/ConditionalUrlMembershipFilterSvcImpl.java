@@ -0,0 +1,488 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.IConditionalUrlMembershipFilterSvc;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.util.LazyThreadPool;
+import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Keeps one Bloom filter per token search parameter (i.e. per resource type and
+ * parameter name, identified by the {@link BaseResourceIndexedSearchParam#getHashIdentity() hash identity})
+ * holding the {@link ResourceIndexedSearchParamToken#getHashSystemAndValue() system and value hash} of every
+ * token which has been indexed for it.
+ * <p>
+ * A filter is only created once a conditional URL uses its search parameter, at which point it is
+ * built in the background by scanning the token index table. Until the build completes, URLs for
+ * that parameter are reported as {@link MembershipEnum#UNKNOWN}. While a filter is being built, any
+ * tokens written are added to it both before and after their transaction commits, so that tokens
+ * committed while the scan is running are not missed.
+ * </p>
+ * <p>
+ * Since a filter only sees the tokens written by this node, this service must only be enabled
+ * on a node which is the only node writing the resources whose conditional URLs are checked.
+ * </p>
+ *
+ * @see JpaStorageSettings#setConditionalUrlMembershipFilterEnabled(boolean)
+ * @since 8.4.0
+ */
+public class ConditionalUrlMembershipFilterSvcImpl implements IConditionalUrlMembershipFilterSvc {
+
+	/**
+	 * Filters are sized to hold at least this many values, and twice the number of
+	 * values found when they are built, so that they can absorb new values before
+	 * needing to be rebuilt
+	 */
+	static final long MINIMUM_EXPECTED_INSERTIONS = 100_000L;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ConditionalUrlMembershipFilterSvcImpl.class);
+
+	private final JpaStorageSettings myStorageSettings;
+	private final PartitionSettings myPartitionSettings;
+	private final IHapiTransactionService myTxService;
+	private final IResourceIndexedSearchParamTokenDao myResourceIndexedSearchParamTokenDao;
+	private final Map<Long, MembershipFilter> myFilters = new ConcurrentHashMap<>();
+	private final AtomicLong myCheckCount = new AtomicLong();
+	private final AtomicLong myAbsentCount = new AtomicLong();
+	private final AtomicLong myMaybePresentFoundCount = new AtomicLong();
+	private final AtomicLong myFalsePositiveCount = new AtomicLong();
+	private final AtomicLong myRebuildCount = new AtomicLong();
+	private final AtomicLong myRebuildFailureCount = new AtomicLong();
+	private final AtomicLong myLastRebuildMillis = new AtomicLong();
+	private final LazyThreadPool myExecutor =
+			new LazyThreadPool(() -> ThreadPoolUtil.newThreadPool(1, 1, "conditional-url-membership-filter-", 1000));
+
+	/**
+	 * Constructor
+	 */
+	public ConditionalUrlMembershipFilterSvcImpl(
+			JpaStorageSettings theStorageSettings,
+			PartitionSettings thePartitionSettings,
+			IHapiTransactionService theTxService,
+			IResourceIndexedSearchParamTokenDao theResourceIndexedSearchParamTokenDao) {
+		myStorageSettings = theStorageSettings;
+		myPartitionSettings = thePartitionSettings;
+		myTxService = theTxService;
+		myResourceIndexedSearchParamTokenDao = theResourceIndexedSearchParamTokenDao;
+	}
+
+	private boolean isEnabled() {
+		return myStorageSettings.isConditionalUrlMembershipFilterEnabled()
+				&& !myPartitionSettings.isPartitioningEnabled();
+	}
+
+	@Nonnull
+	@Override
+	public MembershipEnum check(
+			@Nonnull String theResourceType,
+			@Nonnull SearchParameterMap theParamMap,
+			@Nullable RequestPartitionId thePartitionId) {
+		if (!isEnabled() || theParamMap.size() != 1 || theParamMap.getLastUpdated() != null) {
+			return MembershipEnum.UNKNOWN;
+		}
+
+		/*
+		 * Only plain "param=system|value" URLs are supported. Parameters starting with
+		 * an underscore are excluded since some (e.g. _id and _tag) are token parameters
+		 * which aren't stored in the token index table.
+		 */
+		String paramName = theParamMap.keySet().iterator().next();
+		List<List<IQueryParameterType>> andList = theParamMap.get(paramName);
+		if (paramName.startsWith("_") || andList.size() != 1 || andList.get(0).size() != 1) {
+			return MembershipEnum.UNKNOWN;
+		}
+		IQueryParameterType param = andList.get(0).get(0);
+		if (!(param instanceof TokenParam)) {
+			return MembershipEnum.UNKNOWN;
+		}
+		TokenParam tokenParam = (TokenParam) param;
+		if (tokenParam.getModifier() != null
+				|| tokenParam.getMissing() != null
+				|| tokenParam.isText()
+				|| tokenParam.isMdmExpand()
+				|| isBlank(tokenParam.getSystem())
+				|| isBlank(tokenParam.getValue())) {
+			return MembershipEnum.UNKNOWN;
+		}
+
+		RequestPartitionId partitionId = RequestPartitionId.defaultPartition();
+		long hashIdentity = BaseResourceIndexedSearchParam.calculateHashIdentity(
+				myPartitionSettings, partitionId, theResourceType, paramName);
+		long hashSystemAndValue = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(
+				myPartitionSettings,
+				partitionId,
+				theResourceType,
+				paramName,
+				tokenParam.getSystem(),
+				tokenParam.getValue());
+
+		MembershipFilter filter = myFilters.computeIfAbsent(hashIdentity, MembershipFilter::new);
+		MembershipEnum retVal = filter.check(hashSystemAndValue);
+		if (retVal == MembershipEnum.UNKNOWN) {
+			scheduleRebuild(filter);
+		} else {
+			myCheckCount.incrementAndGet();
+			if (retVal == MembershipEnum.ABSENT) {
+				myAbsentCount.incrementAndGet();
+			}
+		}
+		return retVal;
+	}
+
+	@Override
+	public void recordMaybePresentOutcome(boolean theFound) {
+		if (theFound) {
+			myMaybePresentFoundCount.incrementAndGet();
+		} else {
+			myFalsePositiveCount.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void tokensWritten(@Nonnull Collection<ResourceIndexedSearchParamToken> theTokens) {
+		if (theTokens.isEmpty() || !isEnabled()) {
+			return;
+		}
+
+		List<Long> hashIdentities = new ArrayList<>(theTokens.size());
+		List<Long> hashSystemAndValues = new ArrayList<>(theTokens.size());
+		for (ResourceIndexedSearchParamToken next : theTokens) {
+			if (next.getHashIdentity() != null && next.getHashSystemAndValue() != null) {
+				hashIdentities.add(next.getHashIdentity());
+				hashSystemAndValues.add(next.getHashSystemAndValue());
+			}
+		}
+
+		put(hashIdentities, hashSystemAndValues);
+
+		/*
+		 * Tokens are added again once the transaction commits, in case a filter was
+		 * created or started being rebuilt after they were added above, but its scan
+		 * of the database started before they were committed
+		 */
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					put(hashIdentities, hashSystemAndValues);
+				}
+			});
+		}
+	}
+
+	private void put(List<Long> theHashIdentities, List<Long> theHashSystemAndValues) {
+		if (myFilters.isEmpty()) {
+			return;
+		}
+		for (int i = 0; i < theHashIdentities.size(); i++) {
+			MembershipFilter filter = myFilters.get(theHashIdentities.get(i));
+			if (filter != null && filter.put(theHashSystemAndValues.get(i))) {
+				scheduleRebuild(filter);
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds all filters which have been created so far from the token index table
+	 */
+	public void rebuildAll() {
+		for (MembershipFilter next : myFilters.values()) {
+			scheduleRebuild(next);
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the statistics for this service
+	 */
+	@Nonnull
+	public Statistics getStatistics() {
+		long elementCount = 0;
+		double maxExpectedFpp = 0;
+		int activeFilterCount = 0;
+		for (MembershipFilter next : myFilters.values()) {
+			BloomFilter<Long> filter = next.myActiveFilter;
+			if (filter != null) {
+				activeFilterCount++;
+				elementCount += filter.approximateElementCount();
+				maxExpectedFpp = Math.max(maxExpectedFpp, filter.expectedFpp());
+			}
+		}
+		return new Statistics(
+				activeFilterCount,
+				elementCount,
+				maxExpectedFpp,
+				myCheckCount.get(),
+				myAbsentCount.get(),
+				myMaybePresentFoundCount.get(),
+				myFalsePositiveCount.get(),
+				myRebuildCount.get(),
+				myRebuildFailureCount.get(),
+				myLastRebuildMillis.get());
+	}
+
+	private void scheduleRebuild(MembershipFilter theFilter) {
+		if (theFilter.myRebuildScheduled.compareAndSet(false, true)) {
+			myExecutor.get().execute(() -> rebuild(theFilter));
+		}
+	}
+
+	@VisibleForTesting
+	void rebuild(MembershipFilter theFilter) {
+		StopWatch sw = new StopWatch();
+		Long hashIdentity = theFilter.myHashIdentity;
+		try {
+			long count = myTxService
+					.withSystemRequest()
+					.readOnly()
+					.execute(() -> myResourceIndexedSearchParamTokenDao.countForHashIdentity(hashIdentity));
+			long expectedInsertions = Math.max(MINIMUM_EXPECTED_INSERTIONS, count * 2);
+			BloomFilter<Long> filter = BloomFilter.create(
+					Funnels.longFunnel(),
+					expectedInsertions,
+					myStorageSettings.getConditionalUrlMembershipFilterFalsePositiveRate());
+
+			theFilter.myBuildingFilter = filter;
+			myTxService.withSystemRequest().readOnly().execute(() -> {
+				try (Stream<Long> hashes =
+						myResourceIndexedSearchParamTokenDao.streamHashSystemAndValueForHashIdentity(hashIdentity)) {
+					hashes.forEach(next -> {
+						if (next != null) {
+							filter.put(next);
+						}
+					});
+				}
+			});
+
+			theFilter.myActiveExpectedInsertions = expectedInsertions;
+			theFilter.myActiveFilter = filter;
+			theFilter.myBuildingFilter = null;
+
+			myRebuildCount.incrementAndGet();
+			myLastRebuildMillis.set(sw.getMillis());
+			ourLog.info(
+					"Built conditional URL membership filter for hash identity {} with {} values in {}",
+					hashIdentity,
+					count,
+					sw);
+		} catch (RuntimeException e) {
+			theFilter.myBuildingFilter = null;
+			myRebuildFailureCount.incrementAndGet();
+			ourLog.warn("Failed to build conditional URL membership filter for hash identity {}", hashIdentity, e);
+		} finally {
+			theFilter.myRebuildScheduled.set(false);
+		}
+	}
+
+	@VisibleForTesting
+	@Nullable
+	MembershipFilter getFilter(long theHashIdentity) {
+		return myFilters.get(theHashIdentity);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		myExecutor.shutdown();
+	}
+
+	static class MembershipFilter {
+
+		private final Long myHashIdentity;
+		private final AtomicBoolean myRebuildScheduled = new AtomicBoolean();
+		private volatile BloomFilter<Long> myActiveFilter;
+		private volatile long myActiveExpectedInsertions;
+		private volatile BloomFilter<Long> myBuildingFilter;
+
+		MembershipFilter(Long theHashIdentity) {
+			myHashIdentity = theHashIdentity;
+		}
+
+		MembershipEnum check(long theHashSystemAndValue) {
+			BloomFilter<Long> filter = myActiveFilter;
+			if (filter == null) {
+				return MembershipEnum.UNKNOWN;
+			}
+			return filter.mightContain(theHashSystemAndValue) ? MembershipEnum.MAYBE_PRESENT : MembershipEnum.ABSENT;
+		}
+
+		/**
+		 * Adds a value to the active filter and to the filter being built (if any). The
+		 * filter being built is read first so that a value can't be missed by a build
+		 * completing between the two reads.
+		 *
+		 * @return Returns {@literal true} if the active filter holds more values than it was sized for
+		 */
+		boolean put(long theHashSystemAndValue) {
+			BloomFilter<Long> building = myBuildingFilter;
+			if (building != null) {
+				building.put(theHashSystemAndValue);
+			}
+			BloomFilter<Long> active = myActiveFilter;
+			if (active != null && active != building) {
+				active.put(theHashSystemAndValue);
+				return active.approximateElementCount() > myActiveExpectedInsertions;
+			}
+			return false;
+		}
+	}
+
+	public static class Statistics {
+
+		private final int myFilterCount;
+		private final long myApproximateElementCount;
+		private final double myMaximumExpectedFalsePositiveRate;
+		private final long myCheckCount;
+		private final long myAbsentCount;
+		private final long myMaybePresentFoundCount;
+		private final long myFalsePositiveCount;
+		private final long myRebuildCount;
+		private final long myRebuildFailureCount;
+		private final long myLastRebuildMillis;
+
+		Statistics(
+				int theFilterCount,
+				long theApproximateElementCount,
+				double theMaximumExpectedFalsePositiveRate,
+				long theCheckCount,
+				long theAbsentCount,
+				long theMaybePresentFoundCount,
+				long theFalsePositiveCount,
+				long theRebuildCount,
+				long theRebuildFailureCount,
+				long theLastRebuildMillis) {
+			myFilterCount = theFilterCount;
+			myApproximateElementCount = theApproximateElementCount;
+			myMaximumExpectedFalsePositiveRate = theMaximumExpectedFalsePositiveRate;
+			myCheckCount = theCheckCount;
+			myAbsentCount = theAbsentCount;
+			myMaybePresentFoundCount = theMaybePresentFoundCount;
+			myFalsePositiveCount = theFalsePositiveCount;
+			myRebuildCount = theRebuildCount;
+			myRebuildFailureCount = theRebuildFailureCount;
+			myLastRebuildMillis = theLastRebuildMillis;
+		}
+
+		/**
+		 * The number of filters which have been built
+		 */
+		public int getFilterCount() {
+			return myFilterCount;
+		}
+
+		/**
+		 * The approximate number of distinct values held across all filters
+		 */
+		public long getApproximateElementCount() {
+			return myApproximateElementCount;
+		}
+
+		/**
+		 * The highest false positive rate any filter is currently expected to have, based on
+		 * how full it is
+		 */
+		public double getMaximumExpectedFalsePositiveRate() {
+			return myMaximumExpectedFalsePositiveRate;
+		}
+
+		/**
+		 * The number of conditional URLs which were checked against a built filter
+		 */
+		public long getCheckCount() {
+			return myCheckCount;
+		}
+
+		/**
+		 * The number of conditional URLs which were not resolved because the filter
+		 * reported them as absent
+		 */
+		public long getAbsentCount() {
+			return myAbsentCount;
+		}
+
+		/**
+		 * The number of conditional URLs reported as maybe present which did match a resource
+		 */
+		public long getMaybePresentFoundCount() {
+			return myMaybePresentFoundCount;
+		}
+
+		/**
+		 * The number of conditional URLs reported as maybe present which did not match any resource
+		 */
+		public long getFalsePositiveCount() {
+			return myFalsePositiveCount;
+		}
+
+		/**
+		 * The fraction of conditional URLs matching no resource which still needed to be resolved,
+		 * or <code>0</code> if none have been observed
+		 */
+		public double getObservedFalsePositiveRate() {
+			long total = myFalsePositiveCount + myAbsentCount;
+			return total == 0 ? 0 : (double) myFalsePositiveCount / total;
+		}
+
+		public long getRebuildCount() {
+			return myRebuildCount;
+		}
+
+		public long getRebuildFailureCount() {
+			return myRebuildFailureCount;
+		}
+
+		/**
+		 * The time taken by the most recent successful rebuild, in milliseconds
+		 */
+		public long getLastRebuildMillis() {
+			return myLastRebuildMillis;
+		}
+	}
+}
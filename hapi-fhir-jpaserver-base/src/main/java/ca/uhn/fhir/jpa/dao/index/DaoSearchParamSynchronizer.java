@@ -24,24 +24,31 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.cache.ISearchParamIdentityCacheSvc;
 import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
+import ca.uhn.fhir.jpa.dao.IConditionalUrlMembershipFilterSvc;
 import ca.uhn.fhir.jpa.dao.data.IResourceIndexedComboStringUniqueDao;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.model.entity.IndexedSearchParamIdentity;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboStringUnique;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.entity.SearchParamPresentEntity;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.sp.SearchParamIdentityCacheSvcImpl;
 import ca.uhn.fhir.jpa.util.AddRemoveCount;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
 import com.google.common.annotations.VisibleForTesting;
 import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.PersistenceContextType;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -69,6 +76,12 @@ public class DaoSearchParamSynchronizer {
 	@Autowired
 	private FhirContext myFhirContext;
 
+	@Autowired
+	private MemoryCacheService myMemoryCacheService;
+
+	@Autowired(required = false)
+	private IConditionalUrlMembershipFilterSvc myConditionalUrlMembershipFilterSvc;
+
 	public AddRemoveCount synchronizeSearchParamsToDatabase(
 			ResourceIndexedSearchParams theParams,
 			ResourceTable theEntity,
@@ -77,6 +90,9 @@ public class DaoSearchParamSynchronizer {
 
 		synchronize(theEntity, retVal, theParams.myStringParams, existingParams.myStringParams, null);
 		synchronize(theEntity, retVal, theParams.myTokenParams, existingParams.myTokenParams, null);
+		if (myConditionalUrlMembershipFilterSvc != null) {
+			myConditionalUrlMembershipFilterSvc.tokensWritten(theParams.myTokenParams);
+		}
 		synchronize(theEntity, retVal, theParams.myNumberParams, existingParams.myNumberParams, null);
 		synchronize(theEntity, retVal, theParams.myQuantityParams, existingParams.myQuantityParams, null);
 		synchronize(
@@ -103,6 +119,108 @@ public class DaoSearchParamSynchronizer {
 		return retVal;
 	}
 
+	/**
+	 * Returns the fingerprint of the indexes which were written for the current version of the
+	 * given resource, or <code>null</code> if it is not known (or
+	 * {@link JpaStorageSettings#isSkipUnchangedIndexSynchronization()} is disabled). This must be
+	 * called before the version of the entity is incremented for the current update.
+	 *
+	 * @since 8.4.0
+	 */
+	@Nullable
+	public ResourceIndexFingerprint getIndexFingerprint(ResourceTable theEntity) {
+		if (!myStorageSettings.isSkipUnchangedIndexSynchronization()
+				|| theEntity.getId().getId() == null) {
+			return null;
+		}
+		ResourceIndexFingerprint retVal = myMemoryCacheService.getIfPresent(
+				MemoryCacheService.CacheEnum.RESOURCE_INDEX_FINGERPRINT, toFingerprintKey(theEntity));
+		if (retVal != null && retVal.getResourceVersion() != theEntity.getVersion()) {
+			return null;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns <code>true</code> if a set of newly extracted indexes is identical to the indexes
+	 * described by a fingerprint returned by {@link #getIndexFingerprint(ResourceTable)}, meaning
+	 * that {@link #synchronizeSearchParamsToDatabase(ResourceIndexedSearchParams, ResourceTable, ResourceIndexedSearchParams)}
+	 * would not make any changes.
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isUnchanged(
+			ResourceIndexFingerprint theFingerprint, ResourceTable theEntity, ResourceIndexedSearchParams theParams) {
+		prepareNewParams(theEntity, theParams.myStringParams);
+		prepareNewParams(theEntity, theParams.myTokenParams);
+		prepareNewParams(theEntity, theParams.myNumberParams);
+		prepareNewParams(theEntity, theParams.myQuantityParams);
+		prepareNewParams(theEntity, theParams.myQuantityNormalizedParams);
+		prepareNewParams(theEntity, theParams.myDateParams);
+		prepareNewParams(theEntity, theParams.myUriParams);
+		prepareNewParams(theEntity, theParams.myCoordsParams);
+		prepareNewParams(theEntity, theParams.myLinks);
+		prepareNewParams(theEntity, theParams.myComboTokenNonUnique);
+		prepareNewParams(theEntity, theParams.myComboStringUniques);
+		for (SearchParamPresentEntity next : theParams.mySearchParamPresentEntities) {
+			next.setResource(theEntity);
+			next.calculateHashes();
+		}
+
+		ResourceIndexFingerprint newFingerprint = ResourceIndexFingerprint.forParams(theEntity.getVersion(), theParams);
+		return theFingerprint.hasSameIndexes(newFingerprint);
+	}
+
+	/**
+	 * Records the fingerprint of the indexes which are now stored for the current version of the
+	 * given resource, once the current transaction commits. The given params must be the complete
+	 * set of indexes (i.e. after they have been synchronized and the search parameter presence
+	 * has been updated).
+	 *
+	 * @since 8.4.0
+	 */
+	public void recordIndexFingerprint(ResourceTable theEntity, ResourceIndexedSearchParams theParams) {
+		if (myStorageSettings.isSkipUnchangedIndexSynchronization()) {
+			recordIndexFingerprint(theEntity, ResourceIndexFingerprint.forParams(theEntity.getVersion(), theParams));
+		}
+	}
+
+	/**
+	 * Records that the indexes stored for the current version of the given resource are the same
+	 * ones described by the given fingerprint, once the current transaction commits.
+	 *
+	 * @since 8.4.0
+	 */
+	public void recordIndexFingerprint(ResourceTable theEntity, ResourceIndexFingerprint theFingerprint) {
+		if (myStorageSettings.isSkipUnchangedIndexSynchronization()) {
+			myMemoryCacheService.putAfterCommit(
+					MemoryCacheService.CacheEnum.RESOURCE_INDEX_FINGERPRINT,
+					toFingerprintKey(theEntity),
+					theFingerprint.withResourceVersion(theEntity.getVersion()));
+		}
+	}
+
+	/**
+	 * Forgets any recorded index fingerprint for the given resource. This should be called
+	 * whenever indexes are modified without going through this class.
+	 *
+	 * @since 8.4.0
+	 */
+	public void invalidateIndexFingerprint(ResourceTable theEntity) {
+		if (myStorageSettings.isSkipUnchangedIndexSynchronization()
+				&& theEntity.getId().getId() != null) {
+			myMemoryCacheService.invalidate(
+					MemoryCacheService.CacheEnum.RESOURCE_INDEX_FINGERPRINT, toFingerprintKey(theEntity));
+		}
+	}
+
+	/**
+	 * The entity's own {@link JpaPid} is mutable, so the cache uses a separate copy
+	 */
+	private static JpaPid toFingerprintKey(ResourceTable theEntity) {
+		return JpaPid.fromId(theEntity.getId().getId());
+	}
+
 	@VisibleForTesting
 	public void setEntityManager(EntityManager theEntityManager) {
 		myEntityManager = theEntityManager;
@@ -118,18 +236,34 @@ public class DaoSearchParamSynchronizer {
 		myStorageSettings = theStorageSettings;
 	}
 
+	@VisibleForTesting
+	public void setMemoryCacheService(MemoryCacheService theMemoryCacheService) {
+		myMemoryCacheService = theMemoryCacheService;
+	}
+
+	/**
+	 * Populates the fields which {@link #synchronize(ResourceTable, AddRemoveCount, Collection, Collection, IPreSaveHook)}
+	 * populates on newly extracted indexes before comparing them to the existing ones
+	 */
+	private static <T extends BaseResourceIndex> void prepareNewParams(
+			ResourceTable theEntity, Collection<T> theNewParams) {
+		for (T next : theNewParams) {
+			next.setResourceId(theEntity.getId().getId());
+			next.setPartitionId(theEntity.getPartitionId());
+			next.calculateHashes();
+		}
+	}
+
 	private <T extends BaseResourceIndex> void synchronize(
 			ResourceTable theEntity,
 			AddRemoveCount theAddRemoveCount,
 			Collection<T> theNewParams,
 			Collection<T> theExistingParams,
 			@Nullable IPreSaveHook<T> theAddParamPreSaveHook) {
+		IndexRowBatchWriter indexRowBatchWriter = theAddParamPreSaveHook == null ? getIndexRowBatchWriter() : null;
+
 		Collection<T> newParams = theNewParams;
-		for (T next : newParams) {
-			next.setResourceId(theEntity.getId().getId());
-			next.setPartitionId(theEntity.getPartitionId());
-			next.calculateHashes();
-		}
+		prepareNewParams(theEntity, newParams);
 
 		/*
 		 * It's technically possible that the existing index collection
@@ -171,6 +305,9 @@ public class DaoSearchParamSynchronizer {
 		updateExistingParamsIfRequired(theExistingParams, paramsToAdd, newParams, paramsToRemove);
 
 		for (T next : paramsToRemove) {
+			if (indexRowBatchWriter != null && indexRowBatchWriter.remove(next)) {
+				continue;
+			}
 			if (!myEntityManager.contains(next)) {
 				// If a resource is created and deleted in the same transaction, we can end up
 				// in a state where we're deleting entities that don't actually exist. Hibernate
@@ -183,7 +320,11 @@ public class DaoSearchParamSynchronizer {
 		for (T next : paramsToAdd) {
 			findOrCreateSearchParamIdentity(next);
 			if (next.getId() == null) {
-				myEntityManager.persist(next);
+				if (indexRowBatchWriter != null && indexRowBatchWriter.canWrite(next)) {
+					indexRowBatchWriter.insert(next);
+				} else {
+					myEntityManager.persist(next);
+				}
 			} else {
 				myEntityManager.merge(next);
 			}
@@ -202,6 +343,36 @@ public class DaoSearchParamSynchronizer {
 		theNewParams.removeAll(paramsToRemove);
 	}
 
+	/**
+	 * Returns the {@link IndexRowBatchWriter} for the current session, creating it if this is the
+	 * first time it is needed in the current transaction, or <code>null</code> if index rows should
+	 * be written through the persistence context.
+	 *
+	 * @see JpaStorageSettings#setBatchIndexRowWritesEnabled(boolean)
+	 */
+	@Nullable
+	private IndexRowBatchWriter getIndexRowBatchWriter() {
+		if (!myStorageSettings.isBatchIndexRowWritesEnabled()
+				|| myStorageSettings.isHibernateSearchIndexSearchParams()
+				|| !TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+
+		SessionImplementor session = myEntityManager.unwrap(SessionImplementor.class);
+		IndexRowBatchWriter retVal = (IndexRowBatchWriter) TransactionSynchronizationManager.getResource(session);
+		if (retVal == null) {
+			retVal = new IndexRowBatchWriter(session);
+			TransactionSynchronizationManager.bindResource(session, retVal);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(session);
+				}
+			});
+		}
+		return retVal.isSupported() ? retVal : null;
+	}
+
 	/**
 	 * Checks whether the Indexed Search Parameter hash identity exists in the cache.
 	 * If the identity is missing, a new {@link IndexedSearchParamIdentity} will be
@@ -71,6 +71,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -268,6 +269,12 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 	 * therefore not possible that we have an entry in the cache that has since
 	 * been deleted but the cache doesn't know about the deletion), or if we
 	 * aren't excluding deleted results anyhow.
+	 * <p>
+	 * All of the IDs are fetched using a single bulk lookup, which also consults the
+	 * second-level cache (if one is configured) for any IDs missing from the local cache.
+	 * IDs which the second-level cache knows don't exist are treated as resolved, with no
+	 * result.
+	 * </p>
 	 *
 	 * @param theRequestPartitionId The partition(s) to search
 	 * @param theIdsToResolve       The IDs we should look up. Any IDs that are resolved
@@ -281,21 +288,35 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 			ResolveIdentityMode theMode,
 			Collection<IIdType> theIdsToResolve,
 			ListMultimap<IIdType, IResourceLookup<JpaPid>> theMapToPopulate) {
+		if (!theMode.isUseCache(myStorageSettings.isDeleteEnabled())) {
+			return;
+		}
+
+		List<MemoryCacheService.ForcedIdCacheKey> keys = new ArrayList<>(theIdsToResolve.size());
+		for (IIdType nextForcedId : theIdsToResolve) {
+			keys.add(new MemoryCacheService.ForcedIdCacheKey(
+					nextForcedId.getResourceType(), nextForcedId.getIdPart(), theRequestPartitionId));
+		}
+
+		Set<MemoryCacheService.ForcedIdCacheKey> negativeKeys = new HashSet<>();
+		Map<MemoryCacheService.ForcedIdCacheKey, List<IResourceLookup<JpaPid>>> cachedLookupsByKey =
+				myMemoryCacheService.getAllPresent(
+						MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, keys, negativeKeys);
+
+		Iterator<MemoryCacheService.ForcedIdCacheKey> keyIterator = keys.iterator();
 		for (Iterator<IIdType> idIterator = theIdsToResolve.iterator(); idIterator.hasNext(); ) {
-			IIdType nextForcedId = idIterator.next();
-			MemoryCacheService.ForcedIdCacheKey nextKey = new MemoryCacheService.ForcedIdCacheKey(
-					nextForcedId.getResourceType(), nextForcedId.getIdPart(), theRequestPartitionId);
-			if (theMode.isUseCache(myStorageSettings.isDeleteEnabled())) {
-				List<IResourceLookup<JpaPid>> cachedLookups = myMemoryCacheService.getIfPresent(
-						MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, nextKey);
-				if (cachedLookups != null && !cachedLookups.isEmpty()) {
-					idIterator.remove();
-					for (IResourceLookup<JpaPid> cachedLookup : cachedLookups) {
-						if (theMode.isIncludeDeleted() || cachedLookup.getDeleted() == null) {
-							theMapToPopulate.put(nextKey.toIdType(myFhirCtx), cachedLookup);
-						}
+			idIterator.next();
+			MemoryCacheService.ForcedIdCacheKey nextKey = keyIterator.next();
+			List<IResourceLookup<JpaPid>> cachedLookups = cachedLookupsByKey.get(nextKey);
+			if (cachedLookups != null && !cachedLookups.isEmpty()) {
+				idIterator.remove();
+				for (IResourceLookup<JpaPid> cachedLookup : cachedLookups) {
+					if (theMode.isIncludeDeleted() || cachedLookup.getDeleted() == null) {
+						theMapToPopulate.put(nextKey.toIdType(myFhirCtx), cachedLookup);
 					}
 				}
+			} else if (negativeKeys.contains(nextKey)) {
+				idIterator.remove();
 			}
 		}
 	}
@@ -361,6 +382,7 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 		criteriaQuery.where(cb.and(outerAndPredicates.toArray(EMPTY_PREDICATE_ARRAY)));
 		TypedQuery<Tuple> query = myEntityManager.createQuery(criteriaQuery);
 		List<Tuple> results = query.getResultList();
+		Map<MemoryCacheService.ForcedIdCacheKey, IIdType> keysToCache = new HashMap<>();
 		for (Tuple nextId : results) {
 			// Check if the nextId has a resource ID. It may have a null resource ID if a commit is still pending.
 			JpaPid resourcePid = nextId.get(0, JpaPid.class);
@@ -379,11 +401,39 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 						new MemoryCacheService.ForcedIdCacheKey(resourceType, fhirId, theRequestPartitionId);
 				IIdType id = nextKey.toIdType(myFhirCtx);
 				theMapToPopulate.put(id, lookup);
+				keysToCache.put(nextKey, id);
+			}
+		}
 
-				List<IResourceLookup<JpaPid>> valueToCache = theMapToPopulate.get(id);
-				myMemoryCacheService.putAfterCommit(
-						MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, nextKey, valueToCache);
+		Map<MemoryCacheService.ForcedIdCacheKey, List<IResourceLookup<JpaPid>>> valuesToCache =
+				new HashMap<>(keysToCache.size());
+		for (Map.Entry<MemoryCacheService.ForcedIdCacheKey, IIdType> next : keysToCache.entrySet()) {
+			valuesToCache.put(next.getKey(), List.copyOf(theMapToPopulate.get(next.getValue())));
+		}
+		myMemoryCacheService.putAllAfterCommit(
+				MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, valuesToCache);
+
+		/*
+		 * Record the IDs which don't exist so that other nodes don't need to look them up
+		 * again. This is only done if partitioning is disabled, because otherwise the key
+		 * used to look up an ID can have different partitions than the key that the
+		 * resource is cached with once it is created.
+		 */
+		if (!myPartitionSettings.isPartitioningEnabled()
+				&& myMemoryCacheService.isNegativeCachingEnabled(
+						MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID)) {
+			List<MemoryCacheService.ForcedIdCacheKey> negativeKeys = new ArrayList<>();
+			for (IIdType next : theIdsToResolve) {
+				if (isNotBlank(next.getResourceType())) {
+					IIdType id = myFhirCtx.getVersion().newIdType(next.getResourceType(), next.getIdPart());
+					if (!theMapToPopulate.containsKey(id)) {
+						negativeKeys.add(new MemoryCacheService.ForcedIdCacheKey(
+								next.getResourceType(), next.getIdPart(), theRequestPartitionId));
+					}
+				}
 			}
+			myMemoryCacheService.putNegativeAfterCommit(
+					MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, negativeKeys);
 		}
 	}
 
@@ -506,6 +556,7 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 		List<JpaPid> remainingPids =
 				theResourceIds.stream().filter(t -> !retVal.containsKey(t)).collect(Collectors.toList());
 
+		Map<JpaPid, Optional<String>> valuesToCache = new HashMap<>(remainingPids.size());
 		QueryChunker.chunk(remainingPids, t -> {
 			List<ResourceTable> resourceEntities = myResourceTableDao.findAllById(t);
 
@@ -513,8 +564,7 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 				JpaPid nextResourcePid = nextResourceEntity.getPersistentId();
 				Optional<String> nextForcedId = Optional.of(nextResourceEntity.asTypedFhirResourceId());
 				retVal.put(nextResourcePid, nextForcedId);
-				myMemoryCacheService.putAfterCommit(
-						MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, nextResourcePid, nextForcedId);
+				valuesToCache.put(nextResourcePid, nextForcedId);
 			}
 		});
 
@@ -522,9 +572,9 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 				theResourceIds.stream().filter(t -> !retVal.containsKey(t)).collect(Collectors.toList());
 		for (JpaPid nextResourcePid : remainingPids) {
 			retVal.put(nextResourcePid, Optional.empty());
-			myMemoryCacheService.putAfterCommit(
-					MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, nextResourcePid, Optional.empty());
+			valuesToCache.put(nextResourcePid, Optional.empty());
 		}
+		myMemoryCacheService.putAllAfterCommit(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, valuesToCache);
 		Map<JpaPid, Optional<String>> convertRetVal = new HashMap<>(retVal);
 
 		return new PersistentIdToForcedIdMap<>(convertRetVal);
@@ -558,6 +608,10 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 
 		MemoryCacheService.ForcedIdCacheKey fhirIdKey =
 				new MemoryCacheService.ForcedIdCacheKey(theResourceType, theFhirId, theRequestPartitionId);
+		if (myMemoryCacheService.isNegativeCachingEnabled(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID)) {
+			// Remove any negative entry right away so that lookups later in this transaction see the new resource
+			myMemoryCacheService.invalidate(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, fhirIdKey);
+		}
 		myMemoryCacheService.putAfterCommit(
 				MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, fhirIdKey, List.of(lookup));
 
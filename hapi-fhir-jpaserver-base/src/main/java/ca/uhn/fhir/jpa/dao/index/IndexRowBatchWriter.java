@@ -0,0 +1,459 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.google.common.collect.Lists;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.transaction.Synchronization;
+import org.hibernate.LockMode;
+import org.hibernate.SessionEventListener;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.jpa.event.spi.CallbackRegistry;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes index rows (e.g. search parameter index entities and resource links) for a single
+ * Hibernate session using multi-row <code>INSERT</code> and <code>DELETE</code> statements,
+ * instead of persisting and removing them one at a time through the persistence context.
+ * <p>
+ * Rows are accumulated by {@link #insert(Object)} and {@link #remove(Object)}, and are written
+ * during every flush of the session (including automatic flushes before queries) and before the
+ * transaction commits, so they become visible in the database at the same point they would have
+ * if they had been written by Hibernate. Deletes are written at the start of the flush, before
+ * Hibernate deletes any row they reference or inserts any row which would collide with them, and
+ * inserts are written at the end of the flush, after Hibernate has inserted any row they reference. Once written, inserted entities are re-associated with the session
+ * as ordinary managed entities so that any later change to them in the same transaction
+ * (an update or removal) is handled normally.
+ * </p>
+ *
+ * @see ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setBatchIndexRowWritesEnabled(boolean)
+ * @since 8.4.0
+ */
+public class IndexRowBatchWriter implements SessionEventListener {
+
+	/**
+	 * The maximum number of rows written by a single statement
+	 */
+	static final int MAX_ROWS_PER_STATEMENT = 100;
+
+	/**
+	 * The maximum number of bind parameters used in a single statement, which is kept below
+	 * the lowest limit of the databases we support (2100 for MS SQL Server)
+	 */
+	static final int MAX_PARAMETERS_PER_STATEMENT = 2000;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(IndexRowBatchWriter.class);
+	private final SessionImplementor mySession;
+	private final boolean mySupported;
+	private final Map<Class<?>, Optional<TableWriter>> myTableWriters = new HashMap<>();
+	private final IdentityHashMap<Object, TableWriter> myPendingInserts = new IdentityHashMap<>();
+	private final Map<TableWriter, List<Object>> myPendingInsertsByTable = new LinkedHashMap<>();
+	private final Map<TableWriter, List<Object>> myPendingDeleteIdsByTable = new LinkedHashMap<>();
+	private boolean myWriting;
+
+	/**
+	 * Constructor. The new writer registers itself as a listener on the given session.
+	 */
+	public IndexRowBatchWriter(@Nonnull SessionImplementor theSession) {
+		mySession = theSession;
+		Dialect dialect = theSession.getJdbcServices().getDialect();
+		mySupported = dialect.supportsValuesListForInsert();
+		if (mySupported) {
+			theSession.addEventListeners(this);
+			theSession
+					.getTransactionCoordinator()
+					.getLocalSynchronizations()
+					.registerSynchronization(new Synchronization() {
+						@Override
+						public void beforeCompletion() {
+							writePendingRows();
+						}
+
+						@Override
+						public void afterCompletion(int theStatus) {
+							// nothing
+						}
+					});
+		}
+	}
+
+	/**
+	 * Returns <code>false</code> if the database does not support the statements used by this
+	 * writer, in which case it must not be used
+	 */
+	public boolean isSupported() {
+		return mySupported;
+	}
+
+	/**
+	 * Returns <code>true</code> if rows for the given entity can be written by this writer
+	 */
+	public boolean canWrite(@Nonnull Object theEntity) {
+		return mySupported && getTableWriter(theEntity) != null;
+	}
+
+	/**
+	 * Schedules a new (transient) entity to be inserted at the end of the next flush. Scheduling
+	 * an entity which is already scheduled has no effect.
+	 */
+	public void insert(@Nonnull Object theEntity) {
+		TableWriter tableWriter = getTableWriter(theEntity);
+		if (tableWriter == null) {
+			throw new InternalErrorException(Msg.code(2655) + "Can not write entity of type: "
+					+ theEntity.getClass().getName());
+		}
+		if (myPendingInserts.containsKey(theEntity)) {
+			return;
+		}
+
+		getCallbackRegistry().preCreate(theEntity);
+		myPendingInserts.put(theEntity, tableWriter);
+		myPendingInsertsByTable
+				.computeIfAbsent(tableWriter, t -> new ArrayList<>())
+				.add(theEntity);
+	}
+
+	/**
+	 * Schedules an entity to be deleted at the end of the next flush. If the entity was scheduled
+	 * for insertion and has not been written yet, the insertion is simply cancelled. Managed
+	 * entities are detached from the session.
+	 *
+	 * @return Returns <code>false</code> if the entity is not scheduled for insertion and is not
+	 * 		managed by the session, meaning that there is nothing to delete
+	 */
+	public boolean remove(@Nonnull Object theEntity) {
+		if (myPendingInserts.remove(theEntity) != null) {
+			return true;
+		}
+
+		TableWriter tableWriter = getTableWriter(theEntity);
+		if (tableWriter == null || !mySession.contains(theEntity)) {
+			return false;
+		}
+
+		getCallbackRegistry().preRemove(theEntity);
+		Object id = tableWriter.myPersister.getIdentifier(theEntity, mySession);
+		mySession.detach(theEntity);
+		myPendingDeleteIdsByTable
+				.computeIfAbsent(tableWriter, t -> new ArrayList<>())
+				.add(id);
+		return true;
+	}
+
+	@Override
+	public void flushStart() {
+		writePendingDeletes();
+	}
+
+	@Override
+	public void flushEnd(int theNumberOfEntities, int theNumberOfCollections) {
+		writePendingRows();
+	}
+
+	@Override
+	public void partialFlushStart() {
+		writePendingDeletes();
+	}
+
+	@Override
+	public void partialFlushEnd(int theNumberOfEntities, int theNumberOfCollections) {
+		if (!myWriting && hasPendingRows()) {
+			/*
+			 * An automatic flush before a query only flushes the session if the query touches
+			 * tables with pending changes, so the rows we are about to write might reference
+			 * rows which Hibernate hasn't written yet. Flush everything first.
+			 */
+			mySession.flush();
+			writePendingRows();
+		}
+	}
+
+	private boolean hasPendingRows() {
+		return !myPendingInsertsByTable.isEmpty() || !myPendingDeleteIdsByTable.isEmpty();
+	}
+
+	/**
+	 * Writes all pending deletes and inserts. This is called automatically at the end of every
+	 * flush of the session, and before the transaction completes (since Hibernate skips
+	 * flushing a session which contains no managed entities).
+	 */
+	public void writePendingRows() {
+		if (myWriting || !hasPendingRows()) {
+			return;
+		}
+
+		myWriting = true;
+		try {
+			int deleteCount = doWritePendingDeletes();
+
+			List<Object> inserted = new ArrayList<>(myPendingInserts.size());
+			for (Map.Entry<TableWriter, List<Object>> next : myPendingInsertsByTable.entrySet()) {
+				List<Object> rows = new ArrayList<>(next.getValue().size());
+				for (Object nextRow : next.getValue()) {
+					if (myPendingInserts.containsKey(nextRow)) {
+						rows.add(nextRow);
+					}
+				}
+				next.getKey().insert(mySession, rows);
+				inserted.addAll(rows);
+			}
+			myPendingInsertsByTable.clear();
+			myPendingInserts.clear();
+
+			CallbackRegistry callbackRegistry = getCallbackRegistry();
+			for (Object next : inserted) {
+				callbackRegistry.postCreate(next);
+				/*
+				 * Re-associate the row we just wrote with the session. On Hibernate 6.6 locking
+				 * a detached, unversioned entity with LockMode.NONE (Session#lock(Object, LockMode)
+				 * is not deprecated there) only adds it to the persistence context with its current
+				 * state as the loaded state: no SQL is issued and no version check is done. Since
+				 * that state is exactly what was just inserted, later dirty checks in this session
+				 * see the same row that is in the database. Note that Hibernate 7 no longer allows
+				 * lock() on detached instances, so this needs to be revisited when upgrading.
+				 */
+				mySession.lock(next, LockMode.NONE);
+			}
+
+			ourLog.trace("Wrote {} index row inserts and {} index row deletes", inserted.size(), deleteCount);
+		} finally {
+			myWriting = false;
+		}
+	}
+
+	/**
+	 * Writes all pending deletes. Since index rows are never referenced by the rows Hibernate
+	 * writes, this is always safe to do before Hibernate writes anything.
+	 */
+	private void writePendingDeletes() {
+		if (myWriting || myPendingDeleteIdsByTable.isEmpty()) {
+			return;
+		}
+
+		myWriting = true;
+		try {
+			int deleteCount = doWritePendingDeletes();
+			ourLog.trace("Wrote {} index row deletes", deleteCount);
+		} finally {
+			myWriting = false;
+		}
+	}
+
+	private int doWritePendingDeletes() {
+		int retVal = 0;
+		for (Map.Entry<TableWriter, List<Object>> next : myPendingDeleteIdsByTable.entrySet()) {
+			next.getKey().delete(mySession, next.getValue());
+			retVal += next.getValue().size();
+		}
+		myPendingDeleteIdsByTable.clear();
+		return retVal;
+	}
+
+	private CallbackRegistry getCallbackRegistry() {
+		return mySession.getFactory().getEventEngine().getCallbackRegistry();
+	}
+
+	@Nullable
+	private TableWriter getTableWriter(Object theEntity) {
+		return myTableWriters
+				.computeIfAbsent(theEntity.getClass(), t -> Optional.ofNullable(createTableWriter(theEntity)))
+				.orElse(null);
+	}
+
+	@Nullable
+	private TableWriter createTableWriter(Object theEntity) {
+		EntityPersister persister = mySession.getEntityPersister(null, theEntity);
+		if (!(persister instanceof AbstractEntityPersister)
+				|| persister.isInherited()
+				|| persister.hasSubclasses()
+				|| persister.isVersioned()
+				|| !(persister.getGenerator() instanceof BeforeExecutionGenerator)) {
+			return null;
+		}
+		return new TableWriter((AbstractEntityPersister) persister);
+	}
+
+	/**
+	 * Builds and executes the statements for a single entity type
+	 */
+	private static class TableWriter {
+
+		private final AbstractEntityPersister myPersister;
+		private final String myTableName;
+		private final String[] myIdColumnNames;
+		private final List<String> myInsertColumnNames = new ArrayList<>();
+		private final List<Integer> myInsertPropertyIndexes = new ArrayList<>();
+		private final boolean[][] myInsertPropertyColumnSettable;
+
+		private TableWriter(AbstractEntityPersister thePersister) {
+			myPersister = thePersister;
+			myTableName = thePersister.getTableName();
+			myIdColumnNames = thePersister.getIdentifierColumnNames();
+			myInsertPropertyColumnSettable = thePersister.getPropertyColumnInsertable();
+
+			boolean[] insertability = thePersister.getPropertyInsertability();
+			for (int i = 0; i < insertability.length; i++) {
+				if (!insertability[i]) {
+					continue;
+				}
+				String[] columnNames = thePersister.getPropertyColumnNames(i);
+				boolean anySettable = false;
+				for (int j = 0; j < columnNames.length; j++) {
+					if (myInsertPropertyColumnSettable[i][j]) {
+						myInsertColumnNames.add(columnNames[j]);
+						anySettable = true;
+					}
+				}
+				if (anySettable) {
+					myInsertPropertyIndexes.add(i);
+				}
+			}
+		}
+
+		private void insert(SessionImplementor theSession, List<Object> theEntities) {
+			if (theEntities.isEmpty()) {
+				return;
+			}
+
+			BeforeExecutionGenerator generator = (BeforeExecutionGenerator) myPersister.getGenerator();
+			for (Object next : theEntities) {
+				Object id = generator.generate(theSession, next, null, EventType.INSERT);
+				myPersister.setIdentifier(next, id, theSession);
+			}
+
+			int columnCount = myIdColumnNames.length + myInsertColumnNames.size();
+			String columns = String.join(", ", myIdColumnNames);
+			if (!myInsertColumnNames.isEmpty()) {
+				columns += ", " + String.join(", ", myInsertColumnNames);
+			}
+			String row = "(" + String.join(", ", Collections.nCopies(columnCount, "?")) + ")";
+
+			Type idType = myPersister.getIdentifierType();
+			Type[] propertyTypes = myPersister.getPropertyTypes();
+			for (List<Object> nextChunk : Lists.partition(theEntities, rowsPerStatement(columnCount))) {
+				String sql = "insert into " + myTableName + " (" + columns + ") values "
+						+ String.join(", ", Collections.nCopies(nextChunk.size(), row));
+				execute(theSession, sql, statement -> {
+					int index = 1;
+					for (Object next : nextChunk) {
+						idType.nullSafeSet(statement, myPersister.getIdentifier(next, theSession), index, theSession);
+						index += myIdColumnNames.length;
+
+						Object[] values = myPersister.getPropertyValues(next);
+						for (int propertyIndex : myInsertPropertyIndexes) {
+							boolean[] settable = myInsertPropertyColumnSettable[propertyIndex];
+							propertyTypes[propertyIndex].nullSafeSet(
+									statement, values[propertyIndex], index, settable, theSession);
+							for (boolean nextSettable : settable) {
+								if (nextSettable) {
+									index++;
+								}
+							}
+						}
+					}
+				});
+			}
+		}
+
+		private void delete(SessionImplementor theSession, List<Object> theIds) {
+			if (theIds.isEmpty()) {
+				return;
+			}
+
+			String row;
+			String separator;
+			if (myIdColumnNames.length == 1) {
+				row = "?";
+				separator = ", ";
+			} else {
+				List<String> predicates = new ArrayList<>(myIdColumnNames.length);
+				for (String next : myIdColumnNames) {
+					predicates.add(next + " = ?");
+				}
+				row = "(" + String.join(" and ", predicates) + ")";
+				separator = " or ";
+			}
+
+			Type idType = myPersister.getIdentifierType();
+			for (List<Object> nextChunk : Lists.partition(theIds, rowsPerStatement(myIdColumnNames.length))) {
+				String where = String.join(separator, Collections.nCopies(nextChunk.size(), row));
+				if (myIdColumnNames.length == 1) {
+					where = myIdColumnNames[0] + " in (" + where + ")";
+				}
+				String sql = "delete from " + myTableName + " where " + where;
+				execute(theSession, sql, statement -> {
+					int index = 1;
+					for (Object next : nextChunk) {
+						idType.nullSafeSet(statement, next, index, theSession);
+						index += myIdColumnNames.length;
+					}
+				});
+			}
+		}
+
+		private static int rowsPerStatement(int theColumnCount) {
+			return Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, MAX_PARAMETERS_PER_STATEMENT / theColumnCount));
+		}
+
+		private static void execute(SessionImplementor theSession, String theSql, IStatementBinder theBinder) {
+			JdbcCoordinator jdbcCoordinator = theSession.getJdbcCoordinator();
+			PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(theSql);
+			try {
+				theBinder.bind(statement);
+				jdbcCoordinator.getResultSetReturn().executeUpdate(statement, theSql);
+			} catch (SQLException e) {
+				throw theSession
+						.getJdbcServices()
+						.getSqlExceptionHelper()
+						.convert(e, "Failed to write index rows", theSql);
+			} finally {
+				jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+				jdbcCoordinator.afterStatementExecution();
+			}
+		}
+	}
+
+	@FunctionalInterface
+	private interface IStatementBinder {
+		void bind(PreparedStatement theStatement) throws SQLException;
+	}
+}
@@ -0,0 +1,263 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboStringUnique;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedComboTokenNonUnique;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamCoords;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamDate;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamNumber;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantity;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantityNormalized;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamUri;
+import ca.uhn.fhir.jpa.model.entity.ResourceLink;
+import ca.uhn.fhir.jpa.model.entity.SearchParamPresentEntity;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A compact fingerprint of the full set of search indexes for one version of a resource.
+ * <p>
+ * Each index row contributes a 128 bit hash of the same values that its <code>equals(Object)</code>
+ * method compares, and the row hashes are combined without regard to order. Two sets of indexes
+ * which would produce an empty diff in {@link DaoSearchParamSynchronizer} therefore produce the
+ * same fingerprint. Indexes must have had their hashes calculated before a fingerprint is
+ * created.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public final class ResourceIndexFingerprint {
+
+	private static final HashFunction ourHashFunction = Hashing.murmur3_128();
+
+	private final long myResourceVersion;
+	private final HashCode myIndexHash;
+
+	private ResourceIndexFingerprint(long theResourceVersion, HashCode theIndexHash) {
+		myResourceVersion = theResourceVersion;
+		myIndexHash = theIndexHash;
+	}
+
+	/**
+	 * The version of the resource that the indexes were written for
+	 */
+	public long getResourceVersion() {
+		return myResourceVersion;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given fingerprint describes the same set of indexes
+	 * as this one, regardless of the resource version each fingerprint was taken for.
+	 */
+	public boolean hasSameIndexes(ResourceIndexFingerprint theOther) {
+		return myIndexHash.equals(theOther.myIndexHash);
+	}
+
+	/**
+	 * Returns a copy of this fingerprint associated with a different resource version
+	 */
+	public ResourceIndexFingerprint withResourceVersion(long theResourceVersion) {
+		return new ResourceIndexFingerprint(theResourceVersion, myIndexHash);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("resourceVersion", myResourceVersion)
+				.append("indexHash", myIndexHash)
+				.toString();
+	}
+
+	public static ResourceIndexFingerprint forParams(long theResourceVersion, ResourceIndexedSearchParams theParams) {
+		List<HashCode> familyHashes = new ArrayList<>();
+		familyHashes.add(hashFamily(theParams.myStringParams, ResourceIndexFingerprint::hashString));
+		familyHashes.add(hashFamily(theParams.myTokenParams, ResourceIndexFingerprint::hashToken));
+		familyHashes.add(hashFamily(theParams.myNumberParams, ResourceIndexFingerprint::hashNumber));
+		familyHashes.add(hashFamily(theParams.myQuantityParams, ResourceIndexFingerprint::hashQuantity));
+		familyHashes.add(
+				hashFamily(theParams.myQuantityNormalizedParams, ResourceIndexFingerprint::hashQuantityNormalized));
+		familyHashes.add(hashFamily(theParams.myDateParams, ResourceIndexFingerprint::hashDate));
+		familyHashes.add(hashFamily(theParams.myUriParams, ResourceIndexFingerprint::hashUri));
+		familyHashes.add(hashFamily(theParams.myCoordsParams, ResourceIndexFingerprint::hashCoords));
+		familyHashes.add(hashFamily(theParams.myLinks, ResourceIndexFingerprint::hashLink));
+		familyHashes.add(hashFamily(theParams.myComboStringUniques, ResourceIndexFingerprint::hashComboStringUnique));
+		familyHashes.add(
+				hashFamily(theParams.myComboTokenNonUnique, ResourceIndexFingerprint::hashComboTokenNonUnique));
+		familyHashes.add(hashFamily(theParams.mySearchParamPresentEntities, ResourceIndexFingerprint::hashPresence));
+		return new ResourceIndexFingerprint(theResourceVersion, Hashing.combineOrdered(familyHashes));
+	}
+
+	private static <T> HashCode hashFamily(Collection<T> theIndexes, BiConsumer<T, Hasher> theHashFunction) {
+		List<HashCode> rowHashes = new ArrayList<>(theIndexes.size() + 1);
+		// Empty families still contribute a hash, since combineUnordered needs at least one
+		rowHashes.add(ourHashFunction.hashInt(theIndexes.size()));
+		for (T next : theIndexes) {
+			Hasher hasher = ourHashFunction.newHasher();
+			theHashFunction.accept(next, hasher);
+			rowHashes.add(hasher.hash());
+		}
+		return Hashing.combineUnordered(rowHashes);
+	}
+
+	private static void hashString(ResourceIndexedSearchParamString theIndex, Hasher theHasher) {
+		putString(theHasher, theIndex.getValueExact());
+		putLong(theHasher, theIndex.getHashIdentity());
+		putLong(theHasher, theIndex.getHashExact());
+		putLong(theHasher, theIndex.getHashNormalizedPrefix());
+		putString(theHasher, theIndex.getValueNormalized());
+		putMissing(theHasher, theIndex);
+	}
+
+	private static void hashToken(ResourceIndexedSearchParamToken theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashIdentity());
+		putLong(theHasher, theIndex.getHashSystem());
+		putLong(theHasher, theIndex.getHashValue());
+		putLong(theHasher, theIndex.getHashSystemAndValue());
+		putMissing(theHasher, theIndex);
+	}
+
+	private static void hashNumber(ResourceIndexedSearchParamNumber theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashIdentity());
+		BigDecimal value = theIndex.getValue();
+		putDouble(theHasher, value != null ? value.doubleValue() : null);
+		putMissing(theHasher, theIndex);
+	}
+
+	private static void hashQuantity(ResourceIndexedSearchParamQuantity theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashIdentity());
+		putLong(theHasher, theIndex.getHashIdentityAndUnits());
+		putLong(theHasher, theIndex.getHashIdentitySystemAndUnits());
+		putMissing(theHasher, theIndex);
+		BigDecimal value = theIndex.getValue();
+		putDouble(theHasher, value != null ? value.doubleValue() : null);
+	}
+
+	private static void hashQuantityNormalized(
+			ResourceIndexedSearchParamQuantityNormalized theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashIdentity());
+		putLong(theHasher, theIndex.getHashIdentityAndUnits());
+		putLong(theHasher, theIndex.getHashIdentitySystemAndUnits());
+		putMissing(theHasher, theIndex);
+		putDouble(theHasher, theIndex.getValue());
+	}
+
+	private static void hashDate(ResourceIndexedSearchParamDate theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashIdentity());
+		putLong(theHasher, getTime(theIndex.getValueHigh()));
+		putLong(theHasher, getTime(theIndex.getValueLow()));
+		putInt(theHasher, theIndex.getValueLowDateOrdinal());
+		putInt(theHasher, theIndex.getValueHighDateOrdinal());
+		putMissing(theHasher, theIndex);
+	}
+
+	private static void hashUri(ResourceIndexedSearchParamUri theIndex, Hasher theHasher) {
+		putString(theHasher, theIndex.getUri());
+		putLong(theHasher, theIndex.getHashUri());
+		putLong(theHasher, theIndex.getHashIdentity());
+		putMissing(theHasher, theIndex);
+	}
+
+	private static void hashCoords(ResourceIndexedSearchParamCoords theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashIdentity());
+		putDouble(theHasher, theIndex.getLatitude());
+		putDouble(theHasher, theIndex.getLongitude());
+		putMissing(theHasher, theIndex);
+	}
+
+	private static void hashLink(ResourceLink theIndex, Hasher theHasher) {
+		putString(theHasher, theIndex.getSourcePath());
+		putString(theHasher, theIndex.getTargetResourceUrl());
+		putString(theHasher, theIndex.getTargetResourceType());
+		putLong(theHasher, theIndex.getTargetResourceVersion());
+		// Same rule as ResourceLink#equals(Object)
+		if (theIndex.getTargetResourcePid() == null) {
+			putString(theHasher, theIndex.getTargetResourceId());
+		} else {
+			putLong(theHasher, theIndex.getTargetResourcePid());
+		}
+	}
+
+	private static void hashComboStringUnique(ResourceIndexedComboStringUnique theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashComplete());
+		putLong(theHasher, theIndex.getHashComplete2());
+	}
+
+	private static void hashComboTokenNonUnique(ResourceIndexedComboTokenNonUnique theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashComplete());
+	}
+
+	private static void hashPresence(SearchParamPresentEntity theIndex, Hasher theHasher) {
+		putLong(theHasher, theIndex.getHashPresence());
+	}
+
+	private static void putMissing(Hasher theHasher, BaseResourceIndexedSearchParam theIndex) {
+		theHasher.putBoolean(theIndex.isMissing());
+	}
+
+	private static void putLong(Hasher theHasher, Long theValue) {
+		theHasher.putBoolean(theValue != null);
+		if (theValue != null) {
+			theHasher.putLong(theValue);
+		}
+	}
+
+	private static void putInt(Hasher theHasher, Integer theValue) {
+		theHasher.putBoolean(theValue != null);
+		if (theValue != null) {
+			theHasher.putInt(theValue);
+		}
+	}
+
+	private static void putDouble(Hasher theHasher, Double theValue) {
+		theHasher.putBoolean(theValue != null);
+		if (theValue != null) {
+			theHasher.putDouble(theValue);
+		}
+	}
+
+	private static void putString(Hasher theHasher, String theValue) {
+		theHasher.putBoolean(theValue != null);
+		if (theValue != null) {
+			theHasher.putInt(theValue.length());
+			theHasher.putString(theValue, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static Long getTime(Date theDate) {
+		return theDate != null ? theDate.getTime() : null;
+	}
+}
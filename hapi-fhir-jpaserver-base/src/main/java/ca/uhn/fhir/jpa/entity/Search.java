@@ -176,6 +176,12 @@ public class Search implements ICachedSearchDetails, Serializable {
 	@Column(name = "TOTAL_COUNT", nullable = true)
 	private Integer myTotalCount;
 
+	/**
+	 * @since 8.4.0
+	 */
+	@Column(name = "TOTAL_COUNT_ESTIMATED", nullable = true)
+	private Boolean myTotalCountEstimated;
+
 	@Column(name = SEARCH_UUID, length = SEARCH_UUID_COLUMN_LENGTH, nullable = false, updatable = false)
 	private String myUuid;
 
@@ -232,6 +238,7 @@ public class Search implements ICachedSearchDetails, Serializable {
 				.append("myNumBlocked", myNumBlocked)
 				.append("myStatus", myStatus)
 				.append("myTotalCount", myTotalCount)
+				.append("myTotalCountEstimated", myTotalCountEstimated)
 				.append("myUuid", myUuid)
 				.append("myVersion", myVersion)
 				.toString();
@@ -413,8 +420,31 @@ public class Search implements ICachedSearchDetails, Serializable {
 		return myTotalCount;
 	}
 
+	/**
+	 * Sets an exact total count, replacing any estimated total count
+	 */
 	public void setTotalCount(Integer theTotalCount) {
 		myTotalCount = theTotalCount;
+		myTotalCountEstimated = null;
+	}
+
+	/**
+	 * Sets a total count which was estimated (e.g. by the database query planner) rather than counted
+	 *
+	 * @since 8.4.0
+	 */
+	public void setEstimatedTotalCount(Integer theTotalCount) {
+		myTotalCount = theTotalCount;
+		myTotalCountEstimated = theTotalCount != null ? Boolean.TRUE : null;
+	}
+
+	/**
+	 * Returns <code>true</code> if the {@link #getTotalCount() total count} is an estimate
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isTotalCountEstimated() {
+		return Boolean.TRUE.equals(myTotalCountEstimated);
 	}
 
 	@Override
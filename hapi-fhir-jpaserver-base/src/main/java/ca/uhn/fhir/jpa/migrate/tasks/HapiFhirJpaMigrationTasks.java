@@ -129,6 +129,19 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		init760();
 		init780();
 		init820();
+		init840();
+	}
+
+	protected void init840() {
+		Builder version = forVersion(VersionEnum.V8_4_0);
+
+		// Add TOTAL_COUNT_ESTIMATED column to HFJ_SEARCH
+		{
+			version.onTable("HFJ_SEARCH")
+					.addColumn("20251018.1", "TOTAL_COUNT_ESTIMATED")
+					.nullable()
+					.type(ColumnTypeEnum.BOOLEAN);
+		}
 	}
 
 	protected void init820() {
@@ -0,0 +1,436 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimePrimitiveDatatypeDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.searchparam.SearchKeyset;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.IPagingProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceContextType;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantCount;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Supports keyset (a.k.a. "seek") paging of type-level searches. When
+ * {@link JpaStorageSettings#isKeysetPagingEnabled() enabled}, eligible searches are executed
+ * synchronously and each page is fetched by a query which starts immediately after the last
+ * resource of the previous page, instead of the results being collected and stored in the
+ * search result cache. The position is carried between pages in the
+ * {@link Constants#PARAM_KEYSET _keyset} parameter of the <code>next</code> link.
+ * <p>
+ * Keyset paging is only used when each resource has exactly one position within the sort,
+ * i.e. when sorting by <code>_id</code>, <code>_lastUpdated</code> or <code>_pid</code>, or by a
+ * search parameter which can only ever have a single value for a given resource. Sorting on
+ * a parameter with several values per resource could otherwise cause a resource to be
+ * returned on more than one page, or to be skipped.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public class KeysetPagingSvc {
+
+	private static final Pattern SIMPLE_PATH = Pattern.compile("[a-zA-Z]+(\\.[a-zA-Z]+)+");
+
+	private final byte[] myGeneratedSigningKey;
+
+	@Autowired
+	private FhirContext myFhirContext;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private ISearchParamRegistry mySearchParamRegistry;
+
+	@Autowired
+	private PartitionSettings myPartitionSettings;
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+
+	/**
+	 * Constructor
+	 */
+	public KeysetPagingSvc() {
+		myGeneratedSigningKey = new byte[32];
+		new SecureRandom().nextBytes(myGeneratedSigningKey);
+	}
+
+	/**
+	 * Encodes the given keyset as a signed token for the <code>_keyset</code> parameter
+	 */
+	public String encodeToken(SearchKeyset theKeyset) {
+		return theKeyset.encode(getSigningKey());
+	}
+
+	private byte[] getSigningKey() {
+		String signingKey = myStorageSettings.getKeysetPagingSigningKey();
+		if (isNotBlank(signingKey)) {
+			return signingKey.getBytes(StandardCharsets.UTF_8);
+		}
+		return myGeneratedSigningKey;
+	}
+
+	/**
+	 * Determines whether the given search can be keyset paged and, if so, prepares the
+	 * search parameters for it: the page size is applied, a resource PID tie-breaker
+	 * is added to the sort so that the ordering is total, and the position supplied
+	 * by the client in the <code>_keyset</code> parameter (if any) is stored in
+	 * {@link SearchParameterMap#getKeyset()}.
+	 *
+	 * @return Returns <code>true</code> if the search should be executed as a keyset paged search
+	 * @throws InvalidRequestException If the client supplied a <code>_keyset</code> parameter which can't be used for this search
+	 */
+	public boolean prepareSearch(
+			String theResourceType, SearchParameterMap theParams, @Nullable RequestDetails theRequestDetails) {
+		String token = null;
+		if (theRequestDetails != null) {
+			String[] values = theRequestDetails.getParameters().get(Constants.PARAM_KEYSET);
+			if (values != null && values.length > 0) {
+				token = values[0];
+			}
+		}
+
+		SortKind sortKind = null;
+		if (isEligible(theResourceType, theParams, theRequestDetails)) {
+			sortKind = determineSortKind(theResourceType, theParams.getSort());
+		}
+		if (sortKind == null) {
+			if (isNotBlank(token)) {
+				throw new InvalidRequestException(Msg.code(2660) + "The " + Constants.PARAM_KEYSET
+						+ " parameter is not supported for this search");
+			}
+			return false;
+		}
+
+		SortSpec sort = theParams.getSort();
+		String sortDescriptor = createSortDescriptor(sort);
+
+		SearchKeyset keyset;
+		if (isBlank(token)) {
+			keyset = new SearchKeyset(theResourceType, sortDescriptor, List.of());
+		} else {
+			keyset = SearchKeyset.decode(token, getSigningKey());
+			if (!keyset.matches(theResourceType, sortDescriptor) || !sortKind.isValid(keyset.getSortValues())) {
+				throw new InvalidRequestException(
+						Msg.code(2661) + "The " + Constants.PARAM_KEYSET + " value does not match this search");
+			}
+		}
+
+		IPagingProvider pagingProvider = theRequestDetails.getServer().getPagingProvider();
+		int count = pagingProvider.getDefaultPageSize();
+		if (theParams.getCount() != null) {
+			count = Math.min(theParams.getCount(), pagingProvider.getMaximumPageSize());
+		}
+
+		theParams.setCount(count);
+		theParams.setKeyset(keyset);
+		SortOrderEnum order =
+				sort != null && sort.getOrder() == SortOrderEnum.DESC ? SortOrderEnum.DESC : SortOrderEnum.ASC;
+		if (sortKind == SortKind.RESOURCE_PID) {
+			theParams.setSort(new SortSpec(Constants.PARAM_PID, order));
+		} else {
+			theParams.setSort(new SortSpec(sort.getParamName(), order, new SortSpec(Constants.PARAM_PID, order)));
+		}
+		return true;
+	}
+
+	/**
+	 * Creates the keyset identifying the position immediately after the given resource,
+	 * which must be the last resource on the current page of a search which was
+	 * {@link #prepareSearch(String, SearchParameterMap, RequestDetails) prepared} for
+	 * keyset paging.
+	 */
+	@Nonnull
+	public SearchKeyset createNextKeyset(
+			SearchParameterMap theParams, JpaPid theLastPid, RequestPartitionId theRequestPartitionId) {
+		SearchKeyset keyset = theParams.getKeyset();
+		String resourceType = keyset.getResourceType();
+		SortSpec sort = theParams.getSort();
+		boolean ascending = sort.getOrder() != SortOrderEnum.DESC;
+		Long pid = theLastPid.getId();
+
+		SortKind sortKind;
+		String paramName = null;
+		if (Constants.PARAM_PID.equals(sort.getParamName())) {
+			sortKind = SortKind.RESOURCE_PID;
+		} else {
+			paramName = sort.getParamName();
+			sortKind = determineSortKind(resourceType, new SortSpec(paramName));
+		}
+
+		List<Object> values = new ArrayList<>();
+		switch (sortKind) {
+			case LAST_UPDATED:
+				values.add(selectSingleValue("SELECT t.myUpdated FROM ResourceTable t WHERE t.myPid.myId = :pid", pid));
+				break;
+			case RESOURCE_ID:
+				values.add(selectSingleValue("SELECT t.myFhirId FROM ResourceTable t WHERE t.myPid.myId = :pid", pid));
+				break;
+			case DATE: {
+				// Dates are sorted on their lowest (ascending) or highest (descending) value
+				String aggregate = ascending ? "MIN" : "MAX";
+				List<Date> dates = myEntityManager
+						.createQuery(
+								"SELECT " + aggregate + "(t.myValueLow) FROM ResourceIndexedSearchParamDate t "
+										+ "WHERE t.myResourcePid = :pid AND t.myHashIdentity = :hash",
+								Date.class)
+						.setParameter("pid", pid)
+						.setParameter("hash", hashIdentity(theRequestPartitionId, resourceType, paramName))
+						.getResultList();
+				values.add(dates.isEmpty() ? null : dates.get(0));
+				break;
+			}
+			case TOKEN: {
+				String direction = ascending ? " ASC" : " DESC";
+				List<Object[]> tokens = myEntityManager
+						.createQuery(
+								"SELECT t.mySystem, t.myValue FROM ResourceIndexedSearchParamToken t "
+										+ "WHERE t.myResourcePid = :pid AND t.myHashIdentity = :hash "
+										+ "ORDER BY t.mySystem" + direction + ", t.myValue" + direction,
+								Object[].class)
+						.setParameter("pid", pid)
+						.setParameter("hash", hashIdentity(theRequestPartitionId, resourceType, paramName))
+						.setMaxResults(1)
+						.getResultList();
+				values.add(tokens.isEmpty() ? null : tokens.get(0)[0]);
+				values.add(tokens.isEmpty() ? null : tokens.get(0)[1]);
+				break;
+			}
+			case RESOURCE_PID:
+				break;
+		}
+		values.add(pid);
+
+		return new SearchKeyset(resourceType, keyset.getSortDescriptor(), values);
+	}
+
+	private Object selectSingleValue(String theQuery, Long thePid) {
+		List<?> results = myEntityManager
+				.createQuery(theQuery)
+				.setParameter("pid", thePid)
+				.getResultList();
+		return results.isEmpty() ? null : results.get(0);
+	}
+
+	private long hashIdentity(RequestPartitionId theRequestPartitionId, String theResourceType, String theParamName) {
+		return BaseResourceIndexedSearchParam.calculateHashIdentity(
+				myPartitionSettings, theRequestPartitionId, theResourceType, theParamName);
+	}
+
+	private boolean isEligible(
+			String theResourceType, SearchParameterMap theParams, @Nullable RequestDetails theRequestDetails) {
+		if (!myStorageSettings.isKeysetPagingEnabled()) {
+			return false;
+		}
+
+		// Only type-level searches can be repeated from the next link
+		if (theRequestDetails == null
+				|| theRequestDetails.getRestOperationType() != RestOperationTypeEnum.SEARCH_TYPE
+				|| !theResourceType.equals(theRequestDetails.getResourceName())
+				|| theRequestDetails.getServer() == null
+				|| theRequestDetails.getServer().getPagingProvider() == null) {
+			return false;
+		}
+
+		if (theParams.isLoadSynchronous()
+				|| theParams.getLoadSynchronousUpTo() != null
+				|| theParams.isOffsetQuery()
+				|| theParams.getEverythingMode() != null
+				|| theParams.isLastN()
+				|| theParams.isDeleteExpunge()) {
+			return false;
+		}
+
+		// Keyset pages can't report a total
+		SearchTotalModeEnum totalMode = theParams.getSearchTotalMode() != null
+				? theParams.getSearchTotalMode()
+				: myStorageSettings.getDefaultTotalMode();
+		if (isWantCount(totalMode) || isWantEstimatedCount(totalMode) || isWantOnlyCount(theParams)) {
+			return false;
+		}
+
+		// Fulltext searches may be ordered by relevance
+		return !theParams.containsKey(Constants.PARAM_TEXT)
+				&& !theParams.containsKey(Constants.PARAM_CONTENT)
+				&& !myStorageSettings.isHibernateSearchIndexSearchParams();
+	}
+
+	/**
+	 * @return Returns the kind of sort, or <code>null</code> if keyset paging isn't supported for the given sort
+	 */
+	@Nullable
+	private SortKind determineSortKind(String theResourceType, @Nullable SortSpec theSort) {
+		if (theSort == null || isBlank(theSort.getParamName())) {
+			return SortKind.RESOURCE_PID;
+		}
+		if (theSort.getChain() != null) {
+			return null;
+		}
+
+		String paramName = theSort.getParamName();
+		if (IAnyResource.SP_RES_ID.equals(paramName)) {
+			return SortKind.RESOURCE_ID;
+		}
+		if (Constants.PARAM_LASTUPDATED.equals(paramName)) {
+			return SortKind.LAST_UPDATED;
+		}
+		if (Constants.PARAM_PID.equals(paramName)) {
+			return SortKind.RESOURCE_PID;
+		}
+		if (paramName.startsWith("_") || paramName.indexOf('.') != -1 || paramName.indexOf(':') != -1) {
+			return null;
+		}
+
+		RuntimeSearchParam searchParam = mySearchParamRegistry.getActiveSearchParam(
+				theResourceType, paramName, ISearchParamRegistry.SearchParamLookupContextEnum.SORT);
+		if (searchParam == null) {
+			return null;
+		}
+		BaseRuntimeElementDefinition<?> valueDefinition = getSingleValuedTarget(theResourceType, searchParam);
+		if (valueDefinition == null) {
+			return null;
+		}
+		boolean isPrimitive = valueDefinition instanceof RuntimePrimitiveDatatypeDefinition;
+		switch (searchParam.getParamType()) {
+			case DATE:
+				// A Timing (for example) can index several dates
+				return isPrimitive || "Period".equals(valueDefinition.getName()) ? SortKind.DATE : null;
+			case TOKEN:
+				// A CodeableConcept (for example) can index several codings
+				return isPrimitive || "Coding".equals(valueDefinition.getName()) ? SortKind.TOKEN : null;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * If the path of the given search parameter is a simple path (e.g. <code>Patient.birthDate</code>)
+	 * where every element has a maximum cardinality of 1, returns the definition of the element the
+	 * path points to. Otherwise (including for paths using functions or choice types, or when the
+	 * parameter has more than one path for the given resource type) returns <code>null</code>, since
+	 * the parameter could have more than one value for a single resource.
+	 */
+	@Nullable
+	private BaseRuntimeElementDefinition<?> getSingleValuedTarget(
+			String theResourceType, RuntimeSearchParam theSearchParam) {
+		if (isBlank(theSearchParam.getPath())) {
+			return null;
+		}
+		String prefix = theResourceType + ".";
+		List<String> paths = theSearchParam.getPathsSplitForResourceType(theResourceType);
+		if (paths.size() != 1
+				|| !paths.get(0).startsWith(prefix)
+				|| !SIMPLE_PATH.matcher(paths.get(0)).matches()) {
+			return null;
+		}
+
+		BaseRuntimeElementDefinition<?> retVal = myFhirContext.getResourceDefinition(theResourceType);
+		for (String nextName : paths.get(0).substring(prefix.length()).split("\\.")) {
+			if (!(retVal instanceof BaseRuntimeElementCompositeDefinition)) {
+				return null;
+			}
+			BaseRuntimeChildDefinition child =
+					((BaseRuntimeElementCompositeDefinition<?>) retVal).getChildByName(nextName);
+			if (child == null || child.getMax() != 1) {
+				return null;
+			}
+			retVal = child.getChildByName(nextName);
+		}
+		return retVal;
+	}
+
+	private static String createSortDescriptor(@Nullable SortSpec theSort) {
+		if (theSort == null || isBlank(theSort.getParamName())) {
+			return "";
+		}
+		String prefix = theSort.getOrder() == SortOrderEnum.DESC ? "-" : "";
+		return prefix + theSort.getParamName();
+	}
+
+	/**
+	 * The sorts which can be keyset paged, along with the types of the values
+	 * which identify a position within the sort (the last of which is always
+	 * the resource PID)
+	 */
+	private enum SortKind {
+		RESOURCE_PID(Long.class),
+		LAST_UPDATED(Date.class, Long.class),
+		RESOURCE_ID(String.class, Long.class),
+		DATE(Date.class, Long.class),
+		TOKEN(String.class, String.class, Long.class);
+
+		private final Class<?>[] myValueTypes;
+
+		SortKind(Class<?>... theValueTypes) {
+			myValueTypes = theValueTypes;
+		}
+
+		boolean isValid(List<Object> theValues) {
+			if (theValues.size() != myValueTypes.length) {
+				return false;
+			}
+			for (int i = 0; i < myValueTypes.length; i++) {
+				Object value = theValues.get(i);
+				boolean isPid = i == myValueTypes.length - 1;
+				if (value == null ? isPid : !myValueTypes[i].isInstance(value)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -459,6 +459,19 @@ public class PersistedJpaBundleProvider implements IBundleProvider {
 		}
 	}
 
+	/**
+	 * A total is reported as estimated only if it came from the database query planner (see
+	 * {@link ISearchBuilder#createEstimatedCountQuery}) and hasn't since been
+	 * replaced by the actual number of results found.
+	 */
+	@Override
+	public boolean isSizeEstimated() {
+		if (size() == null) {
+			return false;
+		}
+		return mySearchEntity.getTotalCount() != null && mySearchEntity.isTotalCountEstimated();
+	}
+
 	protected boolean hasIncludes() {
 		ensureSearchEntityLoaded();
 		return !mySearchEntity.getIncludes().isEmpty();
@@ -110,6 +110,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 	private final SearchStrategyFactory mySearchStrategyFactory;
 	private final ExceptionService myExceptionSvc;
 	private final BeanFactory myBeanFactory;
+	private final KeysetPagingSvc myKeysetPagingSvc;
 	private ConcurrentHashMap<String, SearchTask> myIdToSearchTask = new ConcurrentHashMap<>();
 
 	private final Consumer<String> myOnRemoveSearchTask = myIdToSearchTask::remove;
@@ -137,7 +138,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 			ISearchParamRegistry theSearchParamRegistry,
 			SearchStrategyFactory theSearchStrategyFactory,
 			ExceptionService theExceptionSvc,
-			BeanFactory theBeanFactory) {
+			BeanFactory theBeanFactory,
+			KeysetPagingSvc theKeysetPagingSvc) {
 		super();
 		myContext = theContext;
 		myStorageSettings = theStorageSettings;
@@ -153,6 +155,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 		mySearchStrategyFactory = theSearchStrategyFactory;
 		myExceptionSvc = theExceptionSvc;
 		myBeanFactory = theBeanFactory;
+		myKeysetPagingSvc = theKeysetPagingSvc;
 
 		myStorageInterceptorHooks = new StorageInterceptorHooksFacade(myInterceptorBroadcaster);
 	}
@@ -375,20 +378,28 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 
 		Class<? extends IBaseResource> resourceTypeClass =
 				myContext.getResourceDefinition(theResourceType).getImplementingClass();
+		final Integer loadSynchronousUpTo = getLoadSynchronousUpToOrNull(theCacheControlDirective);
+		boolean isOffsetQuery = theParams.isOffsetQuery();
+
+		/*
+		 * Keyset paged searches are executed synchronously one page at a time, with
+		 * the next link repeating the search from the position after the last result
+		 */
+		boolean isKeysetQuery = loadSynchronousUpTo == null
+				&& myKeysetPagingSvc.prepareSearch(theResourceType, theParams, theRequestDetails);
+
 		final ISearchBuilder<JpaPid> sb = mySearchBuilderFactory.newSearchBuilder(theResourceType, resourceTypeClass);
 		sb.setFetchSize(mySyncSize);
 		sb.setRequireTotal(theParams.getCount() != null);
 
-		final Integer loadSynchronousUpTo = getLoadSynchronousUpToOrNull(theCacheControlDirective);
-		boolean isOffsetQuery = theParams.isOffsetQuery();
-
 		// todo someday - not today.
 		//		SearchStrategyFactory.ISearchStrategy searchStrategy = mySearchStrategyFactory.pickStrategy(theResourceType,
 		// theParams, theRequestDetails);
 		//		return searchStrategy.get();
 
-		if (theParams.isLoadSynchronous() || loadSynchronousUpTo != null || isOffsetQuery) {
-			if (mySearchStrategyFactory.isSupportsHSearchDirect(theResourceType, theParams, theRequestDetails)) {
+		if (theParams.isLoadSynchronous() || loadSynchronousUpTo != null || isOffsetQuery || isKeysetQuery) {
+			if (!isKeysetQuery
+					&& mySearchStrategyFactory.isSupportsHSearchDirect(theResourceType, theParams, theRequestDetails)) {
 				ourLog.info("Search {} is using direct load strategy", searchUuid);
 				SearchStrategyFactory.ISearchStrategy direct = mySearchStrategyFactory.makeDirectStrategy(
 						searchUuid, theResourceType, theParams, theRequestDetails);
@@ -565,8 +576,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 		}
 
 		/*
-		 * In case there is no running search, if the total is listed as accurate we know one is coming
-		 * so let's wait a bit for it to show up
+		 * In case there is no running search, if the total is listed as accurate (or estimated) we know
+		 * one is coming so let's wait a bit for it to show up
 		 */
 		Optional<Search> search = myTxService
 				.withRequest(theRequestDetails)
@@ -574,7 +585,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 		if (search.isPresent()) {
 			Optional<SearchParameterMap> searchParameterMap = search.get().getSearchParameterMap();
 			if (searchParameterMap.isPresent()
-					&& searchParameterMap.get().getSearchTotalMode() == SearchTotalModeEnum.ACCURATE) {
+					&& (searchParameterMap.get().getSearchTotalMode() == SearchTotalModeEnum.ACCURATE
+							|| searchParameterMap.get().getSearchTotalMode() == SearchTotalModeEnum.ESTIMATED)) {
 				for (int i = 0; i < 10; i++) {
 					if (search.isPresent()) {
 						QueryParameterUtils.verifySearchHasntFailedOrThrowInternalErrorException(search.get());
@@ -655,6 +667,11 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 					if (searchToUse == null) {
 						return null;
 					}
+					if (!mySearchResultCacheSvc.isResultsAvailable(searchToUse)) {
+						ourLog.debug(
+								"Not reusing search {} because its results aren't available", searchToUse.getUuid());
+						return null;
+					}
 
 					ourLog.debug("Reusing search {} from cache", searchToUse.getUuid());
 					// Interceptor call: JPA_PERFTRACE_SEARCH_REUSING_CACHED
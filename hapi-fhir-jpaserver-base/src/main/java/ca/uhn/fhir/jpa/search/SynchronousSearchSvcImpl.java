@@ -35,6 +35,7 @@ import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchKeyset;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.Constants;
@@ -57,6 +58,7 @@ import java.util.Set;
 import java.util.UUID;
 
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantCount;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
 import static java.util.Objects.nonNull;
 
@@ -87,6 +89,9 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 	@Autowired
 	private IRequestPartitionHelperSvc myRequestPartitionHelperSvc;
 
+	@Autowired
+	private KeysetPagingSvc myKeysetPagingSvc;
+
 	private int mySyncSize = 250;
 
 	@Override
@@ -105,7 +110,11 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 		boolean theParamOrConfigWantCount = nonNull(theParams.getSearchTotalMode())
 				? isWantCount(theParams)
 				: isWantCount(myStorageSettings.getDefaultTotalMode());
-		boolean wantCount = theParamWantOnlyCount || theParamOrConfigWantCount;
+		boolean wantEstimatedCount = nonNull(theParams.getSearchTotalMode())
+				? isWantEstimatedCount(theParams)
+				: isWantEstimatedCount(myStorageSettings.getDefaultTotalMode());
+		boolean wantCount = theParamWantOnlyCount || theParamOrConfigWantCount || wantEstimatedCount;
+		int estimateThreshold = myStorageSettings.getSearchTotalEstimateThreshold();
 
 		// Execute the query and make sure we return distinct results
 		return myTxService
@@ -117,6 +126,7 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 					List<JpaPid> pids = new ArrayList<>();
 
 					Long count = 0L;
+					boolean countIsEstimate = false;
 					if (wantCount) {
 
 						ourLog.trace("Performing count");
@@ -129,8 +139,23 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						List<List<IQueryParameterType>> contentAndTerms = theParams.get(Constants.PARAM_CONTENT);
 						List<List<IQueryParameterType>> textAndTerms = theParams.get(Constants.PARAM_TEXT);
 
-						count = theSb.createCountQuery(
-								theParams, theSearchUuid, theRequestDetails, theRequestPartitionId);
+						if (wantEstimatedCount) {
+							count = theSb.createEstimatedCountQuery(
+									theParams,
+									theSearchUuid,
+									theRequestDetails,
+									theRequestPartitionId,
+									estimateThreshold);
+							countIsEstimate = count != null && count > estimateThreshold;
+							if (count == null && theParamWantOnlyCount) {
+								// No cheap estimate is available, but the count is all we were asked for
+								count = theSb.createCountQuery(
+										theParams, theSearchUuid, theRequestDetails, theRequestPartitionId);
+							}
+						} else {
+							count = theSb.createCountQuery(
+									theParams, theSearchUuid, theRequestDetails, theRequestPartitionId);
+						}
 
 						if (contentAndTerms != null) theParams.put(Constants.PARAM_CONTENT, contentAndTerms);
 						if (textAndTerms != null) theParams.put(Constants.PARAM_TEXT, textAndTerms);
@@ -141,6 +166,7 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 					if (theParamWantOnlyCount) {
 						SimpleBundleProvider bundleProvider = new SimpleBundleProvider();
 						bundleProvider.setSize(count.intValue());
+						bundleProvider.setSizeEstimated(countIsEstimate);
 						return bundleProvider;
 					}
 
@@ -170,6 +196,13 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						throw new InternalErrorException(Msg.code(1164) + e);
 					}
 
+					// for keyset paging, the extra result tells us there is a next page
+					SearchKeyset nextKeyset = null;
+					if (theParams.getKeyset() != null && pids.size() > theParams.getCount()) {
+						nextKeyset = myKeysetPagingSvc.createNextKeyset(
+								theParams, pids.get(theParams.getCount() - 1), theRequestPartitionId);
+					}
+
 					// truncate the list we retrieved - if needed
 					int receivedResourceCount = -1;
 					if (hasACount) {
@@ -257,8 +290,15 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						bundleProvider.setCurrentPageSize(theParams.getCount());
 					}
 
-					if (wantCount) {
+					if (theParams.getKeyset() != null) {
+						// the total isn't known when paging with a keyset
+						bundleProvider.setSize(null);
+						if (nextKeyset != null) {
+							bundleProvider.setNextPageKeyset(myKeysetPagingSvc.encodeToken(nextKeyset));
+						}
+					} else if (wantCount && count != null) {
 						bundleProvider.setSize(count.intValue());
+						bundleProvider.setSizeEstimated(countIsEstimate);
 					} else {
 						Integer queryCount = getQueryCount(theLoadSynchronousUpTo, theParams);
 						if (queryCount == null || queryCount > resources.size()) {
@@ -0,0 +1,195 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.dao.IResultIterator;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Resolves the resources matched by the nested part of a chained or reverse chained
+ * (<code>_has</code>) search into a bounded list of resource PIDs, so that the outer search can
+ * use the list instead of joining to a nested query.
+ * See {@link JpaStorageSettings#setSearchChainMaterializationThreshold(int)}.
+ *
+ * @since 8.4.0
+ */
+public class ChainTargetMaterializationSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ChainTargetMaterializationSvc.class);
+	private static final String USER_DATA_KEY = ChainTargetMaterializationSvc.class.getName() + "_RESULTS";
+
+	private final JpaStorageSettings myStorageSettings;
+	private final FhirContext myFhirContext;
+	private final DaoRegistry myDaoRegistry;
+	private final SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+
+	/**
+	 * Constructor
+	 */
+	public ChainTargetMaterializationSvc(
+			JpaStorageSettings theStorageSettings,
+			FhirContext theFhirContext,
+			DaoRegistry theDaoRegistry,
+			SearchBuilderFactory<JpaPid> theSearchBuilderFactory) {
+		myStorageSettings = theStorageSettings;
+		myFhirContext = theFhirContext;
+		myDaoRegistry = theDaoRegistry;
+		mySearchBuilderFactory = theSearchBuilderFactory;
+	}
+
+	public boolean isEnabled() {
+		return myStorageSettings.getSearchChainMaterializationThreshold() > 0;
+	}
+
+	/**
+	 * Finds the resources of the given type which match any of the given values for the given
+	 * search parameter (i.e. the search <code>[theResourceType]?[theParamName]=[value1],[value2]</code>).
+	 * The search is executed in the current transaction, and its result is remembered for
+	 * the remainder of the given request. Results are not remembered while processing a
+	 * transaction or batch (or an entry within one), since the writes it performs could
+	 * change which resources match.
+	 *
+	 * @param theParamName The search parameter name (any modifiers and chains are carried by the values)
+	 * @return Returns the PIDs of the matching resources, or <code>null</code> if materialization is
+	 * disabled or more resources match than the configured threshold
+	 */
+	@Nullable
+	public List<JpaPid> resolve(
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId,
+			String theResourceType,
+			String theParamName,
+			List<? extends IQueryParameterType> theOrValues) {
+		int threshold = myStorageSettings.getSearchChainMaterializationThreshold();
+		if (threshold <= 0 || !myDaoRegistry.isResourceTypeSupported(theResourceType)) {
+			return null;
+		}
+
+		Map<String, Optional<List<JpaPid>>> resolved = getResolvedForRequest(theRequest);
+		String key = toKey(theRequestPartitionId, theResourceType, theParamName, theOrValues);
+		Optional<List<JpaPid>> retVal = resolved.get(key);
+		if (retVal == null) {
+			retVal = Optional.ofNullable(doResolve(
+					theRequest, theRequestPartitionId, theResourceType, theParamName, theOrValues, threshold));
+			resolved.put(key, retVal);
+		}
+		return retVal.orElse(null);
+	}
+
+	@Nullable
+	private List<JpaPid> doResolve(
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId,
+			String theResourceType,
+			String theParamName,
+			List<? extends IQueryParameterType> theOrValues,
+			int theThreshold) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		List<List<IQueryParameterType>> andOrValues = new ArrayList<>();
+		andOrValues.add(new ArrayList<>(theOrValues));
+		map.put(theParamName, andOrValues);
+
+		ISearchBuilder<JpaPid> builder = mySearchBuilderFactory.newSearchBuilder(
+				theResourceType, myDaoRegistry.getResourceDao(theResourceType).getResourceType());
+		builder.setMaxResultsToFetch(theThreshold + 1);
+
+		Set<JpaPid> pids = new LinkedHashSet<>();
+		SearchRuntimeDetails searchRuntimeDetails =
+				new SearchRuntimeDetails(theRequest, UUID.randomUUID().toString());
+		try (IResultIterator<JpaPid> iter =
+				builder.createQuery(map, searchRuntimeDetails, theRequest, theRequestPartitionId)) {
+			while (iter.hasNext()) {
+				pids.add(iter.next());
+				if (pids.size() > theThreshold) {
+					ourLog.debug(
+							"More than {} resources match {}?{}, not materializing",
+							theThreshold,
+							theResourceType,
+							theParamName);
+					return null;
+				}
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException(Msg.code(2667) + e.getMessage(), e);
+		}
+
+		ourLog.debug("Materialized {} resource(s) matching {}?{}", pids.size(), theResourceType, theParamName);
+		return List.copyOf(pids);
+	}
+
+	private String toKey(
+			RequestPartitionId theRequestPartitionId,
+			String theResourceType,
+			String theParamName,
+			List<? extends IQueryParameterType> theOrValues) {
+		StringBuilder b = new StringBuilder();
+		b.append(theRequestPartitionId).append(' ');
+		b.append(theResourceType).append('?').append(theParamName);
+		for (IQueryParameterType next : theOrValues) {
+			b.append(' ').append(next.getClass().getSimpleName());
+			b.append(StringUtils.defaultString(next.getQueryParameterQualifier()));
+			b.append('=').append(next.getValueAsQueryToken(myFhirContext));
+		}
+		return b.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Optional<List<JpaPid>>> getResolvedForRequest(@Nullable RequestDetails theRequest) {
+		if (theRequest == null || isTransactionOrBatch(theRequest)) {
+			return new HashMap<>();
+		}
+		return (Map<String, Optional<List<JpaPid>>>)
+				theRequest.getUserData().computeIfAbsent(USER_DATA_KEY, t -> new HashMap<>());
+	}
+
+	private static boolean isTransactionOrBatch(RequestDetails theRequest) {
+		RestOperationTypeEnum operationType = theRequest.getRestOperationType();
+		return theRequest.isSubRequest()
+				|| operationType == RestOperationTypeEnum.TRANSACTION
+				|| operationType == RestOperationTypeEnum.BATCH;
+	}
+}
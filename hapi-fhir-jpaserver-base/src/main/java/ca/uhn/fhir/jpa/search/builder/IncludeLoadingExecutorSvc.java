@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.LazyThreadPool;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Runs independent include/revinclude queries concurrently on a bounded, shared pool.
+ * See {@link JpaStorageSettings#setIncludeLoadingThreadCount(int)}.
+ */
+public class IncludeLoadingExecutorSvc {
+
+	private final JpaStorageSettings myStorageSettings;
+	private final IHapiTransactionService myTxService;
+	private final LazyThreadPool myExecutor;
+
+	/**
+	 * Constructor
+	 */
+	public IncludeLoadingExecutorSvc(JpaStorageSettings theStorageSettings, IHapiTransactionService theTxService) {
+		myStorageSettings = theStorageSettings;
+		myTxService = theTxService;
+		myExecutor = new LazyThreadPool(() -> ThreadPoolUtil.newRequestWorkerThreadPool(
+				myStorageSettings.getIncludeLoadingThreadCount(),
+				"search-include-loading-",
+				new ThreadPoolExecutor.CallerRunsPolicy()));
+	}
+
+	public boolean isEnabled() {
+		return myStorageSettings.getIncludeLoadingThreadCount() > 1;
+	}
+
+	/**
+	 * Executes the given tasks and returns their results, in the same order as the tasks.
+	 * All but the last task are submitted to the pool, where each runs in its own read-only
+	 * transaction. The last task runs on the calling thread, in the caller's transaction.
+	 * <p>
+	 * If the caller is inside a read-write transaction, all tasks run on the calling thread.
+	 * That transaction may hold writes which are not yet committed (e.g. a search made right
+	 * after a create in the same transaction), and a pool thread's own transaction would not
+	 * see them.
+	 * </p>
+	 */
+	public <T> List<T> executeAll(
+			RequestDetails theRequestDetails,
+			@Nullable RequestPartitionId theRequestPartitionId,
+			List<Callable<T>> theTasks) {
+		ThreadPoolTaskExecutor executor = HapiTransactionService.isReadWriteTransactionActive() ? null : getExecutor();
+		List<T> retVal = new ArrayList<>(theTasks.size());
+		if (executor == null || theTasks.size() < 2) {
+			for (Callable<T> next : theTasks) {
+				retVal.add(call(next));
+			}
+			return retVal;
+		}
+
+		List<Future<T>> futures = new ArrayList<>(theTasks.size() - 1);
+		for (int i = 0; i < theTasks.size() - 1; i++) {
+			Callable<T> task = theTasks.get(i);
+			futures.add(executor.submit(() -> myTxService
+					.withRequest(theRequestDetails)
+					.withRequestPartitionId(theRequestPartitionId)
+					.readOnly()
+					.execute(task)));
+		}
+		T last = call(theTasks.get(theTasks.size() - 1));
+		for (Future<T> next : futures) {
+			retVal.add(await(next));
+		}
+		retVal.add(last);
+		return retVal;
+	}
+
+	@Nullable
+	private ThreadPoolTaskExecutor getExecutor() {
+		return isEnabled() ? myExecutor.get() : null;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		myExecutor.shutdown();
+	}
+
+	private static <T> T call(Callable<T> theTask) {
+		try {
+			return theTask.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new InternalErrorException(Msg.code(2662) + "Failed to load includes: " + e, e);
+		}
+	}
+
+	private static <T> T await(Future<T> theFuture) {
+		try {
+			return theFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2663) + "Interrupted while loading includes", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2664) + "Failed to load includes: " + e.getCause(), e);
+		}
+	}
+}
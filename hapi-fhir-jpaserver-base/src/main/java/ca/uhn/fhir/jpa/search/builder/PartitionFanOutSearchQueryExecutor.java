@@ -0,0 +1,310 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryExecutor;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Combines the results of one query per partition into a single stream of results. If the
+ * search is sorted, the results (each of which is already sorted by the database) are merged
+ * by comparing the sort values selected alongside each resource ID, otherwise the results of
+ * each partition are returned in turn.
+ *
+ * @see PartitionFanOutSearchSvc
+ * @since 8.4.0
+ */
+public class PartitionFanOutSearchQueryExecutor implements ISearchQueryExecutor {
+
+	/**
+	 * The number of results which a pool thread may fetch before they are consumed
+	 */
+	static final int BUFFER_SIZE = 1000;
+
+	private final List<Supplier<IPartitionResults>> myResultSuppliers;
+	private final Comparator<Object[]> mySortValueComparator;
+	private List<IPartitionResults> myResults;
+	private PriorityQueue<Head> myMergeQueue;
+	private int myCurrentIndex;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theResultSuppliers     Creates (and starts) the results for each partition
+	 * @param theSortValueComparator Compares sort values, or <code>null</code> if the results are unsorted
+	 */
+	PartitionFanOutSearchQueryExecutor(
+			List<Supplier<IPartitionResults>> theResultSuppliers,
+			@Nullable Comparator<Object[]> theSortValueComparator) {
+		myResultSuppliers = theResultSuppliers;
+		mySortValueComparator = theSortValueComparator;
+	}
+
+	private void start() {
+		if (myResults != null) {
+			return;
+		}
+
+		myResults = new ArrayList<>(myResultSuppliers.size());
+		for (Supplier<IPartitionResults> next : myResultSuppliers) {
+			myResults.add(next.get());
+		}
+
+		if (mySortValueComparator != null) {
+			myMergeQueue = new PriorityQueue<>(Math.max(1, myResults.size()), this::compareHeads);
+			for (int i = 0; i < myResults.size(); i++) {
+				advance(i);
+			}
+		}
+	}
+
+	private int compareHeads(Head theLeft, Head theRight) {
+		int retVal = mySortValueComparator.compare(theLeft.mySortValues, theRight.mySortValues);
+		if (retVal == 0) {
+			retVal = Integer.compare(theLeft.myIndex, theRight.myIndex);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Adds the next result from the given partition (if any) to the merge queue
+	 */
+	private void advance(int theIndex) {
+		IPartitionResults results = myResults.get(theIndex);
+		if (results.hasNext()) {
+			JpaPid pid = results.next();
+			myMergeQueue.add(new Head(theIndex, pid, results.getSortValues()));
+		} else {
+			results.close();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		start();
+		if (myMergeQueue != null) {
+			return !myMergeQueue.isEmpty();
+		}
+		while (myCurrentIndex < myResults.size()) {
+			if (myResults.get(myCurrentIndex).hasNext()) {
+				return true;
+			}
+			myResults.get(myCurrentIndex).close();
+			myCurrentIndex++;
+		}
+		return false;
+	}
+
+	@Override
+	public JpaPid next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		if (myMergeQueue != null) {
+			Head head = myMergeQueue.poll();
+			advance(head.myIndex);
+			return head.myPid;
+		}
+		return myResults.get(myCurrentIndex).next();
+	}
+
+	@Override
+	public void close() {
+		if (myResults != null) {
+			myResults.forEach(IPartitionResults::close);
+		}
+	}
+
+	private static class Head {
+
+		private final int myIndex;
+		private final JpaPid myPid;
+		private final Object[] mySortValues;
+
+		private Head(int theIndex, JpaPid thePid, Object[] theSortValues) {
+			myIndex = theIndex;
+			myPid = thePid;
+			mySortValues = theSortValues;
+		}
+	}
+
+	/**
+	 * The results of the query for a single partition
+	 */
+	interface IPartitionResults {
+
+		boolean hasNext();
+
+		JpaPid next();
+
+		/**
+		 * Returns the sort values for the result most recently returned by {@link #next()}
+		 */
+		Object[] getSortValues();
+
+		void close();
+	}
+
+	/**
+	 * Reads results directly from the query, on the calling thread
+	 */
+	static class DirectPartitionResults implements IPartitionResults {
+
+		private final SearchQueryExecutor myExecutor;
+
+		DirectPartitionResults(SearchQueryExecutor theExecutor) {
+			myExecutor = theExecutor;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return myExecutor.hasNext();
+		}
+
+		@Override
+		public JpaPid next() {
+			return myExecutor.next();
+		}
+
+		@Override
+		public Object[] getSortValues() {
+			return myExecutor.getSortValues();
+		}
+
+		@Override
+		public void close() {
+			myExecutor.close();
+		}
+	}
+
+	/**
+	 * Reads results which are fetched by a pool thread into a bounded buffer
+	 */
+	static class QueuedPartitionResults implements IPartitionResults {
+
+		private static final Object END = new Object();
+
+		private final BlockingQueue<Object> myQueue = new ArrayBlockingQueue<>(BUFFER_SIZE);
+		private volatile boolean myClosed;
+		private Object myNext;
+		private Row myCurrent;
+
+		/**
+		 * Called on the pool thread to run the query and buffer its results
+		 */
+		void produce(Runnable theQuery) {
+			try {
+				theQuery.run();
+				put(END);
+			} catch (Throwable t) {
+				put(t);
+			}
+		}
+
+		/**
+		 * Called on the pool thread, within a transaction, to buffer the results of the query
+		 */
+		void consume(SearchQueryExecutor theExecutor) {
+			try {
+				while (!myClosed && theExecutor.hasNext()) {
+					JpaPid pid = theExecutor.next();
+					put(new Row(pid, theExecutor.getSortValues()));
+				}
+			} finally {
+				theExecutor.close();
+			}
+		}
+
+		private void put(Object theValue) {
+			try {
+				while (!myClosed) {
+					if (myQueue.offer(theValue, 1, TimeUnit.SECONDS)) {
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (myNext == null) {
+				try {
+					myNext = myQueue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InternalErrorException(Msg.code(2665) + "Interrupted while waiting for search results");
+				}
+			}
+			if (myNext instanceof RuntimeException) {
+				throw (RuntimeException) myNext;
+			} else if (myNext instanceof Throwable) {
+				Throwable cause = (Throwable) myNext;
+				throw new InternalErrorException(Msg.code(2666) + "Failed to query partition: " + cause, cause);
+			}
+			return myNext != END;
+		}
+
+		@Override
+		public JpaPid next() {
+			Validate.isTrue(hasNext(), "No more results");
+			myCurrent = (Row) myNext;
+			myNext = null;
+			return myCurrent.myPid;
+		}
+
+		@Override
+		public Object[] getSortValues() {
+			return myCurrent.mySortValues;
+		}
+
+		@Override
+		public void close() {
+			myClosed = true;
+			myQueue.clear();
+		}
+	}
+
+	private static class Row {
+
+		private final JpaPid myPid;
+		private final Object[] mySortValues;
+
+		private Row(JpaPid thePid, Object[] theSortValues) {
+			myPid = thePid;
+			mySortValues = theSortValues;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryExecutor;
+import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.util.LazyThreadPool;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+/**
+ * Executes a search which spans several partitions as one query per partition, running the
+ * queries concurrently on a bounded, shared pool and merging their results.
+ * See {@link JpaStorageSettings#setSearchPartitionFanOutThreadCount(int)}.
+ *
+ * @since 8.4.0
+ */
+public class PartitionFanOutSearchSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(PartitionFanOutSearchSvc.class);
+
+	private final JpaStorageSettings myStorageSettings;
+	private final IHapiTransactionService myTxService;
+	private final SqlObjectFactory mySqlBuilderFactory;
+	private final LazyThreadPool myExecutor;
+
+	/**
+	 * Constructor
+	 */
+	public PartitionFanOutSearchSvc(
+			JpaStorageSettings theStorageSettings,
+			IHapiTransactionService theTxService,
+			SqlObjectFactory theSqlBuilderFactory) {
+		myStorageSettings = theStorageSettings;
+		myTxService = theTxService;
+		mySqlBuilderFactory = theSqlBuilderFactory;
+		myExecutor = new LazyThreadPool(() -> ThreadPoolUtil.newRequestWorkerThreadPool(
+				myStorageSettings.getSearchPartitionFanOutThreadCount(),
+				"search-partition-fan-out-",
+				new ThreadPoolExecutor.AbortPolicy()));
+	}
+
+	public boolean isEnabled() {
+		return myStorageSettings.getSearchPartitionFanOutThreadCount() > 1;
+	}
+
+	/**
+	 * Creates an executor which returns the combined results of the given per-partition queries.
+	 * No query is executed until results are first requested from the executor. At that point, the
+	 * query for the first partition runs on the calling thread, in the caller's transaction, and the
+	 * remaining queries are submitted to the pool, where each runs in its own read-only transaction
+	 * and buffers its results until the caller consumes them.
+	 *
+	 * @param theQueries              One query per partition
+	 * @param theMaxResultsToFetch    The maximum number of results to fetch from each query
+	 * @param theFirstSortValueColumn The index of the first sort value in each result row, if the
+	 *                                results are sorted
+	 * @param theSortValueCount       The number of sort values in each result row
+	 * @param theSortValueComparator  Compares the sort values of two result rows, or <code>null</code>
+	 *                                if the results are not sorted (in which case the results of each
+	 *                                partition are returned in turn)
+	 */
+	public ISearchQueryExecutor newExecutor(
+			RequestDetails theRequestDetails,
+			List<PartitionQuery> theQueries,
+			@Nullable Integer theMaxResultsToFetch,
+			int theFirstSortValueColumn,
+			int theSortValueCount,
+			@Nullable Comparator<Object[]> theSortValueComparator) {
+		List<Supplier<PartitionFanOutSearchQueryExecutor.IPartitionResults>> results =
+				new ArrayList<>(theQueries.size());
+		for (int i = 0; i < theQueries.size(); i++) {
+			PartitionQuery query = theQueries.get(i);
+			boolean runOnCallingThread = i == 0;
+			results.add(() -> {
+				SearchQueryExecutor executor =
+						mySqlBuilderFactory.newSearchQueryExecutor(query.getGeneratedSql(), theMaxResultsToFetch);
+				if (theSortValueCount > 0) {
+					executor.setSortValueColumns(theFirstSortValueColumn, theSortValueCount);
+				}
+				if (!runOnCallingThread) {
+					PartitionFanOutSearchQueryExecutor.QueuedPartitionResults queued =
+							submit(theRequestDetails, query, executor);
+					if (queued != null) {
+						return queued;
+					}
+				}
+				return new PartitionFanOutSearchQueryExecutor.DirectPartitionResults(executor);
+			});
+		}
+		return new PartitionFanOutSearchQueryExecutor(results, theSortValueComparator);
+	}
+
+	/**
+	 * Submits the query to the pool, or returns <code>null</code> if every pool thread is busy or
+	 * if the results are being read inside a read-write transaction (whose uncommitted writes the
+	 * pool thread's transaction would not see)
+	 */
+	@Nullable
+	private PartitionFanOutSearchQueryExecutor.QueuedPartitionResults submit(
+			RequestDetails theRequestDetails, PartitionQuery theQuery, SearchQueryExecutor theExecutor) {
+		ThreadPoolTaskExecutor pool = getExecutor();
+		if (pool == null || HapiTransactionService.isReadWriteTransactionActive()) {
+			return null;
+		}
+
+		PartitionFanOutSearchQueryExecutor.QueuedPartitionResults retVal =
+				new PartitionFanOutSearchQueryExecutor.QueuedPartitionResults();
+		try {
+			pool.execute(() -> retVal.produce(() -> myTxService
+					.withRequest(theRequestDetails)
+					.withRequestPartitionId(theQuery.getRequestPartitionId())
+					.readOnly()
+					.execute(() -> retVal.consume(theExecutor))));
+		} catch (TaskRejectedException e) {
+			ourLog.debug("No thread available for partition {}, querying it on the calling thread", theQuery);
+			return null;
+		}
+		return retVal;
+	}
+
+	@Nullable
+	private ThreadPoolTaskExecutor getExecutor() {
+		return isEnabled() ? myExecutor.get() : null;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		myExecutor.shutdown();
+	}
+
+	/**
+	 * The query for a single partition of a search
+	 */
+	public static class PartitionQuery {
+
+		private final RequestPartitionId myRequestPartitionId;
+		private final GeneratedSql myGeneratedSql;
+
+		public PartitionQuery(RequestPartitionId theRequestPartitionId, GeneratedSql theGeneratedSql) {
+			myRequestPartitionId = theRequestPartitionId;
+			myGeneratedSql = theGeneratedSql;
+		}
+
+		public RequestPartitionId getRequestPartitionId() {
+			return myRequestPartitionId;
+		}
+
+		public GeneratedSql getGeneratedSql() {
+			return myGeneratedSql;
+		}
+
+		@Override
+		public String toString() {
+			return myRequestPartitionId.toString();
+		}
+	}
+}
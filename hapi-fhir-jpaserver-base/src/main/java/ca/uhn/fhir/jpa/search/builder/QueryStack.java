@@ -299,7 +299,7 @@ public class QueryStack {
 	/** Sort on RES_ID -- used to break ties for reliable sort */
 	public void addSortOnResourcePID(boolean theAscending) {
 		BaseJoiningPredicateBuilder predicateBuilder = mySqlBuilder.getOrCreateFirstPredicateBuilder();
-		mySqlBuilder.addSortString(predicateBuilder.getResourceIdColumn(), theAscending);
+		mySqlBuilder.addSortResourcePid(predicateBuilder.getResourceIdColumn(), theAscending);
 	}
 
 	public void addSortOnResourceLink(
@@ -1230,13 +1230,24 @@ public class QueryStack {
 			Condition pathPredicate = toEqualToOrInPredicate(
 					resourceLinkTableJoin.getColumnSourcePath(), mySqlBuilder.generatePlaceholders(paths));
 
-			Condition linkedPredicate =
-					searchForIdsWithAndOr(with().setSourceJoinColumn(resourceLinkTableJoin.getJoinColumnsForSource())
-							.setResourceName(targetResourceType)
-							.setParamName(parameterName)
-							.setAndOrParams(Collections.singletonList(orValues))
-							.setRequest(theRequest)
-							.setRequestPartitionId(theRequestPartitionId));
+			// Resolve the linking resources up front if there are few enough of them
+			List<Long> sourcePids = resourceLinkTableJoin.materializeLinkedResources(
+					theRequest, theRequestPartitionId, targetResourceType, parameterName, orValues);
+			Condition linkedPredicate;
+			if (sourcePids == null) {
+				linkedPredicate = searchForIdsWithAndOr(
+						with().setSourceJoinColumn(resourceLinkTableJoin.getJoinColumnsForSource())
+								.setResourceName(targetResourceType)
+								.setParamName(parameterName)
+								.setAndOrParams(Collections.singletonList(orValues))
+								.setRequest(theRequest)
+								.setRequestPartitionId(theRequestPartitionId));
+			} else if (sourcePids.isEmpty()) {
+				mySqlBuilder.setMatchNothing();
+				linkedPredicate = null;
+			} else {
+				linkedPredicate = resourceLinkTableJoin.createPredicateLinkedResourceIds(sourcePids);
+			}
 
 			if (myPartitionSettings.isDatabasePartitionMode()) {
 				andPredicates.add(toAndPredicate(pathPredicate, typePredicate, linkedPredicate));
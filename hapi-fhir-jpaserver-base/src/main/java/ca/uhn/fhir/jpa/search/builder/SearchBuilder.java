@@ -46,6 +46,7 @@ import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTagDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.search.ResourceNotFoundInIndexException;
+import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.cross.IResourceLookup;
@@ -67,8 +68,10 @@ import ca.uhn.fhir.jpa.search.builder.models.SearchQueryProperties;
 import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryExecutor;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryTemplateCache;
 import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.search.lastn.IElasticsearchSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchKeyset;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.searchparam.util.Dstu3DistanceHelper;
 import ca.uhn.fhir.jpa.searchparam.util.JpaParamUtil;
@@ -93,17 +96,23 @@ import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.BaseParamWithPrefix;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.ParamPrefixEnum;
 import ca.uhn.fhir.rest.param.ParameterUtil;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import ca.uhn.fhir.rest.param.UriParam;
+import ca.uhn.fhir.rest.param.UriParamQualifierEnum;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import ca.uhn.fhir.system.HapiSystemProperties;
+import ca.uhn.fhir.util.FhirVersionIndependentConcept;
+import ca.uhn.fhir.util.IoUtil;
 import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.util.StringUtil;
 import ca.uhn.fhir.util.UrlUtil;
@@ -126,6 +135,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.dialect.PostgreSQLDialect;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
@@ -139,14 +149,20 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.model.util.JpaConstants.UNDESIRED_RESOURCE_LINKAGES_FOR_EVERYTHING_ON_PATIENT_INSTANCE;
@@ -179,6 +195,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	public static final String PARTITION_ID_ALIAS = "partition_id";
 	public static final String RESOURCE_VERSION_ALIAS = "resource_version";
 	private static final Logger ourLog = LoggerFactory.getLogger(SearchBuilder.class);
+	private static final Pattern QUERY_PLAN_ROWS_PATTERN = Pattern.compile("rows=([0-9]+)");
 	private static final JpaPid NO_MORE = JpaPid.fromId(-1L);
 	private static final String MY_SOURCE_RESOURCE_PID = "mySourceResourcePid";
 	private static final String MY_SOURCE_RESOURCE_PARTITION_ID = "myPartitionIdValue";
@@ -188,6 +205,14 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	private static final String MY_TARGET_RESOURCE_TYPE = "myTargetResourceType";
 	private static final String MY_TARGET_RESOURCE_VERSION = "myTargetResourceVersion";
 	public static final JpaPid[] EMPTY_JPA_PID_ARRAY = new JpaPid[0];
+	private static final Set<RestSearchParameterTypeEnum> SQL_TEMPLATE_CACHEABLE_PARAM_TYPES = EnumSet.of(
+			RestSearchParameterTypeEnum.STRING,
+			RestSearchParameterTypeEnum.TOKEN,
+			RestSearchParameterTypeEnum.DATE,
+			RestSearchParameterTypeEnum.NUMBER,
+			RestSearchParameterTypeEnum.URI);
+	private static final Set<TokenParamModifier> SQL_TEMPLATE_UNCACHEABLE_TOKEN_MODIFIERS = EnumSet.of(
+			TokenParamModifier.IN, TokenParamModifier.NOT_IN, TokenParamModifier.ABOVE, TokenParamModifier.BELOW);
 	public static boolean myUseMaxPageSize50ForTest = false;
 	public static Integer myMaxPageSizeForTests = null;
 	protected final IInterceptorBroadcaster myInterceptorBroadcaster;
@@ -241,6 +266,12 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	@Autowired
 	private IRequestPartitionHelperSvc myPartitionHelperSvc;
 
+	@Autowired(required = false)
+	private IncludeLoadingExecutorSvc myIncludeLoadingExecutorSvc;
+
+	@Autowired(required = false)
+	private PartitionFanOutSearchSvc myPartitionFanOutSearchSvc;
+
 	/**
 	 * Constructor
 	 */
@@ -397,6 +428,117 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	@Nullable
+	@Override
+	public Long createEstimatedCountQuery(
+			SearchParameterMap theParams,
+			String theSearchUuid,
+			RequestDetails theRequest,
+			@Nonnull RequestPartitionId theRequestPartitionId,
+			int theExactCountThreshold) {
+
+		assert theRequestPartitionId != null;
+		assert TransactionSynchronizationManager.isActualTransactionActive();
+
+		/*
+		 * Only PostgreSQL gives us a planner estimate. Everywhere else, counting
+		 * would cost as much as an accurate total, so we don't count at all.
+		 */
+		if (!isQueryPlannerEstimateSupported()) {
+			return null;
+		}
+
+		init(theParams, theSearchUuid, theRequestPartitionId);
+
+		if (checkUseHibernateSearch()) {
+			return null;
+		}
+
+		/*
+		 * Small result sets are counted exactly by fetching at most one more
+		 * PID than the threshold, which is cheap since the query can stop as
+		 * soon as it has found that many rows.
+		 */
+		SearchQueryProperties properties = mySearchProperties.clone();
+		properties.setSortSpec(null);
+		properties.setOffset(null);
+		properties.setDeduplicateInDatabase(true);
+		properties.setMaxResultsRequested(theExactCountThreshold + 1);
+		long count = 0;
+		List<ISearchQueryExecutor> queries = createQuery(theParams.clone(), properties, theRequest, null);
+		try {
+			for (ISearchQueryExecutor next : queries) {
+				while (count <= theExactCountThreshold && next.hasNext()) {
+					next.next();
+					count++;
+				}
+			}
+		} finally {
+			queries.forEach(IoUtil::closeQuietly);
+		}
+		if (count <= theExactCountThreshold) {
+			return count;
+		}
+
+		Long estimate = estimateRowCountUsingQueryPlanner(theParams, theRequest);
+		if (estimate != null) {
+			return Math.max(estimate, theExactCountThreshold + 1L);
+		}
+		return null;
+	}
+
+	private boolean isQueryPlannerEstimateSupported() {
+		return myDialectProvider.getDialect() instanceof PostgreSQLDialect;
+	}
+
+	/**
+	 * Asks the database query planner how many rows the search query is expected to return,
+	 * without executing it. This is only supported on PostgreSQL, where the estimate comes from
+	 * the table statistics maintained by <code>ANALYZE</code>.
+	 *
+	 * @return The estimated row count, or <code>null</code> if no estimate is available
+	 */
+	@Nullable
+	private Long estimateRowCountUsingQueryPlanner(SearchParameterMap theParams, RequestDetails theRequest) {
+		SearchQueryProperties properties = mySearchProperties.clone();
+		properties.setSortSpec(null);
+		properties.setOffset(null);
+		properties.setDeduplicateInDatabase(true);
+		properties.setMaxResultsRequested(null);
+		List<ISearchQueryExecutor> queries = createQuery(theParams.clone(), properties, theRequest, null);
+		try {
+			if (queries.size() != 1 || !(queries.get(0) instanceof SearchQueryExecutor)) {
+				return null;
+			}
+			GeneratedSql generatedSql = ((SearchQueryExecutor) queries.get(0)).getGeneratedSql();
+			if (generatedSql == null) {
+				return null;
+			}
+
+			Query explainQuery = myEntityManager.createNativeQuery("EXPLAIN " + generatedSql.getSql());
+			List<Object> bindVariables = generatedSql.getBindVariables();
+			for (int i = 0; i < bindVariables.size(); i++) {
+				explainQuery.setParameter(i + 1, bindVariables.get(i));
+			}
+			List<?> plan = explainQuery.getResultList();
+			if (plan.isEmpty()) {
+				return null;
+			}
+
+			// The first line of the plan describes the top level node, e.g.
+			// "HashAggregate  (cost=1234.56..1284.56 rows=5000 width=8)"
+			Matcher matcher = QUERY_PLAN_ROWS_PATTERN.matcher(String.valueOf(plan.get(0)));
+			if (!matcher.find()) {
+				return null;
+			}
+			long estimate = Long.parseLong(matcher.group(1));
+			ourLog.debug("Query planner estimates {} rows for search: {}", estimate, generatedSql.getSql());
+			return estimate;
+		} finally {
+			queries.forEach(IoUtil::closeQuietly);
+		}
+	}
+
 	/**
 	 * @param thePidSet May be null
 	 */
@@ -748,6 +890,13 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			}
 		}
 
+		// This has to be built before the parameters are consumed by the search below
+		List<Object> sqlTemplateKey = null;
+		SearchQueryTemplateCache templateCache = mySqlBuilderFactory.getSearchQueryTemplateCache();
+		if (templateCache != null && templateCache.isEnabled() && thePidList == null && !myHasNextIteratorQuery) {
+			sqlTemplateKey = buildSqlTemplateKey(myParams, theSearchProperties);
+		}
+
 		// Normal search
 		searchForIdsWithAndOr(sqlBuilder, queryStack3, myParams, theRequest);
 
@@ -811,12 +960,241 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			assert !theSearchProperties.isDoCountOnlyFlag();
 
 			createSort(queryStack3, theSearchProperties.getSortSpec(), theParams);
+
+			/*
+			 * Keyset paging: start immediately after the last resource of the previous page
+			 */
+			SearchKeyset keyset = theParams.getKeyset();
+			if (keyset != null && !keyset.isFirstPage()) {
+				sqlBuilder.addKeysetPredicate(keyset.getSortValues());
+			}
 		}
 
 		/*
 		 * Now perform the search
 		 */
-		executeSearch(theSearchProperties, theSearchQueryExecutors, sqlBuilder);
+		List<Integer> fanOutPartitionIds =
+				determineFanOutPartitionIds(theSearchProperties, theRequest, thePidList, sqlBuilder);
+		if (sqlTemplateKey != null) {
+			sqlTemplateKey.add(fanOutPartitionIds != null);
+			sqlBuilder.setSqlTemplateKey(sqlTemplateKey);
+		}
+		if (fanOutPartitionIds != null) {
+			executePartitionFanOutSearch(
+					theSearchProperties, theRequest, theSearchQueryExecutors, sqlBuilder, fanOutPartitionIds);
+		} else {
+			executeSearch(theSearchProperties, theSearchQueryExecutors, sqlBuilder);
+		}
+	}
+
+	/**
+	 * Builds a key which identifies every input that determines the structure of the SQL
+	 * generated for a search, so that the {@link SearchQueryTemplateCache} can reuse the
+	 * statement generated by an earlier search with the same structure, binding this search's
+	 * own values into it. The key holds the parameter names and the number of AND and OR values
+	 * of each, along with the parts of each value which change the predicate it produces
+	 * (modifiers, prefixes, date precision and which parts of a token are present), but not the
+	 * values themselves. Returns <code>null</code> if the search uses a parameter whose predicate
+	 * depends on data looked up while the SQL is built (e.g. resource IDs resolved to PIDs, or
+	 * value set expansions), since such a statement can't safely be reused.
+	 */
+	@Nullable
+	private List<Object> buildSqlTemplateKey(SearchParameterMap theParams, SearchQueryProperties theSearchProperties) {
+		List<Object> retVal = new ArrayList<>();
+		retVal.add(myResourceName);
+		retVal.add(myRequestPartitionId);
+		retVal.add(theSearchProperties.isDoCountOnlyFlag());
+		retVal.add(theSearchProperties.isDeduplicateInDatabase());
+
+		for (Map.Entry<String, List<List<IQueryParameterType>>> nextEntry : theParams.entrySet()) {
+			String paramName = nextEntry.getKey();
+			// Built-in parameters such as _id, _tag and _source have their own predicate builders
+			if (paramName.startsWith("_")) {
+				return null;
+			}
+			RuntimeSearchParam param = mySearchParamRegistry.getActiveSearchParam(
+					myResourceName, paramName, ISearchParamRegistry.SearchParamLookupContextEnum.SEARCH);
+			if (param == null || !SQL_TEMPLATE_CACHEABLE_PARAM_TYPES.contains(param.getParamType())) {
+				return null;
+			}
+			retVal.add(param);
+
+			List<List<Object>> shapes = new ArrayList<>(nextEntry.getValue().size());
+			for (List<IQueryParameterType> nextAnd : nextEntry.getValue()) {
+				List<Object> orShapes = new ArrayList<>(nextAnd.size() * 4 + 1);
+				for (IQueryParameterType nextOr : nextAnd) {
+					if (!addSqlTemplateShape(orShapes, nextOr)) {
+						return null;
+					}
+				}
+				orShapes.add(getTokenSqlTemplateShape(nextAnd));
+				shapes.add(orShapes);
+			}
+			retVal.add(shapes);
+		}
+
+		retVal.add(mySearchParamRegistry.getActiveComboSearchParams(
+				myResourceName, theParams.keySet(), ISearchParamRegistry.SearchParamLookupContextEnum.SEARCH));
+
+		for (SortSpec sort = theSearchProperties.getSortSpec(); sort != null; sort = sort.getChain()) {
+			retVal.add(sort.getParamName());
+			retVal.add(sort.getOrder());
+		}
+		DateRangeParam lastUpdated = theParams.getLastUpdated();
+		if (lastUpdated != null) {
+			retVal.add(getDateSqlTemplateShape(lastUpdated.getLowerBound()));
+			retVal.add(getDateSqlTemplateShape(lastUpdated.getUpperBound()));
+		}
+		retVal.add(theParams.getSearchContainedMode());
+		retVal.add(theParams.getNearDistanceParam() != null);
+		retVal.add(theParams.getKeyset() != null && !theParams.getKeyset().isFirstPage());
+		return retVal;
+	}
+
+	/**
+	 * Adds the parts of a single parameter value which determine the structure of its predicate
+	 * to the given template key. Returns <code>false</code> if the predicate can't be cached at all.
+	 */
+	private static boolean addSqlTemplateShape(List<Object> theShapes, IQueryParameterType theParam) {
+		theShapes.add(theParam.getClass());
+		theShapes.add(theParam.getQueryParameterQualifier());
+		theShapes.add(theParam.getMissing());
+		if (theParam instanceof TokenParam) {
+			TokenParamModifier modifier = ((TokenParam) theParam).getModifier();
+			if (modifier != null && SQL_TEMPLATE_UNCACHEABLE_TOKEN_MODIFIERS.contains(modifier)) {
+				return false;
+			}
+		} else if (theParam instanceof UriParam) {
+			if (((UriParam) theParam).getQualifier() == UriParamQualifierEnum.ABOVE) {
+				return false;
+			}
+			theShapes.add(((UriParam) theParam).getValue() == null);
+		} else if (theParam instanceof DateParam) {
+			theShapes.add(getDateSqlTemplateShape((DateParam) theParam));
+		} else if (theParam instanceof NumberParam) {
+			theShapes.add(((NumberParam) theParam).getPrefix());
+			theShapes.add(((NumberParam) theParam).getValue() == null);
+		} else if (theParam instanceof StringParam) {
+			theShapes.add(isBlank(((StringParam) theParam).getValue()));
+		}
+		return true;
+	}
+
+	@Nullable
+	private static String getDateSqlTemplateShape(@Nullable DateParam theDateParam) {
+		if (theDateParam == null || theDateParam.isEmpty()) {
+			return null;
+		}
+		return theDateParam.getPrefix() + "/" + theDateParam.getPrecision();
+	}
+
+	/**
+	 * The token predicate builder de-duplicates and sorts the OR values of a token parameter, and
+	 * then matches each one against a different hash column depending on whether it has a system,
+	 * a code, or both. Returns the resulting sequence of columns, which determines the structure
+	 * of the predicate.
+	 */
+	private static String getTokenSqlTemplateShape(List<IQueryParameterType> theOrValues) {
+		List<FhirVersionIndependentConcept> concepts = new ArrayList<>(theOrValues.size());
+		for (IQueryParameterType next : theOrValues) {
+			if (next instanceof TokenParam && !((TokenParam) next).isEmpty()) {
+				TokenParam token = (TokenParam) next;
+				concepts.add(new FhirVersionIndependentConcept(token.getSystem(), token.getValue()));
+			}
+		}
+		StringBuilder retVal = new StringBuilder();
+		concepts.stream()
+				.filter(t -> t.getCode() != null || t.getSystem() != null)
+				.sorted()
+				.distinct()
+				.forEach(t -> retVal.append(t.getSystem() == null ? 'V' : isBlank(t.getCode()) ? 'S' : 'B'));
+		return retVal.toString();
+	}
+
+	/**
+	 * If the search should be executed as one query per partition (see
+	 * {@link JpaStorageSettings#setSearchPartitionFanOutThreadCount(int)}), returns
+	 * the partition IDs to query. Otherwise returns <code>null</code>.
+	 */
+	@Nullable
+	private List<Integer> determineFanOutPartitionIds(
+			SearchQueryProperties theSearchProperties,
+			RequestDetails theRequest,
+			@Nullable List<JpaPid> thePidList,
+			SearchQueryBuilder theSqlBuilder) {
+		if (myPartitionFanOutSearchSvc == null
+				|| !myPartitionFanOutSearchSvc.isEnabled()
+				|| !myPartitionSettings.isPartitioningEnabled()
+				|| myRequestPartitionId.isAllPartitions()
+				|| myRequestPartitionId.getPartitionIds() == null
+				|| theSearchProperties.isDoCountOnlyFlag()
+				|| thePidList != null
+				|| (theSearchProperties.getOffset() != null && theSearchProperties.getOffset() > 0)
+				|| !theSqlBuilder.isSortMergeable()) {
+			return null;
+		}
+
+		// The per-partition queries run in their own read-only transactions, which can't see
+		// rows the caller's read-write transaction hasn't committed yet
+		if (HapiTransactionService.isReadWriteTransactionActive()) {
+			return null;
+		}
+
+		// The per-partition queries don't run on the request thread, so they can't be captured
+		IInterceptorBroadcaster compositeBroadcaster =
+				CompositeInterceptorBroadcaster.newCompositeBroadcaster(myInterceptorBroadcaster, theRequest);
+		if (compositeBroadcaster.hasHooks(Pointcut.JPA_PERFTRACE_RAW_SQL)) {
+			return null;
+		}
+
+		Set<Integer> partitionIds = new LinkedHashSet<>();
+		for (Integer next : myRequestPartitionId.getPartitionIds()) {
+			partitionIds.add(next != null ? next : myPartitionSettings.getDefaultPartitionId());
+		}
+		return partitionIds.size() > 1 ? new ArrayList<>(partitionIds) : null;
+	}
+
+	/**
+	 * Executes the search as one query per partition, with the results merged in the requested
+	 * sort order. Each query is identical apart from a predicate restricting the root table of
+	 * the query to a single partition.
+	 */
+	private void executePartitionFanOutSearch(
+			SearchQueryProperties theProperties,
+			RequestDetails theRequest,
+			List<ISearchQueryExecutor> theSearchQueryExecutors,
+			SearchQueryBuilder theSqlBuilder,
+			List<Integer> thePartitionIds) {
+		Comparator<Object[]> sortValueComparator = null;
+		int firstSortValueColumn = -1;
+		int sortValueCount = 0;
+		if (theProperties.hasSort()) {
+			firstSortValueColumn = theSqlBuilder.addSortValueColumns();
+			sortValueCount = theSqlBuilder.countSortColumns();
+			sortValueComparator = theSqlBuilder.newSortValueComparator();
+		}
+		theSqlBuilder.addFanOutPartitionPredicate();
+
+		List<PartitionFanOutSearchSvc.PartitionQuery> queries = new ArrayList<>(thePartitionIds.size());
+		for (Integer nextPartitionId : thePartitionIds) {
+			theSqlBuilder.setFanOutPartitionId(nextPartitionId);
+			GeneratedSql generatedSql =
+					theSqlBuilder.generate(theProperties.getOffset(), theProperties.getMaxResultsRequested());
+			if (generatedSql.isMatchNothing()) {
+				return;
+			}
+			RequestPartitionId partition =
+					RequestPartitionId.fromPartitionId(nextPartitionId, myRequestPartitionId.getPartitionDate());
+			queries.add(new PartitionFanOutSearchSvc.PartitionQuery(partition, generatedSql));
+		}
+
+		theSearchQueryExecutors.add(myPartitionFanOutSearchSvc.newExecutor(
+				theRequest,
+				queries,
+				theProperties.getMaxResultsRequested(),
+				firstSortValueColumn,
+				sortValueCount,
+				sortValueComparator));
 	}
 
 	private void executeSearch(
@@ -1253,13 +1631,20 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		// -- preload all tags with tag definition if any
 		Map<JpaPid, Collection<BaseTag>> tagMap = getResourceTagMap(resourceSearchViewList);
 
-		for (ResourceHistoryTable next : resourceSearchViewList) {
-			if (next.getDeleted() != null) {
-				continue;
-			}
+		List<ResourceHistoryTable> nonDeletedList = resourceSearchViewList;
+		if (nonDeletedList.stream().anyMatch(t -> t.getDeleted() != null)) {
+			nonDeletedList =
+					nonDeletedList.stream().filter(t -> t.getDeleted() == null).collect(Collectors.toList());
+		}
 
-			Class<? extends IBaseResource> resourceType =
-					myContext.getResourceDefinition(next.getResourceType()).getImplementingClass();
+		// -- parse the whole page at once if concurrent parsing is enabled
+		List<IBaseResource> parsedResources = null;
+		if (myStorageSettings.getSearchResultParsingThreadCount() > 1) {
+			parsedResources = myJpaStorageResourceParser.toResources(nonDeletedList, tagMap, theForHistoryOperation);
+		}
+
+		for (int i = 0; i < nonDeletedList.size(); i++) {
+			ResourceHistoryTable next = nonDeletedList.get(i);
 
 			JpaPid resourceId = next.getPersistentId();
 
@@ -1268,9 +1653,15 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				resourceId.setVersion(version);
 			}
 
-			IBaseResource resource = null;
-			resource = myJpaStorageResourceParser.toResource(
-					resourceType, next, tagMap.get(next.getResourceId()), theForHistoryOperation);
+			IBaseResource resource;
+			if (parsedResources != null) {
+				resource = parsedResources.get(i);
+			} else {
+				Class<? extends IBaseResource> resourceType =
+						myContext.getResourceDefinition(next.getResourceType()).getImplementingClass();
+				resource = myJpaStorageResourceParser.toResource(
+						resourceType, next, tagMap.get(next.getResourceId()), theForHistoryOperation);
+			}
 			if (resource == null) {
 				ourLog.warn(
 						"Unable to find resource {}/{}/_history/{} in database",
@@ -1550,6 +1941,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			roundCounts++;
 
 			HashSet<JpaPid> pidsToInclude = new HashSet<>();
+			List<Function<EntityManager, Set<JpaPid>>> includeLoaders = new ArrayList<>();
+			List<JpaPid> roundMatches = List.copyOf(nextRoundMatches);
 
 			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
 				Include nextInclude = iter.next();
@@ -1569,38 +1962,69 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 					}
 				}
 
+				String finalWantResourceType = wantResourceType;
+				String finalFindVersionFieldName = findVersionFieldName;
 				if (matchAll) {
-					loadIncludesMatchAll(
-							findPidFieldName,
-							findPartitionIdFieldName,
-							findResourceTypeFieldName,
-							findVersionFieldName,
-							searchPidFieldName,
-							searchPartitionIdFieldName,
-							wantResourceType,
-							reverseMode,
-							hasDesiredResourceTypes,
-							nextRoundMatches,
-							entityManager,
-							maxCount,
-							desiredResourceTypes,
-							pidsToInclude,
-							request);
+					includeLoaders.add(theEntityManager -> {
+						HashSet<JpaPid> loaded = new HashSet<>();
+						loadIncludesMatchAll(
+								findPidFieldName,
+								findPartitionIdFieldName,
+								findResourceTypeFieldName,
+								finalFindVersionFieldName,
+								searchPidFieldName,
+								searchPartitionIdFieldName,
+								finalWantResourceType,
+								reverseMode,
+								hasDesiredResourceTypes,
+								roundMatches,
+								theEntityManager,
+								maxCount,
+								desiredResourceTypes,
+								loaded,
+								request);
+						return loaded;
+					});
 				} else {
-					loadIncludesMatchSpecific(
-							nextInclude,
-							fhirContext,
-							findPidFieldName,
-							findPartitionIdFieldName,
-							findVersionFieldName,
-							searchPidFieldName,
-							searchPartitionIdFieldName,
-							reverseMode,
-							nextRoundMatches,
-							entityManager,
-							maxCount,
-							pidsToInclude,
-							request);
+					includeLoaders.add(theEntityManager -> {
+						HashSet<JpaPid> loaded = new HashSet<>();
+						loadIncludesMatchSpecific(
+								nextInclude,
+								fhirContext,
+								findPidFieldName,
+								findPartitionIdFieldName,
+								finalFindVersionFieldName,
+								searchPidFieldName,
+								searchPartitionIdFieldName,
+								reverseMode,
+								roundMatches,
+								theEntityManager,
+								maxCount,
+								loaded,
+								request);
+						return loaded;
+					});
+				}
+			}
+
+			/*
+			 * The includes in a round are independent of each other, so they can be loaded
+			 * concurrently. We don't do this if raw SQL is being captured, since the capture
+			 * only sees queries on the current thread.
+			 */
+			if (includeLoaders.size() > 1
+					&& myIncludeLoadingExecutorSvc != null
+					&& myIncludeLoadingExecutorSvc.isEnabled()
+					&& !compositeBroadcaster.hasHooks(Pointcut.JPA_PERFTRACE_RAW_SQL)) {
+				List<Callable<Set<JpaPid>>> tasks = includeLoaders.stream()
+						.map(t -> (Callable<Set<JpaPid>>) () -> t.apply(myEntityManager))
+						.collect(Collectors.toList());
+				myIncludeLoadingExecutorSvc
+						.executeAll(request, myRequestPartitionId, tasks)
+						.forEach(pidsToInclude::addAll);
+			} else {
+				for (Function<EntityManager, Set<JpaPid>> next : includeLoaders) {
+					pidsToInclude.addAll(next.apply(entityManager));
 				}
 			}
 
@@ -1706,129 +2130,135 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		paths = param.getPathsSplitForResourceType(resType);
 		// end replace
+		if (paths.isEmpty()) {
+			return;
+		}
 
 		Set<String> targetResourceTypes = computeTargetResourceTypes(nextInclude, param);
 
-		for (String nextPath : paths) {
-			String findPidFieldSqlColumn =
-					findPidFieldName.equals(MY_SOURCE_RESOURCE_PID) ? "src_resource_id" : "target_resource_id";
-			String fieldsToLoad = "r." + findPidFieldSqlColumn + " AS " + RESOURCE_ID_ALIAS;
-			if (findVersionFieldName != null) {
-				fieldsToLoad += ", r.target_resource_version AS " + RESOURCE_VERSION_ALIAS;
-			}
-			if (myPartitionSettings.isDatabasePartitionMode()) {
-				fieldsToLoad += ", r.";
-				fieldsToLoad += findPartitionFieldName.equals(MY_SOURCE_RESOURCE_PARTITION_ID)
-						? "partition_id"
-						: "target_res_partition_id";
-				fieldsToLoad += " as " + PARTITION_ID_ALIAS;
-			}
-
-			// Query for includes lookup has 2 cases
-			// Case 1: Where target_resource_id is available in hfj_res_link table for local references
-			// Case 2: Where target_resource_id is null in hfj_res_link table and referred by a canonical
-			// url in target_resource_url
-
-			// Case 1:
-			Map<String, Object> localReferenceQueryParams = new HashMap<>();
-
-			String searchPidFieldSqlColumn =
-					searchPidFieldName.equals(MY_TARGET_RESOURCE_PID) ? "target_resource_id" : "src_resource_id";
-			StringBuilder localReferenceQuery = new StringBuilder();
-			localReferenceQuery.append("SELECT ").append(fieldsToLoad);
-			localReferenceQuery.append(" FROM hfj_res_link r ");
-			localReferenceQuery.append("WHERE r.src_path = :src_path");
-			if (!"target_resource_id".equals(searchPidFieldSqlColumn)) {
-				localReferenceQuery.append(" AND r.target_resource_id IS NOT NULL");
-			}
-			localReferenceQuery
-					.append(" AND r.")
-					.append(searchPidFieldSqlColumn)
-					.append(" IN (:target_pids) ");
-			if (myPartitionSettings.isDatabasePartitionMode()) {
-				String partitionFieldToSearch = findPartitionFieldName.equals(MY_SOURCE_RESOURCE_PARTITION_ID)
-						? "target_res_partition_id"
-						: "partition_id";
-				localReferenceQuery
-						.append("AND r.")
-						.append(partitionFieldToSearch)
-						.append(" = :search_partition_id ");
-			}
-			localReferenceQueryParams.put("src_path", nextPath);
-			// we loop over target_pids later.
-			if (targetResourceTypes != null) {
-				if (targetResourceTypes.size() == 1) {
-					localReferenceQuery.append("AND r.target_resource_type = :target_resource_type ");
-					localReferenceQueryParams.put(
-							"target_resource_type",
-							targetResourceTypes.iterator().next());
-				} else {
-					localReferenceQuery.append("AND r.target_resource_type in (:target_resource_types) ");
-					localReferenceQueryParams.put("target_resource_types", targetResourceTypes);
-				}
+		/*
+		 * All of the paths for the parameter are matched by a single query (per chunk of PIDs)
+		 * instead of running a separate query for each path
+		 */
+		String srcPathPredicate;
+		Map<String, Object> srcPathParams = new HashMap<>();
+		if (paths.size() == 1) {
+			srcPathPredicate = "r.src_path = :src_path";
+			srcPathParams.put("src_path", paths.get(0));
+		} else {
+			srcPathPredicate = "r.src_path IN (:src_paths)";
+			srcPathParams.put("src_paths", paths);
+		}
+
+		String findPidFieldSqlColumn =
+				findPidFieldName.equals(MY_SOURCE_RESOURCE_PID) ? "src_resource_id" : "target_resource_id";
+		String fieldsToLoad = "r." + findPidFieldSqlColumn + " AS " + RESOURCE_ID_ALIAS;
+		if (findVersionFieldName != null) {
+			fieldsToLoad += ", r.target_resource_version AS " + RESOURCE_VERSION_ALIAS;
+		}
+		if (myPartitionSettings.isDatabasePartitionMode()) {
+			fieldsToLoad += ", r.";
+			fieldsToLoad += findPartitionFieldName.equals(MY_SOURCE_RESOURCE_PARTITION_ID)
+					? "partition_id"
+					: "target_res_partition_id";
+			fieldsToLoad += " as " + PARTITION_ID_ALIAS;
+		}
+
+		// Query for includes lookup has 2 cases
+		// Case 1: Where target_resource_id is available in hfj_res_link table for local references
+		// Case 2: Where target_resource_id is null in hfj_res_link table and referred by a canonical
+		// url in target_resource_url
+
+		// Case 1:
+		Map<String, Object> localReferenceQueryParams = new HashMap<>();
+
+		String searchPidFieldSqlColumn =
+				searchPidFieldName.equals(MY_TARGET_RESOURCE_PID) ? "target_resource_id" : "src_resource_id";
+		StringBuilder localReferenceQuery = new StringBuilder();
+		localReferenceQuery.append("SELECT ").append(fieldsToLoad);
+		localReferenceQuery.append(" FROM hfj_res_link r ");
+		localReferenceQuery.append("WHERE ").append(srcPathPredicate);
+		if (!"target_resource_id".equals(searchPidFieldSqlColumn)) {
+			localReferenceQuery.append(" AND r.target_resource_id IS NOT NULL");
+		}
+		localReferenceQuery.append(" AND r.").append(searchPidFieldSqlColumn).append(" IN (:target_pids) ");
+		if (myPartitionSettings.isDatabasePartitionMode()) {
+			String partitionFieldToSearch = findPartitionFieldName.equals(MY_SOURCE_RESOURCE_PARTITION_ID)
+					? "target_res_partition_id"
+					: "partition_id";
+			localReferenceQuery.append("AND r.").append(partitionFieldToSearch).append(" = :search_partition_id ");
+		}
+		localReferenceQueryParams.putAll(srcPathParams);
+		// we loop over target_pids later.
+		if (targetResourceTypes != null) {
+			if (targetResourceTypes.size() == 1) {
+				localReferenceQuery.append("AND r.target_resource_type = :target_resource_type ");
+				localReferenceQueryParams.put(
+						"target_resource_type", targetResourceTypes.iterator().next());
+			} else {
+				localReferenceQuery.append("AND r.target_resource_type in (:target_resource_types) ");
+				localReferenceQueryParams.put("target_resource_types", targetResourceTypes);
 			}
+		}
 
-			// Case 2:
-			Pair<String, Map<String, Object>> canonicalQuery =
-					buildCanonicalUrlQuery(findVersionFieldName, targetResourceTypes, reverseMode, theRequest);
+		// Case 2:
+		Pair<String, Map<String, Object>> canonicalQuery = buildCanonicalUrlQuery(
+				findVersionFieldName, targetResourceTypes, reverseMode, theRequest, srcPathPredicate);
 
-			String sql = localReferenceQuery + "UNION " + canonicalQuery.getLeft();
+		String sql = localReferenceQuery + "UNION " + canonicalQuery.getLeft();
 
-			Map<String, Object> limitParams = new HashMap<>();
-			if (maxCount != null) {
-				LinkedList<Object> bindVariables = new LinkedList<>();
-				sql = SearchQueryBuilder.applyLimitToSql(
-						myDialectProvider.getDialect(), null, maxCount, sql, null, bindVariables);
-
-				// The dialect SQL limiter uses positional params, but we're using
-				// named params here, so we need to replace the positional params
-				// with equivalent named ones
-				StringBuilder sb = new StringBuilder();
-				for (int i = 0; i < sql.length(); i++) {
-					char nextChar = sql.charAt(i);
-					if (nextChar == '?') {
-						String nextName = "limit" + i;
-						sb.append(':').append(nextName);
-						limitParams.put(nextName, bindVariables.removeFirst());
-					} else {
-						sb.append(nextChar);
-					}
-				}
-				sql = sb.toString();
-			}
+		Map<String, Object> limitParams = new HashMap<>();
+		if (maxCount != null) {
+			LinkedList<Object> bindVariables = new LinkedList<>();
+			sql = SearchQueryBuilder.applyLimitToSql(
+					myDialectProvider.getDialect(), null, maxCount, sql, null, bindVariables);
 
-			List<Collection<JpaPid>> partitions = partitionBySizeAndPartitionId(nextRoundMatches, getMaximumPageSize());
-			for (Collection<JpaPid> nextPartition : partitions) {
-				Query q = entityManager.createNativeQuery(sql, Tuple.class);
-				q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
-				if (myPartitionSettings.isDatabasePartitionMode()) {
-					q.setParameter(
-							"search_partition_id",
-							nextPartition.iterator().next().getPartitionId());
+			// The dialect SQL limiter uses positional params, but we're using
+			// named params here, so we need to replace the positional params
+			// with equivalent named ones
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < sql.length(); i++) {
+				char nextChar = sql.charAt(i);
+				if (nextChar == '?') {
+					String nextName = "limit" + i;
+					sb.append(':').append(nextName);
+					limitParams.put(nextName, bindVariables.removeFirst());
+				} else {
+					sb.append(nextChar);
 				}
-				localReferenceQueryParams.forEach(q::setParameter);
-				canonicalQuery.getRight().forEach(q::setParameter);
-				limitParams.forEach(q::setParameter);
-
-				@SuppressWarnings("unchecked")
-				List<Tuple> results = q.getResultList();
-				for (Tuple result : results) {
-					if (result != null) {
-						Long resourceId = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_ID_ALIAS)));
-						Long resourceVersion = null;
-						if (findVersionFieldName != null && result.get(RESOURCE_VERSION_ALIAS) != null) {
-							resourceVersion =
-									NumberUtils.createLong(String.valueOf(result.get(RESOURCE_VERSION_ALIAS)));
-						}
-						Integer partitionId = null;
-						if (myPartitionSettings.isDatabasePartitionMode()) {
-							partitionId = result.get(PARTITION_ID_ALIAS, Integer.class);
-						}
+			}
+			sql = sb.toString();
+		}
 
-						JpaPid pid = JpaPid.fromIdAndVersion(resourceId, resourceVersion);
-						pid.setPartitionId(partitionId);
-						pidsToInclude.add(pid);
+		List<Collection<JpaPid>> partitions = partitionBySizeAndPartitionId(nextRoundMatches, getMaximumPageSize());
+		for (Collection<JpaPid> nextPartition : partitions) {
+			Query q = entityManager.createNativeQuery(sql, Tuple.class);
+			q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
+			if (myPartitionSettings.isDatabasePartitionMode()) {
+				q.setParameter(
+						"search_partition_id", nextPartition.iterator().next().getPartitionId());
+			}
+			localReferenceQueryParams.forEach(q::setParameter);
+			canonicalQuery.getRight().forEach(q::setParameter);
+			limitParams.forEach(q::setParameter);
+
+			@SuppressWarnings("unchecked")
+			List<Tuple> results = q.getResultList();
+			for (Tuple result : results) {
+				if (result != null) {
+					Long resourceId = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_ID_ALIAS)));
+					Long resourceVersion = null;
+					if (findVersionFieldName != null && result.get(RESOURCE_VERSION_ALIAS) != null) {
+						resourceVersion = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_VERSION_ALIAS)));
+					}
+					Integer partitionId = null;
+					if (myPartitionSettings.isDatabasePartitionMode()) {
+						partitionId = result.get(PARTITION_ID_ALIAS, Integer.class);
 					}
+
+					JpaPid pid = JpaPid.fromIdAndVersion(resourceId, resourceVersion);
+					pid.setPartitionId(partitionId);
+					pidsToInclude.add(pid);
 				}
 			}
 		}
@@ -2053,7 +2483,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			String theVersionFieldName,
 			Set<String> theTargetResourceTypes,
 			boolean theReverse,
-			RequestDetails theRequest) {
+			RequestDetails theRequest,
+			String theSrcPathPredicate) {
 		String fieldsToLoadFromSpidxUriTable = theReverse ? "r.src_resource_id" : "rUri.res_id";
 		if (theVersionFieldName != null) {
 			// canonical-uri references aren't versioned, but we need to match the column count for the UNION
@@ -2099,7 +2530,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		canonicalUrlQuery.append(" AND r.target_resource_url = rUri.sp_uri");
 		canonicalUrlQuery.append(")");
 
-		canonicalUrlQuery.append(" WHERE r.src_path = :src_path AND");
+		canonicalUrlQuery.append(" WHERE ").append(theSrcPathPredicate).append(" AND");
 		canonicalUrlQuery.append(" r.target_resource_id IS NULL");
 		canonicalUrlQuery.append(" AND");
 		if (myPartitionSettings.isDatabasePartitionMode()) {
@@ -41,6 +41,7 @@ import ca.uhn.fhir.jpa.dao.predicate.SearchFilterParser;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
+import ca.uhn.fhir.jpa.search.builder.ChainTargetMaterializationSvc;
 import ca.uhn.fhir.jpa.search.builder.QueryStack;
 import ca.uhn.fhir.jpa.search.builder.models.MissingQueryParameterPredicateParams;
 import ca.uhn.fhir.jpa.search.builder.sql.ColumnTupleObject;
@@ -132,6 +133,9 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 	@Autowired
 	private MatchUrlService myMatchUrlService;
 
+	@Autowired
+	private ChainTargetMaterializationSvc myChainTargetMaterializationSvc;
+
 	/**
 	 * Constructor
 	 */
@@ -546,6 +550,18 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 
 			candidateTargetTypes.add(nextType);
 
+			// Resolve the chain target up front if it is small enough (a :not token is left as a join)
+			if (!paramInverted) {
+				List<Long> targetPids =
+						materializeLinkedResources(theRequest, theRequestPartitionId, subResourceName, chain, orValues);
+				if (targetPids != null) {
+					if (!targetPids.isEmpty()) {
+						orPredicates.add(createPredicateLinkedResourceIds(targetPids));
+					}
+					continue;
+				}
+			}
+
 			List<Condition> andPredicates = new ArrayList<>();
 
 			List<List<IQueryParameterType>> chainParamValues = Collections.singletonList(orValues);
@@ -574,6 +590,12 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 			warnAboutPerformanceOnUnqualifiedResources(theParamName, theRequest, candidateTargetTypes);
 		}
 
+		if (orPredicates.isEmpty()) {
+			// Every candidate target type was resolved up front and nothing matched
+			setMatchNothing();
+			return null;
+		}
+
 		// If :not modifier for a token, switch OR with AND in the multi-type case
 		Condition multiTypePredicate;
 		if (paramInverted) {
@@ -587,6 +609,43 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 		return QueryParameterUtils.toAndPredicate(pathPredicate, multiTypePredicate);
 	}
 
+	/**
+	 * If chain materialization is enabled (see
+	 * {@link JpaStorageSettings#setSearchChainMaterializationThreshold(int)}), finds the resources of
+	 * the given type which match any of the given values for the given search parameter.
+	 *
+	 * @return Returns the PIDs of the matching resources, or <code>null</code> if they were not resolved
+	 * (in which case a nested query should be used)
+	 * @since 8.4.0
+	 */
+	@Nullable
+	public List<Long> materializeLinkedResources(
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId,
+			String theResourceType,
+			String theParamName,
+			List<? extends IQueryParameterType> theOrValues) {
+		if (myChainTargetMaterializationSvc == null || !myChainTargetMaterializationSvc.isEnabled()) {
+			return null;
+		}
+		List<JpaPid> pids = myChainTargetMaterializationSvc.resolve(
+				theRequest, theRequestPartitionId, theResourceType, theParamName, theOrValues);
+		if (pids == null) {
+			return null;
+		}
+		return pids.stream().map(JpaPid::getId).collect(Collectors.toList());
+	}
+
+	/**
+	 * Creates a predicate matching links from (if this builder is reversed) or to the given resources
+	 *
+	 * @since 8.4.0
+	 */
+	public Condition createPredicateLinkedResourceIds(List<Long> theResourcePids) {
+		DbColumn column = myReversed ? myColumnSrcResourceId : myColumnTargetResourceId;
+		return QueryParameterUtils.toEqualToOrInPredicate(column, generatePlaceholders(theResourcePids));
+	}
+
 	@Nonnull
 	private List<String> determineCandidateResourceTypesForChain(
 			String theResourceName, String theParamName, ReferenceParam theReferenceParam) {
@@ -48,6 +48,7 @@ import ca.uhn.fhir.jpa.search.builder.predicate.UriPredicateBuilder;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import com.healthmarketscience.common.util.AppendableExt;
 import com.healthmarketscience.sqlbuilder.BinaryCondition;
 import com.healthmarketscience.sqlbuilder.ComboCondition;
 import com.healthmarketscience.sqlbuilder.ComboExpression;
@@ -56,6 +57,8 @@ import com.healthmarketscience.sqlbuilder.FunctionCall;
 import com.healthmarketscience.sqlbuilder.InCondition;
 import com.healthmarketscience.sqlbuilder.OrderObject;
 import com.healthmarketscience.sqlbuilder.SelectQuery;
+import com.healthmarketscience.sqlbuilder.UnaryCondition;
+import com.healthmarketscience.sqlbuilder.ValidationContext;
 import com.healthmarketscience.sqlbuilder.dbspec.Join;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.DbColumn;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.DbJoin;
@@ -64,6 +67,7 @@ import com.healthmarketscience.sqlbuilder.dbspec.basic.DbSpec;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.DbTable;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
 import org.hibernate.dialect.Dialect;
 import org.hibernate.dialect.SQLServerDialect;
 import org.hibernate.dialect.pagination.AbstractLimitHandler;
@@ -73,8 +77,11 @@ import org.hibernate.query.spi.QueryOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -114,6 +121,10 @@ public class SearchQueryBuilder {
 	private int myNextNearnessColumnId = 0;
 	private DbColumn mySelectedResourceIdColumn;
 	private DbColumn mySelectedPartitionIdColumn;
+	private final List<SortColumn> mySortColumns = new ArrayList<>();
+	private boolean myHaveUnmergeableSort;
+	private FanOutPartitionCondition myFanOutPartitionCondition;
+	private Object mySqlTemplateKey;
 
 	/**
 	 * Constructor
@@ -518,45 +529,84 @@ public class SearchQueryBuilder {
 		return mySelectPartitionId;
 	}
 
+	/**
+	 * Sets a key which identifies every input that determines the structure (but not the bind
+	 * variable values) of the SQL generated by this builder. If set, and the
+	 * {@link SearchQueryTemplateCache} is enabled, {@link #generate(Integer, Integer)} reuses the
+	 * statement generated earlier by a builder with an equal key instead of rendering a new one.
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSqlTemplateKey(@Nullable Object theSqlTemplateKey) {
+		mySqlTemplateKey = theSqlTemplateKey;
+	}
+
 	/**
 	 * Generate and return the SQL generated by this builder
 	 */
 	public GeneratedSql generate(@Nullable Integer theOffset, @Nullable Integer theMaxResultsToFetch) {
 		getOrCreateFirstPredicateBuilder();
 
+		Integer maxResultsToFetch = theMaxResultsToFetch;
+		Integer offset = theOffset;
+		if (offset != null && offset == 0) {
+			offset = null;
+		}
+		if (maxResultsToFetch != null || offset != null) {
+			maxResultsToFetch = defaultIfNull(maxResultsToFetch, 10000);
+		}
+
+		// A fan-out query for the null partition renders an IS NULL predicate instead of a bind variable
+		SearchQueryTemplateCache templateCache = null;
+		if (mySqlTemplateKey != null
+				&& (myFanOutPartitionCondition == null || !myFanOutPartitionCondition.myNullPartition)) {
+			templateCache = mySqlBuilderFactory.getSearchQueryTemplateCache();
+		}
+		if (templateCache != null) {
+			SearchQueryTemplateCache.SqlTemplate template = templateCache.get(
+					myDialect, mySqlTemplateKey, offset, maxResultsToFetch, myBindVariableValues.size());
+			if (template != null) {
+				return new GeneratedSql(myMatchNothing, template.getSql(), template.bind(myBindVariableValues));
+			}
+		}
+
 		mySelect.validate();
-		String sql = mySelect.toString();
+		String renderedSql = mySelect.toString();
 
-		List<Object> bindVariables = new ArrayList<>();
+		StringBuilder sqlBuilder = new StringBuilder(renderedSql.length());
+		List<Object> bindVariableTemplate = new ArrayList<>();
+		int substitutionBaseLength = myBindVariableSubstitutionBase.length();
+		int fromIdx = 0;
 		while (true) {
 
-			int idx = sql.indexOf(myBindVariableSubstitutionBase);
+			int idx = renderedSql.indexOf(myBindVariableSubstitutionBase, fromIdx);
 			if (idx == -1) {
+				sqlBuilder.append(renderedSql, fromIdx, renderedSql.length());
 				break;
 			}
 
-			int endIdx = sql.indexOf("'", idx + myBindVariableSubstitutionBase.length());
-			String substitutionIndexString = sql.substring(idx + myBindVariableSubstitutionBase.length(), endIdx);
-			int substitutionIndex = Integer.parseInt(substitutionIndexString);
-			bindVariables.add(myBindVariableValues.get(substitutionIndex));
+			int endIdx = renderedSql.indexOf('\'', idx + substitutionBaseLength);
+			int substitutionIndex = Integer.parseInt(renderedSql, idx + substitutionBaseLength, endIdx, 10);
+			bindVariableTemplate.add(new SearchQueryTemplateCache.QueryBindVariable(substitutionIndex));
 
-			sql = sql.substring(0, idx - 1) + "?" + sql.substring(endIdx + 1);
-		}
-
-		Integer maxResultsToFetch = theMaxResultsToFetch;
-		Integer offset = theOffset;
-		if (offset != null && offset == 0) {
-			offset = null;
+			sqlBuilder.append(renderedSql, fromIdx, idx - 1).append('?');
+			fromIdx = endIdx + 1;
 		}
-		if (maxResultsToFetch != null || offset != null) {
+		String sql = sqlBuilder.toString();
 
-			maxResultsToFetch = defaultIfNull(maxResultsToFetch, 10000);
+		if (maxResultsToFetch != null) {
 			String selectedResourceIdColumn = mySelectedResourceIdColumn.getColumnNameSQL();
+			sql = applyLimitToSql(
+					myDialect, offset, maxResultsToFetch, sql, selectedResourceIdColumn, bindVariableTemplate);
+		}
 
-			sql = applyLimitToSql(myDialect, offset, maxResultsToFetch, sql, selectedResourceIdColumn, bindVariables);
+		SearchQueryTemplateCache.SqlTemplate template =
+				new SearchQueryTemplateCache.SqlTemplate(sql, bindVariableTemplate, myBindVariableValues.size());
+		if (templateCache != null) {
+			templateCache.put(myDialect, mySqlTemplateKey, offset, maxResultsToFetch, template);
 		}
 
-		return new GeneratedSql(myMatchNothing, sql, bindVariables);
+		return new GeneratedSql(myMatchNothing, template.getSql(), template.bind(myBindVariableValues));
 	}
 
 	/**
@@ -929,6 +979,7 @@ public class SearchQueryBuilder {
 		String columnName = "MHD" + (myNextNearnessColumnId++);
 		mySelect.addAliasedColumn(sum, columnName);
 		mySelect.addCustomOrderings(columnName + ordering);
+		myHaveUnmergeableSort = true;
 	}
 
 	public void addSortString(DbColumn theColumnValueNormalized, boolean theAscending) {
@@ -963,6 +1014,29 @@ public class SearchQueryBuilder {
 			boolean theTheAscending,
 			OrderObject.NullOrder theNullOrder,
 			boolean theUseAggregate) {
+		// The database collation may order strings differently from Java, so results sorted on
+		// a string column can't be merged (see isSortMergeable())
+		addSortString(theTheColumnValueNormalized, theTheAscending, theNullOrder, theUseAggregate, false);
+	}
+
+	/**
+	 * Sort on the resource PID column of a table. This produces the same SQL as
+	 * {@link #addSortString(DbColumn, boolean)}, but since the column is numeric,
+	 * results sorted on it can be merged.
+	 *
+	 * @since 8.4.0
+	 */
+	public void addSortResourcePid(DbColumn theResourceIdColumn, boolean theAscending) {
+		addSortString(theResourceIdColumn, theAscending, OrderObject.NullOrder.LAST, false, true);
+	}
+
+	private void addSortString(
+			DbColumn theTheColumnValueNormalized,
+			boolean theTheAscending,
+			OrderObject.NullOrder theNullOrder,
+			boolean theUseAggregate,
+			boolean theMergeable) {
+		addSortColumn(theTheColumnValueNormalized, theTheAscending, theNullOrder, theUseAggregate, theMergeable);
 		if ((dialectIsMySql || dialectIsMsSql)) {
 			// MariaDB, MySQL and MSSQL do not support "NULLS FIRST" and "NULLS LAST" syntax.
 			String direction = theTheAscending ? " ASC" : " DESC";
@@ -1007,6 +1081,13 @@ public class SearchQueryBuilder {
 			boolean theAscending,
 			OrderObject.NullOrder theNullOrder,
 			boolean theUseAggregate) {
+		// Nulls are ordered as requested on every platform (see below)
+		mySortColumns.add(new SortColumn(
+				theTheColumnValueNormalized,
+				theAscending,
+				theNullOrder == OrderObject.NullOrder.LAST,
+				theUseAggregate,
+				true));
 		if ((dialectIsMySql || dialectIsMsSql)) {
 			// MariaDB, MySQL and MSSQL do not support "NULLS FIRST" and "NULLS LAST" syntax.
 			// Null values are always treated as less than non-null values.
@@ -1035,6 +1116,7 @@ public class SearchQueryBuilder {
 			boolean theTheAscending,
 			OrderObject.NullOrder theNullOrder,
 			boolean theUseAggregate) {
+		addSortColumn(theTheColumnValueNormalized, theTheAscending, theNullOrder, theUseAggregate, true);
 		if ((dialectIsMySql || dialectIsMsSql)) {
 			// MariaDB, MySQL and MSSQL do not support "NULLS FIRST" and "NULLS LAST" syntax.
 			String direction = theTheAscending ? " ASC" : " DESC";
@@ -1060,6 +1142,193 @@ public class SearchQueryBuilder {
 		}
 	}
 
+	private void addSortColumn(
+			DbColumn theColumn,
+			boolean theAscending,
+			OrderObject.NullOrder theNullOrder,
+			boolean theUseAggregate,
+			boolean theMergeable) {
+		boolean nullsLast;
+		if (dialectIsMySql || dialectIsMsSql) {
+			// These platforms ignore the requested null order and treat nulls as the lowest values
+			nullsLast = !theAscending;
+		} else {
+			nullsLast = theNullOrder == OrderObject.NullOrder.LAST;
+		}
+		mySortColumns.add(new SortColumn(theColumn, theAscending, nullsLast, theUseAggregate, theMergeable));
+	}
+
+	/**
+	 * Returns <code>true</code> if the results of several queries produced by this builder (e.g. one
+	 * per partition) can be merged into a single stream in the requested sort order, using the
+	 * values selected by {@link #addSortValueColumns()} and compared by {@link #newSortValueComparator()}.
+	 * This is the case if every sort is on a date or numeric column (or there is no sort at all).
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isSortMergeable() {
+		return !myHaveUnmergeableSort && mySortColumns.stream().allMatch(t -> t.myMergeable);
+	}
+
+	/**
+	 * Adds the value of each sort column to the columns selected by the query, after the
+	 * resource ID (and partition ID) columns.
+	 *
+	 * @return Returns the (0-based) index within each result row of the first sort value
+	 * @since 8.4.0
+	 */
+	public int addSortValueColumns() {
+		Validate.isTrue(!myCountQuery, "Can't select sort values in a count query");
+		getOrCreateFirstPredicateBuilder();
+		int retVal = (mySelectPartitionId ? 2 : 1) + myNextNearnessColumnId;
+		for (SortColumn next : mySortColumns) {
+			if (next.myUseAggregate) {
+				FunctionCall aggregate = next.myAscending ? FunctionCall.min() : FunctionCall.max();
+				mySelect.addCustomColumns(aggregate.addColumnParams(next.myColumn));
+			} else {
+				mySelect.addColumns(next.myColumn);
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of values selected by {@link #addSortValueColumns()}
+	 *
+	 * @since 8.4.0
+	 */
+	public int countSortColumns() {
+		return mySortColumns.size();
+	}
+
+	/**
+	 * Returns a comparator which orders arrays of sort values (as selected by
+	 * {@link #addSortValueColumns()}) in the same order as the database orders the rows.
+	 *
+	 * @since 8.4.0
+	 */
+	public Comparator<Object[]> newSortValueComparator() {
+		List<SortColumn> sortColumns = List.copyOf(mySortColumns);
+		return (theLeft, theRight) -> {
+			for (int i = 0; i < sortColumns.size(); i++) {
+				int compare = compareSortValues(sortColumns.get(i), theLeft[i], theRight[i]);
+				if (compare != 0) {
+					return compare;
+				}
+			}
+			return 0;
+		};
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static int compareSortValues(SortColumn theSortColumn, Object theLeft, Object theRight) {
+		if (theLeft == null || theRight == null) {
+			if (theLeft == theRight) {
+				return 0;
+			}
+			// Null placement doesn't depend on the sort direction
+			return (theLeft == null) == theSortColumn.myNullsLast ? 1 : -1;
+		}
+
+		int retVal;
+		if (theLeft instanceof Number
+				&& theRight instanceof Number
+				&& !theLeft.getClass().equals(theRight.getClass())) {
+			retVal = new BigDecimal(theLeft.toString()).compareTo(new BigDecimal(theRight.toString()));
+		} else {
+			retVal = ((Comparable) theLeft).compareTo(theRight);
+		}
+		return theSortColumn.myAscending ? retVal : -retVal;
+	}
+
+	/**
+	 * Restricts the results to a single partition, which is chosen each time the SQL is
+	 * generated by calling {@link #setFanOutPartitionId(Integer)} first. This allows a search
+	 * which spans several partitions to be executed as one query per partition, with
+	 * each query built only once.
+	 *
+	 * @since 8.4.0
+	 */
+	public void addFanOutPartitionPredicate() {
+		Validate.isTrue(myFanOutPartitionCondition == null, "Fan-out partition predicate already added");
+		DbColumn partitionIdColumn = getOrCreateFirstPredicateBuilder().getPartitionIdColumn();
+		myFanOutPartitionCondition = new FanOutPartitionCondition(partitionIdColumn, myBindVariableValues.size());
+		generatePlaceholder(null);
+		addPredicate(myFanOutPartitionCondition);
+	}
+
+	/**
+	 * Selects the partition used by the predicate added by {@link #addFanOutPartitionPredicate()}
+	 * in subsequently generated SQL. A <code>null</code> partition ID matches resources with no
+	 * partition ID.
+	 *
+	 * @since 8.4.0
+	 */
+	public void setFanOutPartitionId(@Nullable Integer thePartitionId) {
+		Validate.notNull(myFanOutPartitionCondition, "No fan-out partition predicate has been added");
+		myFanOutPartitionCondition.myNullPartition = thePartitionId == null;
+		myBindVariableValues.set(myFanOutPartitionCondition.myBindVariableIndex, thePartitionId);
+	}
+
+	/**
+	 * Adds a keyset ("seek") predicate which restricts the results to the rows that sort
+	 * after the given position. The values must correspond, in order, to the columns added
+	 * by the <code>addSort...</code> methods on this builder, and the last column should be
+	 * unique (i.e. the resource PID) so that the position is unambiguous. For example, for
+	 * an ascending sort on columns <code>A</code> and <code>RES_ID</code> this adds
+	 * <code>(A &gt; ? OR A IS NULL) OR (A = ? AND RES_ID &gt; ?)</code>, with the
+	 * null handling matching the order in which the database returns null values.
+	 */
+	public void addKeysetPredicate(List<?> theSortValues) {
+		Validate.isTrue(
+				theSortValues.size() == mySortColumns.size(),
+				"Expected %s keyset values, found %s",
+				mySortColumns.size(),
+				theSortValues.size());
+
+		List<Condition> orConditions = new ArrayList<>();
+		List<Condition> equalToPrevious = new ArrayList<>();
+		for (int i = 0; i < mySortColumns.size(); i++) {
+			SortColumn sortColumn = mySortColumns.get(i);
+			Object value = theSortValues.get(i);
+
+			Condition sortsAfter = createSortsAfterCondition(sortColumn, value);
+			if (sortsAfter != null) {
+				List<Condition> andConditions = new ArrayList<>(equalToPrevious);
+				andConditions.add(sortsAfter);
+				orConditions.add(ComboCondition.and(andConditions.toArray()));
+			}
+
+			if (value == null) {
+				equalToPrevious.add(UnaryCondition.isNull(sortColumn.myColumn));
+			} else {
+				equalToPrevious.add(BinaryCondition.equalTo(sortColumn.myColumn, generatePlaceholder(value)));
+			}
+		}
+
+		if (orConditions.isEmpty()) {
+			setMatchNothing();
+		} else {
+			addPredicate(ComboCondition.or(orConditions.toArray()));
+		}
+	}
+
+	@Nullable
+	private Condition createSortsAfterCondition(SortColumn theSortColumn, @Nullable Object theValue) {
+		if (theValue == null) {
+			return theSortColumn.myNullsLast ? null : UnaryCondition.isNotNull(theSortColumn.myColumn);
+		}
+
+		String placeholder = generatePlaceholder(theValue);
+		Condition condition = theSortColumn.myAscending
+				? BinaryCondition.greaterThan(theSortColumn.myColumn, placeholder)
+				: BinaryCondition.lessThan(theSortColumn.myColumn, placeholder);
+		if (theSortColumn.myNullsLast) {
+			condition = ComboCondition.or(condition, UnaryCondition.isNull(theSortColumn.myColumn));
+		}
+		return condition;
+	}
+
 	private void addSort(
 			DbColumn theTheColumnValueNormalized,
 			boolean theTheAscending,
@@ -1090,4 +1359,59 @@ public class SearchQueryBuilder {
 	public void setNeedResourceTableRoot(boolean theNeedResourceTableRoot) {
 		myNeedResourceTableRoot = theNeedResourceTableRoot;
 	}
+
+	private static class SortColumn {
+
+		private final DbColumn myColumn;
+		private final boolean myAscending;
+		private final boolean myNullsLast;
+		private final boolean myUseAggregate;
+		private final boolean myMergeable;
+
+		private SortColumn(
+				DbColumn theColumn,
+				boolean theAscending,
+				boolean theNullsLast,
+				boolean theUseAggregate,
+				boolean theMergeable) {
+			myColumn = theColumn;
+			myAscending = theAscending;
+			myNullsLast = theNullsLast;
+			myUseAggregate = theUseAggregate;
+			myMergeable = theMergeable;
+		}
+	}
+
+	/**
+	 * Renders either <code>PARTITION_ID = ?</code> or <code>PARTITION_ID IS NULL</code>,
+	 * depending on the partition selected by {@link #setFanOutPartitionId(Integer)}
+	 */
+	private class FanOutPartitionCondition extends Condition {
+
+		private final DbColumn myPartitionIdColumn;
+		private final int myBindVariableIndex;
+		private boolean myNullPartition;
+
+		private FanOutPartitionCondition(DbColumn thePartitionIdColumn, int theBindVariableIndex) {
+			myPartitionIdColumn = thePartitionIdColumn;
+			myBindVariableIndex = theBindVariableIndex;
+		}
+
+		@Override
+		protected void collectSchemaObjects(ValidationContext theValidationContext) {
+			theValidationContext.addColumn(myPartitionIdColumn);
+		}
+
+		@Override
+		public void appendTo(AppendableExt theAppendable) throws IOException {
+			Condition condition;
+			if (myNullPartition) {
+				condition = UnaryCondition.isNull(myPartitionIdColumn);
+			} else {
+				condition = BinaryCondition.equalTo(
+						myPartitionIdColumn, myBindVariableSubstitutionBase + myBindVariableIndex);
+			}
+			condition.appendTo(theAppendable);
+		}
+	}
 }
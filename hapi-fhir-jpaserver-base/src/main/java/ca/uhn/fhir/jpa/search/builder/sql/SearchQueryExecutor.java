@@ -26,6 +26,7 @@ import ca.uhn.fhir.jpa.search.builder.ISearchQueryExecutor;
 import ca.uhn.fhir.jpa.util.ScrollableResultsIterator;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.IoUtil;
+import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.FlushModeType;
 import jakarta.persistence.PersistenceContext;
@@ -55,6 +56,10 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 	private boolean myQueryInitialized;
 	private ScrollableResultsIterator<Object> myResultSet;
 	private JpaPid myNext;
+	private int myFirstSortValueColumn = -1;
+	private int mySortValueCount;
+	private Object[] myNextSortValues;
+	private Object[] mySortValues;
 
 	/**
 	 * Constructor
@@ -75,6 +80,38 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 		myNext = NO_MORE;
 	}
 
+	/**
+	 * Returns the SQL which this executor runs, or <code>null</code> for the
+	 * {@link #emptyExecutor() empty executor}
+	 */
+	@Nullable
+	public GeneratedSql getGeneratedSql() {
+		return myGeneratedSql;
+	}
+
+	/**
+	 * Requests that the values of the sort columns (see {@link SearchQueryBuilder#addSortValueColumns()})
+	 * be read from each result row, so that they can be retrieved using {@link #getSortValues()}.
+	 *
+	 * @param theFirstSortValueColumn The (0-based) index of the first sort value in each row
+	 * @param theSortValueCount       The number of sort values
+	 * @since 8.4.0
+	 */
+	public void setSortValueColumns(int theFirstSortValueColumn, int theSortValueCount) {
+		myFirstSortValueColumn = theFirstSortValueColumn;
+		mySortValueCount = theSortValueCount;
+	}
+
+	/**
+	 * Returns the sort values for the result most recently returned by {@link #next()}, if
+	 * {@link #setSortValueColumns(int, int)} was called before the query was executed
+	 *
+	 * @since 8.4.0
+	 */
+	public Object[] getSortValues() {
+		return mySortValues;
+	}
+
 	@Override
 	public void close() {
 		IoUtil.closeQuietly(myResultSet);
@@ -91,6 +128,7 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 		fetchNext();
 		Validate.isTrue(hasNext(), "Can not call next() right now, no data remains");
 		JpaPid next = myNext;
+		mySortValues = myNextSortValues;
 		myNext = null;
 		return next;
 	}
@@ -158,6 +196,10 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 
 	private JpaPid getNextPid(ScrollableResultsIterator<Object> theResultSet) {
 		Object nextRow = Objects.requireNonNull(theResultSet.next());
+		if (myFirstSortValueColumn != -1) {
+			myNextSortValues = Arrays.copyOfRange(
+					(Object[]) nextRow, myFirstSortValueColumn, myFirstSortValueColumn + mySortValueCount);
+		}
 		// We should typically get two columns back, the first is the partition ID and the second
 		// is the resource ID. But if we're doing a count query, we'll get a single column in an array
 		// or maybe even just a single non array value depending on how the platform handles it.
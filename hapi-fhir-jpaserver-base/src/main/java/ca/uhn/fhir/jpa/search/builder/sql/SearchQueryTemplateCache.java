@@ -0,0 +1,247 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder.sql;
+
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.hibernate.dialect.Dialect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the finished form of the SQL statements generated by {@link SearchQueryBuilder}, so that a
+ * search which has been performed before doesn't need its statement to be rendered, validated and
+ * paged again. Entries are keyed by a {@link SearchQueryBuilder#setSqlTemplateKey(Object) template key}
+ * supplied by the caller, which must identify every input that determines the structure of the
+ * statement, along with the dialect and the requested offset and page size. Each entry holds the
+ * statement with the dialect paging clause applied, along with the order in which the builder's
+ * bind variables and the paging values must be supplied.
+ * <p>
+ * As a safeguard, an entry is only used if the builder has generated the same number of bind
+ * variables as the builder which created the entry.
+ * </p>
+ * <p>
+ * Statements longer than {@link #MAXIMUM_CACHED_SQL_LENGTH} characters (typically searches with large
+ * <code>IN</code> lists, whose shape rarely repeats) are never cached.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public class SearchQueryTemplateCache {
+
+	static final int MAXIMUM_CACHED_SQL_LENGTH = 10_000;
+
+	private final Cache<TemplateKey, SqlTemplate> myCache;
+	private final AtomicLong myHitCount = new AtomicLong();
+	private final AtomicLong myMissCount = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param theMaximumSize The maximum number of statements to cache, or <code>0</code> to disable caching
+	 */
+	public SearchQueryTemplateCache(int theMaximumSize) {
+		Validate.isTrue(theMaximumSize >= 0, "theMaximumSize must not be negative");
+		myCache = theMaximumSize > 0 ? CacheFactory.buildEternal(Math.min(theMaximumSize, 100), theMaximumSize) : null;
+	}
+
+	public boolean isEnabled() {
+		return myCache != null;
+	}
+
+	/**
+	 * Returns the cached template for the given key, or <code>null</code> if none is cached
+	 *
+	 * @param theBindVariableCount The number of bind variables generated by the builder
+	 */
+	@Nullable
+	SqlTemplate get(
+			Dialect theDialect,
+			Object theTemplateKey,
+			@Nullable Integer theOffset,
+			@Nullable Integer theMaxResultsToFetch,
+			int theBindVariableCount) {
+		if (myCache == null) {
+			return null;
+		}
+		SqlTemplate retVal =
+				myCache.getIfPresent(new TemplateKey(theDialect, theTemplateKey, theOffset, theMaxResultsToFetch));
+		if (retVal != null && retVal.myBindVariableCount == theBindVariableCount) {
+			myHitCount.incrementAndGet();
+			return retVal;
+		}
+		myMissCount.incrementAndGet();
+		return null;
+	}
+
+	void put(
+			Dialect theDialect,
+			Object theTemplateKey,
+			@Nullable Integer theOffset,
+			@Nullable Integer theMaxResultsToFetch,
+			SqlTemplate theTemplate) {
+		if (myCache == null || theTemplate.getSql().length() > MAXIMUM_CACHED_SQL_LENGTH) {
+			return;
+		}
+		myCache.put(new TemplateKey(theDialect, theTemplateKey, theOffset, theMaxResultsToFetch), theTemplate);
+	}
+
+	/**
+	 * Returns the number of generated statements which were found in the cache
+	 */
+	public long getHitCount() {
+		return myHitCount.get();
+	}
+
+	/**
+	 * Returns the number of generated statements which were eligible for caching but were not found in the cache
+	 */
+	public long getMissCount() {
+		return myMissCount.get();
+	}
+
+	/**
+	 * Returns the proportion (between <code>0.0</code> and <code>1.0</code>) of lookups which
+	 * were served from the cache, or <code>0.0</code> if no lookups have been performed
+	 */
+	public double getHitRate() {
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		return total > 0 ? (double) hits / total : 0.0;
+	}
+
+	/**
+	 * Returns the approximate number of statements currently cached
+	 */
+	public long getSize() {
+		return myCache != null ? myCache.estimatedSize() : 0;
+	}
+
+	/**
+	 * Removes all cached statements and resets the hit and miss counts
+	 */
+	public void invalidateCaches() {
+		if (myCache != null) {
+			myCache.invalidateAll();
+		}
+		myHitCount.set(0);
+		myMissCount.set(0);
+	}
+
+	/**
+	 * A finished SQL statement, along with a description of how to assemble its bind
+	 * variables. Each element of the bind variable template is either a {@link QueryBindVariable}
+	 * referring to one of the bind variables generated by the builder, or a literal paging value.
+	 */
+	static class SqlTemplate {
+
+		private final String mySql;
+		private final List<Object> myBindVariableTemplate;
+		private final int myBindVariableCount;
+
+		SqlTemplate(String theSql, List<Object> theBindVariableTemplate, int theBindVariableCount) {
+			mySql = theSql;
+			myBindVariableTemplate = Collections.unmodifiableList(new ArrayList<>(theBindVariableTemplate));
+			myBindVariableCount = theBindVariableCount;
+		}
+
+		String getSql() {
+			return mySql;
+		}
+
+		/**
+		 * Returns the bind variables for the statement, given the bind variables generated by
+		 * the builder in the order they were generated
+		 */
+		List<Object> bind(List<Object> theBuilderBindVariables) {
+			List<Object> retVal = new ArrayList<>(myBindVariableTemplate.size());
+			for (Object next : myBindVariableTemplate) {
+				if (next instanceof QueryBindVariable) {
+					retVal.add(theBuilderBindVariables.get(((QueryBindVariable) next).myIndex));
+				} else {
+					retVal.add(next);
+				}
+			}
+			return retVal;
+		}
+	}
+
+	/**
+	 * Stands in for one of the builder's bind variables while the paging clause is applied to a
+	 * statement, so that the resulting order of bind variables can be replayed for later searches
+	 */
+	static class QueryBindVariable {
+
+		private final int myIndex;
+
+		QueryBindVariable(int theIndex) {
+			myIndex = theIndex;
+		}
+	}
+
+	private static class TemplateKey {
+
+		private final Class<? extends Dialect> myDialectType;
+		private final Object myTemplateKey;
+		private final Integer myOffset;
+		private final Integer myMaxResultsToFetch;
+		private final int myHashCode;
+
+		private TemplateKey(
+				@Nonnull Dialect theDialect,
+				@Nonnull Object theTemplateKey,
+				@Nullable Integer theOffset,
+				@Nullable Integer theMaxResultsToFetch) {
+			myDialectType = theDialect.getClass();
+			myTemplateKey = theTemplateKey;
+			myOffset = theOffset;
+			myMaxResultsToFetch = theMaxResultsToFetch;
+			myHashCode = Objects.hash(myDialectType, myTemplateKey, myOffset, myMaxResultsToFetch);
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof TemplateKey)) {
+				return false;
+			}
+			TemplateKey that = (TemplateKey) theO;
+			return myHashCode == that.myHashCode
+					&& myDialectType.equals(that.myDialectType)
+					&& Objects.equals(myOffset, that.myOffset)
+					&& Objects.equals(myMaxResultsToFetch, that.myMaxResultsToFetch)
+					&& myTemplateKey.equals(that.myTemplateKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+}
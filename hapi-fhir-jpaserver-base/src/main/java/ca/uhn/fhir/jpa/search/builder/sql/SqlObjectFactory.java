@@ -37,6 +37,7 @@ import ca.uhn.fhir.jpa.search.builder.predicate.StringPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.TagPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.TokenPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.UriPredicateBuilder;
+import jakarta.annotation.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 
@@ -45,6 +46,19 @@ public class SqlObjectFactory {
 	@Autowired
 	private ApplicationContext myApplicationContext;
 
+	@Autowired(required = false)
+	private SearchQueryTemplateCache mySearchQueryTemplateCache;
+
+	/**
+	 * Returns the cache of generated search statements, or <code>null</code> if none is configured
+	 *
+	 * @since 8.4.0
+	 */
+	@Nullable
+	public SearchQueryTemplateCache getSearchQueryTemplateCache() {
+		return mySearchQueryTemplateCache;
+	}
+
 	public ComboUniqueSearchParameterPredicateBuilder newComboUniqueSearchParameterPredicateBuilder(
 			SearchQueryBuilder theSearchSqlBuilder) {
 		return myApplicationContext.getBean(ComboUniqueSearchParameterPredicateBuilder.class, theSearchSqlBuilder);
@@ -69,6 +69,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantCount;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
@@ -557,9 +558,12 @@ public class SearchTask implements Callable<Void> {
 		boolean myParamOrDefaultWantCount = nonNull(myParams.getSearchTotalMode())
 				? isWantCount(myParams)
 				: SearchParameterMapCalculator.isWantCount(myStorageSettings.getDefaultTotalMode());
+		boolean myParamOrDefaultWantEstimatedCount = nonNull(myParams.getSearchTotalMode())
+				? isWantEstimatedCount(myParams)
+				: SearchParameterMapCalculator.isWantEstimatedCount(myStorageSettings.getDefaultTotalMode());
 
-		if (myParamWantOnlyCount || myParamOrDefaultWantCount) {
-			doCountOnlyQuery(myParamWantOnlyCount);
+		if (myParamWantOnlyCount || myParamOrDefaultWantCount || myParamOrDefaultWantEstimatedCount) {
+			doCountOnlyQuery(myParamWantOnlyCount, myParamOrDefaultWantEstimatedCount);
 			if (myParamWantOnlyCount) {
 				return;
 			}
@@ -701,8 +705,9 @@ public class SearchTask implements Callable<Void> {
 	/**
 	 * Does the query but only for the count.
 	 * @param theParamWantOnlyCount - if count query is wanted only
+	 * @param theWantEstimatedCount - if an estimated count is acceptable
 	 */
-	private void doCountOnlyQuery(boolean theParamWantOnlyCount) {
+	private void doCountOnlyQuery(boolean theParamWantOnlyCount, boolean theWantEstimatedCount) {
 		ourLog.trace("Performing count");
 		@SuppressWarnings("rawtypes")
 		ISearchBuilder sb = newSearchBuilder();
@@ -716,15 +721,37 @@ public class SearchTask implements Callable<Void> {
 		 * we will have to clone those parameters here so that
 		 * the "correct" params are used in createQuery below
 		 */
-		Long count = sb.createCountQuery(myParams.clone(), mySearch.getUuid(), myRequest, myRequestPartitionId);
+		Long count;
+		boolean countIsEstimate = false;
+		if (theWantEstimatedCount) {
+			int threshold = myStorageSettings.getSearchTotalEstimateThreshold();
+			count = sb.createEstimatedCountQuery(
+					myParams.clone(), mySearch.getUuid(), myRequest, myRequestPartitionId, threshold);
+			countIsEstimate = count != null && count > threshold;
+			if (count == null && theParamWantOnlyCount) {
+				// No cheap estimate is available, but the count is all we were asked for
+				count = sb.createCountQuery(myParams.clone(), mySearch.getUuid(), myRequest, myRequestPartitionId);
+			}
+		} else {
+			count = sb.createCountQuery(myParams.clone(), mySearch.getUuid(), myRequest, myRequestPartitionId);
+		}
 
 		ourLog.trace("Got count {}", count);
+		if (count == null) {
+			return;
+		}
 
+		Integer totalCount = count.intValue();
+		boolean totalCountIsEstimate = countIsEstimate;
 		myTxService
 				.withRequest(myRequest)
 				.withRequestPartitionId(myRequestPartitionId)
 				.execute(() -> {
-					mySearch.setTotalCount(count.intValue());
+					if (totalCountIsEstimate) {
+						mySearch.setEstimatedTotalCount(totalCount);
+					} else {
+						mySearch.setTotalCount(totalCount);
+					}
 					if (theParamWantOnlyCount) {
 						mySearch.setStatus(SearchStatusEnum.FINISHED);
 					}
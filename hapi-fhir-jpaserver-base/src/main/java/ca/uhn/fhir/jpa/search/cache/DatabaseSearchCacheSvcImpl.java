@@ -94,6 +94,9 @@ public class DatabaseSearchCacheSvcImpl implements ISearchCacheSvc {
 	@Autowired
 	private JpaStorageSettings myStorageSettings;
 
+	@Autowired(required = false)
+	private ISearchResultCacheSvc mySearchResultCacheSvc;
+
 	@VisibleForTesting
 	public void setCutoffSlackForUnitTest(long theCutoffSlack) {
 		myCutoffSlack = theCutoffSlack;
@@ -241,6 +244,9 @@ public class DatabaseSearchCacheSvcImpl implements ISearchCacheSvc {
 					throwIfDeadlineExpired();
 
 					deleteSearchAndResults(nextSearchToDelete.searchId, nextSearchToDelete.size);
+					if (mySearchResultCacheSvc != null) {
+						mySearchResultCacheSvc.removeResults(nextSearchToDelete.searchUuid);
+					}
 
 					deletedCounter.incrementAndGet();
 				});
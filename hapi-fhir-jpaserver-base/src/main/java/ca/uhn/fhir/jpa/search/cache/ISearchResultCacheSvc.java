@@ -67,4 +67,26 @@ public interface ISearchResultCacheSvc {
 	@Nullable
 	List<JpaPid> fetchAllResultPids(
 			Search theSearch, RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId);
+
+	/**
+	 * Returns whether the results of the given search can be served by this cache, and therefore
+	 * whether the search can be reused for a new request with the same parameters.
+	 *
+	 * @param theSearch The search to be reused
+	 * @since 8.4.0
+	 */
+	default boolean isResultsAvailable(Search theSearch) {
+		return true;
+	}
+
+	/**
+	 * Called when a search is deleted by the stale search cleanup, so that any results held
+	 * outside the database can be discarded
+	 *
+	 * @param theSearchUuid The UUID of the deleted search
+	 * @since 8.4.0
+	 */
+	default void removeResults(String theSearchUuid) {
+		// nothing
+	}
 }
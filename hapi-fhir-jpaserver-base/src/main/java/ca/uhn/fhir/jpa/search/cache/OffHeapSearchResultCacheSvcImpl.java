@@ -0,0 +1,353 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link ISearchResultCacheSvc} which holds the result PIDs of each search in a compact off-heap
+ * representation, bounded by the approximate total number of bytes used. Pages are served from
+ * this cache whenever it holds the requested results.
+ * <p>
+ * Unless {@link JpaStorageSettings#isSearchResultOffHeapCacheOnly() cache-only} mode is enabled,
+ * results are also written to the database, and requests for results which this server doesn't
+ * hold (e.g. because they were found by another server in the cluster, or have been evicted)
+ * are served from the database.
+ * </p>
+ * <p>
+ * Results are stored in blocks of up to {@link #BLOCK_SIZE} PIDs, each of which is a direct
+ * buffer containing the differences between consecutive PIDs as zig-zag encoded variable
+ * length integers, so fetching a page only needs to decode the blocks it overlaps.
+ * </p>
+ * <p>
+ * Entries are removed when the stale search cleanup deletes their search, and also expire on
+ * their own after the {@link JpaStorageSettings#getExpireSearchResultsAfterMillis() search expiry},
+ * since the cleanup job only runs on one server in a cluster.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public class OffHeapSearchResultCacheSvcImpl extends DatabaseSearchResultCacheSvcImpl {
+
+	static final int BLOCK_SIZE = 1024;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(OffHeapSearchResultCacheSvcImpl.class);
+	private static final byte BLOCK_WITHOUT_PARTITIONS = 0;
+	private static final byte BLOCK_WITH_PARTITIONS = 1;
+
+	private final Cache<String, CachedResults> myCache;
+	private final ConcurrentMap<String, Boolean> myStoreLocks = new ConcurrentHashMap<>();
+	private final boolean myCacheOnly;
+
+	/**
+	 * Constructor
+	 */
+	public OffHeapSearchResultCacheSvcImpl(JpaStorageSettings theStorageSettings) {
+		long maximumBytes = theStorageSettings.getSearchResultOffHeapCacheMaximumBytes();
+		Validate.isTrue(maximumBytes > 0, "The off-heap search result cache is not enabled");
+		if (theStorageSettings.isExpireSearchResults()) {
+			long expireMillis = theStorageSettings.getExpireSearchResultsAfterMillis()
+					+ DatabaseSearchCacheSvcImpl.SEARCH_CLEANUP_JOB_INTERVAL_MILLIS;
+			myCache = CacheFactory.buildWeighted(expireMillis, maximumBytes, (k, v) -> v.getWeight());
+		} else {
+			myCache = CacheFactory.buildWeighted(0, maximumBytes, (k, v) -> v.getWeight());
+		}
+		myCacheOnly = theStorageSettings.isSearchResultOffHeapCacheOnly();
+	}
+
+	/**
+	 * In cache-only mode, results which this server doesn't hold can't be served from anywhere else,
+	 * so a search can only be reused once it has finished loading into this cache
+	 */
+	@Override
+	public boolean isResultsAvailable(Search theSearch) {
+		if (!myCacheOnly) {
+			return true;
+		}
+		return theSearch.getStatus() == SearchStatusEnum.FINISHED && myCache.getIfPresent(theSearch.getUuid()) != null;
+	}
+
+	@Override
+	public void removeResults(String theSearchUuid) {
+		myCache.invalidate(theSearchUuid);
+	}
+
+	@Override
+	public List<JpaPid> fetchResultPids(
+			Search theSearch,
+			int theFrom,
+			int theTo,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		CachedResults cached = myCache.getIfPresent(theSearch.getUuid());
+		if (cached != null && (myCacheOnly || cached.size() >= Math.min(theTo, theSearch.getNumFound()))) {
+			List<JpaPid> retVal = cached.get(theFrom, theTo);
+			ourLog.debug("fetchResultPids for range {}-{} returned {} cached pids", theFrom, theTo, retVal.size());
+			return retVal;
+		}
+		if (myCacheOnly) {
+			return null;
+		}
+		return super.fetchResultPids(theSearch, theFrom, theTo, theRequestDetails, theRequestPartitionId);
+	}
+
+	@Override
+	public List<JpaPid> fetchAllResultPids(
+			Search theSearch, RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId) {
+		CachedResults cached = myCache.getIfPresent(theSearch.getUuid());
+		if (cached != null && (myCacheOnly || cached.size() >= theSearch.getNumFound())) {
+			return cached.get(0, cached.size());
+		}
+		if (myCacheOnly) {
+			return null;
+		}
+		return super.fetchAllResultPids(theSearch, theRequestDetails, theRequestPartitionId);
+	}
+
+	@Override
+	public void storeResults(
+			Search theSearch,
+			List<JpaPid> thePreviouslyStoredResourcePids,
+			List<JpaPid> theNewResourcePids,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		if (!myCacheOnly) {
+			super.storeResults(
+					theSearch,
+					thePreviouslyStoredResourcePids,
+					theNewResourcePids,
+					theRequestDetails,
+					theRequestPartitionId);
+		}
+
+		String key = theSearch.getUuid();
+		List<ByteBuffer> newBlocks = encodeBlocks(theNewResourcePids);
+		// ConcurrentMap#compute is atomic per key, so concurrent stores for the same search
+		// don't lose each other's results, without blocking stores for other searches
+		myStoreLocks.compute(key, (k, v) -> {
+			CachedResults existing = myCache.getIfPresent(key);
+			CachedResults updated;
+			if (existing != null && existing.size() == thePreviouslyStoredResourcePids.size()) {
+				updated = existing.append(newBlocks, theNewResourcePids.size());
+			} else {
+				// We don't hold exactly the previously stored results (e.g. because they were
+				// evicted or stored by another server), so start again from the full list
+				updated = new CachedResults()
+						.append(encodeBlocks(thePreviouslyStoredResourcePids), thePreviouslyStoredResourcePids.size())
+						.append(newBlocks, theNewResourcePids.size());
+			}
+			myCache.put(key, updated);
+			return null;
+		});
+	}
+
+	@VisibleForTesting
+	long getEstimatedSize() {
+		myCache.cleanUp();
+		return myCache.estimatedSize();
+	}
+
+	private static List<ByteBuffer> encodeBlocks(List<JpaPid> thePids) {
+		List<ByteBuffer> retVal = new ArrayList<>((thePids.size() + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		for (int from = 0; from < thePids.size(); from += BLOCK_SIZE) {
+			retVal.add(encodeBlock(thePids.subList(from, Math.min(from + BLOCK_SIZE, thePids.size()))));
+		}
+		return retVal;
+	}
+
+	private static ByteBuffer encodeBlock(List<JpaPid> thePids) {
+		boolean hasPartitions = false;
+		for (JpaPid next : thePids) {
+			if (next.getPartitionId() != null) {
+				hasPartitions = true;
+				break;
+			}
+		}
+
+		// Worst case is 10 bytes per PID plus 5 per partition ID
+		ByteBuffer buffer = ByteBuffer.allocate(1 + thePids.size() * (hasPartitions ? 15 : 10));
+		buffer.put(hasPartitions ? BLOCK_WITH_PARTITIONS : BLOCK_WITHOUT_PARTITIONS);
+		long previous = 0;
+		for (JpaPid next : thePids) {
+			long id = next.getId();
+			writeVarLong(buffer, zigZag(id - previous));
+			previous = id;
+			if (hasPartitions) {
+				Integer partitionId = next.getPartitionId();
+				writeVarLong(buffer, partitionId == null ? 0 : zigZag(partitionId) + 1);
+			}
+		}
+
+		buffer.flip();
+		ByteBuffer retVal = ByteBuffer.allocateDirect(buffer.remaining());
+		retVal.put(buffer);
+		return retVal.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Decodes the PIDs at index <code>theFrom</code> (inclusive) to <code>theTo</code> (exclusive)
+	 * within the given block, using only absolute reads so that blocks can be read concurrently
+	 */
+	private static void decodeBlock(ByteBuffer theBlock, int theFrom, int theTo, List<JpaPid> theOutput) {
+		boolean hasPartitions = theBlock.get(0) == BLOCK_WITH_PARTITIONS;
+		int[] position = {1};
+		long previous = 0;
+		for (int i = 0; i < theTo; i++) {
+			long id = previous + unZigZag(readVarLong(theBlock, position));
+			previous = id;
+			Integer partitionId = null;
+			if (hasPartitions) {
+				long partition = readVarLong(theBlock, position);
+				partitionId = partition == 0 ? null : (int) unZigZag(partition - 1);
+			}
+			if (i >= theFrom) {
+				theOutput.add(JpaPid.fromId(id, partitionId));
+			}
+		}
+	}
+
+	private static void writeVarLong(ByteBuffer theBuffer, long theValue) {
+		long value = theValue;
+		while ((value & ~0x7FL) != 0) {
+			theBuffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		theBuffer.put((byte) value);
+	}
+
+	private static long readVarLong(ByteBuffer theBuffer, int[] thePosition) {
+		long retVal = 0;
+		int shift = 0;
+		byte next;
+		do {
+			next = theBuffer.get(thePosition[0]++);
+			retVal |= (long) (next & 0x7F) << shift;
+			shift += 7;
+		} while ((next & 0x80) != 0);
+		return retVal;
+	}
+
+	private static long zigZag(long theValue) {
+		return (theValue << 1) ^ (theValue >> 63);
+	}
+
+	private static long unZigZag(long theValue) {
+		return (theValue >>> 1) ^ -(theValue & 1);
+	}
+
+	/**
+	 * The results of a single search. Instances are immutable, and appending results
+	 * creates a new instance sharing the existing blocks.
+	 */
+	private static class CachedResults {
+
+		/**
+		 * Approximate heap overhead of an entry, and of each block
+		 */
+		private static final int ENTRY_OVERHEAD = 128;
+
+		private static final int BLOCK_OVERHEAD = 96;
+
+		private final ByteBuffer[] myBlocks;
+		private final int[] myBlockStarts;
+		private final int mySize;
+		private final int myWeight;
+
+		private CachedResults() {
+			this(new ByteBuffer[0], new int[0], 0, ENTRY_OVERHEAD);
+		}
+
+		private CachedResults(ByteBuffer[] theBlocks, int[] theBlockStarts, int theSize, int theWeight) {
+			myBlocks = theBlocks;
+			myBlockStarts = theBlockStarts;
+			mySize = theSize;
+			myWeight = theWeight;
+		}
+
+		int size() {
+			return mySize;
+		}
+
+		int getWeight() {
+			return myWeight;
+		}
+
+		CachedResults append(List<ByteBuffer> theBlocks, int theCount) {
+			if (theBlocks.isEmpty()) {
+				return this;
+			}
+			ByteBuffer[] blocks = Arrays.copyOf(myBlocks, myBlocks.length + theBlocks.size());
+			int[] blockStarts = Arrays.copyOf(myBlockStarts, myBlockStarts.length + theBlocks.size());
+			int weight = myWeight;
+			for (int i = 0; i < theBlocks.size(); i++) {
+				ByteBuffer block = theBlocks.get(i);
+				blocks[myBlocks.length + i] = block;
+				blockStarts[myBlocks.length + i] = mySize + (i * BLOCK_SIZE);
+				weight += block.capacity() + BLOCK_OVERHEAD;
+			}
+			return new CachedResults(blocks, blockStarts, mySize + theCount, weight);
+		}
+
+		List<JpaPid> get(int theFrom, int theTo) {
+			int from = Math.max(theFrom, 0);
+			int to = Math.min(theTo, mySize);
+			if (from >= to) {
+				return new ArrayList<>();
+			}
+
+			List<JpaPid> retVal = new ArrayList<>(to - from);
+			int blockIndex = Arrays.binarySearch(myBlockStarts, from);
+			if (blockIndex < 0) {
+				blockIndex = -blockIndex - 2;
+			}
+			for (; blockIndex < myBlocks.length; blockIndex++) {
+				int blockStart = myBlockStarts[blockIndex];
+				if (blockStart >= to) {
+					break;
+				}
+				int blockEnd = blockIndex + 1 < myBlocks.length ? myBlockStarts[blockIndex + 1] : mySize;
+				decodeBlock(
+						myBlocks[blockIndex],
+						Math.max(from - blockStart, 0),
+						Math.min(to, blockEnd) - blockStart,
+						retVal);
+			}
+			return retVal;
+		}
+	}
+}
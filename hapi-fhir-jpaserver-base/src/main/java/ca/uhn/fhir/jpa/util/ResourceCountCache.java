@@ -26,16 +26,32 @@ import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
 import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.lang3.time.DateUtils;
 import org.quartz.JobExecutionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Holds the number of resources of each type, as fetched periodically by the supplied fetcher. If
+ * {@link #recordCreated(String)} and {@link #recordDeleted(String)} are called as resources are
+ * written (see {@link ResourceCountCacheUpdatingInterceptor}), the counts are kept current between
+ * fetches, and each fetch acts as a reconciliation of the counts against the database.
+ */
 public class ResourceCountCache implements IHasScheduledJobs {
 
 	private static final Logger ourLog = LoggerFactory.getLogger(ResourceCountCache.class);
@@ -43,7 +59,10 @@ public class ResourceCountCache implements IHasScheduledJobs {
 	private final Callable<Map<String, Long>> myFetcher;
 	private volatile long myCacheMillis;
 	private AtomicReference<Map<String, Long>> myCapabilityStatement = new AtomicReference<>();
+	private final Map<String, LongAdder> myCreatedSinceFetch = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> myDeletedSinceFetch = new ConcurrentHashMap<>();
 	private long myLastFetched;
+	private long myClearCount;
 
 	/**
 	 * Constructor
@@ -55,14 +74,132 @@ public class ResourceCountCache implements IHasScheduledJobs {
 	public synchronized void clear() {
 		ourLog.info("Clearing cache");
 		myCapabilityStatement.set(null);
+		myCreatedSinceFetch.clear();
+		myDeletedSinceFetch.clear();
 		myLastFetched = 0;
+		myClearCount++;
 	}
 
 	public synchronized Map<String, Long> get() {
-		return myCapabilityStatement.get();
+		Map<String, Long> retVal = myCapabilityStatement.get();
+		if (retVal == null || myCreatedSinceFetch.isEmpty()) {
+			return retVal;
+		}
+		retVal = new HashMap<>(retVal);
+		for (Map.Entry<String, LongAdder> next : myCreatedSinceFetch.entrySet()) {
+			retVal.merge(next.getKey(), next.getValue().sum(), Long::sum);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of resources of the given type, or <code>null</code> if the counts
+	 * have not been fetched yet
+	 *
+	 * @since 8.4.0
+	 */
+	@Nullable
+	public Long getCount(String theResourceType) {
+		Map<String, Long> counts = myCapabilityStatement.get();
+		if (counts == null) {
+			return null;
+		}
+		return counts.getOrDefault(theResourceType, 0L) + sum(myCreatedSinceFetch, theResourceType);
 	}
 
+	/**
+	 * Records that a resource of the given type has been created. This should only be called
+	 * once the creation has been committed.
+	 *
+	 * @since 8.4.0
+	 */
+	public void recordCreated(String theResourceType) {
+		myCreatedSinceFetch
+				.computeIfAbsent(theResourceType, t -> new LongAdder())
+				.increment();
+	}
+
+	/**
+	 * Records that a resource of the given type has been deleted. This should only be called
+	 * once the deletion has been committed. Deleted resources are still included in the counts
+	 * (until they are expunged) so this only affects the {@link #getStatistics() statistics}.
+	 *
+	 * @since 8.4.0
+	 */
+	public void recordDeleted(String theResourceType) {
+		myDeletedSinceFetch
+				.computeIfAbsent(theResourceType, t -> new LongAdder())
+				.increment();
+	}
+
+	/**
+	 * Returns the count and the write activity since the counts were last fetched for each
+	 * resource type, or an empty map if the counts have not been fetched yet
+	 *
+	 * @since 8.4.0
+	 */
+	public synchronized Map<String, ResourceTypeStatistics> getStatistics() {
+		Map<String, Long> counts = myCapabilityStatement.get();
+		if (counts == null) {
+			return Map.of();
+		}
+		long elapsedMillis = Math.max(1, now() - myLastFetched);
+		TreeSet<String> resourceTypes = new TreeSet<>(counts.keySet());
+		resourceTypes.addAll(myCreatedSinceFetch.keySet());
+		resourceTypes.addAll(myDeletedSinceFetch.keySet());
+
+		Map<String, ResourceTypeStatistics> retVal = new HashMap<>();
+		for (String next : resourceTypes) {
+			long created = sum(myCreatedSinceFetch, next);
+			long deleted = sum(myDeletedSinceFetch, next);
+			if (created == 0 && deleted == 0 && !counts.containsKey(next)) {
+				continue;
+			}
+			long count = counts.getOrDefault(next, 0L) + created;
+			retVal.put(next, new ResourceTypeStatistics(next, count, created, deleted, elapsedMillis));
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the statistics for the resource types with the highest write rate since the counts
+	 * were last fetched, busiest first
+	 *
+	 * @param theLimit The maximum number of resource types to return
+	 * @since 8.4.0
+	 */
+	public List<ResourceTypeStatistics> getMostActiveResourceTypes(int theLimit) {
+		List<ResourceTypeStatistics> retVal = new ArrayList<>(getStatistics().values());
+		retVal.removeIf(t -> t.getWritesPerMinute() == 0);
+		retVal.sort(Comparator.comparing(ResourceTypeStatistics::getWritesPerMinute)
+				.reversed()
+				.thenComparing(ResourceTypeStatistics::getResourceType));
+		return retVal.subList(0, Math.min(theLimit, retVal.size()));
+	}
+
+	private static long sum(Map<String, LongAdder> theCounters, String theResourceType) {
+		LongAdder counter = theCounters.get(theResourceType);
+		return counter != null ? counter.sum() : 0;
+	}
+
+	/**
+	 * Fetches the counts from the database and replaces the baseline. The deltas recorded before
+	 * the fetch starts are captured first, and only those are subtracted once the fetch completes,
+	 * so that any creations and deletions recorded while the (potentially slow) query is running
+	 * are kept.
+	 */
 	private Map<String, Long> refresh() {
+		long fetchStarted;
+		long clearCount;
+		Map<String, Long> createdSnapshot;
+		Map<String, Long> deletedSnapshot;
+		synchronized (this) {
+			fetchStarted = now();
+			clearCount = myClearCount;
+			createdSnapshot = snapshot(myCreatedSinceFetch);
+			deletedSnapshot = snapshot(myDeletedSinceFetch);
+		}
+
 		Map<String, Long> retVal;
 		try {
 			retVal = myFetcher.call();
@@ -70,11 +207,36 @@ public class ResourceCountCache implements IHasScheduledJobs {
 			throw new InternalErrorException(Msg.code(799) + e);
 		}
 
-		myCapabilityStatement.set(retVal);
-		myLastFetched = now();
+		synchronized (this) {
+			if (clearCount != myClearCount) {
+				ourLog.info("Cache was cleared while resource counts were being fetched, discarding fetched counts");
+				return retVal;
+			}
+			myCapabilityStatement.set(retVal);
+			subtract(myCreatedSinceFetch, createdSnapshot);
+			subtract(myDeletedSinceFetch, deletedSnapshot);
+			myLastFetched = fetchStarted;
+		}
 		return retVal;
 	}
 
+	private static Map<String, Long> snapshot(Map<String, LongAdder> theCounters) {
+		Map<String, Long> retVal = new HashMap<>();
+		theCounters.forEach((k, v) -> retVal.put(k, v.sum()));
+		return retVal;
+	}
+
+	private static void subtract(Map<String, LongAdder> theCounters, Map<String, Long> theSnapshot) {
+		theSnapshot.forEach((k, v) -> theCounters.get(k).add(-v));
+	}
+
+	/**
+	 * How long (in milliseconds) the fetched counts are used for before they are fetched again
+	 */
+	public long getCacheMillis() {
+		return myCacheMillis;
+	}
+
 	public void setCacheMillis(long theCacheMillis) {
 		myCacheMillis = theCacheMillis;
 	}
@@ -107,6 +269,78 @@ public class ResourceCountCache implements IHasScheduledJobs {
 		}
 	}
 
+	/**
+	 * The count of one resource type, and the number of resources of that type which were
+	 * created and deleted since the counts were last fetched
+	 *
+	 * @since 8.4.0
+	 */
+	public static class ResourceTypeStatistics {
+
+		private final String myResourceType;
+		private final long myCount;
+		private final long myCreated;
+		private final long myDeleted;
+		private final long myElapsedMillis;
+
+		ResourceTypeStatistics(
+				String theResourceType, long theCount, long theCreated, long theDeleted, long theElapsedMillis) {
+			myResourceType = theResourceType;
+			myCount = theCount;
+			myCreated = theCreated;
+			myDeleted = theDeleted;
+			myElapsedMillis = theElapsedMillis;
+		}
+
+		public String getResourceType() {
+			return myResourceType;
+		}
+
+		public long getCount() {
+			return myCount;
+		}
+
+		public long getCreatedSinceFetch() {
+			return myCreated;
+		}
+
+		public long getDeletedSinceFetch() {
+			return myDeleted;
+		}
+
+		/**
+		 * The number of resources created per minute since the counts were last fetched
+		 */
+		public double getCreatesPerMinute() {
+			return perMinute(myCreated);
+		}
+
+		/**
+		 * The number of resources deleted per minute since the counts were last fetched
+		 */
+		public double getDeletesPerMinute() {
+			return perMinute(myDeleted);
+		}
+
+		public double getWritesPerMinute() {
+			return perMinute(myCreated + myDeleted);
+		}
+
+		private double perMinute(long theCount) {
+			return theCount * (double) DateUtils.MILLIS_PER_MINUTE / myElapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+					.append("resourceType", myResourceType)
+					.append("count", myCount)
+					.append("created", myCreated)
+					.append("deleted", myDeleted)
+					.toString();
+		}
+	}
+
 	private static long now() {
 		if (ourNowForUnitTest != null) {
 			return ourNowForUnitTest;
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.IHapiBootOrder;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.IInterceptorService;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps the {@link ResourceCountCache} current between fetches by recording each resource
+ * creation and deletion once it has been committed.
+ * See {@link JpaStorageSettings#setResourceCountCacheIncrementalUpdates(boolean)}.
+ *
+ * @since 8.4.0
+ */
+@Interceptor
+public class ResourceCountCacheUpdatingInterceptor {
+
+	/**
+	 * Since the counts are kept current between fetches, the (expensive) reconciliation fetch only
+	 * needs to run this often when incremental updates are enabled
+	 */
+	public static final long RECONCILIATION_INTERVAL_MILLIS = DateUtils.MILLIS_PER_DAY;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ResourceCountCacheUpdatingInterceptor.class);
+
+	private final ResourceCountCache myResourceCountCache;
+	private final FhirContext myFhirContext;
+	private final JpaStorageSettings myStorageSettings;
+	private final IInterceptorService myInterceptorService;
+
+	/**
+	 * Constructor
+	 */
+	public ResourceCountCacheUpdatingInterceptor(
+			ResourceCountCache theResourceCountCache,
+			FhirContext theFhirContext,
+			JpaStorageSettings theStorageSettings,
+			IInterceptorService theInterceptorService) {
+		myResourceCountCache = theResourceCountCache;
+		myFhirContext = theFhirContext;
+		myStorageSettings = theStorageSettings;
+		myInterceptorService = theInterceptorService;
+	}
+
+	@EventListener(classes = {ContextRefreshedEvent.class})
+	@Order(IHapiBootOrder.REGISTER_INTERCEPTORS)
+	public void start() {
+		if (myStorageSettings.isResourceCountCacheIncrementalUpdates()
+				&& !myInterceptorService.getAllRegisteredInterceptors().contains(this)) {
+			ourLog.info("Registering ResourceCountCacheUpdatingInterceptor interceptor");
+			myInterceptorService.registerInterceptor(this);
+			if (myResourceCountCache.getCacheMillis() > 0) {
+				myResourceCountCache.setCacheMillis(
+						Math.max(myResourceCountCache.getCacheMillis(), RECONCILIATION_INTERVAL_MILLIS));
+			}
+		}
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_CREATED)
+	public void resourceCreated(IBaseResource theResource) {
+		String resourceType = myFhirContext.getResourceType(theResource);
+		afterCommit(() -> myResourceCountCache.recordCreated(resourceType));
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_DELETED)
+	public void resourceDeleted(IBaseResource theResource) {
+		String resourceType = myFhirContext.getResourceType(theResource);
+		afterCommit(() -> myResourceCountCache.recordDeleted(resourceType));
+	}
+
+	@Hook(Pointcut.STORAGE_PRESTORAGE_EXPUNGE_EVERYTHING)
+	public void expungeEverything() {
+		afterCommit(myResourceCountCache::clear);
+	}
+
+	private static void afterCommit(Runnable theTask) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					theTask.run();
+				}
+			});
+		} else {
+			theTask.run();
+		}
+	}
+}
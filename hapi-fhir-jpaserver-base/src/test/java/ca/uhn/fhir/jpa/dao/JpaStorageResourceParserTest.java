@@ -0,0 +1,175 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.util.ResourceBodyCacheSvcImpl;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.util.MetaTagSorterAlphabetical;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class JpaStorageResourceParserTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private final List<JpaStorageResourceParser> myParsers = new ArrayList<>();
+
+	@AfterEach
+	public void after() {
+		myParsers.forEach(JpaStorageResourceParser::shutdown);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 49, 50, 333})
+	public void testToResources_ParallelMatchesSerial(int theCount) {
+		List<ResourceHistoryTable> entities = createEntities(theCount);
+
+		List<IBaseResource> serial = newParser(0).toResources(entities, Map.of(), false);
+		List<IBaseResource> parallel = newParser(4).toResources(entities, Map.of(), false);
+
+		assertEquals(theCount, serial.size());
+		assertEquals(theCount, parallel.size());
+		for (int i = 0; i < theCount; i++) {
+			Patient expected = (Patient) serial.get(i);
+			Patient actual = (Patient) parallel.get(i);
+			assertEquals("Patient/P" + i + "/_history/2", actual.getIdElement().getValue());
+			assertEquals("Family" + i, actual.getNameFirstRep().getFamily());
+			assertEquals(
+				ourCtx.newJsonParser().encodeResourceToString(expected),
+				ourCtx.newJsonParser().encodeResourceToString(actual));
+		}
+	}
+
+	@Test
+	public void testToResources_ParallelDeletedVersionYieldsEmptyResource() {
+		List<ResourceHistoryTable> entities = createEntities(60);
+		entities.get(10).setEncoding(ResourceEncodingEnum.DEL);
+		entities.get(10).setResourceTextVc(null);
+		entities.get(10).setResource(null);
+
+		List<IBaseResource> parallel = newParser(4).toResources(entities, Map.of(), false);
+
+		Patient deleted = (Patient) parallel.get(10);
+		assertNull(deleted.getNameFirstRep().getFamily());
+		assertEquals("Family11", ((Patient) parallel.get(11)).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testToResources_ParallelParseFailureIsReported() {
+		List<ResourceHistoryTable> entities = createEntities(60);
+		entities.get(45).setEncoding(ResourceEncodingEnum.JSON);
+		entities.get(45).setResourceTextVc("{\"resourceType\":\"Patient\",");
+
+		assertThatThrownBy(() -> newParser(4).toResources(entities, Map.of(), false))
+			.isInstanceOf(DataFormatException.class)
+			.hasMessageContaining("HAPI-0928: Failed to parse database resource[Patient/P45 ");
+	}
+
+	@Test
+	public void testToResources_ParallelUsesBodyCache() {
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setSearchResultParsingThreadCount(4);
+		storageSettings.setResourceBodyCacheMaximumBytes(1_000_000);
+		ResourceBodyCacheSvcImpl cacheSvc = new ResourceBodyCacheSvcImpl(storageSettings);
+		JpaStorageResourceParser parser = newParser(ourCtx, storageSettings, cacheSvc);
+		myParsers.add(parser);
+
+		List<ResourceHistoryTable> entities = createEntities(100);
+		parser.toResources(entities, Map.of(), false);
+		assertEquals(0, cacheSvc.getHitCount());
+		assertEquals(100, cacheSvc.getEstimatedSize());
+
+		// Bodies are now served from the cache even if the entity contents are gone
+		entities.forEach(t -> {
+			t.setResource(null);
+			t.setResourceTextVc(null);
+		});
+		List<IBaseResource> actual = parser.toResources(entities, Map.of(), false);
+		assertEquals(100, cacheSvc.getHitCount());
+		assertThat(actual).allMatch(t -> ((Patient) t).getGender() == Enumerations.AdministrativeGender.FEMALE);
+
+		// Each call gets its own copy, so modifying one doesn't affect the cached body
+		actual.forEach(t -> ((Patient) t).setGender(Enumerations.AdministrativeGender.MALE));
+		List<IBaseResource> actual2 = parser.toResources(entities, Map.of(), false);
+		assertEquals(200, cacheSvc.getHitCount());
+		assertThat(actual2).allMatch(t -> ((Patient) t).getGender() == Enumerations.AdministrativeGender.FEMALE);
+	}
+
+	private JpaStorageResourceParser newParser(int theThreadCount) {
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setSearchResultParsingThreadCount(theThreadCount);
+		JpaStorageResourceParser retVal =
+				newParser(ourCtx, storageSettings, new ResourceBodyCacheSvcImpl(storageSettings));
+		myParsers.add(retVal);
+		return retVal;
+	}
+
+	static JpaStorageResourceParser newParser(
+			FhirContext theContext, JpaStorageSettings theStorageSettings, ResourceBodyCacheSvcImpl theCacheSvc) {
+		JpaStorageResourceParser retVal = new JpaStorageResourceParser();
+		try {
+			FieldUtils.writeField(retVal, "myFhirContext", theContext, true);
+			FieldUtils.writeField(retVal, "myStorageSettings", theStorageSettings, true);
+			FieldUtils.writeField(retVal, "myPartitionSettings", new PartitionSettings(), true);
+			FieldUtils.writeField(retVal, "myMetaTagSorter", new MetaTagSorterAlphabetical(), true);
+			FieldUtils.writeField(retVal, "myResourceBodyCacheSvc", theCacheSvc, true);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Creates history entities for Patient resources, alternating between the JSON and
+	 * compressed JSON encodings
+	 */
+	static List<ResourceHistoryTable> createEntities(int theCount) {
+		List<ResourceHistoryTable> retVal = new ArrayList<>(theCount);
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("http://example.com/mrn").setValue("MRN" + i);
+			patient.addName().setFamily("Family" + i).addGiven("Given" + i).addGiven("Middle");
+			patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+			patient.addAddress().addLine(i + " Main Street").setCity("Springfield").setCountry("CA");
+			patient.addTelecom().setValue("555-" + i);
+			String json = ourCtx.newJsonParser().encodeResourceToString(patient);
+
+			ResourceHistoryTable entity = new ResourceHistoryTable();
+			entity.setResourceId((long) i);
+			entity.setResourceType("Patient");
+			entity.setTransientForcedId("P" + i);
+			entity.setVersion(2);
+			entity.setFhirVersion(FhirVersionEnum.R4);
+			entity.setPublished(new Date());
+			entity.setUpdated(new Date());
+			if (i % 2 == 0) {
+				entity.setEncoding(ResourceEncodingEnum.JSON);
+				entity.setResourceTextVc(json);
+			} else {
+				entity.setEncoding(ResourceEncodingEnum.JSONC);
+				entity.setResource(GZipUtil.compress(json));
+			}
+			retVal.add(entity);
+		}
+		return retVal;
+	}
+}
@@ -0,0 +1,62 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.util.ResourceBodyCacheSvcImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a page of search results with and without concurrent parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchResultParsingBenchmark {
+
+	@Param({"50", "200", "1000"})
+	private int myPageSize;
+
+	@Param({"0", "4"})
+	private int myThreadCount;
+
+	private JpaStorageResourceParser myParser;
+	private List<ResourceHistoryTable> myEntities;
+
+	@Setup
+	public void setup() {
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setSearchResultParsingThreadCount(myThreadCount);
+		myParser = JpaStorageResourceParserTest.newParser(
+				FhirContext.forR4Cached(), storageSettings, new ResourceBodyCacheSvcImpl(storageSettings));
+		myEntities = JpaStorageResourceParserTest.createEntities(myPageSize);
+	}
+
+	@TearDown
+	public void tearDown() {
+		myParser.shutdown();
+	}
+
+	@Benchmark
+	public int parsePage() {
+		return myParser.toResources(myEntities, Map.of(), false).size();
+	}
+}
@@ -0,0 +1,157 @@
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.IConditionalUrlMembershipFilterSvc.MembershipEnum;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+public class ConditionalUrlMembershipFilterSvcImplTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final PartitionSettings myPartitionSettings = new PartitionSettings();
+	@Mock
+	private IResourceIndexedSearchParamTokenDao myTokenDao;
+	private ConditionalUrlMembershipFilterSvcImpl mySvc;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings.setConditionalUrlMembershipFilterEnabled(true);
+		mySvc = new ConditionalUrlMembershipFilterSvcImpl(
+			myStorageSettings, myPartitionSettings, new NonTransactionalHapiTransactionService(), myTokenDao);
+
+		long existingHash = newToken("http://foo", "1").getHashSystemAndValue();
+		lenient().when(myTokenDao.countForHashIdentity(anyLong())).thenReturn(1L);
+		lenient().when(myTokenDao.streamHashSystemAndValueForHashIdentity(anyLong())).thenAnswer(t -> Stream.of(existingHash));
+	}
+
+	@AfterEach
+	public void after() {
+		mySvc.shutdown();
+	}
+
+	@Test
+	public void testCheck() {
+		// The filter is built in the background after the first check
+		assertEquals(MembershipEnum.UNKNOWN, check("http://foo", "1"));
+		awaitFilterBuilt();
+
+		assertEquals(MembershipEnum.MAYBE_PRESENT, check("http://foo", "1"));
+		assertEquals(MembershipEnum.ABSENT, check("http://foo", "2"));
+		assertEquals(MembershipEnum.ABSENT, check("http://bar", "1"));
+
+		ConditionalUrlMembershipFilterSvcImpl.Statistics statistics = mySvc.getStatistics();
+		assertEquals(1, statistics.getFilterCount());
+		assertEquals(1, statistics.getApproximateElementCount());
+		assertEquals(3, statistics.getCheckCount());
+		assertEquals(2, statistics.getAbsentCount());
+		assertEquals(1, statistics.getRebuildCount());
+	}
+
+	@Test
+	public void testTokensWritten() {
+		check("http://foo", "1");
+		awaitFilterBuilt();
+		assertEquals(MembershipEnum.ABSENT, check("http://foo", "2"));
+
+		mySvc.tokensWritten(List.of(newToken("http://foo", "2")));
+		assertEquals(MembershipEnum.MAYBE_PRESENT, check("http://foo", "2"));
+
+		// Tokens for other parameters don't create new filters
+		ResourceIndexedSearchParamToken otherParam = new ResourceIndexedSearchParamToken(myPartitionSettings, "Patient", "code", "http://foo", "3");
+		mySvc.tokensWritten(List.of(otherParam));
+		assertEquals(1, mySvc.getStatistics().getFilterCount());
+	}
+
+	@Test
+	public void testCheck_UnsupportedUrls() {
+		check("http://foo", "1");
+		awaitFilterBuilt();
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous("identifier", new TokenParam(null, "2"));
+		assertEquals(MembershipEnum.UNKNOWN, check(map));
+
+		map = SearchParameterMap.newSynchronous("identifier", new TokenParam("http://foo", "2").setModifier(TokenParamModifier.NOT));
+		assertEquals(MembershipEnum.UNKNOWN, check(map));
+
+		map = SearchParameterMap.newSynchronous("_id", new TokenParam("http://foo", "2"));
+		assertEquals(MembershipEnum.UNKNOWN, check(map));
+
+		map = SearchParameterMap.newSynchronous("name", new StringParam("2"));
+		assertEquals(MembershipEnum.UNKNOWN, check(map));
+
+		map = SearchParameterMap.newSynchronous("identifier", new TokenParam("http://foo", "2"));
+		map.add("identifier", new TokenParam("http://foo", "3"));
+		assertEquals(MembershipEnum.UNKNOWN, check(map));
+
+		map = SearchParameterMap.newSynchronous("identifier", new TokenParam("http://foo", "2"));
+		map.add("birthdate", new TokenParam("http://foo", "3"));
+		assertEquals(MembershipEnum.UNKNOWN, check(map));
+	}
+
+	@Test
+	public void testCheck_Disabled() {
+		check("http://foo", "1");
+		awaitFilterBuilt();
+
+		myStorageSettings.setConditionalUrlMembershipFilterEnabled(false);
+		assertEquals(MembershipEnum.UNKNOWN, check("http://foo", "2"));
+
+		myStorageSettings.setConditionalUrlMembershipFilterEnabled(true);
+		myPartitionSettings.setPartitioningEnabled(true);
+		assertEquals(MembershipEnum.UNKNOWN, check("http://foo", "2"));
+	}
+
+	@Test
+	public void testObservedFalsePositiveRate() {
+		check("http://foo", "1");
+		awaitFilterBuilt();
+		for (int i = 0; i < 9; i++) {
+			assertEquals(MembershipEnum.ABSENT, check("http://foo", "A" + i));
+		}
+		mySvc.recordMaybePresentOutcome(true);
+		mySvc.recordMaybePresentOutcome(false);
+
+		ConditionalUrlMembershipFilterSvcImpl.Statistics statistics = mySvc.getStatistics();
+		assertEquals(1, statistics.getFalsePositiveCount());
+		assertEquals(1, statistics.getMaybePresentFoundCount());
+		assertEquals(0.1, statistics.getObservedFalsePositiveRate(), 0.0001);
+	}
+
+	private void awaitFilterBuilt() {
+		await().until(() -> mySvc.getStatistics().getFilterCount() == 1);
+	}
+
+	private MembershipEnum check(String theSystem, String theValue) {
+		return check(SearchParameterMap.newSynchronous("identifier", new TokenParam(theSystem, theValue)));
+	}
+
+	private MembershipEnum check(SearchParameterMap theMap) {
+		return mySvc.check("Patient", theMap, RequestPartitionId.defaultPartition());
+	}
+
+	private ResourceIndexedSearchParamToken newToken(String theSystem, String theValue) {
+		return new ResourceIndexedSearchParamToken(myPartitionSettings, "Patient", "identifier", theSystem, theValue);
+	}
+}
@@ -0,0 +1,372 @@
+package ca.uhn.fhir.jpa.dao.index;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.Embedded;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IndexRowBatchWriterTest {
+
+	private static final AtomicInteger ourDatabaseCounter = new AtomicInteger();
+	private final List<String> myStatements = new ArrayList<>();
+	private SessionFactory mySessionFactory;
+	private SessionImplementor mySession;
+	private IndexRowBatchWriter mySvc;
+
+	@BeforeEach
+	public void before() {
+		Configuration configuration = new Configuration()
+			.addAnnotatedClass(ParentEntity.class)
+			.addAnnotatedClass(ChildEntity.class)
+			.addAnnotatedClass(CompositeChildEntity.class)
+			.setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:IndexRowBatchWriterTest" + ourDatabaseCounter.incrementAndGet())
+			.setProperty(AvailableSettings.DIALECT, H2Dialect.class.getName())
+			.setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+		configuration.getProperties().put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+			myStatements.add(sql);
+			return sql;
+		});
+		mySessionFactory = configuration.buildSessionFactory();
+		mySession = (SessionImplementor) mySessionFactory.openSession();
+		mySession.beginTransaction();
+		mySvc = new IndexRowBatchWriter(mySession);
+	}
+
+	@AfterEach
+	public void after() {
+		if (mySession.getTransaction().isActive()) {
+			mySession.getTransaction().rollback();
+		}
+		mySession.close();
+		mySessionFactory.close();
+	}
+
+	@Test
+	public void testInsert() {
+		assertTrue(mySvc.isSupported());
+		ParentEntity parent = new ParentEntity();
+		mySession.persist(parent);
+
+		List<ChildEntity> children = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			ChildEntity child = new ChildEntity(parent, "value-" + i + "-too-long-for-the-column");
+			assertTrue(mySvc.canWrite(child));
+			mySvc.insert(child);
+			// Inserting twice has no effect
+			mySvc.insert(child);
+			children.add(child);
+		}
+		assertEquals(0, countRows("TEST_CHILD"));
+		assertNull(children.get(0).myId);
+
+		myStatements.clear();
+		mySession.flush();
+
+		assertEquals(250, countRows("TEST_CHILD"));
+		assertThat(myStatements).filteredOn(t -> t.startsWith("insert into TEST_CHILD")).hasSize(3);
+		for (ChildEntity next : children) {
+			assertNotNull(next.myId);
+			assertTrue(mySession.contains(next));
+		}
+		assertEquals(250, children.stream().map(t -> t.myId).distinct().count());
+
+		ChildEntity loaded = mySession.find(ChildEntity.class, children.get(7).myId);
+		assertTrue(loaded == children.get(7));
+		mySession.clear();
+		loaded = mySession.find(ChildEntity.class, children.get(7).myId);
+		assertEquals("value-7-to", loaded.myValue);
+		assertEquals(parent.myId, loaded.myParentId);
+		assertEquals(parent.myId, mySession.getIdentifier(loaded.myOtherParent));
+		assertEquals(3, loaded.myPartition.myPartitionId);
+	}
+
+	@Test
+	public void testUpdateAfterInsert() {
+		ParentEntity parent = new ParentEntity();
+		mySession.persist(parent);
+		ChildEntity child = new ChildEntity(parent, "A");
+		mySvc.insert(child);
+		mySession.flush();
+
+		child.myValue = "B";
+		mySession.flush();
+		mySession.clear();
+
+		assertEquals("B", mySession.find(ChildEntity.class, child.myId).myValue);
+	}
+
+	@Test
+	public void testRemovePendingInsert() {
+		ParentEntity parent = new ParentEntity();
+		mySession.persist(parent);
+		ChildEntity child0 = new ChildEntity(parent, "A");
+		ChildEntity child1 = new ChildEntity(parent, "B");
+		mySvc.insert(child0);
+		mySvc.insert(child1);
+
+		assertTrue(mySvc.remove(child0));
+		mySession.flush();
+
+		assertEquals(1, countRows("TEST_CHILD"));
+		assertNull(child0.myId);
+		assertFalse(mySession.contains(child0));
+		assertTrue(mySession.contains(child1));
+	}
+
+	@Test
+	public void testRemoveManaged() {
+		ParentEntity parent = new ParentEntity();
+		mySession.persist(parent);
+		List<ChildEntity> children = new ArrayList<>();
+		for (int i = 0; i < 150; i++) {
+			ChildEntity child = new ChildEntity(parent, "value-" + i);
+			children.add(child);
+			if (i < 75) {
+				// Written by Hibernate
+				mySession.persist(child);
+			} else {
+				// Written by the writer
+				mySvc.insert(child);
+			}
+		}
+		mySession.flush();
+		assertEquals(150, countRows("TEST_CHILD"));
+
+		myStatements.clear();
+		for (int i = 0; i < 140; i++) {
+			assertTrue(mySvc.remove(children.get(i)));
+			assertFalse(mySession.contains(children.get(i)));
+		}
+		assertEquals(150, countRows("TEST_CHILD"));
+		mySession.flush();
+
+		assertEquals(10, countRows("TEST_CHILD"));
+		assertThat(myStatements).filteredOn(t -> t.startsWith("delete from TEST_CHILD")).hasSize(2);
+
+		// Not managed and not pending
+		assertFalse(mySvc.remove(new ChildEntity(parent, "C")));
+	}
+
+	@Test
+	public void testRemoveWithParentInSameFlush() {
+		ParentEntity parent = new ParentEntity();
+		mySession.persist(parent);
+		ChildEntity child = new ChildEntity(parent, "A");
+		mySvc.insert(child);
+		mySession.flush();
+
+		// The child row has to be deleted before Hibernate deletes the parent row it references
+		myStatements.clear();
+		assertTrue(mySvc.remove(child));
+		mySession.remove(parent);
+		mySession.flush();
+
+		assertEquals(0, countRows("TEST_CHILD"));
+		assertEquals(0, countRows("TEST_PARENT"));
+		assertThat(myStatements.get(0)).startsWith("delete from TEST_CHILD");
+	}
+
+	@Test
+	public void testWrittenOnCommitWithNoManagedEntities() {
+		CompositeChildEntity child = new CompositeChildEntity();
+		child.myPartitionId = 1;
+		mySvc.insert(child);
+
+		// Hibernate doesn't flush if there are no managed entities
+		mySession.flush();
+		assertEquals(0, countRows("TEST_COMPOSITE_CHILD"));
+
+		mySession.getTransaction().commit();
+		assertEquals(1, countRows("TEST_COMPOSITE_CHILD"));
+	}
+
+	@Test
+	public void testCompositeId() {
+		ParentEntity parent = new ParentEntity();
+		mySession.persist(parent);
+		List<CompositeChildEntity> children = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			CompositeChildEntity child = new CompositeChildEntity();
+			child.myPartitionId = i % 2;
+			child.myValue = "value-" + i;
+			mySvc.insert(child);
+			children.add(child);
+		}
+		mySession.flush();
+
+		assertEquals(5, countRows("TEST_COMPOSITE_CHILD"));
+		assertNotNull(children.get(0).myId);
+
+		assertTrue(mySvc.remove(children.get(1)));
+		assertTrue(mySvc.remove(children.get(2)));
+		mySession.flush();
+		assertEquals(3, countRows("TEST_COMPOSITE_CHILD"));
+
+		mySession.clear();
+		CompositeId id = new CompositeId();
+		id.myId = children.get(4).myId;
+		id.myPartitionId = 0;
+		assertEquals("value-4", mySession.find(CompositeChildEntity.class, id).myValue);
+	}
+
+	@Test
+	public void testWrittenBeforeQuery() {
+		ParentEntity parent = new ParentEntity();
+		mySession.persist(parent);
+		mySvc.insert(new ChildEntity(parent, "A"));
+
+		// Executing a query causes an automatic flush
+		Long count = mySession
+			.createQuery("SELECT COUNT(c) FROM ChildEntity c", Long.class)
+			.getSingleResult();
+		assertEquals(1L, count);
+	}
+
+	private int countRows(String theTable) {
+		return mySession.doReturningWork(connection -> {
+			try (ResultSet resultSet = connection.createStatement().executeQuery("select count(*) from " + theTable)) {
+				resultSet.next();
+				return resultSet.getInt(1);
+			}
+		});
+	}
+
+	@Entity(name = "ParentEntity")
+	@Table(name = "TEST_PARENT")
+	public static class ParentEntity {
+
+		@Id
+		@GeneratedValue(strategy = GenerationType.SEQUENCE)
+		@Column(name = "ID")
+		private Long myId;
+
+		@OneToMany(mappedBy = "myParent", fetch = FetchType.LAZY)
+		private Collection<ChildEntity> myChildren;
+	}
+
+	@Embeddable
+	public static class PartitionInfo {
+
+		@Column(name = "PARTITION_ID")
+		private Integer myPartitionId;
+	}
+
+	@Entity(name = "ChildEntity")
+	@Table(name = "TEST_CHILD")
+	public static class ChildEntity {
+
+		@Id
+		@SequenceGenerator(name = "SEQ_TEST_CHILD", sequenceName = "SEQ_TEST_CHILD", allocationSize = 50)
+		@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_TEST_CHILD")
+		@Column(name = "ID")
+		private Long myId;
+
+		@ManyToOne(fetch = FetchType.LAZY)
+		@JoinColumn(name = "PARENT_ID", insertable = false, updatable = false)
+		private ParentEntity myParent;
+
+		@Column(name = "PARENT_ID")
+		private Long myParentId;
+
+		@ManyToOne(fetch = FetchType.LAZY)
+		@JoinColumn(name = "OTHER_PARENT_ID")
+		private ParentEntity myOtherParent;
+
+		@Column(name = "VAL", length = 10)
+		private String myValue;
+
+		@Embedded
+		private PartitionInfo myPartition;
+
+		public ChildEntity() {
+			super();
+		}
+
+		ChildEntity(ParentEntity theParent, String theValue) {
+			myParent = theParent;
+			myParentId = theParent.myId;
+			myOtherParent = theParent;
+			myValue = theValue;
+			myPartition = new PartitionInfo();
+			myPartition.myPartitionId = 3;
+		}
+
+		@PrePersist
+		public void truncateFieldsForDB() {
+			myValue = StringUtils.truncate(myValue, 10);
+		}
+	}
+
+	public static class CompositeId implements Serializable {
+
+		private Long myId;
+		private Integer myPartitionId;
+
+		@Override
+		public boolean equals(Object theO) {
+			return theO instanceof CompositeId other
+				&& Objects.equals(myId, other.myId)
+				&& Objects.equals(myPartitionId, other.myPartitionId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(myId, myPartitionId);
+		}
+	}
+
+	@Entity(name = "CompositeChildEntity")
+	@Table(name = "TEST_COMPOSITE_CHILD")
+	@IdClass(CompositeId.class)
+	public static class CompositeChildEntity {
+
+		@Id
+		@SequenceGenerator(name = "SEQ_TEST_COMPOSITE", sequenceName = "SEQ_TEST_COMPOSITE", allocationSize = 50)
+		@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_TEST_COMPOSITE")
+		@Column(name = "ID")
+		private Long myId;
+
+		@Id
+		@Column(name = "PARTITION_ID")
+		private Integer myPartitionId;
+
+		@Column(name = "VAL")
+		private String myValue;
+	}
+}
@@ -0,0 +1,130 @@
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamNumber;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a burst of updates to a single resource whose indexes don't change, comparing the
+ * fingerprint check used when {@link JpaStorageSettings#setSkipUnchangedIndexSynchronization(boolean)}
+ * is enabled against the in-memory diff performed by the normal synchronization path. The normal
+ * path also loads the existing index rows from the database before diffing them, which isn't
+ * included here, so this only shows the CPU cost of each approach.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexSynchronizationBurstBenchmark {
+
+	private static final int BURST_SIZE = 100;
+
+	@Param({"10", "100", "500"})
+	private int myIndexRowCount;
+
+	private final PartitionSettings myPartitionSettings = new PartitionSettings();
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private ResourceIndexedSearchParams myExistingParams;
+	private ResourceIndexFingerprint myExistingFingerprint;
+	private List<ResourceIndexedSearchParams> myBurst;
+
+	@Setup
+	public void setup() {
+		ResourceTable entity = new ResourceTable();
+		entity.setIdForUnitTest(123L);
+		entity.setResourceType("Observation");
+
+		myExistingParams = newParams(entity);
+		myExistingFingerprint = ResourceIndexFingerprint.forParams(1, myExistingParams);
+
+		// Each update extracts new index rows with the same values as the existing ones
+		myBurst = new ArrayList<>(BURST_SIZE);
+		for (int i = 0; i < BURST_SIZE; i++) {
+			myBurst.add(newParams(entity));
+		}
+	}
+
+	@Benchmark
+	public int fingerprint() {
+		int retVal = 0;
+		for (int i = 0; i < myBurst.size(); i++) {
+			ResourceIndexFingerprint next = ResourceIndexFingerprint.forParams(i + 2, myBurst.get(i));
+			if (next.hasSameIndexes(myExistingFingerprint)) {
+				retVal++;
+			}
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public int diff() {
+		int retVal = 0;
+		for (ResourceIndexedSearchParams next : myBurst) {
+			retVal += DaoSearchParamSynchronizer.subtract(myExistingParams.myTokenParams, next.myTokenParams)
+					.size();
+			retVal += DaoSearchParamSynchronizer.subtract(next.myTokenParams, myExistingParams.myTokenParams)
+					.size();
+			retVal += DaoSearchParamSynchronizer.subtract(myExistingParams.myStringParams, next.myStringParams)
+					.size();
+			retVal += DaoSearchParamSynchronizer.subtract(next.myStringParams, myExistingParams.myStringParams)
+					.size();
+			retVal += DaoSearchParamSynchronizer.subtract(myExistingParams.myNumberParams, next.myNumberParams)
+					.size();
+			retVal += DaoSearchParamSynchronizer.subtract(next.myNumberParams, myExistingParams.myNumberParams)
+					.size();
+		}
+		return retVal;
+	}
+
+	private ResourceIndexedSearchParams newParams(ResourceTable theEntity) {
+		ResourceIndexedSearchParams retVal = ResourceIndexedSearchParams.withSets();
+		for (int i = 0; i < myIndexRowCount; i++) {
+			switch (i % 3) {
+				case 0 -> {
+					ResourceIndexedSearchParamToken token = new ResourceIndexedSearchParamToken(
+							myPartitionSettings, "Observation", "identifier", "http://acme.org", "ID" + i);
+					token.setResource(theEntity);
+					token.calculateHashes();
+					retVal.myTokenParams.add(token);
+				}
+				case 1 -> {
+					ResourceIndexedSearchParamString string = new ResourceIndexedSearchParamString(
+							myPartitionSettings, myStorageSettings, "Observation", "note", "VALUE" + i, "Value" + i);
+					string.setResource(theEntity);
+					string.calculateHashes();
+					retVal.myStringParams.add(string);
+				}
+				default -> {
+					ResourceIndexedSearchParamNumber number = new ResourceIndexedSearchParamNumber(
+							myPartitionSettings, "Observation", "value", new BigDecimal(i));
+					number.setResource(theEntity);
+					number.calculateHashes();
+					retVal.myNumberParams.add(number);
+				}
+			}
+		}
+		return retVal;
+	}
+}
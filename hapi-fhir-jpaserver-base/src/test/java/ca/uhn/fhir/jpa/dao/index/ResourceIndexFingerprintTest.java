@@ -0,0 +1,146 @@
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamNumber;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantity;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceIndexFingerprintTest {
+
+	private final PartitionSettings myPartitionSettings = new PartitionSettings();
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final DaoSearchParamSynchronizer mySynchronizer = new DaoSearchParamSynchronizer();
+	private ResourceTable myEntity;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings.setSkipUnchangedIndexSynchronization(true);
+		mySynchronizer.setStorageSettings(myStorageSettings);
+		mySynchronizer.setMemoryCacheService(new MemoryCacheService(myStorageSettings));
+
+		myEntity = new ResourceTable();
+		myEntity.setIdForUnitTest(123L);
+		myEntity.setResourceType("Observation");
+		myEntity.setVersionForUnitTest(1L);
+	}
+
+	@Test
+	public void testSameIndexesInAnyOrderHaveSameFingerprint() {
+		ResourceIndexedSearchParams params0 = ResourceIndexedSearchParams.withLists(myEntity);
+		params0.myTokenParams.add(newToken("code", "http://loinc.org", "8867-4"));
+		params0.myTokenParams.add(newToken("status", null, "final"));
+		params0.myNumberParams.add(newNumber("value", "10"));
+
+		ResourceIndexedSearchParams params1 = ResourceIndexedSearchParams.withLists(myEntity);
+		params1.myNumberParams.add(newNumber("value", "10.0"));
+		params1.myTokenParams.add(newToken("status", null, "final"));
+		params1.myTokenParams.add(newToken("code", "http://loinc.org", "8867-4"));
+
+		ResourceIndexFingerprint fingerprint0 = ResourceIndexFingerprint.forParams(1, params0);
+		ResourceIndexFingerprint fingerprint1 = ResourceIndexFingerprint.forParams(2, params1);
+		assertTrue(fingerprint0.hasSameIndexes(fingerprint1));
+		assertEquals(2, fingerprint1.getResourceVersion());
+	}
+
+	@Test
+	public void testChangedIndexesHaveDifferentFingerprint() {
+		ResourceIndexedSearchParams params0 = ResourceIndexedSearchParams.withLists(myEntity);
+		params0.myTokenParams.add(newToken("code", "http://loinc.org", "8867-4"));
+		params0.myQuantityParams.add(newQuantity("10.0"));
+		ResourceIndexFingerprint fingerprint0 = ResourceIndexFingerprint.forParams(1, params0);
+
+		// Different value
+		ResourceIndexedSearchParams params1 = ResourceIndexedSearchParams.withLists(myEntity);
+		params1.myTokenParams.add(newToken("code", "http://loinc.org", "8867-5"));
+		params1.myQuantityParams.add(newQuantity("10.0"));
+		assertFalse(fingerprint0.hasSameIndexes(ResourceIndexFingerprint.forParams(1, params1)));
+
+		// Same rows in a different family
+		ResourceIndexedSearchParams params2 = ResourceIndexedSearchParams.withLists(myEntity);
+		params2.myTokenParams.add(newToken("code", "http://loinc.org", "8867-4"));
+		assertFalse(fingerprint0.hasSameIndexes(ResourceIndexFingerprint.forParams(1, params2)));
+
+		// Different quantity
+		ResourceIndexedSearchParams params3 = ResourceIndexedSearchParams.withLists(myEntity);
+		params3.myTokenParams.add(newToken("code", "http://loinc.org", "8867-4"));
+		params3.myQuantityParams.add(newQuantity("10.1"));
+		assertFalse(fingerprint0.hasSameIndexes(ResourceIndexFingerprint.forParams(1, params3)));
+
+		// An extra row
+		ResourceIndexedSearchParams params4 = ResourceIndexedSearchParams.withLists(myEntity);
+		params4.myTokenParams.add(newToken("code", "http://loinc.org", "8867-4"));
+		params4.myQuantityParams.add(newQuantity("10.0"));
+		params4.myStringParams.add(new ResourceIndexedSearchParamString(
+				myPartitionSettings, myStorageSettings, "Observation", "note", "HELLO", "Hello"));
+		assertFalse(fingerprint0.hasSameIndexes(ResourceIndexFingerprint.forParams(1, params4)));
+	}
+
+	@Test
+	public void testSynchronizerFingerprintIsOnlyValidForRecordedVersion() {
+		ResourceIndexedSearchParams params = ResourceIndexedSearchParams.withSets();
+		params.myTokenParams.add(newToken("code", "http://loinc.org", "8867-4"));
+		assertNull(mySynchronizer.getIndexFingerprint(myEntity));
+
+		// No active transaction, so this is recorded immediately
+		mySynchronizer.recordIndexFingerprint(myEntity, params);
+		ResourceIndexFingerprint fingerprint = mySynchronizer.getIndexFingerprint(myEntity);
+		assertNotNull(fingerprint);
+
+		ResourceIndexedSearchParams newParams = ResourceIndexedSearchParams.withSets();
+		newParams.myTokenParams.add(newToken("code", "http://loinc.org", "8867-4"));
+		assertTrue(mySynchronizer.isUnchanged(fingerprint, myEntity, newParams));
+		newParams.myTokenParams.add(newToken("status", null, "final"));
+		assertFalse(mySynchronizer.isUnchanged(fingerprint, myEntity, newParams));
+
+		// A newer version was written somewhere else
+		myEntity.setVersionForUnitTest(2L);
+		assertNull(mySynchronizer.getIndexFingerprint(myEntity));
+
+		// The unchanged indexes are carried forward to the new version
+		mySynchronizer.recordIndexFingerprint(myEntity, fingerprint);
+		assertNotNull(mySynchronizer.getIndexFingerprint(myEntity));
+
+		mySynchronizer.invalidateIndexFingerprint(myEntity);
+		assertNull(mySynchronizer.getIndexFingerprint(myEntity));
+
+		myStorageSettings.setSkipUnchangedIndexSynchronization(false);
+		mySynchronizer.recordIndexFingerprint(myEntity, params);
+		assertNull(mySynchronizer.getIndexFingerprint(myEntity));
+	}
+
+	private ResourceIndexedSearchParamToken newToken(String theParamName, String theSystem, String theValue) {
+		ResourceIndexedSearchParamToken retVal = new ResourceIndexedSearchParamToken(
+				myPartitionSettings, "Observation", theParamName, theSystem, theValue);
+		retVal.calculateHashes();
+		return retVal;
+	}
+
+	private ResourceIndexedSearchParamNumber newNumber(String theParamName, String theValue) {
+		ResourceIndexedSearchParamNumber retVal = new ResourceIndexedSearchParamNumber(
+				myPartitionSettings, "Observation", theParamName, new BigDecimal(theValue));
+		retVal.calculateHashes();
+		return retVal;
+	}
+
+	private ResourceIndexedSearchParamQuantity newQuantity(String theValue) {
+		ResourceIndexedSearchParamQuantity retVal = new ResourceIndexedSearchParamQuantity(
+				myPartitionSettings, "Observation", "value-quantity", new BigDecimal(theValue), "http://unitsofmeasure.org", "kg");
+		retVal.calculateHashes();
+		return retVal;
+	}
+}
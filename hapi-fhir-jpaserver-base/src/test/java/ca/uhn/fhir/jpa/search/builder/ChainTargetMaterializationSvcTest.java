@@ -0,0 +1,142 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.IResultIterator;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChainTargetMaterializationSvcTest {
+
+	private final FhirContext myFhirContext = FhirContext.forR4Cached();
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final SystemRequestDetails myRequestDetails = new SystemRequestDetails();
+	private final RequestPartitionId myRequestPartitionId = RequestPartitionId.defaultPartition();
+
+	@Mock
+	private DaoRegistry myDaoRegistry;
+	@Mock
+	private IFhirResourceDao<Patient> myPatientDao;
+	@Mock
+	private SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+	@Mock
+	private ISearchBuilder<JpaPid> mySearchBuilder;
+	@Mock
+	private IResultIterator<JpaPid> myResultIterator;
+
+	private ChainTargetMaterializationSvc mySvc;
+
+	@BeforeEach
+	void before() {
+		mySvc = new ChainTargetMaterializationSvc(myStorageSettings, myFhirContext, myDaoRegistry, mySearchBuilderFactory);
+	}
+
+	@Test
+	void testDisabled() {
+		assertFalse(mySvc.isEnabled());
+		assertNull(mySvc.resolve(myRequestDetails, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar"))));
+		verifyNoInteractions(mySearchBuilderFactory);
+	}
+
+	@Test
+	void testResolve() {
+		myStorageSettings.setSearchChainMaterializationThreshold(2);
+		mockSearch();
+		when(myResultIterator.hasNext()).thenReturn(true, true, true, false);
+		when(myResultIterator.next()).thenReturn(JpaPid.fromId(1L), JpaPid.fromId(2L), JpaPid.fromId(1L));
+
+		List<JpaPid> pids = mySvc.resolve(myRequestDetails, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar")));
+		assertThat(pids).containsExactly(JpaPid.fromId(1L), JpaPid.fromId(2L));
+
+		ArgumentCaptor<SearchParameterMap> mapCaptor = ArgumentCaptor.forClass(SearchParameterMap.class);
+		verify(mySearchBuilder).createQuery(mapCaptor.capture(), any(), eq(myRequestDetails), eq(myRequestPartitionId));
+		assertEquals("?identifier=foo%7Cbar", mapCaptor.getValue().toNormalizedQueryString(myFhirContext));
+		verify(mySearchBuilder).setMaxResultsToFetch(3);
+
+		// The same search in the same request is only executed once
+		pids = mySvc.resolve(myRequestDetails, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar")));
+		assertThat(pids).containsExactly(JpaPid.fromId(1L), JpaPid.fromId(2L));
+		verify(mySearchBuilderFactory, times(1)).newSearchBuilder(any(), any());
+
+		// A different request searches again
+		mySvc.resolve(new SystemRequestDetails(), myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar")));
+		verify(mySearchBuilderFactory, times(2)).newSearchBuilder(any(), any());
+	}
+
+	@Test
+	void testResolve_NotRememberedDuringTransaction() {
+		myStorageSettings.setSearchChainMaterializationThreshold(2);
+		mockSearch();
+		when(myResultIterator.hasNext()).thenReturn(true, false, true, true, false);
+		when(myResultIterator.next()).thenReturn(JpaPid.fromId(1L), JpaPid.fromId(1L), JpaPid.fromId(2L));
+
+		// Writes earlier in the transaction can change the matches, so each lookup searches again
+		myRequestDetails.setRestOperationType(RestOperationTypeEnum.TRANSACTION);
+		List<JpaPid> pids = mySvc.resolve(myRequestDetails, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar")));
+		assertThat(pids).containsExactly(JpaPid.fromId(1L));
+		pids = mySvc.resolve(myRequestDetails, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar")));
+		assertThat(pids).containsExactly(JpaPid.fromId(1L), JpaPid.fromId(2L));
+		verify(mySearchBuilderFactory, times(2)).newSearchBuilder(any(), any());
+
+		// The same applies to the entries of a batch
+		SystemRequestDetails subRequest = new SystemRequestDetails();
+		subRequest.setSubRequest(true);
+		when(myResultIterator.hasNext()).thenReturn(false);
+		mySvc.resolve(subRequest, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar")));
+		mySvc.resolve(subRequest, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar")));
+		verify(mySearchBuilderFactory, times(4)).newSearchBuilder(any(), any());
+	}
+
+	@Test
+	void testResolve_TooManyMatches() {
+		myStorageSettings.setSearchChainMaterializationThreshold(2);
+		mockSearch();
+		when(myResultIterator.hasNext()).thenReturn(true);
+		when(myResultIterator.next()).thenReturn(JpaPid.fromId(1L), JpaPid.fromId(2L), JpaPid.fromId(3L));
+
+		assertNull(mySvc.resolve(myRequestDetails, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar"))));
+		verify(myResultIterator, times(3)).next();
+
+		// The failure is remembered too
+		assertNull(mySvc.resolve(myRequestDetails, myRequestPartitionId, "Patient", "identifier", List.of(new TokenParam("foo", "bar"))));
+		verify(mySearchBuilderFactory, times(1)).newSearchBuilder(any(), any());
+	}
+
+	private void mockSearch() {
+		when(myDaoRegistry.isResourceTypeSupported("Patient")).thenReturn(true);
+		doReturn(myPatientDao).when(myDaoRegistry).getResourceDao("Patient");
+		when(myPatientDao.getResourceType()).thenReturn(Patient.class);
+		when(mySearchBuilderFactory.newSearchBuilder(eq("Patient"), eq(Patient.class))).thenReturn(mySearchBuilder);
+		when(mySearchBuilder.createQuery(any(), any(), any(), any())).thenReturn(myResultIterator);
+	}
+}
@@ -0,0 +1,150 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncludeLoadingExecutorSvcTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final IncludeLoadingExecutorSvc mySvc =
+			new IncludeLoadingExecutorSvc(myStorageSettings, new NonTransactionalHapiTransactionService());
+
+	@AfterEach
+	void afterEach() {
+		mySvc.shutdown();
+	}
+
+	@Test
+	void testDisabled_RunsOnCallingThread() {
+		assertFalse(mySvc.isEnabled());
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			int value = i;
+			tasks.add(() -> {
+				threadNames.add(Thread.currentThread().getName());
+				return value;
+			});
+		}
+
+		List<Integer> results = mySvc.executeAll(new SystemRequestDetails(), null, tasks);
+
+		assertThat(results).containsExactly(0, 1, 2, 3, 4);
+		assertThat(threadNames).containsExactly(Thread.currentThread().getName());
+	}
+
+	@Test
+	void testEnabled_RunsConcurrentlyAndPreservesOrder() {
+		myStorageSettings.setIncludeLoadingThreadCount(4);
+		assertTrue(mySvc.isEnabled());
+
+		// Every task waits until all of them have started, which only completes if they run concurrently
+		int taskCount = 4;
+		CountDownLatch started = new CountDownLatch(taskCount);
+		List<Callable<String>> tasks = new ArrayList<>();
+		for (int i = 0; i < taskCount; i++) {
+			String value = "task" + i;
+			tasks.add(() -> {
+				started.countDown();
+				assertTrue(started.await(10, TimeUnit.SECONDS));
+				return value;
+			});
+		}
+
+		List<String> results = mySvc.executeAll(new SystemRequestDetails(), null, tasks);
+
+		assertThat(results).containsExactly("task0", "task1", "task2", "task3");
+	}
+
+	@Test
+	void testEnabled_PoolFailureIsPropagated() {
+		myStorageSettings.setIncludeLoadingThreadCount(2);
+		List<Callable<String>> tasks = List.of(
+				() -> {
+					throw new InternalErrorException("Failed!");
+				},
+				() -> "ok");
+
+		assertThatThrownBy(() -> mySvc.executeAll(new SystemRequestDetails(), null, tasks))
+				.isInstanceOf(InternalErrorException.class)
+				.hasMessage("Failed!");
+	}
+
+	@Test
+	void testEnabled_InWriteTransaction_RunsOnCallingThread() {
+		myStorageSettings.setIncludeLoadingThreadCount(4);
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			int value = i;
+			tasks.add(() -> {
+				threadNames.add(Thread.currentThread().getName());
+				return value;
+			});
+		}
+
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+		List<Integer> results;
+		try {
+			results = mySvc.executeAll(new SystemRequestDetails(), null, tasks);
+		} finally {
+			TransactionSynchronizationManager.clear();
+		}
+
+		assertThat(results).containsExactly(0, 1, 2, 3);
+		assertThat(threadNames).containsExactly(Thread.currentThread().getName());
+	}
+
+	@Test
+	void testEnabled_InReadOnlyTransaction_UsesPool() {
+		myStorageSettings.setIncludeLoadingThreadCount(4);
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			tasks.add(() -> {
+				threadNames.add(Thread.currentThread().getName());
+				return 0;
+			});
+		}
+
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		try {
+			mySvc.executeAll(new SystemRequestDetails(), null, tasks);
+		} finally {
+			TransactionSynchronizationManager.clear();
+		}
+
+		assertThat(threadNames).anyMatch(t -> t.startsWith("search-include-loading-"));
+	}
+
+	@Test
+	void testEnabled_SingleTaskRunsOnCallingThread() {
+		myStorageSettings.setIncludeLoadingThreadCount(2);
+		List<Callable<String>> tasks = List.of(() -> Thread.currentThread().getName());
+
+		List<String> results = mySvc.executeAll(new SystemRequestDetails(), null, tasks);
+
+		assertEquals(List.of(Thread.currentThread().getName()), results);
+	}
+}
@@ -0,0 +1,170 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryExecutor;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PartitionFanOutSearchQueryExecutorTest {
+
+	private static final Comparator<Object[]> ASCENDING_NULLS_LAST =
+			Comparator.comparing(t -> (Long) t[0], Comparator.nullsLast(Comparator.naturalOrder()));
+
+	@Test
+	void testUnsorted_ReturnsEachPartitionInTurn() {
+		List<FakePartitionResults> partitions = List.of(
+				new FakePartitionResults(new long[] {5, 1}, null),
+				new FakePartitionResults(new long[] {}, null),
+				new FakePartitionResults(new long[] {3}, null));
+
+		List<Long> results = toList(new PartitionFanOutSearchQueryExecutor(suppliers(partitions), null));
+
+		assertThat(results).containsExactly(5L, 1L, 3L);
+		assertTrue(partitions.stream().allMatch(t -> t.myClosed));
+	}
+
+	@Test
+	void testSorted_MergesInSortOrder() {
+		List<FakePartitionResults> partitions = List.of(
+				new FakePartitionResults(new long[] {1, 4, 7, 100}, new Long[] {1L, 4L, 7L, null}),
+				new FakePartitionResults(new long[] {2, 5, 8}, new Long[] {2L, 5L, 8L}),
+				new FakePartitionResults(new long[] {3, 6, 101}, new Long[] {3L, 6L, null}));
+
+		List<Long> results =
+				toList(new PartitionFanOutSearchQueryExecutor(suppliers(partitions), ASCENDING_NULLS_LAST));
+
+		assertThat(results).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 100L, 101L);
+	}
+
+	@Test
+	void testNotStartedUntilUsed() {
+		List<Supplier<PartitionFanOutSearchQueryExecutor.IPartitionResults>> suppliers = new ArrayList<>();
+		suppliers.add(() -> {
+			throw new IllegalStateException("Should not be started");
+		});
+
+		PartitionFanOutSearchQueryExecutor executor = new PartitionFanOutSearchQueryExecutor(suppliers, null);
+		executor.close();
+	}
+
+	@Test
+	void testQueuedResults() {
+		SearchQueryExecutor queryExecutor = mock(SearchQueryExecutor.class);
+		when(queryExecutor.hasNext()).thenReturn(true, true, false);
+		when(queryExecutor.next()).thenReturn(JpaPid.fromId(1L), JpaPid.fromId(2L));
+		when(queryExecutor.getSortValues()).thenReturn(new Object[] {"A"}, new Object[] {"B"});
+
+		PartitionFanOutSearchQueryExecutor.QueuedPartitionResults results =
+				new PartitionFanOutSearchQueryExecutor.QueuedPartitionResults();
+		Thread producer = new Thread(() -> results.produce(() -> results.consume(queryExecutor)));
+		producer.start();
+
+		assertTrue(results.hasNext());
+		assertThat(results.next().getId()).isEqualTo(1L);
+		assertThat(results.getSortValues()).containsExactly("A");
+		assertTrue(results.hasNext());
+		assertThat(results.next().getId()).isEqualTo(2L);
+		assertThat(results.getSortValues()).containsExactly("B");
+		assertFalse(results.hasNext());
+		assertFalse(results.hasNext());
+	}
+
+	@Test
+	void testQueuedResults_FailureIsPropagated() {
+		PartitionFanOutSearchQueryExecutor.QueuedPartitionResults results =
+				new PartitionFanOutSearchQueryExecutor.QueuedPartitionResults();
+		results.produce(() -> {
+			throw new InternalErrorException("FAILED");
+		});
+
+		assertThatThrownBy(results::hasNext)
+				.isInstanceOf(InternalErrorException.class)
+				.hasMessage("FAILED");
+	}
+
+	@Test
+	void testQueuedResults_CloseStopsProducer() throws InterruptedException {
+		SearchQueryExecutor queryExecutor = mock(SearchQueryExecutor.class);
+		when(queryExecutor.hasNext()).thenReturn(true);
+		when(queryExecutor.next()).thenReturn(JpaPid.fromId(1L));
+
+		PartitionFanOutSearchQueryExecutor.QueuedPartitionResults results =
+				new PartitionFanOutSearchQueryExecutor.QueuedPartitionResults();
+		Thread producer = new Thread(() -> results.produce(() -> results.consume(queryExecutor)));
+		producer.start();
+
+		// The producer fills the buffer and then waits for it to be consumed
+		assertTrue(results.hasNext());
+		results.close();
+		producer.join(10_000);
+		assertFalse(producer.isAlive());
+	}
+
+	private static List<Long> toList(PartitionFanOutSearchQueryExecutor theExecutor) {
+		List<Long> retVal = new ArrayList<>();
+		while (theExecutor.hasNext()) {
+			retVal.add(theExecutor.next().getId());
+		}
+		theExecutor.close();
+		return retVal;
+	}
+
+	private static List<Supplier<PartitionFanOutSearchQueryExecutor.IPartitionResults>> suppliers(
+			List<FakePartitionResults> thePartitions) {
+		List<Supplier<PartitionFanOutSearchQueryExecutor.IPartitionResults>> retVal = new ArrayList<>();
+		for (FakePartitionResults next : thePartitions) {
+			retVal.add(() -> next);
+		}
+		return retVal;
+	}
+
+	private static class FakePartitionResults implements PartitionFanOutSearchQueryExecutor.IPartitionResults {
+
+		private final Iterator<Long> myPids;
+		private final Iterator<Long> mySortValues;
+		private Object[] myCurrentSortValues;
+		private boolean myClosed;
+
+		private FakePartitionResults(long[] thePids, Long[] theSortValues) {
+			myPids = Arrays.stream(thePids).boxed().iterator();
+			mySortValues = theSortValues != null ? Arrays.asList(theSortValues).iterator() : null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return myPids.hasNext();
+		}
+
+		@Override
+		public JpaPid next() {
+			if (mySortValues != null) {
+				myCurrentSortValues = new Object[] {mySortValues.next()};
+			}
+			return JpaPid.fromId(myPids.next());
+		}
+
+		@Override
+		public Object[] getSortValues() {
+			return myCurrentSortValues;
+		}
+
+		@Override
+		public void close() {
+			myClosed = true;
+		}
+	}
+}
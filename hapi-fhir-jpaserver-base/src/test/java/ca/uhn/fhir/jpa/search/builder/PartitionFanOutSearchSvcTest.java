@@ -0,0 +1,79 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryExecutor;
+import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PartitionFanOutSearchSvcTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final SqlObjectFactory mySqlObjectFactory = mock(SqlObjectFactory.class);
+	private final PartitionFanOutSearchSvc mySvc = new PartitionFanOutSearchSvc(
+			myStorageSettings, new NonTransactionalHapiTransactionService(), mySqlObjectFactory);
+	private final Set<String> myQueryThreadNames = ConcurrentHashMap.newKeySet();
+
+	@AfterEach
+	void afterEach() {
+		mySvc.shutdown();
+		TransactionSynchronizationManager.clear();
+	}
+
+	@Test
+	void testOutsideTransaction_QueriesOnPool() {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(4);
+
+		readAll();
+
+		assertThat(myQueryThreadNames).anyMatch(t -> t.startsWith("search-partition-fan-out-"));
+	}
+
+	@Test
+	void testInWriteTransaction_QueriesOnCallingThread() {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(4);
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+
+		readAll();
+
+		assertThat(myQueryThreadNames).containsExactly(Thread.currentThread().getName());
+	}
+
+	private void readAll() {
+		when(mySqlObjectFactory.newSearchQueryExecutor(any(), any())).thenAnswer(t -> {
+			SearchQueryExecutor retVal = mock(SearchQueryExecutor.class);
+			when(retVal.hasNext()).thenAnswer(h -> {
+				myQueryThreadNames.add(Thread.currentThread().getName());
+				return false;
+			});
+			return retVal;
+		});
+
+		List<PartitionFanOutSearchSvc.PartitionQuery> queries = new ArrayList<>();
+		for (int i = 1; i <= 3; i++) {
+			queries.add(new PartitionFanOutSearchSvc.PartitionQuery(
+					RequestPartitionId.fromPartitionId(i), new GeneratedSql(false, "SELECT " + i, List.of())));
+		}
+		try (ISearchQueryExecutor executor =
+				mySvc.newExecutor(new SystemRequestDetails(), queries, null, 0, 0, null)) {
+			assertFalse(executor.hasNext());
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapSearchResultCacheSvcImplTest {
+
+	private JpaStorageSettings myStorageSettings;
+
+	@BeforeEach
+	void before() {
+		myStorageSettings = new JpaStorageSettings();
+		myStorageSettings.setSearchResultOffHeapCacheMaximumBytes(10_000_000);
+		myStorageSettings.setSearchResultOffHeapCacheOnly(true);
+	}
+
+	@Test
+	void testNotEnabled() {
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		assertThrows(IllegalArgumentException.class, () -> new OffHeapSearchResultCacheSvcImpl(storageSettings));
+	}
+
+	@Test
+	void testStoreAndFetchPages() {
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+		Search search = newSearch();
+		List<JpaPid> pids = newPids(2500, false);
+
+		// Stored in two passes, the second of which doesn't start on a block boundary
+		svc.storeResults(search, List.of(), pids.subList(0, 1500), null, null);
+		svc.storeResults(search, pids.subList(0, 1500), pids.subList(1500, 2500), null, null);
+		search.setNumFound(2500);
+
+		assertEquals(pids.subList(0, 20), svc.fetchResultPids(search, 0, 20, null, null));
+		assertEquals(pids.subList(1000, 1030), svc.fetchResultPids(search, 1000, 1030, null, null));
+		assertEquals(pids.subList(1010, 1600), svc.fetchResultPids(search, 1010, 1600, null, null));
+		assertEquals(pids.subList(2480, 2500), svc.fetchResultPids(search, 2480, 2600, null, null));
+		assertThat(svc.fetchResultPids(search, 2500, 2600, null, null)).isEmpty();
+		assertThat(svc.fetchAllResultPids(search, null, null)).containsExactlyElementsOf(pids);
+	}
+
+	@Test
+	void testPartitionIds() {
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+		Search search = newSearch();
+		List<JpaPid> pids = newPids(100, true);
+
+		svc.storeResults(search, List.of(), pids, null, null);
+		search.setNumFound(100);
+
+		List<JpaPid> fetched = svc.fetchResultPids(search, 0, 100, null, null);
+		assertEquals(pids, fetched);
+		for (int i = 0; i < pids.size(); i++) {
+			assertEquals(pids.get(i).getPartitionId(), fetched.get(i).getPartitionId());
+		}
+	}
+
+	@Test
+	void testRebuildWhenPreviousResultsNotHeld() {
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+		Search search = newSearch();
+		List<JpaPid> pids = newPids(300, false);
+
+		// E.g. the first pass was stored by another server
+		svc.storeResults(search, pids.subList(0, 200), pids.subList(200, 300), null, null);
+		search.setNumFound(300);
+
+		assertEquals(pids, svc.fetchResultPids(search, 0, 300, null, null));
+	}
+
+	@Test
+	void testUnknownSearchInCacheOnlyMode() {
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+		Search search = newSearch();
+
+		assertNull(svc.fetchResultPids(search, 0, 10, null, null));
+		assertNull(svc.fetchAllResultPids(search, null, null));
+	}
+
+	@Test
+	void testResultsAvailableForReuse() {
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+		Search search = newSearch();
+		search.setStatus(SearchStatusEnum.FINISHED);
+
+		// Not held by this server, so the search must be run again rather than reused
+		assertFalse(svc.isResultsAvailable(search));
+
+		svc.storeResults(search, List.of(), newPids(10, false), null, null);
+		assertTrue(svc.isResultsAvailable(search));
+
+		// Still loading, so we might not hold all of the results yet
+		search.setStatus(SearchStatusEnum.LOADING);
+		assertFalse(svc.isResultsAvailable(search));
+	}
+
+	@Test
+	void testResultsAlwaysAvailableWhenBackedByDatabase() {
+		myStorageSettings.setSearchResultOffHeapCacheOnly(false);
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+
+		assertTrue(svc.isResultsAvailable(newSearch()));
+	}
+
+	@Test
+	void testRemoveResults() {
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+		Search search = newSearch();
+		svc.storeResults(search, List.of(), newPids(10, false), null, null);
+		search.setNumFound(10);
+
+		svc.removeResults(search.getUuid());
+
+		assertNull(svc.fetchResultPids(search, 0, 10, null, null));
+		assertEquals(0, svc.getEstimatedSize());
+	}
+
+	@Test
+	void testConcurrentStores() throws Exception {
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+		List<Search> searches = new ArrayList<>();
+		List<JpaPid> pids = newPids(1000, false);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				Search search = newSearch();
+				searches.add(search);
+				futures.add(executor.submit(() -> {
+					for (int from = 0; from < pids.size(); from += 100) {
+						svc.storeResults(search, pids.subList(0, from), pids.subList(from, from + 100), null, null);
+					}
+				}));
+			}
+			for (Future<?> next : futures) {
+				next.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for (Search next : searches) {
+			next.setNumFound(1000);
+			assertEquals(pids, svc.fetchAllResultPids(next, null, null));
+		}
+	}
+
+	@Test
+	void testEvictionByByteBudget() {
+		myStorageSettings.setSearchResultOffHeapCacheMaximumBytes(50_000);
+		OffHeapSearchResultCacheSvcImpl svc = new OffHeapSearchResultCacheSvcImpl(myStorageSettings);
+
+		for (int i = 0; i < 50; i++) {
+			svc.storeResults(newSearch(), List.of(), newPids(2000, false), null, null);
+		}
+
+		assertThat(svc.getEstimatedSize()).isBetween(1L, 49L);
+	}
+
+	private static Search newSearch() {
+		Search retVal = new Search();
+		retVal.setUuid(UUID.randomUUID().toString());
+		return retVal;
+	}
+
+	private static List<JpaPid> newPids(int theCount, boolean theWithPartitions) {
+		Random random = new Random(theCount);
+		HashSet<Long> seen = new HashSet<>();
+		List<JpaPid> retVal = new ArrayList<>();
+		while (retVal.size() < theCount) {
+			// Mostly ascending with some large jumps, like a typical sorted search
+			long id = random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE) : 1000L + retVal.size() * 3L;
+			if (seen.add(id)) {
+				Integer partitionId = theWithPartitions && random.nextBoolean() ? random.nextInt(20) - 5 : null;
+				retVal.add(JpaPid.fromId(id, partitionId));
+			}
+		}
+		return retVal;
+	}
+}
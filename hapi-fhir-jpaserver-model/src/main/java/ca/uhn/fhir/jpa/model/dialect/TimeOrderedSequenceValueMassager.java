@@ -0,0 +1,203 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.dialect;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.util.ISequenceValueMassager;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * This is an internal API and may change or disappear without notice
+ * <p>
+ * A sequence value massager which generates time-ordered 64-bit IDs on the server node
+ * itself instead of fetching them from the database sequences. It can be enabled using
+ * {@link ca.uhn.fhir.jpa.model.entity.StorageSettings#setSequenceValueMassagerClass(Class)}.
+ * Each ID is made up of (from most to least significant bit):
+ * </p>
+ * <ul>
+ *    <li>1 unused sign bit, so that IDs are always positive</li>
+ *    <li>41 bits: milliseconds since {@link #EPOCH_MILLIS 2020-01-01T00:00:00Z}, which lasts until 2089</li>
+ *    <li>10 bits: the node ID, see {@link ca.uhn.fhir.jpa.model.entity.StorageSettings#setSequenceGeneratorNodeId(int)}</li>
+ *    <li>12 bits: a counter within the millisecond</li>
+ * </ul>
+ * <p>
+ * If more than 4096 IDs are requested within a single millisecond, or if the clock moves
+ * backwards, ID generation blocks until the clock passes the timestamp of the last ID handed
+ * out, so IDs never run ahead of the clock. The last ID is only held in memory though, so a
+ * node which is restarted while its clock is behind the IDs it generated earlier can repeat them.
+ * </p>
+ * <p>
+ * IDs generated by different nodes can only be unique if every node is configured with
+ * a different node ID, so a node ID must be configured explicitly before IDs can be generated.
+ * </p>
+ * <p>
+ * Only the generators for resources, resource versions, tags, links and search indexes
+ * (see {@link #GENERATOR_NAMES}) are replaced, all other tables keep using their
+ * database sequences. Values produced by the database sequences of an existing
+ * database are far below the values produced by this generator, so this generator
+ * can be enabled on a database which has already been populated. The sequences
+ * themselves are left in place so that the generator can be disabled again.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public class TimeOrderedSequenceValueMassager implements ISequenceValueMassager {
+
+	/**
+	 * 2020-01-01T00:00:00Z
+	 */
+	public static final long EPOCH_MILLIS = 1577836800000L;
+
+	public static final int NODE_ID_BITS = 10;
+	public static final int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
+	static final int COUNTER_BITS = 12;
+
+	/**
+	 * The generators this massager supplies IDs for
+	 */
+	public static final Set<String> GENERATOR_NAMES = Set.of(
+			"SEQ_RESOURCE_ID",
+			"SEQ_RESOURCE_HISTORY_ID",
+			"SEQ_RESTAG_ID",
+			"SEQ_HISTORYTAG_ID",
+			"SEQ_RESLINK_ID",
+			"SEQ_RESPARMPRESENT_ID",
+			"SEQ_SPIDX_COORDS",
+			"SEQ_SPIDX_DATE",
+			"SEQ_SPIDX_NUMBER",
+			"SEQ_SPIDX_QUANTITY",
+			"SEQ_SPIDX_QUANTITY_NRML",
+			"SEQ_SPIDX_STRING",
+			"SEQ_SPIDX_TOKEN",
+			"SEQ_SPIDX_URI",
+			"SEQ_IDXCMPSTRUNIQ_ID",
+			"SEQ_IDXCMBTOKNU_ID");
+
+	private static final Logger ourLog = LoggerFactory.getLogger(TimeOrderedSequenceValueMassager.class);
+
+	private final LongSupplier myClock;
+	private final ISleeper mySleeper;
+
+	/**
+	 * The last value handed out, without the node ID bits, i.e. the
+	 * timestamp shifted left by {@link #COUNTER_BITS} plus the counter.
+	 */
+	private final AtomicLong myLastTimestampAndCounter = new AtomicLong();
+
+	private Integer myNodeId;
+
+	/**
+	 * Constructor
+	 */
+	public TimeOrderedSequenceValueMassager() {
+		this(System::currentTimeMillis, Thread::sleep);
+	}
+
+	@VisibleForTesting
+	TimeOrderedSequenceValueMassager(LongSupplier theClock, ISleeper theSleeper) {
+		myClock = theClock;
+		mySleeper = theSleeper;
+	}
+
+	@Nullable
+	public Integer getNodeId() {
+		return myNodeId;
+	}
+
+	/**
+	 * Sets the ID of this server node, which must be unique across all nodes writing to the
+	 * same database. Values must be between 0 and {@link #MAX_NODE_ID} (inclusive).
+	 */
+	public void setNodeId(int theNodeId) {
+		Validate.inclusiveBetween(0, MAX_NODE_ID, theNodeId, "theNodeId must be between 0 and " + MAX_NODE_ID);
+		myNodeId = theNodeId;
+	}
+
+	@Override
+	public Long massage(String theGeneratorName, Long theId) {
+		return theId;
+	}
+
+	@Override
+	public Long generate(String theGeneratorName) {
+		if (!GENERATOR_NAMES.contains(theGeneratorName)) {
+			return null;
+		}
+
+		Integer nodeId = myNodeId;
+		Validate.validState(nodeId != null, "No node ID has been configured for the time-ordered ID generator");
+
+		long timestampAndCounter;
+		while (true) {
+			long nowMillis = myClock.getAsLong() - EPOCH_MILLIS;
+			long last = myLastTimestampAndCounter.get();
+			long lastMillis = last >>> COUNTER_BITS;
+			if (nowMillis > lastMillis) {
+				timestampAndCounter = nowMillis << COUNTER_BITS;
+			} else if (nowMillis == lastMillis && ((last + 1) >>> COUNTER_BITS) == nowMillis) {
+				timestampAndCounter = last + 1;
+			} else {
+				// The counter is exhausted for this millisecond, or the clock has moved backwards
+				if (nowMillis < lastMillis) {
+					ourLog.warn(
+							"Clock moved backwards by {}ms, waiting before generating more IDs",
+							lastMillis - nowMillis);
+				}
+				waitForClock(lastMillis - nowMillis);
+				continue;
+			}
+			if (myLastTimestampAndCounter.compareAndSet(last, timestampAndCounter)) {
+				break;
+			}
+		}
+
+		long timestamp = timestampAndCounter >>> COUNTER_BITS;
+		long counter = timestampAndCounter & ((1L << COUNTER_BITS) - 1);
+		return (timestamp << (NODE_ID_BITS + COUNTER_BITS)) | ((long) nodeId << COUNTER_BITS) | counter;
+	}
+
+	private void waitForClock(long theMillisBehind) {
+		if (theMillisBehind == 0) {
+			Thread.onSpinWait();
+			return;
+		}
+		try {
+			mySleeper.sleep(theMillisBehind);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2672) + "Interrupted while waiting for the clock", e);
+		}
+	}
+
+	@FunctionalInterface
+	interface ISleeper {
+
+		void sleep(long theMillis) throws InterruptedException;
+	}
+}
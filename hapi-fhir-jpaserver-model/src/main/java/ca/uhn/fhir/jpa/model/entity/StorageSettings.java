@@ -22,10 +22,12 @@ package ca.uhn.fhir.jpa.model.entity;
 import ca.uhn.fhir.context.ParserOptions;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.dialect.TimeOrderedSequenceValueMassager;
 import ca.uhn.fhir.jpa.util.ISequenceValueMassager;
 import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
 import ca.uhn.fhir.rest.server.interceptor.ResponseTerminologyTranslationSvc;
 import ca.uhn.fhir.util.HapiExtensions;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.hl7.fhir.r4.model.DateTimeType;
@@ -143,6 +145,26 @@ public class StorageSettings {
 	 */
 	private boolean myIndexStorageOptimized = false;
 
+	/**
+	 * @since 8.4.0
+	 */
+	private boolean mySearchParamPathCompilationEnabled = false;
+
+	/**
+	 * @since 8.4.0
+	 */
+	private int mySearchParamExtractionThreadCount = 0;
+
+	/**
+	 * @since 8.4.0
+	 */
+	private int myTransactionPrepareThreadCount = 0;
+
+	/**
+	 * @since 8.4.0
+	 */
+	private Integer mySequenceGeneratorNodeId;
+
 	/**
 	 * Constructor
 	 */
@@ -1190,6 +1212,152 @@ public class StorageSettings {
 		myValidateResourceStatusForPackageUpload = theValidateResourceStatusForPackageUpload;
 	}
 
+	/**
+	 * If enabled (default is <code>false</code>), simple search parameter paths such as
+	 * <code>Observation.code</code> or <code>Encounter.subject.where(resolve() is Patient)</code>
+	 * are compiled into chains of model accessors when resources are indexed, instead of being
+	 * evaluated by the FHIRPath engine. Paths which can not be compiled are always evaluated
+	 * by the FHIRPath engine. This setting only applies to FHIR R4 and later.
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isSearchParamPathCompilationEnabled() {
+		return mySearchParamPathCompilationEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), simple search parameter paths such as
+	 * <code>Observation.code</code> or <code>Encounter.subject.where(resolve() is Patient)</code>
+	 * are compiled into chains of model accessors when resources are indexed, instead of being
+	 * evaluated by the FHIRPath engine. Paths which can not be compiled are always evaluated
+	 * by the FHIRPath engine. This setting only applies to FHIR R4 and later.
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSearchParamPathCompilationEnabled(boolean theSearchParamPathCompilationEnabled) {
+		mySearchParamPathCompilationEnabled = theSearchParamPathCompilationEnabled;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>0</code>), the independent
+	 * search parameter extractor families (string, token, number, quantity, date, URI, composite,
+	 * special and reference) are run concurrently for each resource being indexed, using a shared
+	 * pool with at most this many threads. The extracted indexes are always merged in the same
+	 * order as they would be when extracting serially, so the results are identical.
+	 * <p>
+	 * This is mostly useful for large resources with many active search parameters. For small
+	 * resources the overhead of handing work to the pool can outweigh the benefit.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public int getSearchParamExtractionThreadCount() {
+		return mySearchParamExtractionThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>0</code>), the independent
+	 * search parameter extractor families (string, token, number, quantity, date, URI, composite,
+	 * special and reference) are run concurrently for each resource being indexed, using a shared
+	 * pool with at most this many threads. The extracted indexes are always merged in the same
+	 * order as they would be when extracting serially, so the results are identical.
+	 * <p>
+	 * This is mostly useful for large resources with many active search parameters. For small
+	 * resources the overhead of handing work to the pool can outweigh the benefit.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSearchParamExtractionThreadCount(int theSearchParamExtractionThreadCount) {
+		mySearchParamExtractionThreadCount = theSearchParamExtractionThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>), the resources in
+	 * the write entries of FHIR transaction bundles are scanned for references before the database
+	 * transaction is opened, and the references found are reused when pre-fetching reference
+	 * targets instead of scanning each resource again within the database transaction.
+	 * <p>
+	 * Regardless of this setting, entries with the same verb whose conditional URLs use the
+	 * placeholder ID (e.g. <code>urn:uuid:...</code>) of another entry are processed after that entry.
+	 * </p>
+	 * <p>
+	 * If set to a value greater than <code>1</code>, large bundles are analyzed concurrently using
+	 * a shared pool with at most this many threads. The entries are always written on a single
+	 * thread, within a single database transaction.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public int getTransactionPrepareThreadCount() {
+		return myTransactionPrepareThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>), the resources in
+	 * the write entries of FHIR transaction bundles are scanned for references before the database
+	 * transaction is opened, and the references found are reused when pre-fetching reference
+	 * targets instead of scanning each resource again within the database transaction.
+	 * <p>
+	 * Regardless of this setting, entries with the same verb whose conditional URLs use the
+	 * placeholder ID (e.g. <code>urn:uuid:...</code>) of another entry are processed after that entry.
+	 * </p>
+	 * <p>
+	 * If set to a value greater than <code>1</code>, large bundles are analyzed concurrently using
+	 * a shared pool with at most this many threads. The entries are always written on a single
+	 * thread, within a single database transaction.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setTransactionPrepareThreadCount(int theTransactionPrepareThreadCount) {
+		myTransactionPrepareThreadCount = theTransactionPrepareThreadCount;
+	}
+
+	/**
+	 * The ID of this server node, which is used by ID generators that create IDs on the server
+	 * instead of fetching them from a database sequence, such as the
+	 * {@link ca.uhn.fhir.jpa.model.dialect.TimeOrderedSequenceValueMassager} (see
+	 * {@link #setSequenceValueMassagerClass(Class)}). Default is <code>null</code>. When such a generator
+	 * is used, every server node writing to the same database must be configured with a different
+	 * value, between <code>0</code> and {@value ca.uhn.fhir.jpa.model.dialect.TimeOrderedSequenceValueMassager#MAX_NODE_ID},
+	 * and the server refuses to start if no value has been configured.
+	 * <p>
+	 * This setting is read when the server starts, so changing it afterwards has no effect.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	@Nullable
+	public Integer getSequenceGeneratorNodeId() {
+		return mySequenceGeneratorNodeId;
+	}
+
+	/**
+	 * The ID of this server node, which is used by ID generators that create IDs on the server
+	 * instead of fetching them from a database sequence, such as the
+	 * {@link ca.uhn.fhir.jpa.model.dialect.TimeOrderedSequenceValueMassager} (see
+	 * {@link #setSequenceValueMassagerClass(Class)}). Default is <code>null</code>. When such a generator
+	 * is used, every server node writing to the same database must be configured with a different
+	 * value, between <code>0</code> and {@value ca.uhn.fhir.jpa.model.dialect.TimeOrderedSequenceValueMassager#MAX_NODE_ID},
+	 * and the server refuses to start if no value has been configured.
+	 * <p>
+	 * This setting is read when the server starts, so changing it afterwards has no effect.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSequenceGeneratorNodeId(@Nullable Integer theSequenceGeneratorNodeId) {
+		if (theSequenceGeneratorNodeId != null) {
+			Validate.inclusiveBetween(
+					0,
+					TimeOrderedSequenceValueMassager.MAX_NODE_ID,
+					theSequenceGeneratorNodeId,
+					"theSequenceGeneratorNodeId must be between 0 and " + TimeOrderedSequenceValueMassager.MAX_NODE_ID);
+		}
+		mySequenceGeneratorNodeId = theSequenceGeneratorNodeId;
+	}
+
 	private static void validateTreatBaseUrlsAsLocal(String theUrl) {
 		Validate.notBlank(theUrl, "Base URL must not be null or empty");
 
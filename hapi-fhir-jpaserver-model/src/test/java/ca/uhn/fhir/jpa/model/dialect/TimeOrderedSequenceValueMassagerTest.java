@@ -0,0 +1,129 @@
+package ca.uhn.fhir.jpa.model.dialect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TimeOrderedSequenceValueMassagerTest {
+
+	private static final long NOW = TimeOrderedSequenceValueMassager.EPOCH_MILLIS + 1000L;
+
+	@Test
+	public void testGenerate() {
+		TimeOrderedSequenceValueMassager massager = new TimeOrderedSequenceValueMassager(() -> NOW, t -> fail());
+		massager.setNodeId(5);
+
+		long id0 = massager.generate("SEQ_RESOURCE_ID");
+		long id1 = massager.generate("SEQ_SPIDX_TOKEN");
+
+		assertEquals((1000L << 22) | (5L << 12), id0);
+		assertEquals(id0 + 1, id1);
+	}
+
+	@Test
+	public void testGenerate_OtherGeneratorsUseSequence() {
+		TimeOrderedSequenceValueMassager massager = new TimeOrderedSequenceValueMassager(() -> NOW, t -> fail());
+
+		assertNull(massager.generate("SEQ_SEARCH"));
+		assertEquals(123L, massager.massage("SEQ_SEARCH", 123L));
+	}
+
+	@Test
+	public void testGenerate_NoNodeId() {
+		TimeOrderedSequenceValueMassager massager = new TimeOrderedSequenceValueMassager(() -> NOW, t -> fail());
+		assertThatThrownBy(() -> massager.generate("SEQ_RESOURCE_ID")).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void testGenerate_CounterOverflowWaitsForNextMillisecond() {
+		// The clock only moves on once the first 4096 IDs have been handed out
+		AtomicLong calls = new AtomicLong();
+		TimeOrderedSequenceValueMassager massager = new TimeOrderedSequenceValueMassager(() -> calls.incrementAndGet() <= 4097 ? NOW : NOW + 1, t -> fail());
+		massager.setNodeId(TimeOrderedSequenceValueMassager.MAX_NODE_ID);
+
+		long last = 0;
+		for (int i = 0; i < 4096; i++) {
+			last = massager.generate("SEQ_RESOURCE_ID");
+		}
+		assertEquals(1000L, last >>> 22);
+		assertEquals(0xFFFL, last & 0xFFF);
+
+		last = massager.generate("SEQ_RESOURCE_ID");
+		assertEquals(1001L, last >>> 22);
+		assertEquals(TimeOrderedSequenceValueMassager.MAX_NODE_ID, (last >>> 12) & 0x3FF);
+		assertEquals(0L, last & 0xFFF);
+		assertThat(calls.get()).isGreaterThan(4097);
+	}
+
+	@Test
+	public void testGenerate_ClockMovesBackwards() {
+		AtomicLong clock = new AtomicLong(NOW);
+		List<Long> sleeps = new ArrayList<>();
+		TimeOrderedSequenceValueMassager massager = new TimeOrderedSequenceValueMassager(clock::get, t -> {
+			sleeps.add(t);
+			clock.addAndGet(t);
+		});
+		massager.setNodeId(1);
+
+		long id0 = massager.generate("SEQ_RESOURCE_ID");
+		clock.set(NOW - 500);
+		long id1 = massager.generate("SEQ_RESOURCE_ID");
+
+		// Generating blocks until the clock has caught up, instead of running ahead of it
+		assertThat(sleeps).containsExactly(500L);
+		assertEquals(id0 + 1, id1);
+		assertEquals(NOW, clock.get());
+
+		clock.set(NOW + 10);
+		long id2 = massager.generate("SEQ_RESOURCE_ID");
+		assertEquals((1010L << 22) | (1L << 12), id2);
+		assertThat(sleeps).hasSize(1);
+	}
+
+	@Test
+	public void testGenerate_Concurrent() throws Exception {
+		TimeOrderedSequenceValueMassager massager = new TimeOrderedSequenceValueMassager();
+		massager.setNodeId(0);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < 10000; j++) {
+						ids.add(massager.generate("SEQ_RESOURCE_HISTORY_ID"));
+					}
+				}));
+			}
+			for (Future<?> next : futures) {
+				next.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(ids).hasSize(40000);
+		assertThat(ids).allMatch(t -> t > 0);
+	}
+
+	@Test
+	public void testSetNodeId_Invalid() {
+		TimeOrderedSequenceValueMassager massager = new TimeOrderedSequenceValueMassager();
+		assertThatThrownBy(() -> massager.setNodeId(1024)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> massager.setNodeId(-1)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
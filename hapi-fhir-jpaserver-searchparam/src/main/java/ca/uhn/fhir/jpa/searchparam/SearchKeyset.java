@@ -0,0 +1,256 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA - Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The position within the results of a keyset ("seek") paged search. A keyset
+ * holds the values of each sort column for the last resource returned by the
+ * previous page, with the resource PID as the final (tie-breaking) value, so
+ * that the next page can be fetched using a predicate on the sort columns
+ * instead of an offset.
+ * <p>
+ * A keyset with no sort values represents the first page. Keysets are passed
+ * to clients in paging links as an opaque token (see {@link #encode(byte[])}) and also
+ * record the resource type and sort they were created for, so that a token can
+ * not be reused with a different search. Tokens are signed using a key known only
+ * to the server, so that clients can't craft a token with arbitrary values.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public class SearchKeyset {
+
+	private static final byte VERSION = 1;
+	private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+	private static final int SIGNATURE_LENGTH = 32;
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_LONG = 2;
+	private static final byte TYPE_DATE = 3;
+
+	private final String myResourceType;
+	private final String mySortDescriptor;
+	private final List<Object> mySortValues;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theResourceType   The resource type being searched
+	 * @param theSortDescriptor A string describing the sort applied to the search (e.g. <code>-_lastUpdated</code>)
+	 * @param theSortValues     The sort values of the last returned resource. Each value must be
+	 *                          <code>null</code>, a {@link String}, a {@link Long} or a {@link Date}.
+	 */
+	public SearchKeyset(
+			@Nonnull String theResourceType, @Nonnull String theSortDescriptor, @Nonnull List<Object> theSortValues) {
+		Validate.notBlank(theResourceType, "theResourceType must not be blank");
+		Validate.notNull(theSortDescriptor, "theSortDescriptor must not be null");
+		for (Object next : theSortValues) {
+			Validate.isTrue(
+					next == null || next instanceof String || next instanceof Long || next instanceof Date,
+					"Unsupported keyset value type: %s",
+					next != null ? next.getClass() : null);
+		}
+		myResourceType = theResourceType;
+		mySortDescriptor = theSortDescriptor;
+		mySortValues = Collections.unmodifiableList(new ArrayList<>(theSortValues));
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public String getSortDescriptor() {
+		return mySortDescriptor;
+	}
+
+	/**
+	 * Returns the sort values of the last returned resource, in the order the sort
+	 * columns are applied. This list is empty for the first page.
+	 */
+	public List<Object> getSortValues() {
+		return mySortValues;
+	}
+
+	public boolean isFirstPage() {
+		return mySortValues.isEmpty();
+	}
+
+	/**
+	 * Returns true if this keyset was created for the given resource type and sort
+	 */
+	public boolean matches(String theResourceType, String theSortDescriptor) {
+		return myResourceType.equals(theResourceType) && mySortDescriptor.equals(theSortDescriptor);
+	}
+
+	/**
+	 * Encodes this keyset as an opaque URL-safe token, signed using the given key
+	 */
+	public String encode(@Nonnull byte[] theSigningKey) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(VERSION);
+			out.writeUTF(myResourceType);
+			out.writeUTF(mySortDescriptor);
+			out.writeByte(mySortValues.size());
+			for (Object next : mySortValues) {
+				if (next == null) {
+					out.writeByte(TYPE_NULL);
+				} else if (next instanceof String) {
+					out.writeByte(TYPE_STRING);
+					out.writeUTF((String) next);
+				} else if (next instanceof Long) {
+					out.writeByte(TYPE_LONG);
+					out.writeLong((Long) next);
+				} else {
+					out.writeByte(TYPE_DATE);
+					out.writeLong(((Date) next).getTime());
+				}
+			}
+		} catch (IOException e) {
+			// Can't happen when writing to a byte array
+			throw new IllegalStateException(e);
+		}
+		bytes.writeBytes(sign(theSigningKey, bytes.toByteArray(), bytes.size()));
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	private static byte[] sign(byte[] theSigningKey, byte[] theBytes, int theLength) {
+		try {
+			Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+			mac.init(new SecretKeySpec(theSigningKey, SIGNATURE_ALGORITHM));
+			mac.update(theBytes, 0, theLength);
+			return mac.doFinal();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(Msg.code(2671) + "Unable to sign keyset", e);
+		}
+	}
+
+	/**
+	 * Parses a token created by {@link #encode(byte[])} using the same signing key
+	 *
+	 * @throws InvalidRequestException If the token is not valid, or was not signed using the given key
+	 */
+	public static SearchKeyset decode(String theToken, @Nonnull byte[] theSigningKey) {
+		try {
+			byte[] bytes = Base64.getUrlDecoder().decode(theToken);
+			int length = bytes.length - SIGNATURE_LENGTH;
+			if (length <= 0) {
+				throw new IOException("Token too short");
+			}
+			byte[] expectedSignature = sign(theSigningKey, bytes, length);
+			byte[] actualSignature = Arrays.copyOfRange(bytes, length, bytes.length);
+			if (!MessageDigest.isEqual(expectedSignature, actualSignature)) {
+				throw new IOException("Invalid signature");
+			}
+			return decode(new ByteArrayInputStream(bytes, 0, length));
+		} catch (IOException | IllegalArgumentException e) {
+			throw new InvalidRequestException(
+					Msg.code(2659) + "Invalid " + Constants.PARAM_KEYSET + " value: " + theToken, e);
+		}
+	}
+
+	private static SearchKeyset decode(ByteArrayInputStream theBytes) throws IOException {
+		try (DataInputStream in = new DataInputStream(theBytes)) {
+			if (in.readByte() != VERSION) {
+				throw new IOException("Unknown version");
+			}
+			String resourceType = in.readUTF();
+			String sortDescriptor = in.readUTF();
+			int count = in.readByte();
+			List<Object> values = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				byte type = in.readByte();
+				switch (type) {
+					case TYPE_NULL:
+						values.add(null);
+						break;
+					case TYPE_STRING:
+						values.add(in.readUTF());
+						break;
+					case TYPE_LONG:
+						values.add(in.readLong());
+						break;
+					case TYPE_DATE:
+						values.add(new Date(in.readLong()));
+						break;
+					default:
+						throw new IOException("Unknown value type: " + type);
+				}
+			}
+			if (in.available() > 0) {
+				throw new IOException("Unexpected trailing data");
+			}
+			return new SearchKeyset(resourceType, sortDescriptor, values);
+		}
+	}
+
+	@Override
+	public boolean equals(Object theO) {
+		if (this == theO) {
+			return true;
+		}
+		if (!(theO instanceof SearchKeyset)) {
+			return false;
+		}
+		SearchKeyset that = (SearchKeyset) theO;
+		return myResourceType.equals(that.myResourceType)
+				&& mySortDescriptor.equals(that.mySortDescriptor)
+				&& mySortValues.equals(that.mySortValues);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(myResourceType, mySortDescriptor, mySortValues);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("resourceType", myResourceType)
+				.append("sort", mySortDescriptor)
+				.append("values", mySortValues)
+				.toString();
+	}
+}
@@ -85,6 +85,7 @@ public class SearchParameterMap implements Serializable {
 	private Integer myLastNMax;
 	private boolean myDeleteExpunge;
 	private SearchContainedModeEnum mySearchContainedMode = SearchContainedModeEnum.FALSE;
+	private SearchKeyset myKeyset;
 
 	/**
 	 * Constructor
@@ -123,6 +124,7 @@ public class SearchParameterMap implements Serializable {
 		map.setLoadSynchronousUpTo(getLoadSynchronousUpTo());
 		map.setOffset(getOffset());
 		map.setSearchContainedMode(getSearchContainedMode());
+		map.setKeyset(getKeyset());
 
 		for (Map.Entry<String, List<List<IQueryParameterType>>> entry : mySearchParameterMap.entrySet()) {
 			List<List<IQueryParameterType>> andParams = entry.getValue();
@@ -771,6 +773,28 @@ public class SearchParameterMap implements Serializable {
 		}
 	}
 
+	/**
+	 * If set, the search is paged using the sort key of the last returned resource
+	 * (keyset paging) instead of an offset, and the results start immediately after
+	 * the position described by the keyset.
+	 *
+	 * @since 8.4.0
+	 */
+	public SearchKeyset getKeyset() {
+		return myKeyset;
+	}
+
+	/**
+	 * If set, the search is paged using the sort key of the last returned resource
+	 * (keyset paging) instead of an offset, and the results start immediately after
+	 * the position described by the keyset.
+	 *
+	 * @since 8.4.0
+	 */
+	public void setKeyset(SearchKeyset theKeyset) {
+		myKeyset = theKeyset;
+	}
+
 	/**
 	 * Returns true if {@link #getOffset()} and {@link #getCount()} both return a non null response
 	 *
@@ -55,6 +55,8 @@ import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
 import ca.uhn.fhir.util.HapiExtensions;
 import ca.uhn.fhir.util.StringUtil;
 import ca.uhn.fhir.util.UrlUtil;
@@ -91,6 +93,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.measure.quantity.Quantity;
 import javax.measure.unit.NonSI;
@@ -175,6 +178,8 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 	// allow extraction of Resource-level search param values
 	private boolean myExtractResourceLevelParams = false;
 
+	private Cache<String, Optional<CompiledSearchParamPath>> myCompiledPathCache;
+
 	/**
 	 * Constructor
 	 */
@@ -942,7 +947,7 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 				}
 
 				nextPath = trim(nextPath);
-				IValueExtractor allValuesFunc = getPathValueExtractor(theResource, nextPath);
+				IValueExtractor allValuesFunc = getCompiledOrPathValueExtractor(theResource, nextPath);
 				try {
 					allValues = allValuesFunc.get();
 				} catch (Exception e) {
@@ -972,6 +977,36 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 		return myContext;
 	}
 
+	@VisibleForTesting
+	long getCompiledPathCount() {
+		return myCompiledPathCache != null ? myCompiledPathCache.estimatedSize() : 0;
+	}
+
+	/**
+	 * Returns an extractor which uses the compiled form of the given path if it can be
+	 * compiled, and the FHIRPath engine otherwise
+	 */
+	private IValueExtractor getCompiledOrPathValueExtractor(IBase theResource, String thePath) {
+		if (myCompiledPathCache == null || !myStorageSettings.isSearchParamPathCompilationEnabled()) {
+			return getPathValueExtractor(theResource, thePath);
+		}
+
+		CompiledSearchParamPath compiledPath = myCompiledPathCache
+				.get(thePath, path -> Optional.ofNullable(CompiledSearchParamPath.compile(myContext, path)))
+				.orElse(null);
+		if (compiledPath == null) {
+			return getPathValueExtractor(theResource, thePath);
+		}
+
+		return () -> {
+			List<IBase> retVal = compiledPath.evaluate(theResource);
+			if (retVal == null) {
+				return getPathValueExtractor(theResource, thePath).get();
+			}
+			return retVal;
+		};
+	}
+
 	@VisibleForTesting
 	public void setContext(FhirContext theContext) {
 		myContext = theContext;
@@ -1857,6 +1892,10 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 
 	@PostConstruct
 	public void start() {
+		if (myContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.R4)) {
+			myCompiledPathCache = CacheFactory.build(TimeUnit.MINUTES.toMillis(10));
+		}
+
 		myIgnoredForSearchDatatypes = new HashSet<>();
 		addIgnoredType(getContext(), "Annotation", myIgnoredForSearchDatatypes);
 		addIgnoredType(getContext(), "Attachment", myIgnoredForSearchDatatypes);
@@ -0,0 +1,448 @@
+/*
+ * #%L
+ * HAPI FHIR JPA - Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDatatypeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
+import ca.uhn.fhir.context.RuntimeChildResourceBlockDefinition;
+import ca.uhn.fhir.context.RuntimeChildResourceDefinition;
+import ca.uhn.fhir.context.RuntimeIdDatatypeDefinition;
+import ca.uhn.fhir.context.RuntimePrimitiveDatatypeDefinition;
+import ca.uhn.fhir.context.RuntimePrimitiveDatatypeNarrativeDefinition;
+import ca.uhn.fhir.context.RuntimePrimitiveDatatypeXhtmlHl7OrgDefinition;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IBaseXhtml;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * A single search parameter path (i.e. one of the expressions separated by <code>|</code> in
+ * a SearchParameter expression) which has been compiled into a chain of model child accessors,
+ * so that it can be evaluated without interpreting a FHIRPath expression tree.
+ * <p>
+ * Only the simple expressions that make up the large majority of the built-in search parameters
+ * are compiled:
+ * </p>
+ * <ul>
+ *    <li>Child navigation from a resource type, e.g. <code>Patient.name.family</code></li>
+ *    <li>Type filters, e.g. <code>(Observation.value as Quantity)</code>,
+ *    <code>Observation.value.as(Quantity)</code> or <code>Observation.value.ofType(Quantity)</code></li>
+ *    <li>Reference target type filters, e.g. <code>Encounter.subject.where(resolve() is Patient)</code></li>
+ *    <li>Filters on the value of a single code, string or uri child, e.g.
+ *    <code>Patient.telecom.where(system='email')</code></li>
+ * </ul>
+ * <p>
+ * Anything else is not compiled, and {@link #compile(FhirContext, String)} returns <code>null</code>.
+ * A compiled path may also decline to evaluate a specific resource in cases where the FHIRPath
+ * semantics depend on more than the model structure (e.g. resolving a reference to a contained
+ * resource, or a type filter applied to a subtype of the requested type). In that case
+ * {@link #evaluate(IBase)} returns <code>null</code> and the caller must fall back to the FHIRPath
+ * engine.
+ * </p>
+ */
+class CompiledSearchParamPath {
+
+	private static final Pattern AS_OPERATOR_PATTERN = Pattern.compile("^\\((.+)\\s+as\\s+([a-zA-Z]+)\\)$");
+	private static final Pattern NAME_PATTERN = Pattern.compile("^[a-zA-Z][a-zA-Z0-9_]*$");
+	private static final Pattern TYPE_FUNCTION_PATTERN = Pattern.compile("^(?:as|ofType)\\(\\s*([a-zA-Z]+)\\s*\\)$");
+	private static final Pattern RESOLVE_IS_PATTERN =
+			Pattern.compile("^where\\(\\s*resolve\\(\\)\\s+is\\s+([a-zA-Z]+)\\s*\\)$");
+	private static final Pattern CHILD_EQUALS_PATTERN =
+			Pattern.compile("^where\\(\\s*([a-zA-Z][a-zA-Z0-9_]*)\\s*=\\s*'([a-zA-Z0-9._:/-]*)'\\s*\\)$");
+	private static final Set<String> CHILD_EQUALS_TYPES = Set.of("code", "string", "uri");
+
+	private final String myResourceType;
+	private final List<IStep> mySteps;
+
+	private CompiledSearchParamPath(String theResourceType, List<IStep> theSteps) {
+		myResourceType = theResourceType;
+		mySteps = theSteps;
+	}
+
+	/**
+	 * Evaluates this path against the given resource
+	 *
+	 * @return The matching values, or <code>null</code> if this path can not be evaluated for the
+	 * given resource and the FHIRPath engine must be used instead
+	 */
+	@Nullable
+	List<IBase> evaluate(IBase theResource) {
+		if (!(theResource instanceof IBaseResource)) {
+			return null;
+		}
+		if (!myResourceType.equals(theResource.fhirType())) {
+			return Collections.emptyList();
+		}
+
+		List<IBase> retVal = Collections.singletonList(theResource);
+		for (IStep next : mySteps) {
+			if (retVal.isEmpty()) {
+				break;
+			}
+			retVal = next.apply(retVal, (IBaseResource) theResource);
+			if (retVal == null) {
+				return null;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Compiles a single search parameter path
+	 *
+	 * @return The compiled path, or <code>null</code> if the path is not simple enough to be compiled
+	 */
+	@Nullable
+	static CompiledSearchParamPath compile(FhirContext theContext, String thePath) {
+		String path = thePath.trim();
+
+		String asOperatorType = null;
+		Matcher asOperatorMatcher = AS_OPERATOR_PATTERN.matcher(path);
+		if (asOperatorMatcher.matches()) {
+			path = asOperatorMatcher.group(1).trim();
+			asOperatorType = asOperatorMatcher.group(2);
+		}
+
+		List<String> tokens = tokenize(path);
+		if (tokens == null || tokens.size() < 2) {
+			return null;
+		}
+
+		String resourceType = tokens.get(0);
+		if (!theContext.getResourceTypes().contains(resourceType)) {
+			return null;
+		}
+
+		/*
+		 * The current definition is null when the previous step was a choice
+		 * element, since we don't know the type until it has been filtered
+		 */
+		BaseRuntimeElementDefinition<?> currentDefinition = theContext.getResourceDefinition(resourceType);
+		List<IStep> steps = new ArrayList<>();
+		for (String nextToken : tokens.subList(1, tokens.size())) {
+			Matcher matcher;
+			if (NAME_PATTERN.matcher(nextToken).matches()) {
+				if (!(currentDefinition instanceof BaseRuntimeElementCompositeDefinition)) {
+					return null;
+				}
+				BaseRuntimeChildDefinition child =
+						findChild((BaseRuntimeElementCompositeDefinition<?>) currentDefinition, nextToken);
+				if (!isCompilableChild(child, nextToken)) {
+					return null;
+				}
+				steps.add(new ChildStep(child));
+				currentDefinition = null;
+				if (!(child instanceof RuntimeChildChoiceDefinition)) {
+					currentDefinition = child.getChildByName(nextToken);
+					if (!isCompilableElement(currentDefinition)) {
+						return null;
+					}
+				}
+			} else if ((matcher = TYPE_FUNCTION_PATTERN.matcher(nextToken)).matches()) {
+				currentDefinition = getTypeDefinition(theContext, matcher.group(1));
+				if (currentDefinition == null) {
+					return null;
+				}
+				steps.add(new TypeFilterStep(currentDefinition));
+			} else if ((matcher = RESOLVE_IS_PATTERN.matcher(nextToken)).matches()) {
+				String targetType = matcher.group(1);
+				if (!theContext.getResourceTypes().contains(targetType)
+						|| currentDefinition == null
+						|| !"Reference".equals(currentDefinition.getName())) {
+					return null;
+				}
+				BaseRuntimeChildDefinition referenceChild =
+						((BaseRuntimeElementCompositeDefinition<?>) currentDefinition).getChildByName("reference");
+				if (referenceChild == null) {
+					return null;
+				}
+				steps.add(new ResolveIsStep(theContext, referenceChild, targetType));
+			} else if ((matcher = CHILD_EQUALS_PATTERN.matcher(nextToken)).matches()) {
+				if (!(currentDefinition instanceof BaseRuntimeElementCompositeDefinition)) {
+					return null;
+				}
+				BaseRuntimeChildDefinition child =
+						findChild((BaseRuntimeElementCompositeDefinition<?>) currentDefinition, matcher.group(1));
+				if (!isCompilableChild(child, matcher.group(1))
+						|| child.getMax() != 1
+						|| !(child instanceof BaseRuntimeChildDatatypeDefinition)) {
+					return null;
+				}
+				BaseRuntimeElementDefinition<?> childDefinition = child.getChildByName(matcher.group(1));
+				if (!(childDefinition instanceof RuntimePrimitiveDatatypeDefinition)
+						|| !CHILD_EQUALS_TYPES.contains(((RuntimePrimitiveDatatypeDefinition) childDefinition)
+								.getRootParentDefinition()
+								.getName())) {
+					return null;
+				}
+				steps.add(new ChildEqualsStep(child, matcher.group(2)));
+			} else {
+				return null;
+			}
+		}
+
+		if (asOperatorType != null) {
+			BaseRuntimeElementDefinition<?> typeDefinition = getTypeDefinition(theContext, asOperatorType);
+			if (typeDefinition == null) {
+				return null;
+			}
+			steps.add(new TypeFilterStep(typeDefinition));
+		}
+
+		return new CompiledSearchParamPath(resourceType, Collections.unmodifiableList(steps));
+	}
+
+	/**
+	 * Splits a path on the "." characters which are not inside parentheses
+	 *
+	 * @return The tokens, or <code>null</code> if the path is not well-formed
+	 */
+	@Nullable
+	private static List<String> tokenize(String thePath) {
+		List<String> retVal = new ArrayList<>();
+		int depth = 0;
+		int tokenStart = 0;
+		for (int i = 0; i < thePath.length(); i++) {
+			char next = thePath.charAt(i);
+			if (next == '(') {
+				depth++;
+			} else if (next == ')') {
+				depth--;
+				if (depth < 0) {
+					return null;
+				}
+			} else if (next == '.' && depth == 0) {
+				retVal.add(thePath.substring(tokenStart, i).trim());
+				tokenStart = i + 1;
+			}
+		}
+		if (depth != 0) {
+			return null;
+		}
+		retVal.add(thePath.substring(tokenStart).trim());
+		return retVal;
+	}
+
+	/**
+	 * Choice children are not indexed by their base name (e.g. <code>value</code>) in the
+	 * element definition, so fall back to searching the child list
+	 */
+	@Nullable
+	private static BaseRuntimeChildDefinition findChild(
+			BaseRuntimeElementCompositeDefinition<?> theDefinition, String theName) {
+		BaseRuntimeChildDefinition retVal = theDefinition.getChildByName(theName);
+		if (retVal != null) {
+			return retVal;
+		}
+		for (BaseRuntimeChildDefinition next : theDefinition.getChildren()) {
+			if (theName.equals(next.getElementName())) {
+				return next;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isCompilableChild(@Nullable BaseRuntimeChildDefinition theChild, String theName) {
+		if (theChild == null || !theName.equals(theChild.getElementName())) {
+			return false;
+		}
+		if (theChild instanceof RuntimeChildChoiceDefinition) {
+			// Subclasses include extensions and the "any type" children, which are not compiled
+			if (theChild.getClass() != RuntimeChildChoiceDefinition.class) {
+				return false;
+			}
+			for (Class<? extends IBase> nextType : ((RuntimeChildChoiceDefinition) theChild).getValidChildTypes()) {
+				if (IIdType.class.isAssignableFrom(nextType) || IBaseXhtml.class.isAssignableFrom(nextType)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return theChild instanceof BaseRuntimeChildDatatypeDefinition
+				|| theChild instanceof RuntimeChildResourceBlockDefinition
+				|| theChild instanceof RuntimeChildResourceDefinition;
+	}
+
+	/**
+	 * The FHIRPath engine converts ID and XHTML values rather than returning the model
+	 * element itself, so paths to these types are not compiled
+	 */
+	private static boolean isCompilableElement(@Nullable BaseRuntimeElementDefinition<?> theDefinition) {
+		return theDefinition != null
+				&& !(theDefinition instanceof RuntimeResourceDefinition)
+				&& !(theDefinition instanceof RuntimeIdDatatypeDefinition)
+				&& !(theDefinition instanceof RuntimePrimitiveDatatypeXhtmlHl7OrgDefinition)
+				&& !(theDefinition instanceof RuntimePrimitiveDatatypeNarrativeDefinition);
+	}
+
+	@Nullable
+	private static BaseRuntimeElementDefinition<?> getTypeDefinition(FhirContext theContext, String theTypeName) {
+		BaseRuntimeElementDefinition<?> retVal = theContext.getElementDefinition(theTypeName);
+		if (retVal == null || !theTypeName.equals(retVal.getName()) || !isCompilableElement(retVal)) {
+			return null;
+		}
+		return retVal;
+	}
+
+	private interface IStep {
+
+		/**
+		 * @return The output of this step, or <code>null</code> if the step can not be evaluated
+		 * and the FHIRPath engine must be used instead
+		 */
+		@Nullable
+		List<IBase> apply(@Nonnull List<IBase> theInput, @Nonnull IBaseResource theRootResource);
+	}
+
+	private static class ChildStep implements IStep {
+
+		private final BaseRuntimeChildDefinition.IAccessor myAccessor;
+
+		private ChildStep(BaseRuntimeChildDefinition theChild) {
+			myAccessor = theChild.getAccessor();
+		}
+
+		@Override
+		public List<IBase> apply(List<IBase> theInput, IBaseResource theRootResource) {
+			if (theInput.size() == 1) {
+				return myAccessor.getValues(theInput.get(0));
+			}
+			List<IBase> retVal = new ArrayList<>();
+			for (IBase next : theInput) {
+				retVal.addAll(myAccessor.getValues(next));
+			}
+			return retVal;
+		}
+	}
+
+	private static class ChildEqualsStep implements IStep {
+
+		private final BaseRuntimeChildDefinition.IAccessor myAccessor;
+		private final String myValue;
+
+		private ChildEqualsStep(BaseRuntimeChildDefinition theChild, String theValue) {
+			myAccessor = theChild.getAccessor();
+			myValue = theValue;
+		}
+
+		@Override
+		public List<IBase> apply(List<IBase> theInput, IBaseResource theRootResource) {
+			List<IBase> retVal = new ArrayList<>(theInput.size());
+			for (IBase next : theInput) {
+				String value = myAccessor
+						.getFirstValueOrNull(next)
+						.map(t -> ((IPrimitiveType<?>) t).getValueAsString())
+						.orElse(null);
+				if (myValue.equals(value)) {
+					retVal.add(next);
+				}
+			}
+			return retVal;
+		}
+	}
+
+	private static class TypeFilterStep implements IStep {
+
+		private final String myTypeName;
+		private final Class<?> myTypeClass;
+
+		private TypeFilterStep(BaseRuntimeElementDefinition<?> theTypeDefinition) {
+			myTypeName = theTypeDefinition.getName();
+			myTypeClass = theTypeDefinition.getImplementingClass();
+		}
+
+		@Override
+		public List<IBase> apply(List<IBase> theInput, IBaseResource theRootResource) {
+			List<IBase> retVal = new ArrayList<>(theInput.size());
+			for (IBase next : theInput) {
+				if (myTypeName.equals(next.fhirType())) {
+					retVal.add(next);
+				} else if (myTypeClass.isInstance(next)) {
+					// FHIRPath type operators differ in how they treat subtypes, so leave this to the engine
+					return null;
+				}
+			}
+			return retVal;
+		}
+	}
+
+	private static class ResolveIsStep implements IStep {
+
+		private final FhirContext myContext;
+		private final BaseRuntimeChildDefinition.IAccessor myReferenceAccessor;
+		private final String myResourceType;
+
+		private ResolveIsStep(FhirContext theContext, BaseRuntimeChildDefinition theReferenceChild, String theType) {
+			myContext = theContext;
+			myReferenceAccessor = theReferenceChild.getAccessor();
+			myResourceType = theType;
+		}
+
+		@Override
+		public List<IBase> apply(List<IBase> theInput, IBaseResource theRootResource) {
+			// References within a Bundle may resolve to the Bundle entries
+			if (theRootResource instanceof IBaseBundle) {
+				return null;
+			}
+
+			List<IBase> retVal = new ArrayList<>(theInput.size());
+			for (IBase next : theInput) {
+				if (!(next instanceof IBaseReference)) {
+					return null;
+				}
+				String reference = myReferenceAccessor
+						.getFirstValueOrNull(next)
+						.map(t -> ((IPrimitiveType<?>) t).getValueAsString())
+						.orElse(null);
+				if (isBlank(reference)) {
+					continue;
+				}
+				// Local references resolve against the contained resources
+				if (reference.startsWith("#")) {
+					return null;
+				}
+				IIdType id = myContext.getVersion().newIdType(reference);
+				if (myResourceType.equals(id.getResourceType())) {
+					retVal.add(next);
+				}
+			}
+			return retVal;
+		}
+	}
+}
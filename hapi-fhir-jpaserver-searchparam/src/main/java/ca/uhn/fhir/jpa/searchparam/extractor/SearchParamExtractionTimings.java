@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA - Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.util.StopWatch;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative timing statistics for each family of search parameter extractor, as recorded
+ * by {@link SearchParamExtractorService} while indexing resources. Instances are thread safe.
+ *
+ * @since 8.4.0
+ */
+public class SearchParamExtractionTimings {
+
+	private final Map<FamilyEnum, LongAdder> myCounts = new EnumMap<>(FamilyEnum.class);
+	private final Map<FamilyEnum, LongAdder> myNanos = new EnumMap<>(FamilyEnum.class);
+
+	/**
+	 * Constructor
+	 */
+	public SearchParamExtractionTimings() {
+		for (FamilyEnum next : FamilyEnum.values()) {
+			myCounts.put(next, new LongAdder());
+			myNanos.put(next, new LongAdder());
+		}
+	}
+
+	void record(FamilyEnum theFamily, long theNanos) {
+		myCounts.get(theFamily).increment();
+		myNanos.get(theFamily).add(theNanos);
+	}
+
+	/**
+	 * Returns the number of times the given extractor family has been invoked
+	 */
+	public long getCount(FamilyEnum theFamily) {
+		return myCounts.get(theFamily).sum();
+	}
+
+	/**
+	 * Returns the total time spent in the given extractor family, in milliseconds
+	 */
+	public long getTotalMillis(FamilyEnum theFamily) {
+		return TimeUnit.NANOSECONDS.toMillis(myNanos.get(theFamily).sum());
+	}
+
+	/**
+	 * Returns the mean time spent in a single invocation of the given extractor family, in
+	 * milliseconds
+	 */
+	public double getMeanMillis(FamilyEnum theFamily) {
+		long count = getCount(theFamily);
+		if (count == 0) {
+			return 0;
+		}
+		return (double) myNanos.get(theFamily).sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * Resets all recorded timings
+	 */
+	public void clear() {
+		myCounts.values().forEach(LongAdder::reset);
+		myNanos.values().forEach(LongAdder::reset);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		for (FamilyEnum next : FamilyEnum.values()) {
+			if (b.length() > 0) {
+				b.append(", ");
+			}
+			b.append(next.name().toLowerCase())
+					.append("=")
+					.append(getCount(next))
+					.append("x/")
+					.append(StopWatch.formatMillis(getTotalMillis(next)));
+		}
+		return b.toString();
+	}
+
+	public enum FamilyEnum {
+		STRING,
+		NUMBER,
+		QUANTITY,
+		QUANTITY_NORMALIZED,
+		DATE,
+		URI,
+		TOKEN,
+		COMPOSITE,
+		SPECIAL,
+		REFERENCE
+	}
+}
@@ -33,10 +33,19 @@ import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamUri;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractionTimings.FamilyEnum;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.util.LogUtil;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
 import static ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService.handleWarnings;
 
 public class SearchParamExtractionUtil {
@@ -45,16 +54,45 @@ public class SearchParamExtractionUtil {
 	private final StorageSettings myStorageSettings;
 	private final ISearchParamExtractor mySearchParamExtractor;
 	private final IInterceptorBroadcaster myInterceptorBroadcaster;
+	private final Executor myExecutor;
+	private final SearchParamExtractionTimings myTimings;
 
 	public SearchParamExtractionUtil(
 			FhirContext theFhirContext,
 			StorageSettings theStorageSettings,
 			ISearchParamExtractor theSearchParamExtractor,
 			IInterceptorBroadcaster theInterceptorBroadcaster) {
+		this(
+				theFhirContext,
+				theStorageSettings,
+				theSearchParamExtractor,
+				theInterceptorBroadcaster,
+				null,
+				new SearchParamExtractionTimings());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theExecutor If not <code>null</code>, each extractor family is run as a separate task
+	 *                    using this executor. If <code>null</code>, extractors are run serially on
+	 *                    the calling thread.
+	 * @param theTimings  Receives the time spent in each extractor family
+	 * @since 8.4.0
+	 */
+	public SearchParamExtractionUtil(
+			FhirContext theFhirContext,
+			StorageSettings theStorageSettings,
+			ISearchParamExtractor theSearchParamExtractor,
+			IInterceptorBroadcaster theInterceptorBroadcaster,
+			@Nullable Executor theExecutor,
+			@Nonnull SearchParamExtractionTimings theTimings) {
 		myFhirContext = theFhirContext;
 		myStorageSettings = theStorageSettings;
 		mySearchParamExtractor = theSearchParamExtractor;
 		myInterceptorBroadcaster = theInterceptorBroadcaster;
+		myExecutor = theExecutor;
+		myTimings = theTimings;
 	}
 
 	public void extractSearchIndexParameters(
@@ -63,53 +101,77 @@ public class SearchParamExtractionUtil {
 			IBaseResource theResource,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
 
-		// Strings
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString> strings =
-				extractSearchParamStrings(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, strings);
-		theParams.myStringParams.addAll(strings);
-
-		// Numbers
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamNumber> numbers =
-				extractSearchParamNumber(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, numbers);
-		theParams.myNumberParams.addAll(numbers);
-
-		// Quantities
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantity> quantities =
-				extractSearchParamQuantity(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantities);
-		theParams.myQuantityParams.addAll(quantities);
+		/*
+		 * Each family is started first and then collected in a fixed order, so that
+		 * when an executor is used the extractors run concurrently but the indexes
+		 * (and warnings) are added in exactly the same order as they would be when
+		 * extracting serially.
+		 */
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString>> strings =
+				submit(FamilyEnum.STRING, () -> extractSearchParamStrings(theResource, theSearchParamFilter));
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamNumber>> numbers =
+				submit(FamilyEnum.NUMBER, () -> extractSearchParamNumber(theResource, theSearchParamFilter));
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantity>> quantities =
+				submit(FamilyEnum.QUANTITY, () -> extractSearchParamQuantity(theResource, theSearchParamFilter));
 
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantityNormalized>>
+				quantitiesNormalized = null;
 		if (myStorageSettings
 						.getNormalizedQuantitySearchLevel()
 						.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_STORAGE_SUPPORTED)
 				|| myStorageSettings
 						.getNormalizedQuantitySearchLevel()
 						.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_SUPPORTED)) {
-			ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantityNormalized> quantitiesNormalized =
-					extractSearchParamQuantityNormalized(theResource, theSearchParamFilter);
-			handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantitiesNormalized);
-			theParams.myQuantityNormalizedParams.addAll(quantitiesNormalized);
+			quantitiesNormalized = submit(
+					FamilyEnum.QUANTITY_NORMALIZED,
+					() -> extractSearchParamQuantityNormalized(theResource, theSearchParamFilter));
+		}
+
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamDate>> dates =
+				submit(FamilyEnum.DATE, () -> extractSearchParamDates(theResource, theSearchParamFilter));
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamUri>> uris =
+				submit(FamilyEnum.URI, () -> extractSearchParamUri(theResource, theSearchParamFilter));
+		Supplier<ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam>> tokens =
+				submit(FamilyEnum.TOKEN, () -> extractSearchParamTokens(theResource, theSearchParamFilter));
+
+		// dst2 composites use stuff like value[x] , and we don't support them.
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamComposite>> composites = null;
+		if (myFhirContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
+			composites =
+					submit(FamilyEnum.COMPOSITE, () -> extractSearchParamComposites(theResource, theSearchParamFilter));
+		}
+
+		Supplier<ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam>> specials =
+				submit(FamilyEnum.SPECIAL, () -> extractSearchParamSpecial(theResource, theSearchParamFilter));
+
+		// Strings
+		handleWarnings(theRequestDetails, myInterceptorBroadcaster, strings.get());
+		theParams.myStringParams.addAll(strings.get());
+
+		// Numbers
+		handleWarnings(theRequestDetails, myInterceptorBroadcaster, numbers.get());
+		theParams.myNumberParams.addAll(numbers.get());
+
+		// Quantities
+		handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantities.get());
+		theParams.myQuantityParams.addAll(quantities.get());
+
+		if (quantitiesNormalized != null) {
+			handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantitiesNormalized.get());
+			theParams.myQuantityNormalizedParams.addAll(quantitiesNormalized.get());
 		}
 
 		// Dates
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamDate> dates =
-				extractSearchParamDates(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, dates);
-		theParams.myDateParams.addAll(dates);
+		handleWarnings(theRequestDetails, myInterceptorBroadcaster, dates.get());
+		theParams.myDateParams.addAll(dates.get());
 
 		// URIs
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamUri> uris =
-				extractSearchParamUri(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, uris);
-		theParams.myUriParams.addAll(uris);
+		handleWarnings(theRequestDetails, myInterceptorBroadcaster, uris.get());
+		theParams.myUriParams.addAll(uris.get());
 
 		// Tokens (can result in both Token and String, as we index the display name for
 		// the types: Coding, CodeableConcept)
-		ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam> tokens =
-				extractSearchParamTokens(theResource, theSearchParamFilter);
-		for (BaseResourceIndexedSearchParam next : tokens) {
+		for (BaseResourceIndexedSearchParam next : tokens.get()) {
 			if (next instanceof ResourceIndexedSearchParamToken) {
 				theParams.myTokenParams.add((ResourceIndexedSearchParamToken) next);
 			} else if (next instanceof ResourceIndexedSearchParamCoords) {
@@ -120,24 +182,59 @@ public class SearchParamExtractionUtil {
 		}
 
 		// Composites
-		// dst2 composites use stuff like value[x] , and we don't support them.
-		if (myFhirContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
-			ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamComposite> composites =
-					extractSearchParamComposites(theResource, theSearchParamFilter);
-			handleWarnings(theRequestDetails, myInterceptorBroadcaster, composites);
-			theParams.myCompositeParams.addAll(composites);
+		if (composites != null) {
+			handleWarnings(theRequestDetails, myInterceptorBroadcaster, composites.get());
+			theParams.myCompositeParams.addAll(composites.get());
 		}
 
 		// Specials
-		ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam> specials =
-				extractSearchParamSpecial(theResource, theSearchParamFilter);
-		for (BaseResourceIndexedSearchParam next : specials) {
+		for (BaseResourceIndexedSearchParam next : specials.get()) {
 			if (next instanceof ResourceIndexedSearchParamCoords) {
 				theParams.myCoordsParams.add((ResourceIndexedSearchParamCoords) next);
 			}
 		}
 	}
 
+	/**
+	 * Runs the given extractor family, either immediately on the calling thread or (if this
+	 * util has an executor) as a task on the executor, and returns a supplier for its result.
+	 * Any exception thrown by the extractor is rethrown by the supplier.
+	 */
+	<T> Supplier<T> submit(FamilyEnum theFamily, Supplier<T> theExtractor) {
+		Supplier<T> timedExtractor = () -> {
+			long start = System.nanoTime();
+			try {
+				return theExtractor.get();
+			} finally {
+				myTimings.record(theFamily, System.nanoTime() - start);
+			}
+		};
+
+		if (myExecutor == null) {
+			T retVal = timedExtractor.get();
+			return () -> retVal;
+		}
+
+		CompletableFuture<T> future;
+		try {
+			future = CompletableFuture.supplyAsync(LogUtil.withLoggingContext(timedExtractor), myExecutor);
+		} catch (RejectedExecutionException e) {
+			// The executor has been shut down (e.g. because the thread count was changed), so run inline
+			T retVal = timedExtractor.get();
+			return () -> retVal;
+		}
+		return () -> {
+			try {
+				return future.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		};
+	}
+
 	private ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamDate> extractSearchParamDates(
 			IBaseResource theResource, ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
 		return mySearchParamExtractor.extractSearchParamDates(theResource, theSearchParamFilter);
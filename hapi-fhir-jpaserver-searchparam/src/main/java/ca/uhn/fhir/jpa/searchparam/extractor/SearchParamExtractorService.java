@@ -55,6 +55,7 @@ import ca.uhn.fhir.util.FhirTerser;
 import com.google.common.annotations.VisibleForTesting;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IBaseReference;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -71,6 +72,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.model.config.PartitionSettings.CrossPartitionReferenceMode.ALLOWED_UNQUALIFIED;
@@ -102,7 +106,10 @@ public class SearchParamExtractorService {
 	@Autowired(required = false)
 	private IResourceLinkResolver myResourceLinkResolver;
 
-	private SearchParamExtractionUtil mySearchParamExtractionUtil;
+	private volatile SearchParamExtractionUtil mySearchParamExtractionUtil;
+	private ForkJoinPool myExtractionPool;
+	private volatile int myExtractionThreadCount;
+	private final SearchParamExtractionTimings myExtractionTimings = new SearchParamExtractionTimings();
 
 	@VisibleForTesting
 	public void setSearchParamExtractor(ISearchParamExtractor theSearchParamExtractor) {
@@ -137,16 +144,21 @@ public class SearchParamExtractorService {
 		 */
 		myContext.newTerser().containResources(theResource, null, true);
 
+		// Reference search parameters (started first so that they can run alongside the
+		// other extractors if parallel extraction is enabled)
+		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
+		Supplier<ISearchParamExtractor.SearchParamSet<PathAndRef>> indexedReferencesSupplier = getExtractionUtil()
+				.submit(
+						SearchParamExtractionTimings.FamilyEnum.REFERENCE,
+						() -> mySearchParamExtractor.extractResourceLinks(theResource, indexOnContainedResources));
+
 		// All search parameter types except Reference
 		ResourceIndexedSearchParams normalParams = ResourceIndexedSearchParams.withSets();
 		getExtractionUtil()
 				.extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
 		mergeParams(normalParams, theNewParams);
 
-		// Reference search parameters
-		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
-		ISearchParamExtractor.SearchParamSet<PathAndRef> indexedReferences =
-				mySearchParamExtractor.extractResourceLinks(theResource, indexOnContainedResources);
+		ISearchParamExtractor.SearchParamSet<PathAndRef> indexedReferences = indexedReferencesSupplier.get();
 		SearchParamExtractorService.handleWarnings(theRequestDetails, myInterceptorBroadcaster, indexedReferences);
 
 		if (indexOnContainedResources) {
@@ -226,13 +238,68 @@ public class SearchParamExtractorService {
 	}
 
 	private SearchParamExtractionUtil getExtractionUtil() {
+		SearchParamExtractionUtil retVal = mySearchParamExtractionUtil;
+		if (retVal == null || myExtractionThreadCount != getConfiguredExtractionThreadCount()) {
+			retVal = createExtractionUtil();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Creates the extraction util, and the pool it uses, if they don't exist yet or if the
+	 * configured thread count has changed since they were created
+	 */
+	private synchronized SearchParamExtractionUtil createExtractionUtil() {
+		int threadCount = getConfiguredExtractionThreadCount();
+		if (mySearchParamExtractionUtil != null && myExtractionThreadCount != threadCount) {
+			stop();
+		}
 		if (mySearchParamExtractionUtil == null) {
+			if (threadCount > 1) {
+				myExtractionPool =
+						new ForkJoinPool(threadCount, SearchParamExtractorService::newExtractionThread, null, false);
+			}
+			myExtractionThreadCount = threadCount;
 			mySearchParamExtractionUtil = new SearchParamExtractionUtil(
-					myContext, myStorageSettings, mySearchParamExtractor, myInterceptorBroadcaster);
+					myContext,
+					myStorageSettings,
+					mySearchParamExtractor,
+					myInterceptorBroadcaster,
+					myExtractionPool,
+					myExtractionTimings);
 		}
 		return mySearchParamExtractionUtil;
 	}
 
+	/**
+	 * Returns the cumulative time spent in each family of search parameter extractor by this service
+	 *
+	 * @since 8.4.0
+	 */
+	public SearchParamExtractionTimings getExtractionTimings() {
+		return myExtractionTimings;
+	}
+
+	private int getConfiguredExtractionThreadCount() {
+		int retVal = myStorageSettings.getSearchParamExtractionThreadCount();
+		return retVal > 1 ? retVal : 0;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExtractionPool != null) {
+			myExtractionPool.shutdown();
+			myExtractionPool = null;
+		}
+		mySearchParamExtractionUtil = null;
+	}
+
+	private static ForkJoinWorkerThread newExtractionThread(ForkJoinPool thePool) {
+		ForkJoinWorkerThread retVal = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(thePool);
+		retVal.setName("hapi-fhir-jpa-searchparam-extraction-" + retVal.getPoolIndex());
+		return retVal;
+	}
+
 	@Nonnull
 	private Map<String, Boolean> getReferenceSearchParamPresenceMap(
 			ResourceTable entity, ResourceIndexedSearchParams newParams) {
@@ -251,6 +318,7 @@ public class SearchParamExtractorService {
 	@VisibleForTesting
 	public void setStorageSettings(StorageSettings theStorageSettings) {
 		myStorageSettings = theStorageSettings;
+		stop();
 	}
 
 	/**
@@ -0,0 +1,92 @@
+package ca.uhn.fhir.jpa.searchparam;
+
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchKeysetTest {
+
+	private static final byte[] KEY = "secret".getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	void testEncodeAndDecode() {
+		List<Object> values = Arrays.asList(null, "http://foo|bar&baz=ü", new Date(1700000000123L), 123L);
+		SearchKeyset keyset = new SearchKeyset("Observation", "-code", values);
+
+		String encoded = keyset.encode(KEY);
+		assertThat(encoded).matches("[A-Za-z0-9_-]+");
+
+		SearchKeyset decoded = SearchKeyset.decode(encoded, KEY);
+		assertEquals(keyset, decoded);
+		assertEquals(values, decoded.getSortValues());
+		assertFalse(decoded.isFirstPage());
+		assertTrue(decoded.matches("Observation", "-code"));
+		assertFalse(decoded.matches("Observation", "code"));
+		assertFalse(decoded.matches("Patient", "-code"));
+	}
+
+	@Test
+	void testFirstPage() {
+		SearchKeyset keyset = new SearchKeyset("Patient", "", List.of());
+		assertTrue(keyset.isFirstPage());
+		assertEquals(keyset, SearchKeyset.decode(keyset.encode(KEY), KEY));
+	}
+
+	@Test
+	void testUnsupportedValueType() {
+		List<Object> values = List.of(1.5d);
+		assertThatThrownBy(() -> new SearchKeyset("Patient", "", values))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"", "!!!", "AQ", "AgAHUGF0aWVudAAA"})
+	void testDecodeInvalid(String theToken) {
+		assertThatThrownBy(() -> SearchKeyset.decode(theToken, KEY))
+			.isInstanceOf(InvalidRequestException.class)
+			.hasMessageContaining("HAPI-2659: Invalid _keyset value");
+	}
+
+	@Test
+	void testDecodeTrailingData() {
+		String encoded = new SearchKeyset("Patient", "", List.of(1L)).encode(KEY);
+		String withTrailingData = SearchKeyset.decode(encoded, KEY).encode(KEY) + "AA";
+		assertThatThrownBy(() -> SearchKeyset.decode(withTrailingData, KEY))
+			.isInstanceOf(InvalidRequestException.class);
+	}
+
+	@Test
+	void testDecodeTampered() {
+		String encoded = new SearchKeyset("Patient", "", List.of(1L)).encode(KEY);
+		byte[] bytes = Base64.getUrlDecoder().decode(encoded);
+
+		// Change the PID without updating the signature
+		bytes[bytes.length - 33]++;
+		String tampered = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		assertThatThrownBy(() -> SearchKeyset.decode(tampered, KEY))
+			.isInstanceOf(InvalidRequestException.class)
+			.hasMessageContaining("HAPI-2659: Invalid _keyset value");
+	}
+
+	@Test
+	void testDecodeWithDifferentKey() {
+		String encoded = new SearchKeyset("Patient", "", List.of(1L)).encode(KEY);
+		byte[] otherKey = "other".getBytes(StandardCharsets.UTF_8);
+		assertThatThrownBy(() -> SearchKeyset.decode(encoded, otherKey))
+			.isInstanceOf(InvalidRequestException.class)
+			.hasMessageContaining("HAPI-2659: Invalid _keyset value");
+	}
+}
@@ -0,0 +1,384 @@
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
+import ca.uhn.fhir.context.RuntimeChildContainedResources;
+import ca.uhn.fhir.context.RuntimeChildDirectResource;
+import ca.uhn.fhir.context.RuntimeChildResourceBlockDefinition;
+import ca.uhn.fhir.context.RuntimeChildResourceDefinition;
+import ca.uhn.fhir.context.RuntimePrimitiveDatatypeDefinition;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseEnumeration;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.hl7.fhir.r4.model.Age;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.ContactPoint;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CompiledSearchParamPathTest {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(CompiledSearchParamPathTest.class);
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private static final String[] REFERENCES = {
+		"Patient/1", "Group/2/_history/1", "http://example.com/fhir/Practitioner/3", "urn:uuid:4", "#c1", "Foo/5"
+	};
+
+	/**
+	 * Evaluates every search parameter path in the given FHIR version against resources with
+	 * every element populated, and ensures that the compiled paths return exactly the same
+	 * objects as the FHIRPath engine
+	 */
+	@ParameterizedTest
+	@MethodSource("provideContexts")
+	public void testCompiledPathsMatchFhirPathEngine(FhirContext theContext) {
+		BaseSearchParamExtractor extractor = newExtractor(theContext, new StorageSettings());
+
+		int compiledCount = 0;
+		int notCompiledCount = 0;
+		int comparisonCount = 0;
+		for (String nextResourceType : theContext.getResourceTypes()) {
+			RuntimeResourceDefinition resourceDef = theContext.getResourceDefinition(nextResourceType);
+
+			List<IBaseResource> resources = new ArrayList<>();
+			for (int variant = 0; variant < 3; variant++) {
+				IBaseResource resource = resourceDef.newInstance();
+				populate(theContext, resourceDef, resource, new ArrayList<>(), variant);
+				resources.add(resource);
+			}
+
+			for (RuntimeSearchParam nextSearchParam : resourceDef.getSearchParams()) {
+				if (nextSearchParam.getPath() == null || nextSearchParam.getPath().isBlank()) {
+					continue;
+				}
+				for (String nextPath : extractor.split(nextSearchParam.getPath())) {
+					nextPath = nextPath.trim();
+					if (nextPath.startsWith("Resource.")) {
+						// Resource level parameters are handled separately by the indexer
+						continue;
+					}
+					CompiledSearchParamPath compiled = CompiledSearchParamPath.compile(theContext, nextPath);
+					if (compiled == null) {
+						notCompiledCount++;
+						continue;
+					}
+					compiledCount++;
+
+					for (IBaseResource nextResource : resources) {
+						List<IBase> actual = compiled.evaluate(nextResource);
+						if (actual == null) {
+							continue;
+						}
+						List<? extends IBase> expected =
+								extractor.getPathValueExtractor(nextResource, nextPath).get();
+						assertThat(actual)
+								.as(nextPath)
+								.usingElementComparator((a, b) -> a == b ? 0 : 1)
+								.containsExactlyElementsOf(expected);
+						comparisonCount++;
+					}
+				}
+			}
+		}
+
+		ourLog.info(
+				"Compiled {} paths, did not compile {} paths, performed {} comparisons",
+				compiledCount,
+				notCompiledCount,
+				comparisonCount);
+		assertThat(compiledCount).isGreaterThan(notCompiledCount * 10);
+	}
+
+	@ParameterizedTest
+	@ValueSource(
+			strings = {
+				"Patient.extension('http://example.com')",
+				"Patient.extension.value",
+				"Patient.name.where(use != 'official')",
+				"Patient.name.where(given = 'John')",
+				"Patient.deceased.exists() and Patient.deceased != false",
+				"Bundle.entry[0].resource",
+				"Bundle.entry.resource",
+				"Resource.meta.lastUpdated",
+				"Patient.id",
+				"Patient.text.div",
+				"Patient.contained",
+				"Observation.valueQuantity",
+				"Observation.foo",
+				"(Observation.value as quantity)",
+				"Encounter.subject.where(resolve() is Foo)",
+				"Encounter.subject.where(resolve() is Resource)",
+				"Encounter.status.where(resolve() is Patient)",
+				"Patient.name.family)",
+				"Patient"
+			})
+	public void testNotCompiled(String thePath) {
+		assertNull(CompiledSearchParamPath.compile(ourCtx, thePath));
+	}
+
+	@Test
+	public void testEvaluateWrongResourceType() {
+		CompiledSearchParamPath compiled = CompiledSearchParamPath.compile(ourCtx, "Observation.code");
+		assertNotNull(compiled);
+
+		assertThat(compiled.evaluate(new Patient())).isEmpty();
+		assertNull(compiled.evaluate(new CodeableConcept()));
+	}
+
+	@Test
+	public void testEvaluateTypeFilter() {
+		Observation obs = new Observation();
+		Quantity quantity = new Quantity(1);
+		obs.setValue(quantity);
+
+		for (String next : List.of(
+				"(Observation.value as Quantity)",
+				"Observation.value.as(Quantity)",
+				"Observation.value.ofType(Quantity)")) {
+			CompiledSearchParamPath compiled = CompiledSearchParamPath.compile(ourCtx, next);
+			assertNotNull(compiled);
+			assertThat(compiled.evaluate(obs)).containsExactly(quantity);
+		}
+
+		CompiledSearchParamPath compiled =
+				CompiledSearchParamPath.compile(ourCtx, "(Observation.value as CodeableConcept)");
+		assertNotNull(compiled);
+		assertThat(compiled.evaluate(obs)).isEmpty();
+
+		// Subtypes are left to the FHIRPath engine
+		obs.setValue(new Age().setValue(1));
+		compiled = CompiledSearchParamPath.compile(ourCtx, "(Observation.value as Quantity)");
+		assertNotNull(compiled);
+		assertNull(compiled.evaluate(obs));
+	}
+
+	@Test
+	public void testEvaluateResolveIs() {
+		CompiledSearchParamPath compiled =
+				CompiledSearchParamPath.compile(ourCtx, "Encounter.subject.where(resolve() is Patient)");
+		assertNotNull(compiled);
+
+		Encounter encounter = new Encounter();
+		for (String next : List.of("Patient/1", "http://example.com/fhir/Patient/1", "Patient/1/_history/2")) {
+			encounter.setSubject(new Reference(next));
+			assertThat(compiled.evaluate(encounter)).containsExactly(encounter.getSubject());
+		}
+		for (String next : List.of("Group/1", "patient/1", "urn:uuid:1", "Foo/1")) {
+			encounter.setSubject(new Reference(next));
+			assertThat(compiled.evaluate(encounter)).isEmpty();
+		}
+		encounter.setSubject(new Reference().setDisplay("Display Only"));
+		assertThat(compiled.evaluate(encounter)).isEmpty();
+
+		// Contained references are left to the FHIRPath engine
+		encounter.setSubject(new Reference("#c1"));
+		assertNull(compiled.evaluate(encounter));
+
+	}
+
+	@Test
+	public void testEvaluateChildEquals() {
+		CompiledSearchParamPath compiled =
+				CompiledSearchParamPath.compile(ourCtx, "Patient.telecom.where(system='email')");
+		assertNotNull(compiled);
+
+		Patient patient = new Patient();
+		patient.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("555-1234");
+		ContactPoint email = patient.addTelecom()
+				.setSystem(ContactPoint.ContactPointSystem.EMAIL)
+				.setValue("a@example.com");
+		patient.addTelecom().setValue("none");
+
+		assertThat(compiled.evaluate(patient)).containsExactly(email);
+	}
+
+	@Test
+	public void testExtractorOnlyCompilesPathsWhenEnabled() {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("123");
+		patient.addName().setFamily("Smith").addGiven("John");
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+
+		BaseSearchParamExtractor defaultExtractor = newExtractor(ourCtx, new StorageSettings());
+		List<String> expected = toStrings(defaultExtractor.extractSearchParamTokens(patient));
+		assertThat(expected).isNotEmpty();
+		assertEquals(0, defaultExtractor.getCompiledPathCount());
+
+		StorageSettings storageSettings = new StorageSettings();
+		storageSettings.setSearchParamPathCompilationEnabled(true);
+		BaseSearchParamExtractor compilingExtractor = newExtractor(ourCtx, storageSettings);
+		assertThat(toStrings(compilingExtractor.extractSearchParamTokens(patient))).containsExactlyElementsOf(expected);
+		assertThat(compilingExtractor.getCompiledPathCount()).isGreaterThan(0);
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testExtractorOnlyCreatesFhirPathExtractorWhenNeeded(boolean theCompilationEnabled) {
+		StorageSettings storageSettings = new StorageSettings();
+		storageSettings.setSearchParamPathCompilationEnabled(theCompilationEnabled);
+		AtomicInteger pathValueExtractorCount = new AtomicInteger();
+		BaseSearchParamExtractor extractor = new SearchParamExtractorR4(
+				storageSettings, new PartitionSettings(), ourCtx, new FhirContextSearchParamRegistry(ourCtx)) {
+			@Override
+			public IValueExtractor getPathValueExtractor(IBase theResource, String theSinglePath) {
+				pathValueExtractorCount.incrementAndGet();
+				return super.getPathValueExtractor(theResource, theSinglePath);
+			}
+		};
+
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("123");
+		assertThat(extractor.extractValues("Patient.identifier", patient)).hasSize(1);
+		assertEquals(theCompilationEnabled ? 0 : 1, pathValueExtractorCount.get());
+	}
+
+	private static List<String> toStrings(Collection<?> theParams) {
+		return theParams.stream().map(Object::toString).sorted().toList();
+	}
+
+	static BaseSearchParamExtractor newExtractor(FhirContext theContext, StorageSettings theStorageSettings) {
+		ISearchParamRegistry searchParamRegistry = new FhirContextSearchParamRegistry(theContext);
+		PartitionSettings partitionSettings = new PartitionSettings();
+		switch (theContext.getVersion().getVersion()) {
+			case R4:
+				return new SearchParamExtractorR4(theStorageSettings, partitionSettings, theContext, searchParamRegistry);
+			case R4B:
+				return new SearchParamExtractorR4B(theStorageSettings, partitionSettings, theContext, searchParamRegistry);
+			case R5:
+				return new SearchParamExtractorR5(theStorageSettings, partitionSettings, theContext, searchParamRegistry);
+			default:
+				throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Populates every child of the given element. Repeating children get two values, one of which is
+	 * empty, and choice children use a different type for each variant.
+	 */
+	static void populate(
+			FhirContext theContext,
+			BaseRuntimeElementCompositeDefinition<?> theDefinition,
+			IBase theTarget,
+			List<BaseRuntimeElementDefinition<?>> theStack,
+			int theVariant) {
+		if (theStack.contains(theDefinition) || theStack.size() > 4) {
+			return;
+		}
+		theStack.add(theDefinition);
+
+		for (BaseRuntimeChildDefinition nextChild : theDefinition.getChildren()) {
+			if (nextChild instanceof RuntimeChildContainedResources || nextChild instanceof RuntimeChildDirectResource) {
+				continue;
+			}
+
+			String childName = nextChild.getElementName();
+			if (nextChild instanceof RuntimeChildChoiceDefinition) {
+				if (nextChild.getClass() != RuntimeChildChoiceDefinition.class) {
+					continue;
+				}
+				List<String> names = new ArrayList<>(((RuntimeChildChoiceDefinition) nextChild).getValidChildNames());
+				names.sort(String::compareTo);
+				if (names.isEmpty()) {
+					continue;
+				}
+				childName = names.get((theVariant + theStack.size()) % names.size());
+			} else if (!(nextChild instanceof RuntimeChildResourceBlockDefinition)
+					&& !(nextChild instanceof RuntimeChildResourceDefinition)
+					&& nextChild.getValidChildNames().size() != 1) {
+				continue;
+			}
+
+			BaseRuntimeElementDefinition<?> childDef = nextChild.getChildByName(childName);
+			if (childDef == null || "ElementDefinition".equals(childDef.getName())) {
+				continue;
+			}
+
+			int repetitions = nextChild.getMax() == 1 ? 1 : 2;
+			for (int i = 0; i < repetitions; i++) {
+				IBase value = childDef.newInstance(nextChild.getInstanceConstructorArguments());
+				if (i == 0) {
+					if (value instanceof IBaseReference) {
+						String reference = REFERENCES[(theVariant * 7 + theStack.size() + childName.length()) % REFERENCES.length];
+						((IBaseReference) value).setReference(reference);
+					} else if (childDef instanceof BaseRuntimeElementCompositeDefinition) {
+						populate(theContext, (BaseRuntimeElementCompositeDefinition<?>) childDef, value, theStack, theVariant);
+					} else if (childDef instanceof RuntimePrimitiveDatatypeDefinition && !(value instanceof IBaseEnumeration)) {
+						populatePrimitive(theContext, (IPrimitiveType<?>) value);
+					}
+				}
+				nextChild.getMutator().addValue(theTarget, value);
+			}
+		}
+
+		theStack.remove(theStack.size() - 1);
+	}
+
+	private static void populatePrimitive(
+			FhirContext theContext, IPrimitiveType<?> theValue) {
+		String typeName = theContext.getElementDefinition(theValue.getClass()).getRootParentDefinition().getName();
+		switch (typeName) {
+			case "boolean":
+				theValue.setValueAsString("true");
+				break;
+			case "date":
+				theValue.setValueAsString("2019-10-10");
+				break;
+			case "dateTime":
+			case "instant":
+				theValue.setValueAsString("2019-10-10T11:11:11Z");
+				break;
+			case "integer64":
+			case "integer":
+			case "decimal":
+			case "unsignedInt":
+			case "positiveInt":
+				theValue.setValueAsString("1");
+				break;
+			case "time":
+				theValue.setValueAsString("11:11:11");
+				break;
+			case "base64Binary":
+				theValue.setValueAsString("AAAA");
+				break;
+			default:
+				theValue.setValueAsString("a");
+				break;
+		}
+	}
+
+	public static Stream<FhirContext> provideContexts() {
+		return Stream.of(FhirContext.forR4Cached(), FhirContext.forR4BCached(), FhirContext.forR5Cached());
+	}
+}
@@ -0,0 +1,140 @@
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.interceptor.executor.InterceptorService;
+import ca.uhn.fhir.jpa.model.entity.NormalizedQuantitySearchLevel;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractionTimings.FamilyEnum;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchParamExtractionUtilTest {
+
+	private final FhirContext myContext = FhirContext.forR4Cached();
+	private final ForkJoinPool myPool = new ForkJoinPool(4);
+
+	@AfterEach
+	public void after() {
+		myPool.shutdown();
+	}
+
+	@Test
+	public void testParallelExtractionMatchesSerialExtraction() {
+		StorageSettings storageSettings = new StorageSettings();
+		storageSettings.setNormalizedQuantitySearchLevel(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_SUPPORTED);
+		BaseSearchParamExtractor extractor = CompiledSearchParamPathTest.newExtractor(myContext, storageSettings);
+
+		SearchParamExtractionTimings serialTimings = new SearchParamExtractionTimings();
+		SearchParamExtractionUtil serial = new SearchParamExtractionUtil(myContext, storageSettings, extractor, new InterceptorService(), null, serialTimings);
+		SearchParamExtractionTimings parallelTimings = new SearchParamExtractionTimings();
+		SearchParamExtractionUtil parallel = new SearchParamExtractionUtil(myContext, storageSettings, extractor, new InterceptorService(), myPool, parallelTimings);
+
+		int resourceCount = 0;
+		for (String nextResourceType : myContext.getResourceTypes()) {
+			RuntimeResourceDefinition resourceDef = myContext.getResourceDefinition(nextResourceType);
+			for (int variant = 0; variant < 2; variant++) {
+				IBaseResource resource = resourceDef.newInstance();
+				CompiledSearchParamPathTest.populate(myContext, resourceDef, resource, new ArrayList<>(), variant);
+
+				ResourceIndexedSearchParams serialParams = ResourceIndexedSearchParams.withSets();
+				serial.extractSearchIndexParameters(null, serialParams, resource, ISearchParamExtractor.ALL_PARAMS);
+				ResourceIndexedSearchParams parallelParams = ResourceIndexedSearchParams.withSets();
+				parallel.extractSearchIndexParameters(null, parallelParams, resource, ISearchParamExtractor.ALL_PARAMS);
+
+				String description = nextResourceType + " variant " + variant;
+				assertSameOrder(description, serialParams.myStringParams, parallelParams.myStringParams);
+				assertSameOrder(description, serialParams.myTokenParams, parallelParams.myTokenParams);
+				assertSameOrder(description, serialParams.myNumberParams, parallelParams.myNumberParams);
+				assertSameOrder(description, serialParams.myQuantityParams, parallelParams.myQuantityParams);
+				assertSameOrder(description, serialParams.myQuantityNormalizedParams, parallelParams.myQuantityNormalizedParams);
+				assertSameOrder(description, serialParams.myDateParams, parallelParams.myDateParams);
+				assertSameOrder(description, serialParams.myUriParams, parallelParams.myUriParams);
+				assertSameOrder(description, serialParams.myCoordsParams, parallelParams.myCoordsParams);
+				assertSameOrder(description, serialParams.myCompositeParams, parallelParams.myCompositeParams);
+				resourceCount++;
+			}
+		}
+
+		for (FamilyEnum next : FamilyEnum.values()) {
+			long expected = next == FamilyEnum.REFERENCE ? 0 : resourceCount;
+			assertEquals(expected, serialTimings.getCount(next), next.name());
+			assertEquals(expected, parallelTimings.getCount(next), next.name());
+		}
+	}
+
+	@Test
+	public void testParallelExtractionRethrowsExtractorFailure() {
+		StorageSettings storageSettings = new StorageSettings();
+		BaseSearchParamExtractor extractor = CompiledSearchParamPathTest.newExtractor(myContext, storageSettings);
+		SearchParamExtractionUtil parallel = new SearchParamExtractionUtil(myContext, storageSettings, extractor, new InterceptorService(), myPool, new SearchParamExtractionTimings());
+
+		assertThatThrownBy(() -> parallel.submit(FamilyEnum.TOKEN, () -> {
+			throw new InternalErrorException("FAILED");
+		}).get())
+			.isInstanceOf(InternalErrorException.class)
+			.hasMessage("FAILED");
+	}
+
+	@Test
+	public void testParallelExtractionCopiesLoggingContext() {
+		StorageSettings storageSettings = new StorageSettings();
+		BaseSearchParamExtractor extractor = CompiledSearchParamPathTest.newExtractor(myContext, storageSettings);
+		SearchParamExtractionUtil parallel = new SearchParamExtractionUtil(myContext, storageSettings, extractor, new InterceptorService(), myPool, new SearchParamExtractionTimings());
+
+		MDC.put("requestId", "ABC");
+		try {
+			Supplier<String> outcome = parallel.submit(FamilyEnum.TOKEN, () -> Thread.currentThread().getName() + "/" + MDC.get("requestId"));
+			assertThat(outcome.get()).doesNotStartWith(Thread.currentThread().getName() + "/").endsWith("/ABC");
+		} finally {
+			MDC.remove("requestId");
+		}
+	}
+
+	@Test
+	public void testParallelExtractionRunsInlineAfterPoolShutdown() {
+		StorageSettings storageSettings = new StorageSettings();
+		BaseSearchParamExtractor extractor = CompiledSearchParamPathTest.newExtractor(myContext, storageSettings);
+		SearchParamExtractionUtil parallel = new SearchParamExtractionUtil(myContext, storageSettings, extractor, new InterceptorService(), myPool, new SearchParamExtractionTimings());
+		myPool.shutdown();
+
+		Supplier<String> outcome = parallel.submit(FamilyEnum.TOKEN, () -> Thread.currentThread().getName());
+		assertEquals(Thread.currentThread().getName(), outcome.get());
+	}
+
+	@Test
+	public void testTimingsToString() {
+		SearchParamExtractionTimings timings = new SearchParamExtractionTimings();
+		timings.record(FamilyEnum.TOKEN, 3_000_000L);
+		timings.record(FamilyEnum.TOKEN, 1_000_000L);
+
+		assertEquals(2, timings.getCount(FamilyEnum.TOKEN));
+		assertEquals(4, timings.getTotalMillis(FamilyEnum.TOKEN));
+		assertEquals(2.0, timings.getMeanMillis(FamilyEnum.TOKEN));
+		assertEquals(0.0, timings.getMeanMillis(FamilyEnum.STRING));
+		assertThat(timings.toString()).contains("token=2x/4ms");
+
+		timings.clear();
+		assertEquals(0, timings.getCount(FamilyEnum.TOKEN));
+	}
+
+	private static void assertSameOrder(String theDescription, Collection<?> theExpected, Collection<?> theActual) {
+		List<?> expected = new ArrayList<>(theExpected);
+		List<?> actual = new ArrayList<>(theActual);
+		assertEquals(expected, actual, theDescription);
+	}
+
+}
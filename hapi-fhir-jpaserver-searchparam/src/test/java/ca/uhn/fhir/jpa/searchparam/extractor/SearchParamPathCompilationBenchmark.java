@@ -0,0 +1,70 @@
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures index extraction for every R4 resource type with and without path compilation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchParamPathCompilationBenchmark {
+
+	@Param({"false", "true"})
+	private boolean mySearchParamPathCompilationEnabled;
+
+	private BaseSearchParamExtractor myExtractor;
+	private List<IBaseResource> myResources;
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = FhirContext.forR4Cached();
+		StorageSettings storageSettings = new StorageSettings();
+		storageSettings.setSearchParamPathCompilationEnabled(mySearchParamPathCompilationEnabled);
+		myExtractor = CompiledSearchParamPathTest.newExtractor(ctx, storageSettings);
+
+		myResources = new ArrayList<>();
+		for (String nextResourceType : ctx.getResourceTypes()) {
+			RuntimeResourceDefinition resourceDef = ctx.getResourceDefinition(nextResourceType);
+			IBaseResource resource = resourceDef.newInstance();
+			CompiledSearchParamPathTest.populate(ctx, resourceDef, resource, new ArrayList<>(), 0);
+			myResources.add(resource);
+		}
+	}
+
+	@Benchmark
+	public int extractAll() {
+		int retVal = 0;
+		for (IBaseResource next : myResources) {
+			retVal += myExtractor.extractSearchParamDates(next).size();
+			retVal += myExtractor.extractSearchParamNumber(next).size();
+			retVal += myExtractor.extractSearchParamQuantity(next).size();
+			retVal += myExtractor.extractSearchParamStrings(next).size();
+			retVal += myExtractor.extractSearchParamTokens(next).size();
+			retVal += myExtractor.extractSearchParamUri(next).size();
+			retVal += myExtractor.extractResourceLinks(next, false).size();
+		}
+		return retVal;
+	}
+}
@@ -88,6 +88,8 @@ public class SearchCoordinatorSvcImplTest extends BaseSearchSvc {
 	@Mock
 	private SearchStrategyFactory mySearchStrategyFactory;
 	@Mock
+	private KeysetPagingSvc myKeysetPagingSvc;
+	@Mock
 	private ISearchCacheSvc mySearchCacheSvc;
 	@Mock
 	private ISearchResultCacheSvc mySearchResultCacheSvc;
@@ -138,7 +140,8 @@ public class SearchCoordinatorSvcImplTest extends BaseSearchSvc {
 			null, // search param registry
 			mySearchStrategyFactory,
 			myExceptionSvc,
-			myBeanFactory
+			myBeanFactory,
+			myKeysetPagingSvc
 		);
 	}
 
@@ -51,6 +51,7 @@ public class ChainingR4SearchTest extends BaseJpaR4Test {
 		myStorageSettings.setIndexMissingFields(new JpaStorageSettings().getIndexMissingFields());
 		myStorageSettings.setIndexOnContainedResources(new JpaStorageSettings().isIndexOnContainedResources());
 		myStorageSettings.setIndexOnContainedResourcesRecursively(new JpaStorageSettings().isIndexOnContainedResourcesRecursively());
+		myStorageSettings.setSearchChainMaterializationThreshold(new JpaStorageSettings().getSearchChainMaterializationThreshold());
 	}
 
 	@Override
@@ -96,6 +97,47 @@ public class ChainingR4SearchTest extends BaseJpaR4Test {
 	}
 
 
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 100})
+	public void testChainAndHas_MaterializedTargets(int theThreshold) {
+		// setup
+		myStorageSettings.setSearchChainMaterializationThreshold(theThreshold);
+
+		IIdType pid1 = createPatient(withFamily("Smith"));
+		IIdType pid2 = createPatient(withFamily("Smith"));
+		IIdType pid3 = createPatient(withFamily("Jones"));
+		String oid1 = createObservation(withSubject(pid1), withObservationCode("http://foo", "bar")).getIdPart();
+		String oid2 = createObservation(withSubject(pid2), withObservationCode("http://foo", "baz")).getIdPart();
+		createObservation(withSubject(pid3), withObservationCode("http://foo", "bar"));
+		boolean smithsMaterialized = theThreshold >= 2;
+
+		// Chain
+		myCaptureQueriesListener.clear();
+		List<String> ids = myTestDaoSearch.searchForIds("/Observation?subject:Patient.name=Smith");
+		assertThat(ids).containsExactlyInAnyOrder(oid1, oid2);
+		String searchSql = getResourceLinkSearchSql();
+		assertEquals(!smithsMaterialized, searchSql.contains("HFJ_SPIDX_STRING"), searchSql);
+
+		// Chain with no matching targets
+		ids = myTestDaoSearch.searchForIds("/Observation?subject:Patient.name=Nobody");
+		assertThat(ids).isEmpty();
+
+		// Reverse chain
+		myCaptureQueriesListener.clear();
+		ids = myTestDaoSearch.searchForIds("/Patient?_has:Observation:subject:code=http://foo|baz");
+		assertThat(ids).containsExactly(pid2.getIdPart());
+		searchSql = getResourceLinkSearchSql();
+		assertEquals(theThreshold == 0, searchSql.contains("HFJ_SPIDX_TOKEN"), searchSql);
+	}
+
+	private String getResourceLinkSearchSql() {
+		return myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+			.map(t -> t.getSql(true, false))
+			.filter(t -> t.contains("HFJ_RES_LINK"))
+			.findFirst()
+			.orElseThrow();
+	}
+
 	@Test
 	public void testShouldResolveATwoLinkChainWithStandAloneResourcesWithoutContainedResourceIndexing() {
 
@@ -0,0 +1,253 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.model.ExpungeOptions;
+import ca.uhn.fhir.jpa.entity.PartitionEntity;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.PartitionablePartitionId;
+import ca.uhn.fhir.jpa.model.entity.ResourceLink;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the same sequence of writes with {@link JpaStorageSettings#setBatchIndexRowWritesEnabled(boolean)}
+ * disabled and enabled, and verifies that the index tables end up with exactly the same rows
+ */
+public class FhirResourceDaoR4BatchIndexRowWritesTest extends BaseJpaR4Test {
+
+	@AfterEach
+	public void afterResetSettings() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setBatchIndexRowWritesEnabled(defaults.isBatchIndexRowWritesEnabled());
+		myStorageSettings.setExpungeEnabled(defaults.isExpungeEnabled());
+		myPartitionSettings.setPartitioningEnabled(new PartitionSettings().isPartitioningEnabled());
+	}
+
+	@Test
+	public void testCreate() {
+		assertSameIndexRows(mySrd, this::createResources);
+	}
+
+	@Test
+	public void testUpdate() {
+		assertSameIndexRows(mySrd, theRequestDetails -> {
+			createResources(theRequestDetails);
+
+			// Change some values, remove some others, and move the references to new targets
+			Patient patient = new Patient();
+			patient.setId("Patient/P1");
+			patient.addIdentifier().setSystem("http://mrn").setValue("MRN-2");
+			patient.addName().setFamily("Jones").addGiven("Janet");
+			patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+			patient.setManagingOrganization(new Reference("Organization/O2"));
+			myPatientDao.update(patient, theRequestDetails);
+
+			Observation observation = newObservation("Patient/P2");
+			observation.setValue(new Quantity().setValue(456).setSystem("http://unitsofmeasure.org").setCode("mg"));
+			myObservationDao.update(observation, theRequestDetails);
+		});
+	}
+
+	@Test
+	public void testDelete() {
+		assertSameIndexRows(mySrd, theRequestDetails -> {
+			createResources(theRequestDetails);
+			myObservationDao.delete(new IdType("Observation/OBS1"), theRequestDetails);
+			myPatientDao.delete(new IdType("Patient/P2"), theRequestDetails);
+		});
+	}
+
+	@Test
+	public void testCreateAndUpdateInSameTransaction() {
+		assertSameIndexRows(mySrd, theRequestDetails -> runInTransaction(() -> {
+			createResources(theRequestDetails);
+
+			// Index rows written by an earlier flush in the same transaction are modified again
+			Patient patient = new Patient();
+			patient.setId("Patient/P1");
+			patient.addIdentifier().setSystem("http://mrn").setValue("MRN-3");
+			myPatientDao.update(patient, theRequestDetails);
+		}));
+	}
+
+	@Test
+	public void testUpdateAndDeleteInSameTransaction() {
+		assertSameIndexRows(mySrd, theRequestDetails -> {
+			createResources(theRequestDetails);
+			runInTransaction(() -> {
+				// Index rows changed by the update are deleted again by the delete, in the same flush
+				// as the changes Hibernate makes to the resources themselves
+				myObservationDao.update(newObservation("Patient/P2"), theRequestDetails);
+				myObservationDao.delete(new IdType("Observation/OBS1"), theRequestDetails);
+
+				Patient patient = new Patient();
+				patient.setId("Patient/P2");
+				patient.addIdentifier().setSystem("http://mrn").setValue("MRN-4");
+				patient.setManagingOrganization(new Reference("Organization/O2"));
+				myPatientDao.update(patient, theRequestDetails);
+				myPatientDao.delete(new IdType("Patient/P2"), theRequestDetails);
+			});
+		});
+	}
+
+	@Test
+	public void testPartitionedWrites() {
+		myPartitionSettings.setPartitioningEnabled(true);
+		myPartitionDao.save(new PartitionEntity().setId(1).setName("PART-1"));
+		RequestDetails requestDetails = SystemRequestDetails.forRequestPartitionId(RequestPartitionId.fromPartitionId(1));
+
+		List<String> rows = assertSameIndexRows(requestDetails, theRequestDetails -> {
+			createResources(theRequestDetails);
+			myObservationDao.update(newObservation("Patient/P2"), theRequestDetails);
+		});
+		assertThat(rows).allMatch(t -> t.endsWith(" partition=1"));
+	}
+
+	@Test
+	public void testSearchAfterBatchedWrites() {
+		myStorageSettings.setBatchIndexRowWritesEnabled(true);
+		createResources(mySrd);
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+				.add(Observation.SP_SUBJECT, new ReferenceParam("Patient/P1"))
+				.add(Observation.SP_CODE, new TokenParam("http://loinc.org", "1234-5"));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(map, mySrd))).containsExactly("Observation/OBS1");
+	}
+
+	/**
+	 * Runs the given writes with batch index row writes disabled, expunges everything, and then
+	 * runs them again with batch index row writes enabled
+	 *
+	 * @return The index rows, which were the same for both runs
+	 */
+	private List<String> assertSameIndexRows(RequestDetails theRequestDetails, Consumer<RequestDetails> theWrites) {
+		myStorageSettings.setBatchIndexRowWritesEnabled(false);
+		theWrites.accept(theRequestDetails);
+		List<String> expected = describeIndexRows();
+		expungeEverything();
+
+		myStorageSettings.setBatchIndexRowWritesEnabled(true);
+		theWrites.accept(theRequestDetails);
+		List<String> actual = describeIndexRows();
+
+		assertThat(expected).isNotEmpty();
+		assertEquals(String.join("\n", expected), String.join("\n", actual));
+		return actual;
+	}
+
+	private void createResources(RequestDetails theRequestDetails) {
+		for (String nextId : List.of("O1", "O2")) {
+			Organization organization = new Organization();
+			organization.setId("Organization/" + nextId);
+			organization.setName("Organization " + nextId);
+			myOrganizationDao.update(organization, theRequestDetails);
+		}
+
+		for (String nextId : List.of("P1", "P2")) {
+			Patient patient = new Patient();
+			patient.setId("Patient/" + nextId);
+			patient.addIdentifier().setSystem("http://mrn").setValue("MRN-" + nextId);
+			patient.addIdentifier().setSystem("http://other").setValue("OTHER-" + nextId);
+			patient.addName().setFamily("Smith").addGiven("John").addGiven(nextId);
+			patient.setGender(Enumerations.AdministrativeGender.MALE);
+			patient.setBirthDateElement(new DateType("1970-01-0" + nextId.substring(1)));
+			patient.setManagingOrganization(new Reference("Organization/O1"));
+			myPatientDao.update(patient, theRequestDetails);
+		}
+
+		myObservationDao.update(newObservation("Patient/P1"), theRequestDetails);
+	}
+
+	private static Observation newObservation(String theSubject) {
+		Observation observation = new Observation();
+		observation.setId("Observation/OBS1");
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		observation.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-5");
+		observation.setSubject(new Reference(theSubject));
+		observation.addPerformer(new Reference("Organization/O2"));
+		observation.setEffective(new DateTimeType("2024-05-06T07:08:09Z"));
+		observation.setValue(new Quantity().setValue(123).setSystem("http://unitsofmeasure.org").setCode("kg"));
+		return observation;
+	}
+
+	private void expungeEverything() {
+		myStorageSettings.setExpungeEnabled(true);
+		mySystemDao.expunge(new ExpungeOptions().setExpungeEverything(true), new SystemRequestDetails());
+		myMemoryCacheService.invalidateAllCaches();
+	}
+
+	/**
+	 * Describes every row in the index tables using resource IDs instead of PIDs, so that the
+	 * rows from two separate runs can be compared
+	 */
+	private List<String> describeIndexRows() {
+		return runInTransaction(() -> {
+			Map<Long, String> pidToId = new HashMap<>();
+			for (ResourceTable next : myResourceTableDao.findAll()) {
+				pidToId.put(next.getId().getId(), next.getIdDt().toUnqualifiedVersionless().getValue());
+			}
+
+			List<String> retVal = new ArrayList<>();
+			describe(retVal, pidToId, myResourceIndexedSearchParamTokenDao.findAll(), t -> t.getSystem() + "|" + t.getValue() + " " + t.getHashSystemAndValue());
+			describe(retVal, pidToId, myResourceIndexedSearchParamStringDao.findAll(), t -> t.getValueExact() + " " + t.getHashNormalizedPrefix() + " " + t.getHashExact());
+			describe(retVal, pidToId, myResourceIndexedSearchParamDateDao.findAll(), t -> t.getValueLowDateOrdinal() + "-" + t.getValueHighDateOrdinal() + " " + t.getValueLow().getTime() + "-" + t.getValueHigh().getTime());
+			describe(retVal, pidToId, myResourceIndexedSearchParamQuantityDao.findAll(), t -> t.getValue().toPlainString() + " " + t.getSystem() + "|" + t.getUnits());
+			describe(retVal, pidToId, myResourceIndexedSearchParamNumberDao.findAll(), t -> t.getValue().toPlainString());
+			describe(retVal, pidToId, myResourceIndexedSearchParamUriDao.findAll(), t -> t.getUri() + " " + t.getHashUri());
+			for (ResourceLink next : myResourceLinkDao.findAll()) {
+				String target = next.getTargetResourcePid() != null
+						? pidToId.get(next.getTargetResourcePid())
+						: next.getTargetResourceUrl();
+				retVal.add("ResourceLink " + pidToId.get(next.getSourceResourcePk().getId()) + " " + next.getSourcePath()
+						+ " -> " + target + describePartition(next.getPartitionId()));
+			}
+			retVal.sort(null);
+			return retVal;
+		});
+	}
+
+	private static <T extends BaseResourceIndexedSearchParam> void describe(
+			List<String> theDescriptions,
+			Map<Long, String> thePidToId,
+			Collection<T> theRows,
+			Function<T, String> theValueDescriber) {
+		for (T next : theRows) {
+			theDescriptions.add(next.getClass().getSimpleName() + " " + thePidToId.get(next.getResourcePid()) + " "
+					+ next.getParamName() + " " + next.getHashIdentity() + " " + theValueDescriber.apply(next)
+					+ " missing=" + next.isMissing() + describePartition(next.getPartitionId()));
+		}
+	}
+
+	private static String describePartition(PartitionablePartitionId thePartitionId) {
+		return " partition=" + (thePartitionId != null ? thePartitionId.getPartitionId() : null);
+	}
+}
@@ -5,6 +5,8 @@ import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
+import ca.uhn.fhir.jpa.dao.IConditionalUrlMembershipFilterSvc;
+import ca.uhn.fhir.jpa.dao.index.ConditionalUrlMembershipFilterSvcImpl;
 import ca.uhn.fhir.jpa.entity.PartitionEntity;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.NormalizedQuantitySearchLevel;
@@ -24,6 +26,7 @@ import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
@@ -63,6 +66,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.support.TransactionTemplate;
 
@@ -85,6 +89,7 @@ import java.util.stream.Collectors;
 import static ca.uhn.fhir.test.utilities.UuidUtils.HASH_UUID_PATTERN;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
@@ -95,6 +100,9 @@ import static org.junit.jupiter.api.Assertions.fail;
 public class FhirResourceDaoR4CreateTest extends BaseJpaR4Test {
 	private static final Logger ourLog = LoggerFactory.getLogger(FhirResourceDaoR4CreateTest.class);
 
+	@Autowired
+	private ConditionalUrlMembershipFilterSvcImpl myConditionalUrlMembershipFilterSvc;
+
 	@AfterEach
 	public void afterResetDao() {
 		myStorageSettings.setResourceServerIdStrategy(new JpaStorageSettings().getResourceServerIdStrategy());
@@ -103,6 +111,7 @@ public class FhirResourceDaoR4CreateTest extends BaseJpaR4Test {
 		myStorageSettings.setNormalizedQuantitySearchLevel(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_NOT_SUPPORTED);
 		myStorageSettings.setIndexOnContainedResources(new JpaStorageSettings().isIndexOnContainedResources());
 		myStorageSettings.setIndexOnContainedResourcesRecursively(new JpaStorageSettings().isIndexOnContainedResourcesRecursively());
+		myStorageSettings.setConditionalUrlMembershipFilterEnabled(new JpaStorageSettings().isConditionalUrlMembershipFilterEnabled());
 	}
 
 	@Test
@@ -370,6 +379,35 @@ public class FhirResourceDaoR4CreateTest extends BaseJpaR4Test {
 		assertFalse(outcome.getCreated());
 	}
 
+	@Test
+	public void testConditionalCreateWithMembershipFilter() {
+		myStorageSettings.setConditionalUrlMembershipFilterEnabled(true);
+
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("0");
+		assertTrue(myPatientDao.create(patient, "Patient?identifier=http://foo|0", mySrd).getCreated());
+
+		// The filter is built in the background the first time the parameter is used
+		SearchParameterMap map = SearchParameterMap.newSynchronous("identifier", new TokenParam("http://foo", "0"));
+		await().until(() -> myConditionalUrlMembershipFilterSvc.check("Patient", map, null), t -> t != IConditionalUrlMembershipFilterSvc.MembershipEnum.UNKNOWN);
+		long absentCount = myConditionalUrlMembershipFilterSvc.getStatistics().getAbsentCount();
+
+		// A new identifier doesn't need a search
+		patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("1");
+		assertTrue(myPatientDao.create(patient, "Patient?identifier=http://foo|1", mySrd).getCreated());
+		assertEquals(absentCount + 1, myConditionalUrlMembershipFilterSvc.getStatistics().getAbsentCount());
+
+		// Identifiers indexed before and after the filter was built are both found
+		patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("0");
+		assertFalse(myPatientDao.create(patient, "Patient?identifier=http://foo|0", mySrd).getCreated());
+		patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("1");
+		assertFalse(myPatientDao.create(patient, "Patient?identifier=http://foo|1", mySrd).getCreated());
+		assertEquals(absentCount + 1, myConditionalUrlMembershipFilterSvc.getStatistics().getAbsentCount());
+	}
+
 	/**
 	 * Simulate a client error: Identifier has a "+" but URL has an escaped space character
 	 */
@@ -41,6 +41,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -67,6 +68,7 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 	@AfterEach
 	public void afterEach() {
 		myStorageSettings.setMaximumIncludesToLoadPerPage(JpaStorageSettings.DEFAULT_MAXIMUM_INCLUDES_TO_LOAD_PER_PAGE);
+		myStorageSettings.setIncludeLoadingThreadCount(new JpaStorageSettings().getIncludeLoadingThreadCount());
 		myInterceptorRegistry.unregisterInterceptor(myAnonymousInterceptor);
 	}
 
@@ -434,4 +436,65 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 		assertThat(ids).containsExactlyInAnyOrder(patId.getValue(), groupId.getValue(), careTeam.getValue(), org.getValue());
 	}
 
+
+	@ParameterizedTest
+	@CsvSource({"0", "4"})
+	void testMultipleIncludesAndRevIncludes(int theIncludeLoadingThreadCount) {
+		// given
+		myStorageSettings.setIncludeLoadingThreadCount(theIncludeLoadingThreadCount);
+		IIdType org = createOrganization();
+		IIdType patId = createPatient(withReference("managingOrganization", org));
+		IIdType encId = createResource("Encounter", withSubject(patId), withReference("serviceProvider", org));
+		IIdType obsId = createObservation(withSubject(patId), withReference("encounter", encId));
+		IIdType conditionId = createResource("Condition", withSubject(patId), withReference("encounter", encId));
+		IIdType procedureId = createResource("Procedure", withSubject(patId), withReference("encounter", encId));
+
+		// when
+		SearchParameterMap map = new SearchParameterMap();
+		map.addInclude(new Include("Encounter:patient"));
+		map.addInclude(new Include("Encounter:service-provider"));
+		map.addRevInclude(new Include("Observation:encounter"));
+		map.addRevInclude(new Include("Condition:encounter"));
+		map.addRevInclude(new Include("Procedure:encounter"));
+		IBundleProvider outcome = myEncounterDao.search(map, mySrd);
+		List<String> ids = toUnqualifiedVersionlessIdValues(outcome);
+
+		// then
+		assertThat(ids).containsExactlyInAnyOrder(
+			encId.getValue(),
+			patId.getValue(),
+			org.getValue(),
+			obsId.getValue(),
+			conditionId.getValue(),
+			procedureId.getValue());
+	}
+
+	@Test
+	void testIncludesInSameTransactionAsCreate() {
+		// given
+		myStorageSettings.setIncludeLoadingThreadCount(4);
+
+		List<String> expected = new ArrayList<>();
+		List<String> ids = new TransactionTemplate(myTxManager).execute(status -> {
+			IIdType org = createOrganization();
+			IIdType patId = createPatient(withReference("managingOrganization", org));
+			IIdType encId = createResource("Encounter", withSubject(patId), withReference("serviceProvider", org));
+			IIdType obsId = createObservation(withSubject(patId), withReference("encounter", encId));
+			IIdType conditionId = createResource("Condition", withSubject(patId), withReference("encounter", encId));
+			expected.addAll(List.of(
+				encId.getValue(), patId.getValue(), org.getValue(), obsId.getValue(), conditionId.getValue()));
+
+			// when
+			SearchParameterMap map = SearchParameterMap.newSynchronous();
+			map.addInclude(new Include("Encounter:patient"));
+			map.addInclude(new Include("Encounter:service-provider"));
+			map.addRevInclude(new Include("Observation:encounter"));
+			map.addRevInclude(new Include("Condition:encounter"));
+			return toUnqualifiedVersionlessIdValues(myEncounterDao.search(map, mySrd));
+		});
+
+		// then
+		assertThat(ids).containsExactlyInAnyOrderElementsOf(expected);
+	}
+
 }
@@ -4,10 +4,13 @@ import ca.uhn.fhir.interceptor.api.Hook;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryTemplateCache;
+import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.param.UriParam;
@@ -23,6 +26,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
 import java.util.UUID;
@@ -36,6 +41,9 @@ public class FhirResourceDaoR4SearchSqlTest extends BaseJpaR4Test {
 
 	private static final Logger ourLog = LoggerFactory.getLogger(FhirResourceDaoR4SearchSqlTest.class);
 
+	@Autowired
+	private SqlObjectFactory mySqlObjectFactory;
+
 	@Override
 	@BeforeEach
 	public void before() throws Exception {
@@ -273,6 +281,59 @@ public class FhirResourceDaoR4SearchSqlTest extends BaseJpaR4Test {
 		}
 	}
 
+	@Test
+	public void testSqlTemplateCache_SearchesWithDifferentValuesShareTemplate() {
+		// Setup
+		IIdType smithId = createPatient(withFamily("Smith"), withBirthdate("2020-01-01"), withIdentifier("http://foo", "A"));
+		IIdType jonesId = createPatient(withFamily("Jones"), withBirthdate("2021-02-02"), withIdentifier("http://foo", "B"));
+		SearchQueryTemplateCache templateCache = new SearchQueryTemplateCache(100);
+		ReflectionTestUtils.setField(mySqlObjectFactory, "mySearchQueryTemplateCache", templateCache);
+		try {
+
+			// Test
+			myCaptureQueriesListener.clear();
+			IBundleProvider outcome = myPatientDao.search(SearchParameterMap.newSynchronous()
+				.add(Patient.SP_FAMILY, new StringParam("Smith"))
+				.add(Patient.SP_BIRTHDATE, new DateParam("2020-01-01"))
+				.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "A")), mySrd);
+			assertThat(toUnqualifiedVersionlessIds(outcome)).containsExactly(smithId);
+			String smithSql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().get(0).getSql(false, false);
+			assertEquals(0, templateCache.getHitCount());
+			long missCount = templateCache.getMissCount();
+			assertThat(missCount).isPositive();
+
+			myCaptureQueriesListener.clear();
+			outcome = myPatientDao.search(SearchParameterMap.newSynchronous()
+				.add(Patient.SP_FAMILY, new StringParam("Jones"))
+				.add(Patient.SP_BIRTHDATE, new DateParam("2021-02-02"))
+				.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "B")), mySrd);
+
+			// Verify
+			assertThat(toUnqualifiedVersionlessIds(outcome)).containsExactly(jonesId);
+			String jonesSql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().get(0).getSql(false, false);
+			assertEquals(smithSql, jonesSql);
+			assertEquals(missCount, templateCache.getHitCount());
+			assertEquals(missCount, templateCache.getMissCount());
+
+			// A different date precision or token shape changes the statement
+			outcome = myPatientDao.search(SearchParameterMap.newSynchronous()
+				.add(Patient.SP_FAMILY, new StringParam("Jones"))
+				.add(Patient.SP_BIRTHDATE, new DateParam("2021-02"))
+				.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "B")), mySrd);
+			assertThat(toUnqualifiedVersionlessIds(outcome)).containsExactly(jonesId);
+			outcome = myPatientDao.search(SearchParameterMap.newSynchronous()
+				.add(Patient.SP_FAMILY, new StringParam("Jones"))
+				.add(Patient.SP_BIRTHDATE, new DateParam("2021-02-02"))
+				.add(Patient.SP_IDENTIFIER, new TokenParam(null, "B")), mySrd);
+			assertThat(toUnqualifiedVersionlessIds(outcome)).containsExactly(jonesId);
+			assertEquals(missCount, templateCache.getHitCount());
+			assertEquals(3 * missCount, templateCache.getMissCount());
+
+		} finally {
+			ReflectionTestUtils.setField(mySqlObjectFactory, "mySearchQueryTemplateCache", null);
+		}
+	}
+
 	public static class MyPartitionInterceptor {
 
 		@Hook(STORAGE_PARTITION_IDENTIFY_ANY)
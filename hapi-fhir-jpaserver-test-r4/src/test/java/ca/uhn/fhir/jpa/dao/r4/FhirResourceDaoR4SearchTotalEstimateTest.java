@@ -0,0 +1,116 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link ISearchBuilder#createEstimatedCountQuery} and <code>_total=estimate</code>
+ */
+public class FhirResourceDaoR4SearchTotalEstimateTest extends BaseJpaR4Test {
+
+	@Autowired
+	private SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+
+	@Autowired
+	private HibernatePropertiesProvider myHibernatePropertiesProvider;
+
+	@AfterEach
+	public void afterResetSettings() {
+		myStorageSettings.setSearchTotalEstimateThreshold(new JpaStorageSettings().getSearchTotalEstimateThreshold());
+		myHibernatePropertiesProvider.setDialectForUnitTest(null);
+	}
+
+	@Test
+	public void testCreateEstimatedCountQuery_NotPostgres() {
+		createPatients(5);
+
+		// No planner estimate is available, so there is no cheap count at all
+		assertNull(createEstimatedCountQuery(10));
+		assertNull(createEstimatedCountQuery(2));
+	}
+
+	@Test
+	public void testCreateEstimatedCountQuery_ExactBelowThreshold() {
+		createPatients(5);
+		myHibernatePropertiesProvider.setDialectForUnitTest(new PostgreSQLDialect());
+
+		assertEquals(5L, createEstimatedCountQuery(10));
+		assertEquals(5L, createEstimatedCountQuery(5));
+	}
+
+	@Test
+	public void testCreateEstimatedCountQuery_NoPlannerEstimate() {
+		createPatients(5);
+		myHibernatePropertiesProvider.setDialectForUnitTest(new PostgreSQLDialect());
+
+		// The test database doesn't give planner row estimates, and we don't fall back to
+		// an exact count above the threshold
+		assertNull(createEstimatedCountQuery(2));
+	}
+
+	@Test
+	public void testSearchWithEstimatedTotal_NotPostgres() {
+		createPatients(5);
+
+		SearchParameterMap map = newFamilyMap();
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		IBundleProvider results = myPatientDao.search(map, mySrd);
+
+		assertEquals(5, toUnqualifiedVersionlessIdValues(results).size());
+		assertFalse(results.isSizeEstimated());
+	}
+
+	@Test
+	public void testCountOnlyWithEstimatedTotal_NotPostgres() {
+		createPatients(5);
+		myStorageSettings.setSearchTotalEstimateThreshold(2);
+
+		// The count is all that was asked for, so it's counted exactly
+		SearchParameterMap map = newFamilyMap();
+		map.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		map.setSummaryMode(SummaryEnum.COUNT);
+		IBundleProvider results = myPatientDao.search(map, mySrd);
+
+		assertEquals(5, results.size());
+		assertFalse(results.isSizeEstimated());
+	}
+
+	private Long createEstimatedCountQuery(int theExactCountThreshold) {
+		ISearchBuilder<JpaPid> searchBuilder = mySearchBuilderFactory.newSearchBuilder("Patient", Patient.class);
+		return runInTransaction(() -> searchBuilder.createEstimatedCountQuery(
+				newFamilyMap(), UUID.randomUUID().toString(), mySrd, RequestPartitionId.allPartitions(), theExactCountThreshold));
+	}
+
+	private void createPatients(int theCount) {
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("Estimate");
+			myPatientDao.create(patient, mySrd);
+		}
+	}
+
+	private static SearchParameterMap newFamilyMap() {
+		return SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("Estimate"));
+	}
+}
@@ -0,0 +1,157 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.model.ExpungeOptions;
+import ca.uhn.fhir.jpa.api.svc.ResolveIdentityMode;
+import ca.uhn.fhir.jpa.dao.expunge.IResourceExpungeService;
+import ca.uhn.fhir.jpa.model.cross.IResourceLookup;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTablePk;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.util.LocalSecondLevelMemoryCache;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Simulates two nodes in a cluster, each with its own {@link MemoryCacheService}, sharing a
+ * single {@link LocalSecondLevelMemoryCache}. Node A is the memory cache service from the
+ * Spring context, and operations are run on node B by temporarily swapping node B's memory
+ * cache service into the services which resolve and expunge resource IDs.
+ */
+public class FhirResourceDaoR4SecondLevelMemoryCacheTest extends BaseJpaR4Test {
+
+	@Autowired
+	private IResourceExpungeService<JpaPid, ResourceHistoryTablePk> myResourceExpungeService;
+
+	private LocalSecondLevelMemoryCache mySecondLevelCache;
+	private MemoryCacheService myNodeB;
+
+	@BeforeEach
+	public void beforeSetSecondLevelCache() {
+		mySecondLevelCache = new LocalSecondLevelMemoryCache();
+		mySecondLevelCache.setNegativeCachingEnabled(true);
+		myMemoryCacheService.setSecondLevelCache(mySecondLevelCache);
+		myNodeB = new MemoryCacheService(myStorageSettings);
+		myNodeB.setSecondLevelCache(mySecondLevelCache);
+	}
+
+	@AfterEach
+	public void afterClearSecondLevelCache() {
+		myMemoryCacheService.setSecondLevelCache(null);
+		myStorageSettings.setExpungeEnabled(new JpaStorageSettings().isExpungeEnabled());
+	}
+
+	@Test
+	public void testCreateOnOtherNodeAfterNegativeLookup() {
+		// Node A records that the resource doesn't exist
+		assertThat(resolve("A")).isEmpty();
+		assertEquals(1, mySecondLevelCache.getEstimatedSize(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID));
+		assertThat(resolve("A")).isEmpty();
+
+		runOnNodeB(() -> createPatient("A"));
+
+		// Node A sees the resource created by node B
+		Patient actual = myPatientDao.read(new IdType("Patient/A"), mySrd);
+		assertEquals("Patient/A", actual.getIdElement().toUnqualifiedVersionless().getValue());
+	}
+
+	@Test
+	public void testDeleteOnOtherNode() {
+		runOnNodeB(() -> {
+			createPatient("A");
+			myPatientDao.delete(new IdType("Patient/A"), mySrd);
+		});
+
+		// Node A resolves the ID from the second-level cache and sees the deletion
+		IResourceLookup<?> lookup = getSecondLevelLookup("A");
+		assertNotNull(lookup);
+		assertNotNull(lookup.getDeleted());
+		assertThrows(ResourceGoneException.class, () -> myPatientDao.read(new IdType("Patient/A"), mySrd));
+	}
+
+	@Test
+	public void testExpungeOnOtherNode() {
+		myStorageSettings.setExpungeEnabled(true);
+		runOnNodeB(() -> {
+			createPatient("A");
+			myPatientDao.delete(new IdType("Patient/A"), mySrd);
+		});
+		assertNotNull(getSecondLevelLookup("A"));
+
+		runOnNodeB(() -> myPatientDao.expunge(
+				new IdType("Patient/A"),
+				new ExpungeOptions().setExpungeDeletedResources(true).setExpungeOldVersions(true),
+				mySrd));
+
+		// The expunged resource's entries are gone from the second-level cache, so node A
+		// doesn't find it, and finds it again once node B creates it again
+		assertThat(getSecondLevelLookup("A")).isNull();
+		assertThat(resolve("A")).isEmpty();
+		assertThrows(ResourceNotFoundException.class, () -> myPatientDao.read(new IdType("Patient/A"), mySrd));
+
+		runOnNodeB(() -> createPatient("A"));
+		Patient actual = myPatientDao.read(new IdType("Patient/A"), mySrd);
+		assertEquals("1", actual.getIdElement().getVersionIdPart());
+	}
+
+	private void createPatient(String theId) {
+		Patient patient = new Patient();
+		patient.setId(theId);
+		patient.setActive(true);
+		myPatientDao.update(patient, mySrd);
+	}
+
+	/**
+	 * Resolves the given Patient ID on node A in a transaction which commits, so that the
+	 * result is cached
+	 */
+	private Map<IIdType, IResourceLookup<JpaPid>> resolve(String theId) {
+		return runInTransaction(() -> myIdHelperService.resolveResourceIdentities(
+				RequestPartitionId.allPartitions(),
+				List.of(new IdType("Patient/" + theId)),
+				ResolveIdentityMode.includeDeleted().cacheOk()));
+	}
+
+	private IResourceLookup<?> getSecondLevelLookup(String theId) {
+		MemoryCacheService.ForcedIdCacheKey key =
+				new MemoryCacheService.ForcedIdCacheKey("Patient", theId, RequestPartitionId.allPartitions());
+		Map<MemoryCacheService.ForcedIdCacheKey, Object> entries =
+				mySecondLevelCache.getAll(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, List.of(key));
+		Object value = entries.get(key);
+		if (value instanceof List<?> lookups && !lookups.isEmpty()) {
+			return (IResourceLookup<?>) lookups.get(0);
+		}
+		return null;
+	}
+
+	private void runOnNodeB(Runnable theRunnable) {
+		List<Object> targets = List.of(
+				AopTestUtils.getTargetObject(myIdHelperService),
+				AopTestUtils.getTargetObject(myResourceExpungeService));
+		targets.forEach(t -> ReflectionTestUtils.setField(t, "myMemoryCacheService", myNodeB));
+		try {
+			theRunnable.run();
+		} finally {
+			targets.forEach(t -> ReflectionTestUtils.setField(t, "myMemoryCacheService", myMemoryCacheService));
+		}
+	}
+}
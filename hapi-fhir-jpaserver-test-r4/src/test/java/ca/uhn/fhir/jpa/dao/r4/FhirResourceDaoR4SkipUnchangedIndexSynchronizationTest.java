@@ -0,0 +1,151 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.ReindexParameters;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.util.SqlQuery;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link JpaStorageSettings#setSkipUnchangedIndexSynchronization(boolean)}
+ */
+public class FhirResourceDaoR4SkipUnchangedIndexSynchronizationTest extends BaseJpaR4Test {
+
+	@BeforeEach
+	public void beforeEnableSetting() {
+		myStorageSettings.setSkipUnchangedIndexSynchronization(true);
+	}
+
+	@AfterEach
+	public void afterResetSetting() {
+		myStorageSettings.setSkipUnchangedIndexSynchronization(new JpaStorageSettings().isSkipUnchangedIndexSynchronization());
+	}
+
+	@Test
+	public void testRepeatedUpdatesWithUnchangedIndexes() {
+		IIdType id = createPatient("Smith", 0);
+
+		for (int i = 1; i <= 3; i++) {
+			myCaptureQueriesListener.clear();
+			updatePatient(id, "Smith", i);
+
+			assertThat(getIndexTableWrites()).as("Update " + i).isEmpty();
+		}
+
+		assertEquals("4", myPatientDao.read(id, mySrd).getIdElement().getVersionIdPart());
+		assertThat(searchByFamily("Smith")).containsExactly(id.getValue());
+		assertThat(searchByIdentifier()).containsExactly(id.getValue());
+		assertEquals(1, countTokenRows(id, "identifier"));
+	}
+
+	@Test
+	public void testRepeatedUpdatesWithChangedIndexes() {
+		IIdType id = createPatient("Family0", 0);
+
+		for (int i = 1; i <= 3; i++) {
+			myCaptureQueriesListener.clear();
+			updatePatient(id, "Family" + i, i);
+
+			assertThat(getIndexTableWrites()).as("Update " + i).isNotEmpty();
+			assertThat(searchByFamily("Family" + i)).containsExactly(id.getValue());
+			assertThat(searchByFamily("Family" + (i - 1))).isEmpty();
+		}
+
+		// An unchanged update after a changed one can use the fingerprint again
+		myCaptureQueriesListener.clear();
+		updatePatient(id, "Family3", 4);
+		assertThat(getIndexTableWrites()).isEmpty();
+		assertThat(searchByFamily("Family3")).containsExactly(id.getValue());
+	}
+
+	@Test
+	public void testReindexAfterIndexRowsDeletedByHand() {
+		IIdType id = createPatient("Smith", 0);
+		updatePatient(id, "Smith", 1);
+		JpaPid pid = JpaPid.fromId(id.getIdPartAsLong());
+
+		// Somebody deletes the index rows behind our back
+		runInTransaction(() -> myResourceIndexedSearchParamTokenDao.deleteByResourceId(pid));
+		assertEquals(0, countTokenRows(id, "identifier"));
+		assertThat(searchByIdentifier()).isEmpty();
+
+		// $reindex must not trust the recorded fingerprint, and so restores the rows
+		ReindexParameters reindexParameters = new ReindexParameters()
+				.setReindexSearchParameters(ReindexParameters.ReindexSearchParametersEnum.ALL)
+				.setOptimizeStorage(ReindexParameters.OptimizeStorageModeEnum.NONE);
+		runInTransaction(() -> myPatientDao.reindex(pid, reindexParameters, new SystemRequestDetails(), new TransactionDetails()));
+
+		assertEquals(1, countTokenRows(id, "identifier"));
+		assertThat(searchByIdentifier()).containsExactly(id.getValue());
+
+		// An unchanged update after the reindex still writes nothing
+		myCaptureQueriesListener.clear();
+		updatePatient(id, "Smith", 2);
+		assertThat(getIndexTableWrites()).isEmpty();
+		assertEquals(1, countTokenRows(id, "identifier"));
+	}
+
+	private IIdType createPatient(String theFamily, int theCounter) {
+		return myPatientDao.create(newPatient(theFamily, theCounter), mySrd).getId().toUnqualifiedVersionless();
+	}
+
+	private void updatePatient(IIdType theId, String theFamily, int theCounter) {
+		Patient patient = newPatient(theFamily, theCounter);
+		patient.setId(theId);
+		myPatientDao.update(patient, mySrd);
+	}
+
+	/**
+	 * The counter is stored in an element which isn't indexed, so that each update creates a new
+	 * version without changing any indexes
+	 */
+	private static Patient newPatient(String theFamily, int theCounter) {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://mrn").setValue("123");
+		patient.addName().setFamily(theFamily).addGiven("John");
+		patient.getText().setDivAsString("<div>Counter " + theCounter + "</div>");
+		return patient;
+	}
+
+	private List<String> getIndexTableWrites() {
+		List<SqlQuery> queries = myCaptureQueriesListener.getInsertQueriesForCurrentThread();
+		queries.addAll(myCaptureQueriesListener.getDeleteQueriesForCurrentThread());
+		queries.addAll(myCaptureQueriesListener.getUpdateQueriesForCurrentThread());
+		return queries.stream()
+				.map(t -> t.getSql(true, false))
+				.filter(t -> t.contains("HFJ_SPIDX_") || t.contains("HFJ_RES_LINK") || t.contains("HFJ_RES_PARAM_PRESENT"))
+				.toList();
+	}
+
+	private List<String> searchByFamily(String theFamily) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam(theFamily).setExact(true));
+		return toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd));
+	}
+
+	private List<String> searchByIdentifier() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://mrn", "123"));
+		return toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd));
+	}
+
+	private long countTokenRows(IIdType theId, String theParamName) {
+		return runInTransaction(() -> myResourceIndexedSearchParamTokenDao.findAll().stream()
+				.filter(t -> t.getResourcePid().equals(theId.getIdPartAsLong()))
+				.filter(t -> t.getParamName().equals(theParamName))
+				.count());
+	}
+}
@@ -3,6 +3,8 @@ package ca.uhn.fhir.jpa.dao.r4;
 import static ca.uhn.fhir.test.utilities.UuidUtils.HASH_UUID_PATTERN;
 
 import ca.uhn.fhir.jpa.dao.TransactionUtil;
+import ca.uhn.fhir.jpa.util.ResourceCountCache;
+import ca.uhn.fhir.jpa.util.ResourceCountCacheUpdatingInterceptor;
 import ca.uhn.fhir.jpa.util.TransactionSemanticsHeader;
 import ca.uhn.fhir.model.api.StorageResponseCodeEnum;
 import org.hl7.fhir.r4.model.MessageHeader;
@@ -39,6 +41,7 @@ import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
@@ -104,6 +107,7 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.slf4j.LoggerFactory;
@@ -119,6 +123,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -160,6 +165,8 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		myStorageSettings.setPopulateIdentifierInAutoCreatedPlaceholderReferenceTargets(defaults.isPopulateIdentifierInAutoCreatedPlaceholderReferenceTargets());
 		myStorageSettings.setAutoVersionReferenceAtPaths(defaults.getAutoVersionReferenceAtPaths());
 		myStorageSettings.setAutoCreatePlaceholderReferenceTargets(defaults.isAutoCreatePlaceholderReferenceTargets());
+		myStorageSettings.setTransactionPrepareThreadCount(defaults.getTransactionPrepareThreadCount());
+		myStorageSettings.setTransactionMultiTokenConditionalUrlPreFetchEnabled(defaults.isTransactionMultiTokenConditionalUrlPreFetchEnabled());
 
 		myFhirContext.getParserOptions().setAutoContainReferenceTargetsWithNoId(true);
 	}
@@ -360,6 +367,40 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 
 	}
 
+	@Test
+	public void testResourceCounts_IncrementalUpdates() {
+		ResourceCountCacheUpdatingInterceptor interceptor = myApplicationContext.getBean(ResourceCountCacheUpdatingInterceptor.class);
+		myInterceptorRegistry.registerInterceptor(interceptor);
+		try {
+			myResourceCountsCache.clear();
+			myResourceCountsCache.update();
+			assertEquals(0L, myResourceCountsCache.getCount("Patient"));
+
+			// Committed writes are counted straight away
+			IIdType id = createPatient(withActiveTrue());
+			createPatient(withActiveTrue());
+			myPatientDao.delete(id, mySrd);
+			assertEquals(2L, myResourceCountsCache.getCount("Patient"));
+			assertThat(myResourceCountsCache.get()).containsEntry("Patient", 2L);
+			ResourceCountCache.ResourceTypeStatistics statistics = myResourceCountsCache.getStatistics().get("Patient");
+			assertEquals(2L, statistics.getCreatedSinceFetch());
+			assertEquals(1L, statistics.getDeletedSinceFetch());
+
+			// Rolled back writes are not
+			Bundle input = new Bundle();
+			input.setType(BundleType.TRANSACTION);
+			input.addEntry().setResource(new Patient().setActive(true)).getRequest().setMethod(HTTPVerb.POST).setUrl("Patient");
+			Observation obs = new Observation();
+			obs.setSubject(new Reference("Patient/DOES-NOT-EXIST"));
+			input.addEntry().setResource(obs).getRequest().setMethod(HTTPVerb.POST).setUrl("Observation");
+			assertThatExceptionOfType(BaseServerResponseException.class).isThrownBy(() -> mySystemDao.transaction(mySrd, input));
+			assertEquals(2L, myResourceCountsCache.getCount("Patient"));
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+			myResourceCountsCache.clear();
+		}
+	}
+
 	@Test
 	public void testBatchCreateWithBadRead() {
 		Bundle request = new Bundle();
@@ -4356,6 +4397,185 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 
 	}
 
+	/**
+	 * The conditional URLs of the Observation and Encounter use placeholder IDs of entries
+	 * which appear later in the bundle, so the entries need to be reordered using the
+	 * dependency graph built when the transaction entries are prepared
+	 */
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 4})
+	public void testTransactionWithChainedPlaceholderIdsInMatchUrls(int theTransactionPrepareThreadCount) {
+		myStorageSettings.setTransactionPrepareThreadCount(theTransactionPrepareThreadCount);
+
+		Bundle input = createInputTransactionWithChainedPlaceholderIdsInMatchUrls();
+		Bundle output = mySystemDao.transaction(mySrd, input);
+		for (Bundle.BundleEntryComponent next : output.getEntry()) {
+			assertEquals("201 Created", next.getResponse().getStatus());
+		}
+
+		IIdType patientId = new IdType(output.getEntry().get(2).getResponse().getLocation()).toUnqualifiedVersionless();
+		IIdType encounterId = new IdType(output.getEntry().get(1).getResponse().getLocation()).toUnqualifiedVersionless();
+		Observation observation = myObservationDao.read(new IdType(output.getEntry().get(0).getResponse().getLocation()), mySrd);
+		assertEquals(encounterId.getValue(), observation.getEncounter().getReference());
+		assertEquals(patientId.getValue(), observation.getSubject().getReference());
+
+		// Running the same bundle again should match every conditional create
+		Bundle output2 = mySystemDao.transaction(mySrd, createInputTransactionWithChainedPlaceholderIdsInMatchUrls());
+		for (Bundle.BundleEntryComponent next : output2.getEntry()) {
+			assertEquals("200 OK", next.getResponse().getStatus());
+		}
+		assertEquals(encounterId.getValue(), new IdType(output2.getEntry().get(1).getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+	}
+
+	/**
+	 * Entries whose conditional URLs use the placeholder IDs of later entries are reordered even
+	 * when {@link JpaStorageSettings#setTransactionPrepareThreadCount(int)} is left disabled
+	 */
+	@Test
+	public void testTransactionWithChainedPlaceholderIdsInMatchUrls_CreatedInDependencyOrder() {
+		List<String> createdTypes = new ArrayList<>();
+		mySrdInterceptorService.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, (thePointcut, theArgs) -> {
+			IBaseResource resource = theArgs.get(IBaseResource.class);
+			createdTypes.add(myFhirContext.getResourceType(resource));
+		});
+
+		Bundle output = mySystemDao.transaction(mySrd, createInputTransactionWithChainedPlaceholderIdsInMatchUrls());
+		for (Bundle.BundleEntryComponent next : output.getEntry()) {
+			assertEquals("201 Created", next.getResponse().getStatus());
+		}
+
+		// The Patient comes first since the Encounter's conditional URL uses its placeholder ID, and
+		// the Encounter comes before the Observation whose conditional URL uses its placeholder ID
+		assertThat(createdTypes.subList(0, 3)).containsExactly("Patient", "Encounter", "Observation");
+		assertThat(createdTypes).hasSize(output.getEntry().size());
+	}
+
+	private Bundle createInputTransactionWithChainedPlaceholderIdsInMatchUrls() {
+		Bundle input = new Bundle();
+		input.setType(BundleType.TRANSACTION);
+
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("29463-7");
+		obs.getSubject().setReference("urn:uuid:0001");
+		obs.getEncounter().setReference("urn:uuid:0002");
+		input.addEntry()
+			.setFullUrl("urn:uuid:0003")
+			.setResource(obs)
+			.getRequest()
+			.setMethod(HTTPVerb.POST)
+			.setUrl("Observation")
+			.setIfNoneExist("Observation?encounter=urn:uuid:0002&code=http%3A%2F%2Floinc.org|29463-7");
+
+		Encounter enc = new Encounter();
+		enc.addIdentifier().setSystem("http://acme.org/encounter").setValue("E1");
+		enc.getSubject().setReference("urn:uuid:0001");
+		input.addEntry()
+			.setFullUrl("urn:uuid:0002")
+			.setResource(enc)
+			.getRequest()
+			.setMethod(HTTPVerb.POST)
+			.setUrl("Encounter")
+			.setIfNoneExist("Encounter?subject=urn:uuid:0001&identifier=http%3A%2F%2Facme.org%2Fencounter|E1");
+
+		Patient pat = new Patient();
+		pat.addIdentifier().setSystem("http://acme.org").setValue("ID1");
+		input.addEntry()
+			.setFullUrl("urn:uuid:0001")
+			.setResource(pat)
+			.getRequest()
+			.setMethod(HTTPVerb.POST)
+			.setUrl("Patient")
+			.setIfNoneExist("Patient?identifier=http%3A%2F%2Facme.org|ID1");
+
+		// Enough entries for the entries to be prepared concurrently
+		for (int i = 0; i < 60; i++) {
+			Observation next = new Observation();
+			next.setStatus(Observation.ObservationStatus.FINAL);
+			next.addIdentifier().setSystem("http://acme.org/obs").setValue("O" + i);
+			next.getSubject().setReference("urn:uuid:0001");
+			input.addEntry()
+				.setResource(next)
+				.getRequest()
+				.setMethod(HTTPVerb.POST)
+				.setUrl("Observation")
+				.setIfNoneExist("Observation?identifier=http%3A%2F%2Facme.org%2Fobs|O" + i);
+		}
+
+		return input;
+	}
+
+	/**
+	 * Conditional URLs which repeat a single token parameter with AND or OR semantics
+	 * must be resolved using every value, not just the first one
+	 */
+	@Test
+	public void testTransactionWithRepeatedTokenInConditionalUrl() {
+		createPatient(withIdentifier("http://foo", "1"));
+		IIdType patientId2 = createPatient(withIdentifier("http://foo", "2"));
+
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		Patient andPatient = new Patient();
+		andPatient.addIdentifier().setSystem("http://foo").setValue("1");
+		andPatient.addIdentifier().setSystem("http://foo").setValue("3");
+		bb.addTransactionCreateEntry(andPatient).conditional("Patient?identifier=http%3A%2F%2Ffoo|1&identifier=http%3A%2F%2Ffoo|3");
+		Patient orPatient = new Patient();
+		orPatient.addIdentifier().setSystem("http://foo").setValue("2");
+		bb.addTransactionCreateEntry(orPatient).conditional("Patient?identifier=http%3A%2F%2Ffoo|4,http%3A%2F%2Ffoo|2");
+
+		Bundle output = mySystemDao.transaction(mySrd, bb.getBundleTyped());
+
+		// No resource has both identifiers
+		assertEquals("201 Created", output.getEntry().get(0).getResponse().getStatus());
+		// The second identifier matches an existing resource
+		assertEquals("200 OK", output.getEntry().get(1).getResponse().getStatus());
+		assertEquals(patientId2.getValue(), new IdType(output.getEntry().get(1).getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testTransactionWithMultiTokenConditionalUrls(boolean thePreFetchEnabled) {
+		myStorageSettings.setTransactionMultiTokenConditionalUrlPreFetchEnabled(thePreFetchEnabled);
+
+		IIdType patientId1 = createPatient(withIdentifier("http://foo", "1"), withIdentifier("http://bar", "1"));
+		IIdType patientId2 = createPatient(withIdentifier("http://foo", "2"), withIdentifier("http://bar", "2"));
+		createPatient(withIdentifier("http://foo", "3"), withIdentifier("http://bar", "3"));
+		createPatient(withIdentifier("http://foo", "3"), withIdentifier("http://bar", "3"));
+
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		Patient update = new Patient();
+		update.setActive(true);
+		update.addIdentifier().setSystem("http://foo").setValue("1");
+		update.addIdentifier().setSystem("http://bar").setValue("1");
+		bb.addTransactionUpdateEntry(update, "Patient?identifier=http%3A%2F%2Ffoo|1&identifier=http%3A%2F%2Fbar|1");
+		Patient create = new Patient();
+		create.addIdentifier().setSystem("http://foo").setValue("2");
+		bb.addTransactionCreateEntry(create).conditional("Patient?identifier=http%3A%2F%2Fbar|2&identifier=http%3A%2F%2Ffoo|2");
+		Patient createMismatch = new Patient();
+		createMismatch.addIdentifier().setSystem("http://foo").setValue("1");
+		bb.addTransactionCreateEntry(createMismatch).conditional("Patient?identifier=http%3A%2F%2Ffoo|1&identifier=http%3A%2F%2Fbar|2");
+		Patient createValueOnly = new Patient();
+		createValueOnly.addIdentifier().setValue("9");
+		bb.addTransactionCreateEntry(createValueOnly).conditional("Patient?identifier=9&active=true");
+
+		Bundle output = mySystemDao.transaction(mySrd, bb.getBundleTyped());
+		assertEquals("200 OK", output.getEntry().get(0).getResponse().getStatus());
+		assertEquals(patientId1.getValue(), new IdType(output.getEntry().get(0).getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+		assertEquals("200 OK", output.getEntry().get(1).getResponse().getStatus());
+		assertEquals(patientId2.getValue(), new IdType(output.getEntry().get(1).getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+		assertEquals("201 Created", output.getEntry().get(2).getResponse().getStatus());
+		assertEquals("201 Created", output.getEntry().get(3).getResponse().getStatus());
+		assertTrue(myPatientDao.read(patientId1, mySrd).getActive());
+
+		// A conditional URL matching 2 resources must still be rejected
+		BundleBuilder bb2 = new BundleBuilder(myFhirContext);
+		Patient ambiguous = new Patient();
+		ambiguous.addIdentifier().setSystem("http://foo").setValue("3");
+		bb2.addTransactionUpdateEntry(ambiguous, "Patient?identifier=http%3A%2F%2Ffoo|3&identifier=http%3A%2F%2Fbar|3");
+		Bundle input2 = bb2.getBundleTyped();
+		assertThrows(PreconditionFailedException.class, () -> mySystemDao.transaction(mySrd, input2));
+	}
+
 	/*
 	 * Make sure we are able to handle placeholder IDs in match URLs, e.g.
 	 *
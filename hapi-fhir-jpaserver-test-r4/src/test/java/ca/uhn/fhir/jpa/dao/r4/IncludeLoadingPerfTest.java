@@ -0,0 +1,160 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.Procedure;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the time taken to load a search with many <code>_include</code> and
+ * <code>_revinclude</code> specifications with and without concurrent include loading
+ * (see {@link JpaStorageSettings#setIncludeLoadingThreadCount(int)}).
+ * <p>
+ * The number of resources created can be set using the
+ * <code>hapi.test.includePerf.resourceCount</code> system property (default is
+ * 1,000,000). Note that with the default settings the in-memory test database is used,
+ * so absolute timings aren't representative of a production database.
+ * </p>
+ */
+@Disabled("Stress test")
+public class IncludeLoadingPerfTest extends BaseJpaR4Test {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(IncludeLoadingPerfTest.class);
+	private static final int RESOURCES_PER_ENCOUNTER = 8;
+	private static final int ENCOUNTERS_PER_BUNDLE = 100;
+	private static final int SEARCH_ITERATIONS = 20;
+
+	@AfterEach
+	public void afterEach() {
+		myStorageSettings.setIncludeLoadingThreadCount(new JpaStorageSettings().getIncludeLoadingThreadCount());
+	}
+
+	@Test
+	public void testSearchWithManyIncludes() {
+		int resourceCount = Integer.getInteger("hapi.test.includePerf.resourceCount", 1_000_000);
+		createData(resourceCount);
+
+		SearchParameterMap map = new SearchParameterMap();
+		map.setCount(100);
+		map.addInclude(new Include("Encounter:patient"));
+		map.addInclude(new Include("Encounter:service-provider"));
+		map.addInclude(new Include("Encounter:practitioner"));
+		map.addRevInclude(new Include("Observation:encounter"));
+		map.addRevInclude(new Include("Condition:encounter"));
+		map.addRevInclude(new Include("Procedure:encounter"));
+		map.addRevInclude(new Include("MedicationRequest:encounter"));
+
+		int serialCount = runSearches("serial", 0, map);
+		int parallelCount = runSearches("parallel", 4, map);
+		assertEquals(serialCount, parallelCount);
+	}
+
+	private int runSearches(String theDescription, int theThreadCount, SearchParameterMap theMap) {
+		myStorageSettings.setIncludeLoadingThreadCount(theThreadCount);
+
+		// Warm up
+		int count = search(theMap);
+
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < SEARCH_ITERATIONS; i++) {
+			assertEquals(count, search(theMap));
+		}
+		ourLog.info(
+				"Loaded {} resources per page using {} include loading in {}ms per search",
+				count,
+				theDescription,
+				sw.getMillis() / SEARCH_ITERATIONS);
+		return count;
+	}
+
+	private int search(SearchParameterMap theMap) {
+		IBundleProvider outcome = myEncounterDao.search(theMap.clone(), new SystemRequestDetails());
+		return outcome.getResources(0, 100).size();
+	}
+
+	private void createData(int theResourceCount) {
+		Organization org = new Organization();
+		org.setName("Hospital");
+		String orgId = myOrganizationDao.create(org, mySrd).getId().toUnqualifiedVersionless().getValue();
+		Practitioner practitioner = new Practitioner();
+		practitioner.addName().setFamily("Practitioner");
+		String practitionerId = myPractitionerDao.create(practitioner, mySrd)
+				.getId()
+				.toUnqualifiedVersionless()
+				.getValue();
+
+		int encounterCount = theResourceCount / RESOURCES_PER_ENCOUNTER;
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < encounterCount; i += ENCOUNTERS_PER_BUNDLE) {
+			Bundle bundle = new Bundle();
+			bundle.setType(Bundle.BundleType.TRANSACTION);
+			for (int j = i; j < Math.min(i + ENCOUNTERS_PER_BUNDLE, encounterCount); j++) {
+				addEncounter(bundle, j, orgId, practitionerId);
+			}
+			mySystemDao.transaction(mySrd, bundle);
+			if (i % 10_000 == 0) {
+				ourLog.info("Created {} encounters in {} - {}/sec", i, sw, sw.formatThroughput(i, TimeUnit.SECONDS));
+			}
+		}
+	}
+
+	private static void addEncounter(Bundle theBundle, int theIndex, String theOrgId, String thePractitionerId) {
+		String patientId = "urn:uuid:patient-" + theIndex;
+		String encounterId = "urn:uuid:encounter-" + theIndex;
+
+		Patient patient = new Patient();
+		patient.addName().setFamily("Family" + theIndex);
+		theBundle.addEntry().setFullUrl(patientId).setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+
+		Encounter encounter = new Encounter();
+		encounter.setSubject(new Reference(patientId));
+		encounter.setServiceProvider(new Reference(theOrgId));
+		encounter.addParticipant().setIndividual(new Reference(thePractitionerId));
+		theBundle.addEntry().setFullUrl(encounterId).setResource(encounter).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Encounter");
+
+		for (int i = 0; i < 3; i++) {
+			Observation obs = new Observation();
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.setSubject(new Reference(patientId));
+			obs.setEncounter(new Reference(encounterId));
+			theBundle.addEntry().setResource(obs).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+		}
+
+		Condition condition = new Condition();
+		condition.setSubject(new Reference(patientId));
+		condition.setEncounter(new Reference(encounterId));
+		theBundle.addEntry().setResource(condition).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Condition");
+
+		Procedure procedure = new Procedure();
+		procedure.setSubject(new Reference(patientId));
+		procedure.setEncounter(new Reference(encounterId));
+		theBundle.addEntry().setResource(procedure).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Procedure");
+
+		MedicationRequest medicationRequest = new MedicationRequest();
+		medicationRequest.setSubject(new Reference(patientId));
+		medicationRequest.setEncounter(new Reference(encounterId));
+		theBundle.addEntry().setResource(medicationRequest).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("MedicationRequest");
+	}
+}
@@ -0,0 +1,102 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the time taken by a sorted search across several partitions when it is run as a
+ * single query and when it is fanned out to one query per partition
+ * (see {@link JpaStorageSettings#setSearchPartitionFanOutThreadCount(int)}).
+ * <p>
+ * The number of resources created in each partition can be set using the
+ * <code>hapi.test.partitionFanOutPerf.resourceCount</code> system property (default is
+ * 25,000). Note that with the default settings the in-memory test database is used,
+ * so absolute timings aren't representative of a production database.
+ * </p>
+ */
+@Disabled("Stress test")
+public class PartitionFanOutPerfTest extends BasePartitioningR4Test {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(PartitionFanOutPerfTest.class);
+	private static final int SEARCH_ITERATIONS = 20;
+	private static final List<Integer> PARTITION_IDS = List.of(1, 2, 3, 4);
+
+	@Override
+	@AfterEach
+	public void after() {
+		super.after();
+		myStorageSettings.setSearchPartitionFanOutThreadCount(
+				new JpaStorageSettings().getSearchPartitionFanOutThreadCount());
+	}
+
+	@Test
+	public void testSortedSearchAcrossPartitions() {
+		int resourceCount = Integer.getInteger("hapi.test.partitionFanOutPerf.resourceCount", 25_000);
+		for (Integer next : PARTITION_IDS) {
+			createData(next, resourceCount);
+		}
+
+		List<String> singleQuery = runSearches("a single query", 0);
+		List<String> fanOut = runSearches("one query per partition", PARTITION_IDS.size());
+		assertEquals(singleQuery, fanOut);
+	}
+
+	private List<String> runSearches(String theDescription, int theThreadCount) {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(theThreadCount);
+
+		// Warm up
+		List<String> retVal = search();
+
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < SEARCH_ITERATIONS; i++) {
+			assertEquals(retVal, search());
+		}
+		ourLog.info(
+				"Loaded the first {} results using {} in {}ms per search",
+				retVal.size(),
+				theDescription,
+				sw.getMillis() / SEARCH_ITERATIONS);
+		return retVal;
+	}
+
+	private List<String> search() {
+		addNextTargetPartitionsForRead(PARTITION_1, PARTITION_2, PARTITION_3, PARTITION_4);
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_ACTIVE, new TokenParam("true"));
+		map.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+		map.setCount(100);
+		IBundleProvider outcome = myPatientDao.search(map, mySrd);
+		return toUnqualifiedVersionlessIdValues(outcome);
+	}
+
+	private void createData(int thePartitionId, int theResourceCount) {
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < theResourceCount; i++) {
+			createPatient(withPartition(thePartitionId), withActiveTrue(), withFamily("Family" + i));
+			if (i % 10_000 == 0) {
+				ourLog.info(
+						"Created {} patients in partition {} in {} - {}/sec",
+						i,
+						thePartitionId,
+						sw,
+						sw.formatThroughput(i, TimeUnit.SECONDS));
+			}
+		}
+	}
+}
@@ -32,6 +32,8 @@ import ca.uhn.fhir.jpa.model.util.JpaConstants;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.SqlQuery;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.param.DateAndListParam;
@@ -129,6 +131,7 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 		JpaStorageSettings defaults = new JpaStorageSettings();
 		myStorageSettings.setMarkResourcesForReindexingUponSearchParameterChange(defaults.isMarkResourcesForReindexingUponSearchParameterChange());
 		myStorageSettings.setMatchUrlCacheEnabled(defaults.isMatchUrlCacheEnabled());
+		myStorageSettings.setSearchPartitionFanOutThreadCount(defaults.getSearchPartitionFanOutThreadCount());
 	}
 
 	@Test
@@ -1793,6 +1796,72 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 		assertThat(sql).as(sql).contains("PARTITION_ID IS NULL");
 	}
 
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testSearch_SearchMultiplePartitions_FanOut(boolean theSort) {
+		IIdType patientIdNull = createPatient(withPartition(null), withActiveTrue());
+		IIdType patientId1a = createPatient(withPartition(1), withActiveTrue());
+		IIdType patientId2a = createPatient(withPartition(2), withActiveTrue());
+		createPatient(withPartition(3), withActiveTrue());
+		IIdType patientId1b = createPatient(withPartition(1), withActiveTrue());
+		IIdType patientId2b = createPatient(withPartition(2), withActiveTrue());
+
+		Supplier<List<IIdType>> search = () -> {
+			addNextTargetPartitionsForRead(JpaConstants.DEFAULT_PARTITION_NAME, PARTITION_1, PARTITION_2);
+			SearchParameterMap map = new SearchParameterMap();
+			map.add(Patient.SP_ACTIVE, new TokenParam("true"));
+			if (theSort) {
+				map.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+			}
+			map.setLoadSynchronous(true);
+			return toUnqualifiedVersionlessIds(myPatientDao.search(map, mySrd));
+		};
+
+		// Single query
+		List<IIdType> expected = search.get();
+		assertThat(expected).containsExactlyInAnyOrder(patientIdNull, patientId1a, patientId2a, patientId1b, patientId2b);
+		if (theSort) {
+			assertThat(expected).containsExactly(patientId2b, patientId1b, patientId2a, patientId1a, patientIdNull);
+		}
+
+		// One query per partition
+		myStorageSettings.setSearchPartitionFanOutThreadCount(4);
+		myCaptureQueriesListener.clear();
+		List<IIdType> actual = search.get();
+		if (theSort) {
+			assertThat(actual).containsExactlyElementsOf(expected);
+		} else {
+			assertThat(actual).containsExactlyInAnyOrderElementsOf(expected);
+		}
+
+		List<String> searchSql = myCaptureQueriesListener.getSelectQueries().stream()
+			.map(t -> t.getSql(true, false))
+			.filter(t -> t.contains("HFJ_SPIDX_TOKEN"))
+			.toList();
+		assertThat(searchSql).as(searchSql.toString()).hasSize(3);
+		assertThat(searchSql).anyMatch(t -> t.contains("PARTITION_ID IS NULL"));
+		assertThat(searchSql).anyMatch(t -> t.contains("PARTITION_ID = '1'"));
+		assertThat(searchSql).anyMatch(t -> t.contains("PARTITION_ID = '2'"));
+	}
+
+	@Test
+	public void testSearch_SearchMultiplePartitions_FanOut_InSameTransactionAsCreate() {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(4);
+
+		runInTransaction(() -> {
+			IIdType patientId1 = createPatient(withPartition(1), withActiveTrue());
+			IIdType patientId2 = createPatient(withPartition(2), withActiveTrue());
+
+			addNextTargetPartitionsForRead(PARTITION_1, PARTITION_2);
+			SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_ACTIVE, new TokenParam("true"));
+			map.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+			List<IIdType> actual = toUnqualifiedVersionlessIds(myPatientDao.search(map, mySrd));
+
+			// The uncommitted patients are only visible if the search didn't fan out to other threads
+			assertThat(actual).containsExactlyInAnyOrder(patientId1, patientId2);
+		});
+	}
+
 	@Test
 	public void testSearch_DateParam_SearchAllPartitions() {
 		myPartitionSettings.setIncludePartitionInSearchHashes(false);
@@ -0,0 +1,92 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the time taken to store transaction bundles of various sizes with and without
+ * the transaction prepare phase (see {@link JpaStorageSettings#setTransactionPrepareThreadCount(int)}).
+ * Note that with the default settings the in-memory test database is used, so absolute
+ * timings aren't representative of a production database.
+ */
+@Disabled("Stress test")
+public class TransactionPreparePerfTest extends BaseJpaR4Test {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(TransactionPreparePerfTest.class);
+	private static final int RESOURCES_PER_PATIENT = 10;
+	private static final int ITERATIONS = 10;
+
+	@AfterEach
+	public void afterEach() {
+		myStorageSettings.setTransactionPrepareThreadCount(new JpaStorageSettings().getTransactionPrepareThreadCount());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {100, 1000, 5000})
+	public void testTransaction(int theEntryCount) {
+		runTransactions("serial", 0, theEntryCount);
+		runTransactions("prepared", 1, theEntryCount);
+		runTransactions("prepared concurrently", 4, theEntryCount);
+	}
+
+	private void runTransactions(String theDescription, int theThreadCount, int theEntryCount) {
+		myStorageSettings.setTransactionPrepareThreadCount(theThreadCount);
+
+		// Warm up
+		assertEquals(theEntryCount, mySystemDao.transaction(mySrd, createBundle(theEntryCount)).getEntry().size());
+
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < ITERATIONS; i++) {
+			mySystemDao.transaction(mySrd, createBundle(theEntryCount));
+		}
+		ourLog.info(
+				"Stored {} entry transactions using {} preparation in {}ms per transaction - {} entries/sec",
+				theEntryCount,
+				theDescription,
+				sw.getMillis() / ITERATIONS,
+				sw.formatThroughput((long) theEntryCount * ITERATIONS, TimeUnit.SECONDS));
+	}
+
+	private static Bundle createBundle(int theEntryCount) {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; bundle.getEntry().size() < theEntryCount; i++) {
+			String patientId = "urn:uuid:patient-" + i;
+			String encounterId = "urn:uuid:encounter-" + i;
+
+			Patient patient = new Patient();
+			patient.addName().setFamily("Family" + i);
+			bundle.addEntry().setFullUrl(patientId).setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+
+			Encounter encounter = new Encounter();
+			encounter.setSubject(new Reference(patientId));
+			bundle.addEntry().setFullUrl(encounterId).setResource(encounter).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Encounter");
+
+			for (int j = 2; j < RESOURCES_PER_PATIENT && bundle.getEntry().size() < theEntryCount; j++) {
+				Observation obs = new Observation();
+				obs.setStatus(Observation.ObservationStatus.FINAL);
+				obs.getCode().addCoding().setSystem("http://loinc.org").setCode("29463-" + j);
+				obs.setSubject(new Reference(patientId));
+				obs.setEncounter(new Reference(encounterId));
+				bundle.addEntry().setResource(obs).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+			}
+		}
+		return bundle;
+	}
+}
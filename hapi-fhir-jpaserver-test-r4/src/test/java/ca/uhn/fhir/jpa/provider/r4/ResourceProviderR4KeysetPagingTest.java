@@ -0,0 +1,162 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.util.UrlUtil;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link JpaStorageSettings#setKeysetPagingEnabled(boolean)}
+ */
+public class ResourceProviderR4KeysetPagingTest extends BaseResourceProviderR4Test {
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myStorageSettings.setKeysetPagingEnabled(true);
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+		myStorageSettings.setKeysetPagingEnabled(new JpaStorageSettings().isKeysetPagingEnabled());
+		myStorageSettings.setKeysetPagingSigningKey(new JpaStorageSettings().getKeysetPagingSigningKey());
+	}
+
+	@Test
+	public void testPageWithTiesOnSortValue() {
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 15; i++) {
+			ids.add(createPatient("1970-01-01"));
+		}
+		for (int i = 0; i < 10; i++) {
+			ids.add(createPatient("1980-01-01"));
+		}
+
+		Bundle firstPage = search("Patient?_sort=birthdate&_count=4");
+		assertNull(firstPage.getTotalElement().getValue());
+
+		List<String> actual = readAllPages(firstPage);
+		assertThat(actual).containsExactlyElementsOf(ids);
+	}
+
+	@Test
+	public void testPageWithTiesOnLastUpdated() {
+		// All resources created in one transaction share the same lastUpdated
+		Bundle transaction = new Bundle();
+		transaction.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < 12; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("Tie" + i);
+			transaction.addEntry().setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+		}
+		Bundle response = myClient.transaction().withBundle(transaction).execute();
+		List<String> ids = response.getEntry().stream()
+				.map(t -> t.getResponse().getLocation().replaceAll("/_history.*", ""))
+				.toList();
+
+		List<String> actual = readAllPages(search("Patient?_sort=-_lastUpdated&_count=5"));
+		assertThat(actual).containsExactlyInAnyOrderElementsOf(ids);
+	}
+
+	@Test
+	public void testConcurrentInsertsWhilePaging() {
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			ids.add(createPatient("1970-01-01"));
+		}
+
+		Bundle page = search("Patient?_count=10");
+		List<String> actual = new ArrayList<>(toIds(page));
+
+		// Resources created after the first page come after the existing ones, and don't
+		// cause any of the existing ones to be repeated or skipped
+		List<String> newIds = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			newIds.add(createPatient("1960-01-01"));
+		}
+		actual.addAll(readAllPages(myClient.loadPage().next(page).execute()));
+
+		List<String> expected = new ArrayList<>(ids);
+		expected.addAll(newIds);
+		assertThat(actual).containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	public void testMultiValuedSortUsesStoredResults() {
+		for (int i = 0; i < 10; i++) {
+			createPatient("1970-01-01");
+		}
+
+		// Patient.identifier can have several values per resource
+		Bundle page = search("Patient?_sort=identifier&_count=4");
+		String next = page.getLink(Constants.LINK_NEXT).getUrl();
+		assertThat(next).doesNotContain(Constants.PARAM_KEYSET).contains(Constants.PARAM_PAGINGACTION);
+		assertThat(readAllPages(page)).hasSize(10);
+	}
+
+	@Test
+	public void testTamperedToken() {
+		for (int i = 0; i < 10; i++) {
+			createPatient("1970-01-01");
+		}
+
+		Bundle page = search("Patient?_count=4");
+		String next = page.getLink(Constants.LINK_NEXT).getUrl();
+		String token = UrlUtil.parseQueryString(next.substring(next.indexOf('?') + 1)).get(Constants.PARAM_KEYSET)[0];
+		assertThat(token).isNotBlank();
+
+		// A token signed with a different key is rejected
+		myStorageSettings.setKeysetPagingSigningKey("some other key");
+		assertThatThrownBy(() -> myClient.loadPage().next(page).execute())
+				.isInstanceOf(InvalidRequestException.class)
+				.hasMessageContaining("Invalid _keyset value");
+	}
+
+	private String createPatient(String theBirthDate) {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://a").setValue("A" + Math.random());
+		patient.addIdentifier().setSystem("http://b").setValue("B" + Math.random());
+		patient.setBirthDateElement(new DateType(theBirthDate));
+		return myClient.create().resource(patient).execute().getId().toUnqualifiedVersionless().getValue();
+	}
+
+	private Bundle search(String theUrl) {
+		return myClient.search().byUrl(theUrl).returnBundle(Bundle.class).execute();
+	}
+
+	private List<String> readAllPages(Bundle theFirstPage) {
+		List<String> retVal = new ArrayList<>();
+		Bundle page = theFirstPage;
+		while (true) {
+			retVal.addAll(toIds(page));
+			if (page.getLink(Constants.LINK_NEXT) == null) {
+				break;
+			}
+			page = myClient.loadPage().next(page).execute();
+		}
+		return retVal;
+	}
+
+	private static List<String> toIds(Bundle theBundle) {
+		return theBundle.getEntry().stream()
+				.map(t -> t.getResource().getIdElement().toUnqualifiedVersionless().getValue())
+				.toList();
+	}
+}
@@ -25,10 +25,16 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(SpringExtension.class)
 @ContextConfiguration(classes = {SearchQueryBuilderTest.MyConfig.class})
@@ -42,8 +48,12 @@ public class SearchQueryBuilderTest {
 	@Autowired
 	private SqlObjectFactory mySqlBuilderFactory;
 
+	@Autowired
+	private SearchQueryTemplateCache mySearchQueryTemplateCache;
+
 	@BeforeEach
 	public void before() {
+		mySearchQueryTemplateCache.invalidateCaches();
 		myFhirContext = FhirContext.forR4Cached();
 		myStorageSettings = new StorageSettings();
 		myPartitionSettings = new PartitionSettings();
@@ -429,7 +439,138 @@ public class SearchQueryBuilderTest {
 		assertThat(generated.getBindVariables()).as(generated.getBindVariables().toString()).containsExactly("Patient", 500L, 501L, 10, 5);
 
 	}
+
+	@Test
+	public void testKeysetPredicatePostgreSQL() {
+
+		HibernatePropertiesProvider dialectProvider = new HibernatePropertiesProvider();
+		dialectProvider.setDialectForUnitTest(new PostgreSQLDialect());
+		SearchQueryBuilder builder = new SearchQueryBuilder(myFhirContext, myStorageSettings, myPartitionSettings, myRequestPartitionId, "Patient", mySqlBuilderFactory, dialectProvider, false);
+		ResourceTablePredicateBuilder resourceTable = builder.getOrCreateResourceTablePredicateBuilder();
+		builder.addSortDate(resourceTable.getColumnLastUpdated(), false);
+		builder.addSortString(resourceTable.getResourceIdColumn(), false);
+		Date lastUpdated = new Date(1700000000000L);
+		builder.addKeysetPredicate(List.of(lastUpdated, 123L));
+
+		GeneratedSql generated = builder.generate(null, 10);
+		assertEquals("SELECT t0.RES_ID FROM HFJ_RESOURCE t0 WHERE (((t0.RES_TYPE = ?) AND (t0.RES_DELETED_AT IS NULL)) AND (((t0.RES_UPDATED < ?) OR (t0.RES_UPDATED IS NULL)) OR ((t0.RES_UPDATED = ?) AND ((t0.RES_ID < ?) OR (t0.RES_ID IS NULL))))) ORDER BY t0.RES_UPDATED DESC NULLS LAST,t0.RES_ID DESC NULLS LAST fetch first ? rows only", generated.getSql());
+		assertThat(generated.getBindVariables()).as(generated.getBindVariables().toString()).containsExactly("Patient", lastUpdated, lastUpdated, 123L, 10);
+	}
+
+	@Test
+	public void testKeysetPredicatePostgreSQL_NullValue() {
+
+		HibernatePropertiesProvider dialectProvider = new HibernatePropertiesProvider();
+		dialectProvider.setDialectForUnitTest(new PostgreSQLDialect());
+		SearchQueryBuilder builder = new SearchQueryBuilder(myFhirContext, myStorageSettings, myPartitionSettings, myRequestPartitionId, "Patient", mySqlBuilderFactory, dialectProvider, false);
+		ResourceTablePredicateBuilder resourceTable = builder.getOrCreateResourceTablePredicateBuilder();
+		builder.addSortString(resourceTable.getColumnFhirId(), true);
+		builder.addSortString(resourceTable.getResourceIdColumn(), true);
+		builder.addKeysetPredicate(Arrays.asList(null, 123L));
+
+		GeneratedSql generated = builder.generate(null, 10);
+		assertEquals("SELECT t0.RES_ID FROM HFJ_RESOURCE t0 WHERE (((t0.RES_TYPE = ?) AND (t0.RES_DELETED_AT IS NULL)) AND ((t0.FHIR_ID IS NULL) AND ((t0.RES_ID > ?) OR (t0.RES_ID IS NULL)))) ORDER BY t0.FHIR_ID ASC NULLS LAST,t0.RES_ID ASC NULLS LAST fetch first ? rows only", generated.getSql());
+		assertThat(generated.getBindVariables()).as(generated.getBindVariables().toString()).containsExactly("Patient", 123L, 10);
+	}
 	
+	@Test
+	public void testTemplateCache() {
+
+		HibernatePropertiesProvider dialectProvider = new HibernatePropertiesProvider();
+		dialectProvider.setDialectForUnitTest(new SQLServerDialect());
+
+		SearchQueryBuilder builder = new SearchQueryBuilder(myFhirContext, myStorageSettings, myPartitionSettings, myRequestPartitionId, "Patient", mySqlBuilderFactory, dialectProvider, false);
+		builder.addResourceIdsPredicate(Lists.newArrayList(JpaPid.fromId(500L), JpaPid.fromId(501L)));
+		builder.setSqlTemplateKey("key");
+		GeneratedSql generated = builder.generate(10, 5);
+		assertEquals(0, mySearchQueryTemplateCache.getHitCount());
+		assertEquals(1, mySearchQueryTemplateCache.getMissCount());
+
+		// The same key should reuse the finished statement with this builder's values
+		builder = new SearchQueryBuilder(myFhirContext, myStorageSettings, myPartitionSettings, myRequestPartitionId, "Patient", mySqlBuilderFactory, dialectProvider, false);
+		builder.addResourceIdsPredicate(Lists.newArrayList(JpaPid.fromId(600L), JpaPid.fromId(601L)));
+		builder.setSqlTemplateKey("key");
+		GeneratedSql generated2 = builder.generate(10, 5);
+		assertEquals(generated.getSql(), generated2.getSql());
+		assertThat(generated2.getBindVariables()).as(generated2.getBindVariables().toString()).containsExactly("Patient", 600L, 601L, 10, 5);
+		assertEquals(1, mySearchQueryTemplateCache.getHitCount());
+		assertEquals(1, mySearchQueryTemplateCache.getMissCount());
+
+		// A different page is a different statement
+		generated2 = builder.generate(20, 5);
+		assertThat(generated2.getBindVariables()).as(generated2.getBindVariables().toString()).containsExactly("Patient", 600L, 601L, 20, 5);
+		assertEquals(1, mySearchQueryTemplateCache.getHitCount());
+		assertEquals(2, mySearchQueryTemplateCache.getMissCount());
+
+		// A builder with a different number of bind variables never uses the cached statement
+		builder = new SearchQueryBuilder(myFhirContext, myStorageSettings, myPartitionSettings, myRequestPartitionId, "Patient", mySqlBuilderFactory, dialectProvider, false);
+		builder.addResourceIdsPredicate(Lists.newArrayList(JpaPid.fromId(500L), JpaPid.fromId(501L), JpaPid.fromId(502L)));
+		builder.setSqlTemplateKey("key");
+		generated2 = builder.generate(10, 5);
+		assertThat(generated2.getSql()).contains("t0.RES_ID IN (?,?,?)");
+		assertThat(generated2.getBindVariables()).as(generated2.getBindVariables().toString()).containsExactly("Patient", 500L, 501L, 502L, 10, 5);
+		assertEquals(1, mySearchQueryTemplateCache.getHitCount());
+		assertEquals(3, mySearchQueryTemplateCache.getMissCount());
+		assertEquals(0.25, mySearchQueryTemplateCache.getHitRate());
+
+		// Without a key, the cache isn't used at all
+		builder = new SearchQueryBuilder(myFhirContext, myStorageSettings, myPartitionSettings, myRequestPartitionId, "Patient", mySqlBuilderFactory, dialectProvider, false);
+		builder.addResourceIdsPredicate(Lists.newArrayList(JpaPid.fromId(700L), JpaPid.fromId(701L)));
+		generated2 = builder.generate(10, 5);
+		assertEquals(generated.getSql(), generated2.getSql());
+		assertThat(generated2.getBindVariables()).as(generated2.getBindVariables().toString()).containsExactly("Patient", 700L, 701L, 10, 5);
+		assertEquals(1, mySearchQueryTemplateCache.getHitCount());
+		assertEquals(3, mySearchQueryTemplateCache.getMissCount());
+	}
+
+	@Test
+	public void testFanOutPartitionPredicatePostgreSQL() {
+
+		HibernatePropertiesProvider dialectProvider = new HibernatePropertiesProvider();
+		dialectProvider.setDialectForUnitTest(new PostgreSQLDialect());
+		SearchQueryBuilder builder = new SearchQueryBuilder(myFhirContext, myStorageSettings, myPartitionSettings, myRequestPartitionId, "Patient", mySqlBuilderFactory, dialectProvider, false);
+		ResourceTablePredicateBuilder resourceTable = builder.getOrCreateResourceTablePredicateBuilder();
+		builder.addSortDate(resourceTable.getColumnLastUpdated(), false);
+		builder.addSortResourcePid(resourceTable.getResourceIdColumn(), false);
+		assertTrue(builder.isSortMergeable());
+		assertEquals(1, builder.addSortValueColumns());
+		assertEquals(2, builder.countSortColumns());
+		builder.addFanOutPartitionPredicate();
+
+		builder.setFanOutPartitionId(1);
+		GeneratedSql generated = builder.generate(null, 10);
+		assertEquals("SELECT t0.RES_ID,t0.RES_UPDATED,t0.RES_ID FROM HFJ_RESOURCE t0 WHERE (((t0.RES_TYPE = ?) AND (t0.RES_DELETED_AT IS NULL)) AND (t0.PARTITION_ID = ?)) ORDER BY t0.RES_UPDATED DESC NULLS LAST,t0.RES_ID DESC NULLS LAST fetch first ? rows only", generated.getSql());
+		assertThat(generated.getBindVariables()).as(generated.getBindVariables().toString()).containsExactly("Patient", 1, 10);
+
+		builder.setFanOutPartitionId(null);
+		generated = builder.generate(null, 10);
+		assertEquals("SELECT t0.RES_ID,t0.RES_UPDATED,t0.RES_ID FROM HFJ_RESOURCE t0 WHERE (((t0.RES_TYPE = ?) AND (t0.RES_DELETED_AT IS NULL)) AND (t0.PARTITION_ID IS NULL)) ORDER BY t0.RES_UPDATED DESC NULLS LAST,t0.RES_ID DESC NULLS LAST fetch first ? rows only", generated.getSql());
+		assertThat(generated.getBindVariables()).as(generated.getBindVariables().toString()).containsExactly("Patient", 10);
+	}
+
+	@Test
+	public void testSortValueComparator() {
+
+		HibernatePropertiesProvider dialectProvider = new HibernatePropertiesProvider();
+		dialectProvider.setDialectForUnitTest(new PostgreSQLDialect());
+		SearchQueryBuilder builder = new SearchQueryBuilder(myFhirContext, myStorageSettings, myPartitionSettings, myRequestPartitionId, "Patient", mySqlBuilderFactory, dialectProvider, false);
+		ResourceTablePredicateBuilder resourceTable = builder.getOrCreateResourceTablePredicateBuilder();
+		builder.addSortDate(resourceTable.getColumnLastUpdated(), false);
+		builder.addSortResourcePid(resourceTable.getResourceIdColumn(), true);
+		Comparator<Object[]> comparator = builder.newSortValueComparator();
+
+		Date earlier = new Date(1700000000000L);
+		Date later = new Date(1700000001000L);
+		assertThat(comparator.compare(new Object[] {later, 5L}, new Object[] {earlier, 1L})).isNegative();
+		assertThat(comparator.compare(new Object[] {later, 1L}, new Object[] {later, 5})).isNegative();
+		assertThat(comparator.compare(new Object[] {later, 1L}, new Object[] {later, 1L})).isZero();
+		// Nulls sort last in both directions
+		assertThat(comparator.compare(new Object[] {null, 1L}, new Object[] {earlier, 1L})).isPositive();
+
+		builder.addSortString(resourceTable.getColumnFhirId(), true);
+		assertFalse(builder.isSortMergeable());
+	}
+
 	@Configuration
 	public static class MyConfig {
 
@@ -444,5 +585,10 @@ public class SearchQueryBuilderTest {
 			return new SqlObjectFactory();
 		}
 
+		@Bean
+		public SearchQueryTemplateCache searchQueryTemplateCache() {
+			return new SearchQueryTemplateCache(100);
+		}
+
 	}
 }
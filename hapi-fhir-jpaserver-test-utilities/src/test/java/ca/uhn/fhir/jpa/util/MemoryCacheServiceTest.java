@@ -2,6 +2,7 @@ package ca.uhn.fhir.jpa.util;
 
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.TagDefinition;
 import ca.uhn.fhir.jpa.model.entity.TagTypeEnum;
 import ca.uhn.fhir.sl.cache.Cache;
@@ -16,6 +17,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -238,6 +241,109 @@ class MemoryCacheServiceTest {
 		}
 	}
 
+	@Nested
+	public class SecondLevelCacheTest {
+
+		private LocalSecondLevelMemoryCache mySecondLevelCache;
+		private MemoryCacheService myOtherNodeSvc;
+
+		@BeforeEach
+		public void setUp() {
+			mySecondLevelCache = new LocalSecondLevelMemoryCache();
+			mySvc.setSecondLevelCache(mySecondLevelCache);
+			myOtherNodeSvc = new MemoryCacheService(new JpaStorageSettings());
+			myOtherNodeSvc.setSecondLevelCache(mySecondLevelCache);
+		}
+
+		@Test
+		public void testPutOnOneNodeIsVisibleOnOtherNode() {
+			JpaPid pid = JpaPid.fromId(123L);
+			mySvc.putAfterCommit(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, pid, Optional.of("Patient/A"));
+
+			Optional<String> actual = myOtherNodeSvc.getIfPresent(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, pid);
+			assertEquals(Optional.of("Patient/A"), actual);
+		}
+
+		@Test
+		public void testGetAllPresent_PromotesSecondLevelEntries() {
+			JpaPid pid0 = JpaPid.fromId(1L);
+			JpaPid pid1 = JpaPid.fromId(2L);
+			JpaPid pid2 = JpaPid.fromId(3L);
+			mySvc.putAllAfterCommit(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, Map.of(pid0, Optional.of("Patient/A"), pid1, Optional.empty()));
+
+			Map<JpaPid, Optional<String>> actual = myOtherNodeSvc.getAllPresent(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, List.of(pid0, pid1, pid2));
+			assertThat(actual).containsOnlyKeys(pid0, pid1);
+			assertEquals(2, myOtherNodeSvc.getEstimatedSize(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID));
+
+			// Caches which aren't enabled in the second level cache are unaffected
+			mySvc.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo", JpaPid.fromId(1L));
+			assertNull(myOtherNodeSvc.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo"));
+		}
+
+		@Test
+		public void testNegativeEntries() {
+			MemoryCacheService.ForcedIdCacheKey key0 = new MemoryCacheService.ForcedIdCacheKey("Patient", "A", RequestPartitionId.allPartitions());
+			MemoryCacheService.ForcedIdCacheKey key1 = new MemoryCacheService.ForcedIdCacheKey("Patient", "B", RequestPartitionId.allPartitions());
+
+			// Disabled by default
+			mySvc.putNegativeAfterCommit(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, List.of(key0));
+			assertEquals(0, mySecondLevelCache.getEstimatedSize(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID));
+
+			mySecondLevelCache.setNegativeCachingEnabled(true);
+			mySvc.putAfterCommit(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, key1, List.of("lookup"));
+			mySvc.putNegativeAfterCommit(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, List.of(key0, key1));
+
+			List<MemoryCacheService.ForcedIdCacheKey> negativeKeys = new ArrayList<>();
+			Map<MemoryCacheService.ForcedIdCacheKey, Object> actual = myOtherNodeSvc.getAllPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, List.of(key0, key1), negativeKeys);
+			assertThat(actual).containsOnlyKeys(key1);
+			assertThat(negativeKeys).containsExactly(key0);
+
+			// Negative entries are never promoted into the local cache
+			assertNull(myOtherNodeSvc.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, key0));
+			assertEquals(1, myOtherNodeSvc.getEstimatedSize(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID));
+
+			// A positive entry replaces the negative one
+			mySvc.putAfterCommit(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, key0, List.of("lookup"));
+			negativeKeys.clear();
+			actual = myOtherNodeSvc.getAllPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID, List.of(key0, key1), negativeKeys);
+			assertThat(actual).containsOnlyKeys(key0, key1);
+			assertThat(negativeKeys).isEmpty();
+		}
+
+		@Test
+		public void testInvalidate() {
+			JpaPid pid0 = JpaPid.fromId(1L);
+			JpaPid pid1 = JpaPid.fromId(2L);
+			mySvc.putAllAfterCommit(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, Map.of(pid0, Optional.of("Patient/A"), pid1, Optional.of("Patient/B")));
+
+			mySvc.invalidate(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, pid0);
+			assertNull(myOtherNodeSvc.getIfPresent(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, pid0));
+			assertEquals(Optional.of("Patient/B"), myOtherNodeSvc.getIfPresent(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, pid1));
+
+			mySvc.invalidateAllCaches();
+			assertEquals(0, mySecondLevelCache.getEstimatedSize(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID));
+		}
+
+		@Test
+		public void testInvalidateAllCaches_OnlyGivenSecondLevelKeys() {
+			JpaPid pid0 = JpaPid.fromId(1L);
+			JpaPid pid1 = JpaPid.fromId(2L);
+			mySvc.putAllAfterCommit(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, Map.of(pid0, Optional.of("Patient/A"), pid1, Optional.of("Patient/B")));
+			mySvc.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo", JpaPid.fromId(1L));
+
+			mySvc.invalidateAllCaches(Map.of(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, List.of(pid0)));
+
+			// Local caches are flushed completely
+			assertEquals(0, mySvc.getEstimatedSize(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID));
+			assertNull(mySvc.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo"));
+
+			// Only the given keys are removed from the second level cache
+			assertNull(myOtherNodeSvc.getIfPresent(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, pid0));
+			assertEquals(Optional.of("Patient/B"), myOtherNodeSvc.getIfPresent(MemoryCacheService.CacheEnum.PID_TO_FORCED_ID, pid1));
+		}
+
+	}
+
 	@Test
 	public void testToString() {
 		String actual = new MemoryCacheService.ForcedIdCacheKey("Patient", "12", RequestPartitionId.forPartitionIdAndName(123, "Some partition", null)).toString();
@@ -1,5 +1,6 @@
 package ca.uhn.fhir.jpa.util;
 
+import org.apache.commons.lang3.time.DateUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,8 +11,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.when;
 
@@ -87,4 +90,90 @@ public class ResourceCountCacheTest {
 
 	}
 
+	@Test
+	public void testIncrementalUpdates() throws Exception {
+		AtomicLong id = new AtomicLong(10);
+		when(myFetcher.call()).thenAnswer(t -> {
+			Map<String, Long> retVal = new HashMap<>();
+			retVal.put("Patient", id.getAndIncrement());
+			return retVal;
+		});
+
+		long start = System.currentTimeMillis();
+		ResourceCountCache.setNowForUnitTest(start);
+		ResourceCountCache cache = new ResourceCountCache(myFetcher);
+		cache.setCacheMillis(DateUtils.MILLIS_PER_HOUR);
+
+		// Nothing is counted before the first fetch
+		cache.recordCreated("Patient");
+		assertNull(cache.getCount("Patient"));
+		assertThat(cache.getStatistics()).isEmpty();
+
+		cache.update();
+		assertEquals(10L, cache.getCount("Patient"));
+
+		cache.recordCreated("Patient");
+		cache.recordCreated("Patient");
+		cache.recordCreated("Observation");
+		cache.recordDeleted("Patient");
+		assertEquals(12L, cache.getCount("Patient"));
+		assertEquals(1L, cache.getCount("Observation"));
+		assertEquals(0L, cache.getCount("Encounter"));
+		assertThat(cache.get()).containsEntry("Patient", 12L).containsEntry("Observation", 1L);
+
+		ResourceCountCache.setNowForUnitTest(start + 2 * DateUtils.MILLIS_PER_MINUTE);
+		Map<String, ResourceCountCache.ResourceTypeStatistics> statistics = cache.getStatistics();
+		assertThat(statistics).containsOnlyKeys("Patient", "Observation");
+		ResourceCountCache.ResourceTypeStatistics patientStatistics = statistics.get("Patient");
+		assertEquals(12L, patientStatistics.getCount());
+		assertEquals(2L, patientStatistics.getCreatedSinceFetch());
+		assertEquals(1L, patientStatistics.getDeletedSinceFetch());
+		assertEquals(1.0, patientStatistics.getCreatesPerMinute());
+		assertEquals(1.5, patientStatistics.getWritesPerMinute());
+
+		assertThat(cache.getMostActiveResourceTypes(5))
+			.extracting(ResourceCountCache.ResourceTypeStatistics::getResourceType)
+			.containsExactly("Patient", "Observation");
+		assertThat(cache.getMostActiveResourceTypes(1)).hasSize(1);
+
+		// The next fetch reconciles the counts with the database
+		ResourceCountCache.setNowForUnitTest(start + 2 * DateUtils.MILLIS_PER_HOUR);
+		cache.update();
+		assertEquals(11L, cache.getCount("Patient"));
+		assertEquals(0L, cache.getCount("Observation"));
+		assertThat(cache.getMostActiveResourceTypes(5)).isEmpty();
+	}
+
+	@Test
+	public void testIncrementalUpdatesRecordedDuringFetchAreKept() throws Exception {
+		AtomicReference<ResourceCountCache> cacheRef = new AtomicReference<>();
+		AtomicLong id = new AtomicLong(10);
+		when(myFetcher.call()).thenAnswer(t -> {
+			// Simulate a creation which commits while the count query is running
+			cacheRef.get().recordCreated("Patient");
+			Map<String, Long> retVal = new HashMap<>();
+			retVal.put("Patient", id.getAndIncrement());
+			return retVal;
+		});
+
+		long start = System.currentTimeMillis();
+		ResourceCountCache.setNowForUnitTest(start);
+		ResourceCountCache cache = new ResourceCountCache(myFetcher);
+		cacheRef.set(cache);
+		cache.setCacheMillis(DateUtils.MILLIS_PER_HOUR);
+
+		cache.update();
+		assertEquals(11L, cache.getCount("Patient"));
+
+		// Creations recorded before the fetch starts are replaced by the fetched counts, but the
+		// one recorded during the fetch is kept
+		cache.recordCreated("Patient");
+		cache.recordCreated("Patient");
+		assertEquals(13L, cache.getCount("Patient"));
+		ResourceCountCache.setNowForUnitTest(start + 2 * DateUtils.MILLIS_PER_HOUR);
+		cache.update();
+		assertEquals(12L, cache.getCount("Patient"));
+		assertEquals(1L, cache.getStatistics().get("Patient").getCreatedSinceFetch());
+	}
+
 }
@@ -89,6 +89,24 @@ public interface IBundleProvider {
 		return null;
 	}
 
+	/**
+	 * If this method is implemented, provides an opaque token identifying the position
+	 * immediately after the last resource in this page of results. If a value is
+	 * returned, the server will form a <code>next</code> link which repeats the original
+	 * search with the token in the {@link ca.uhn.fhir.rest.api.Constants#PARAM_KEYSET _keyset}
+	 * parameter, instead of linking to a stored search.
+	 * <p>
+	 * This allows deep paging through a large result set without the server
+	 * having to keep the results of the search. Keyset paged searches can only be
+	 * paged forward, so no <code>previous</code> link is generated.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	default String getNextPageKeyset() {
+		return null;
+	}
+
 	/**
 	 * If the results in this bundle were produced using an offset query (as opposed to a query using
 	 * continuation pointers, page IDs, etc.) the page offset can be returned here. The server
@@ -224,6 +242,17 @@ public interface IBundleProvider {
 	@Nullable
 	Integer size();
 
+	/**
+	 * Returns <code>true</code> if the value returned by {@link #size()} is an estimate
+	 * (e.g. because the client requested <code>_total=estimate</code> and the server
+	 * chose not to count every matching resource) rather than an exact count.
+	 *
+	 * @since 8.4.0
+	 */
+	default boolean isSizeEstimated() {
+		return false;
+	}
+
 	/**
 	 * This method returns <code>false</code> if the bundle provider knows that at least
 	 * one result exists.
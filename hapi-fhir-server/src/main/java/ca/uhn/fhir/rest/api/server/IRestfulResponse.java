@@ -63,6 +63,30 @@ public interface IRestfulResponse {
 	Writer getResponseWriter(int theStatusCode, String theContentType, String theCharset, boolean theRespondGzip)
 			throws IOException;
 
+	/**
+	 * Initiate a new textual response which the caller will write as bytes that are already encoded
+	 * using the given charset. The OutputStream returned by this method must be finalized by
+	 * calling {@link #commitResponse(Closeable)} later, exactly as for
+	 * {@link #getResponseWriter(int, String, String, boolean)}.
+	 * <p>
+	 * Implementations which are not able to supply a stream for textual content return
+	 * {@literal null}, in which case the caller should use
+	 * {@link #getResponseWriter(int, String, String, boolean)} instead.
+	 * </p>
+	 *
+	 * @param theStatusCode  The HTTP status code.
+	 * @param theContentType The HTTP response content type.
+	 * @param theCharset     The HTTP response charset, which the caller must use when encoding the body.
+	 * @param theRespondGzip Should the response be GZip encoded?
+	 * @return Returns an {@link OutputStream} that can accept the encoded response body, or {@literal null}
+	 * @since 8.4.0
+	 */
+	@Nullable
+	default OutputStream getResponseTextOutputStream(
+			int theStatusCode, String theContentType, String theCharset, boolean theRespondGzip) throws IOException {
+		return null;
+	}
+
 	/**
 	 * Initiate a new binary response. The OutputStream returned by this method must be finalized by
 	 * calling {@link #commitResponse(Closeable)} later. This method should only be used for non-textual
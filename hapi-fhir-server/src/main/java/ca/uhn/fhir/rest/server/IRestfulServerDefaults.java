@@ -99,6 +99,17 @@ public interface IRestfulServerDefaults {
 	 */
 	boolean isDefaultPrettyPrint();
 
+	/**
+	 * Should resource responses be encoded directly to the response output stream as UTF-8 bytes
+	 * where the response supports it, instead of being written through a character writer?
+	 * The default is <code>false</code>.
+	 *
+	 * @since 8.4.0
+	 */
+	default boolean isEncodeResponsesToOutputStream() {
+		return false;
+	}
+
 	/**
 	 * Returns the interceptor service for this server
 	 */
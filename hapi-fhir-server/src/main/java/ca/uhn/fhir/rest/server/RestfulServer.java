@@ -171,6 +171,7 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 
 	private boolean myStarted;
 	private boolean myUncompressIncomingContents = true;
+	private boolean myEncodeResponsesToOutputStream;
 	private ITenantIdentificationStrategy myTenantIdentificationStrategy;
 	private PreferReturnEnum myDefaultPreferReturn = DEFAULT_PREFER_RETURN;
 	private ElementsSupportEnum myElementsSupport = ElementsSupportEnum.EXTENDED;
@@ -1630,6 +1631,41 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 		myUncompressIncomingContents = theUncompressIncomingContents;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), resource responses are encoded directly to the
+	 * servlet output stream as UTF-8 bytes instead of being written through the servlet writer. For JSON
+	 * responses this avoids a character buffer and a char-to-byte conversion per response, which is
+	 * significant for large search result Bundles. This is also applied to GZip encoded responses.
+	 * <p>
+	 * Responses are still written using the servlet writer if any interceptor is registered against
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#SERVER_OUTGOING_WRITER_CREATED}, since those
+	 * interceptors expect to receive a {@link java.io.Writer}.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	@Override
+	public boolean isEncodeResponsesToOutputStream() {
+		return myEncodeResponsesToOutputStream;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), resource responses are encoded directly to the
+	 * servlet output stream as UTF-8 bytes instead of being written through the servlet writer. For JSON
+	 * responses this avoids a character buffer and a char-to-byte conversion per response, which is
+	 * significant for large search result Bundles. This is also applied to GZip encoded responses.
+	 * <p>
+	 * Responses are still written using the servlet writer if any interceptor is registered against
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#SERVER_OUTGOING_WRITER_CREATED}, since those
+	 * interceptors expect to receive a {@link java.io.Writer}.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setEncodeResponsesToOutputStream(boolean theEncodeResponsesToOutputStream) {
+		myEncodeResponsesToOutputStream = theEncodeResponsesToOutputStream;
+	}
+
 	private String resolveRequestPath(RequestDetails theRequestDetails, String theRequestPath) {
 		if (myTenantIdentificationStrategy != null) {
 			theRequestPath = myTenantIdentificationStrategy.resolveRelativeUrl(theRequestPath, theRequestDetails);
@@ -254,7 +254,45 @@ public class RestfulServerUtils {
 			Map<String, String[]> theRequestParameters) {
 		StringBuilder b = new StringBuilder();
 		b.append(theBundleLinks.serverBase);
+		appendRequestPath(b, requestPath, tenantId);
 
+		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
+		params.put(Constants.PARAM_OFFSET, new String[] {String.valueOf(theOffset)});
+		params.put(Constants.PARAM_COUNT, new String[] {String.valueOf(theCount)});
+
+		appendSortedParams(b, params);
+
+		return b.toString();
+	}
+
+	/**
+	 * Creates a paging link which repeats the original search, starting after the position
+	 * identified by the given keyset token (see {@link ca.uhn.fhir.rest.api.server.IBundleProvider#getNextPageKeyset()}).
+	 *
+	 * @since 8.4.0
+	 */
+	public static String createKeysetPagingLink(
+			BundleLinks theBundleLinks,
+			String theRequestPath,
+			String theTenantId,
+			String theKeyset,
+			Integer theCount,
+			Map<String, String[]> theRequestParameters) {
+		StringBuilder b = new StringBuilder();
+		b.append(theBundleLinks.serverBase);
+		appendRequestPath(b, theRequestPath, theTenantId);
+
+		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
+		params.remove(Constants.PARAM_OFFSET);
+		params.put(Constants.PARAM_KEYSET, new String[] {theKeyset});
+		params.put(Constants.PARAM_COUNT, new String[] {String.valueOf(theCount)});
+
+		appendSortedParams(b, params);
+
+		return b.toString();
+	}
+
+	private static void appendRequestPath(StringBuilder b, String requestPath, String tenantId) {
 		if (isNotBlank(requestPath)) {
 			b.append('/');
 			if (isNotBlank(tenantId) && requestPath.startsWith(tenantId + "/")) {
@@ -263,11 +301,9 @@ public class RestfulServerUtils {
 				b.append(requestPath);
 			}
 		}
+	}
 
-		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
-		params.put(Constants.PARAM_OFFSET, new String[] {String.valueOf(theOffset)});
-		params.put(Constants.PARAM_COUNT, new String[] {String.valueOf(theCount)});
-
+	private static void appendSortedParams(StringBuilder b, Map<String, String[]> params) {
 		boolean first = true;
 		for (String nextParamName : new TreeSet<>(params.keySet())) {
 			for (String nextParamValue : params.get(nextParamName)) {
@@ -282,8 +318,6 @@ public class RestfulServerUtils {
 				b.append(UrlUtil.escapeUrlParam(nextParamValue));
 			}
 		}
-
-		return b.toString();
 	}
 
 	public static String createPagingLink(
@@ -1026,11 +1060,24 @@ public class RestfulServerUtils {
 		}
 		String charset = Constants.CHARSET_NAME_UTF8;
 
+		if (theResource != null
+				&& !encodingDomainResourceAsText
+				&& theServer.isEncodeResponsesToOutputStream()
+				&& !hasOutgoingWriterCreatedHooks(theServer)) {
+			OutputStream outputStream =
+					response.getResponseTextOutputStream(theStatusCode, contentType, charset, respondGzip);
+			if (outputStream != null) {
+				FhirVersionEnum forVersion = theResource.getStructureFhirVersionEnum();
+				IParser parser = getNewParser(theServer.getFhirContext(), forVersion, theRequestDetails);
+				parser.encodeResourceToOutputStream(theResource, outputStream);
+				return response.commitResponse(outputStream);
+			}
+		}
+
 		Writer writer = response.getResponseWriter(theStatusCode, contentType, charset, respondGzip);
 
 		// Interceptor call: SERVER_OUTGOING_WRITER_CREATED
-		if (theServer.getInterceptorService() != null
-				&& theServer.getInterceptorService().hasHooks(Pointcut.SERVER_OUTGOING_WRITER_CREATED)) {
+		if (hasOutgoingWriterCreatedHooks(theServer)) {
 			HookParams params = new HookParams()
 					.add(Writer.class, writer)
 					.add(RequestDetails.class, theRequestDetails)
@@ -1064,6 +1111,11 @@ public class RestfulServerUtils {
 		return response.commitResponse(writer);
 	}
 
+	private static boolean hasOutgoingWriterCreatedHooks(IRestfulServerDefaults theServer) {
+		return theServer.getInterceptorService() != null
+				&& theServer.getInterceptorService().hasHooks(Pointcut.SERVER_OUTGOING_WRITER_CREATED);
+	}
+
 	private static String getBinaryContentTypeOrDefault(IBaseBinary theBinary) {
 		String contentType;
 		if (isNotBlank(theBinary.getContentType())) {
@@ -38,9 +38,11 @@ public class SimpleBundleProvider implements IBundleProvider {
 	private final String myUuid;
 	private Integer myPreferredPageSize;
 	private Integer mySize;
+	private boolean mySizeEstimated;
 	private IPrimitiveType<Date> myPublished = InstantDt.withCurrentTime();
 	private Integer myCurrentPageOffset;
 	private Integer myCurrentPageSize;
+	private String myNextPageKeyset;
 	private ResponsePage.ResponsePageBuilder myPageBuilder;
 
 	/**
@@ -127,6 +129,21 @@ public class SimpleBundleProvider implements IBundleProvider {
 		myCurrentPageSize = theCurrentPageSize;
 	}
 
+	/**
+	 * @since 8.4.0
+	 */
+	@Override
+	public String getNextPageKeyset() {
+		return myNextPageKeyset;
+	}
+
+	/**
+	 * @since 8.4.0
+	 */
+	public void setNextPageKeyset(String theNextPageKeyset) {
+		myNextPageKeyset = theNextPageKeyset;
+	}
+
 	/**
 	 * Returns the results stored in this provider
 	 */
@@ -197,6 +214,25 @@ public class SimpleBundleProvider implements IBundleProvider {
 		return mySize;
 	}
 
+	/**
+	 * @since 8.4.0
+	 */
+	@Override
+	public boolean isSizeEstimated() {
+		return mySizeEstimated;
+	}
+
+	/**
+	 * Marks the value supplied to {@link #setSize(Integer)} as being an estimate
+	 * rather than an exact count
+	 *
+	 * @since 8.4.0
+	 */
+	public SimpleBundleProvider setSizeEstimated(boolean theSizeEstimated) {
+		mySizeEstimated = theSizeEstimated;
+		return this;
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this).append("mySize", mySize).toString();
@@ -32,6 +32,7 @@ import ca.uhn.fhir.rest.api.BundleLinks;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.IVersionSpecificBundleFactory;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.IRestfulServer;
@@ -199,6 +200,7 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 							responseBundleType,
 							linkSelf);
 					responseObject = myResponseBundleBuilder.buildResponseBundle(responseBundleRequest);
+					addSearchTotalModeHeader(theRequest, (IBundleProvider) resultObj);
 				}
 				break;
 			}
@@ -221,6 +223,27 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 		return responseObject;
 	}
 
+	/**
+	 * Lets the client know whether the total in the response bundle is exact, since
+	 * <code>Bundle.total</code> has no way of indicating that a total is an estimate
+	 */
+	private static void addSearchTotalModeHeader(RequestDetails theRequest, IBundleProvider theBundleProvider) {
+		if (theRequest.getResponse() == null) {
+			return;
+		}
+		if (theBundleProvider.isSizeEstimated()) {
+			theRequest
+					.getResponse()
+					.addHeader(Constants.HEADER_X_SEARCH_TOTAL_MODE, SearchTotalModeEnum.ESTIMATED.getCode());
+		} else if (theBundleProvider.size() != null
+				&& SearchTotalModeParameter.getTypeForRequestOrThrowInvalidRequestException(theRequest)
+						== SearchTotalModeEnum.ESTIMATED) {
+			theRequest
+					.getResponse()
+					.addHeader(Constants.HEADER_X_SEARCH_TOTAL_MODE, SearchTotalModeEnum.ACCURATE.getCode());
+		}
+	}
+
 	private ResponseBundleRequest buildResponseBundleRequest(
 			IRestfulServer<?> theServer,
 			RequestDetails theRequest,
@@ -161,7 +161,9 @@ public class ResponsePage {
 			return;
 		}
 
-		if (isBundleProviderOffsetPaging()) {
+		if (myBundleProvider != null && StringUtils.isNotBlank(myBundleProvider.getNextPageKeyset())) {
+			myPagingStyle = PagingStyle.KEYSET;
+		} else if (isBundleProviderOffsetPaging()) {
 			myPagingStyle = PagingStyle.BUNDLE_PROVIDER_OFFSETS;
 		} else if (myIsUsingOffsetPages) {
 			myPagingStyle = PagingStyle.NONCACHED_OFFSET;
@@ -200,6 +202,8 @@ public class ResponsePage {
 			case BUNDLE_PROVIDER_OFFSETS:
 			case BUNDLE_PROVIDER_PAGE_IDS:
 				return StringUtils.isNotBlank(myBundleProvider.getNextPageId());
+			case KEYSET:
+				return true;
 			case NONCACHED_OFFSET:
 				if (myNumTotalResults == null) {
 					if (hasNextPageWithoutKnowingTotal()) {
@@ -293,6 +297,15 @@ public class ResponsePage {
 							myNumToReturn,
 							myResponseBundleRequest.getRequestParameters());
 					break;
+				case KEYSET:
+					next = RestfulServerUtils.createKeysetPagingLink(
+							theLinks,
+							myResponseBundleRequest.requestDetails.getRequestPath(),
+							myResponseBundleRequest.requestDetails.getTenantId(),
+							myBundleProvider.getNextPageKeyset(),
+							myNumToReturn,
+							myResponseBundleRequest.getRequestParameters());
+					break;
 				case BUNDLE_PROVIDER_PAGE_IDS:
 					next = RestfulServerUtils.createPagingLink(
 							theLinks,
@@ -503,6 +516,9 @@ public class ResponsePage {
 	 * 							provide them. bundle provider will have a currentPageId
 	 * * Saved Search			- the server has a saved search object with an id that it
 	 * 							uses to page through results.
+	 * * Keyset				- the bundle provider supplies a keyset token identifying the
+	 * 							last returned resource, and the next page repeats the search
+	 * 							starting after it.
 	 */
 	private enum PagingStyle {
 		/**
@@ -524,6 +540,12 @@ public class ResponsePage {
 		 * that is used to page through results.
 		 */
 		SAVED_SEARCH,
+		/**
+		 * Paging is done by repeating the search, starting after
+		 * the keyset token provided by the bundle provider.
+		 * Only forward (next) links are available.
+		 */
+		KEYSET,
 		/**
 		 * No paging is done at all.
 		 * No previous nor next links will be available, even if previous or next
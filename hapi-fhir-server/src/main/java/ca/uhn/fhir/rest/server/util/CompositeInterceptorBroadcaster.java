@@ -31,6 +31,7 @@ import jakarta.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -60,6 +61,9 @@ public class CompositeInterceptorBroadcaster implements IInterceptorBroadcaster
 				|| thePointcut.getReturnType() == thePointcut.getBooleanReturnTypeForEnum();
 
 		List<IInvoker> invokers = getInvokersForPointcut(thePointcut);
+		if (invokers.isEmpty()) {
+			return true;
+		}
 		Object retVal = BaseInterceptorService.callInvokers(thePointcut, theParams, invokers);
 		retVal = defaultIfNull(retVal, true);
 		return (Boolean) retVal;
@@ -77,15 +81,32 @@ public class CompositeInterceptorBroadcaster implements IInterceptorBroadcaster
 	@Override
 	@Nonnull
 	public List<IInvoker> getInvokersForPointcut(Pointcut thePointcut) {
-		List<IInvoker> invokers = new ArrayList<>();
+		List<IInvoker> invokers = null;
+		boolean haveMultiple = false;
 		for (IInterceptorBroadcaster services : myServices) {
 			if (services.hasHooks(thePointcut)) {
 				List<IInvoker> serviceInvokers = services.getInvokersForPointcut(thePointcut);
 				assert serviceInvokers != null;
-				invokers.addAll(serviceInvokers);
+				if (invokers == null) {
+					// Each broadcaster already returns its invokers sorted, so if only one
+					// broadcaster has hooks we can use its list as-is without copying
+					invokers = serviceInvokers;
+				} else {
+					if (!haveMultiple) {
+						invokers = new ArrayList<>(invokers);
+						haveMultiple = true;
+					}
+					invokers.addAll(serviceInvokers);
+				}
 			}
 		}
-		invokers.sort(Comparator.naturalOrder());
+
+		if (invokers == null) {
+			return Collections.emptyList();
+		}
+		if (haveMultiple) {
+			invokers.sort(Comparator.naturalOrder());
+		}
 		return invokers;
 	}
 
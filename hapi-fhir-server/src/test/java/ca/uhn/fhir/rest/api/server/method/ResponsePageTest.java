@@ -21,6 +21,7 @@ import java.util.HashSet;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -312,6 +313,47 @@ public class ResponsePageTest {
 		verifyNextAndPreviousLinks(theHasPreviousBoolean, theHasNextBoolean);
 	}
 
+	@ParameterizedTest
+	@CsvSource({
+		"false",
+		"true"
+	})
+	public void keyset_setsNextLinkOnly_test(boolean theHasNextBoolean) {
+		// setup
+		myBundleBuilder
+			.setBundleProvider(myBundleProvider)
+			.setResources(myList)
+			.setNumToReturn(10);
+		myRequest.requestDetails.setRequestPath("Patient");
+		myRequest.requestDetails.addParameter("_sort", new String[]{"-_lastUpdated"});
+		myRequest.requestDetails.addParameter("_keyset", new String[]{"previous-token"});
+
+		RequestedPage requestedPage = new RequestedPage(
+			null, // offset
+			10 // limit
+		);
+		ResponsePage page = myBundleBuilder.build();
+
+		page.setResponseBundleRequest(myRequest);
+		page.setRequestedPage(requestedPage);
+
+		// when
+		if (theHasNextBoolean) {
+			when(myBundleProvider.getNextPageKeyset())
+				.thenReturn("next-token");
+		}
+
+		// test
+		page.setNextPageIfNecessary(myLinks);
+		page.setPreviousPageIfNecessary(myLinks);
+
+		// verify
+		verifyNextAndPreviousLinks(false, theHasNextBoolean);
+		if (theHasNextBoolean) {
+			assertEquals("http://localhost/Patient?_count=10&_keyset=next-token&_sort=-_lastUpdated", myLinks.getNext());
+		}
+	}
+
 	private ResponseBundleRequest createBundleRequest(int theOffset) {
 		RequestDetails details = new SystemRequestDetails();
 		details.setFhirServerBase("http://serverbase.com");
@@ -24,6 +24,7 @@ import ca.uhn.fhir.i18n.Msg;
 
 import java.util.Iterator;
 import java.util.ServiceLoader;
+import java.util.function.ToIntBiFunction;
 
 @SuppressWarnings("unchecked")
 public class CacheFactory {
@@ -67,4 +68,15 @@ public class CacheFactory {
 		CacheProvider<K, V> cacheProvider = getCacheProvider();
 		return cacheProvider.create(theTimeoutMillis, theMaximumSize, cacheLoader);
 	}
+
+	/**
+	 * @param theTimeoutMillis The time after being written that entries expire, or <code>0</code>
+	 *                         for entries which never expire
+	 * @since 8.4.0
+	 */
+	public static <K, V> Cache<K, V> buildWeighted(
+			long theTimeoutMillis, long theMaximumWeight, ToIntBiFunction<K, V> theWeigher) {
+		CacheProvider<K, V> cacheProvider = getCacheProvider();
+		return cacheProvider.createWeighted(theTimeoutMillis, theMaximumWeight, theWeigher);
+	}
 }
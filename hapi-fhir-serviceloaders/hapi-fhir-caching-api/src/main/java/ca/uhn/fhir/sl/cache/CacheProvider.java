@@ -20,6 +20,10 @@ package ca.uhn.fhir.sl.cache;
  * #L%
  */
 
+import ca.uhn.fhir.i18n.Msg;
+
+import java.util.function.ToIntBiFunction;
+
 public interface CacheProvider<K, V> {
 	Cache create(long timeoutMillis);
 
@@ -30,4 +34,17 @@ public interface CacheProvider<K, V> {
 	LoadingCache create(long timeoutMillis, CacheLoader<K, V> cacheLoader);
 
 	LoadingCache create(long timeoutMillis, long maximumSize, CacheLoader<K, V> cacheLoader);
+
+	/**
+	 * Creates a cache which is bounded by the total weight of its entries (as calculated by the
+	 * given weigher) instead of by the number of entries.
+	 *
+	 * @param timeoutMillis The time after being written that entries expire, or <code>0</code> for
+	 *                      entries which never expire
+	 * @since 8.4.0
+	 */
+	default Cache createWeighted(long timeoutMillis, long maximumWeight, ToIntBiFunction<K, V> weigher) {
+		throw new UnsupportedOperationException(Msg.code(2656) + "Weighted caches are not supported by "
+				+ getClass().getName());
+	}
 }
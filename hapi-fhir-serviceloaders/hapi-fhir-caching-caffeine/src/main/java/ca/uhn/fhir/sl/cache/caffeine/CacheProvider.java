@@ -26,6 +26,7 @@ import ca.uhn.fhir.sl.cache.LoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntBiFunction;
 
 public class CacheProvider<K, V> implements ca.uhn.fhir.sl.cache.CacheProvider<K, V> {
 
@@ -67,4 +68,15 @@ public class CacheProvider<K, V> implements ca.uhn.fhir.sl.cache.CacheProvider<K
 				.maximumSize(maximumSize)
 				.build(loading::load));
 	}
+
+	@Override
+	public Cache<K, V> createWeighted(long timeoutMillis, long maximumWeight, ToIntBiFunction<K, V> weigher) {
+		Caffeine<Object, Object> builder = Caffeine.newBuilder();
+		if (timeoutMillis > 0) {
+			builder.expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		return new CacheDelegator<>(builder.maximumWeight(maximumWeight)
+				.weigher(weigher::applyAsInt)
+				.build());
+	}
 }
@@ -26,6 +26,7 @@ import ca.uhn.fhir.sl.cache.LoadingCache;
 import com.google.common.cache.CacheBuilder;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntBiFunction;
 
 public class CacheProvider<K, V> implements ca.uhn.fhir.sl.cache.CacheProvider<K, V> {
 
@@ -72,4 +73,15 @@ public class CacheProvider<K, V> implements ca.uhn.fhir.sl.cache.CacheProvider<K
 					}
 				}));
 	}
+
+	@Override
+	public Cache<K, V> createWeighted(long timeoutMillis, long maximumWeight, ToIntBiFunction<K, V> weigher) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+		if (timeoutMillis > 0) {
+			builder.expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		return new CacheDelegator<>(builder.maximumWeight(maximumWeight)
+				.weigher(weigher::applyAsInt)
+				.build());
+	}
 }
@@ -100,6 +100,18 @@ public class JpaStorageSettings extends StorageSettings {
 	public static final int DEFAULT_BUNDLE_BATCH_QUEUE_CAPACITY = 200;
 
 	public static final int DEFAULT_BULK_EXPORT_FILE_MAXIMUM_CAPACITY = 1_000;
+	/**
+	 * Default value for {@link #setSearchTotalEstimateThreshold(int)}
+	 *
+	 * @since 8.4.0
+	 */
+	public static final int DEFAULT_SEARCH_TOTAL_ESTIMATE_THRESHOLD = 1_000;
+	/**
+	 * Default value for {@link #setSearchSqlTemplateCacheSize(int)}
+	 *
+	 * @since 8.4.0
+	 */
+	public static final int DEFAULT_SEARCH_SQL_TEMPLATE_CACHE_SIZE = 0;
 	/**
 	 * Default value for {@link #setMaximumSearchResultCountInTransaction(Integer)}
 	 *
@@ -438,6 +450,76 @@ public class JpaStorageSettings extends StorageSettings {
 	 */
 	private boolean myWriteToSearchParamIdentityTable = true;
 
+	/**
+	 * @since 8.4.0
+	 */
+	private boolean myBatchIndexRowWritesEnabled = false;
+
+	/**
+	 * @since 8.4.0
+	 */
+	private boolean mySkipUnchangedIndexSynchronization = false;
+	/**
+	 * @since 8.4.0
+	 */
+	private long myResourceBodyCacheMaximumBytes = 0;
+	/**
+	 * @since 8.4.0
+	 */
+	private int mySearchResultParsingThreadCount = 0;
+	/**
+	 * @since 8.4.0
+	 */
+	private boolean myKeysetPagingEnabled = false;
+	/**
+	 * @since 8.4.0
+	 */
+	private String myKeysetPagingSigningKey;
+	/**
+	 * @since 8.4.0
+	 */
+	private long mySearchResultOffHeapCacheMaximumBytes = 0;
+	/**
+	 * @since 8.4.0
+	 */
+	private boolean mySearchResultOffHeapCacheOnly = false;
+	/**
+	 * @since 8.4.0
+	 */
+	private int mySearchTotalEstimateThreshold = DEFAULT_SEARCH_TOTAL_ESTIMATE_THRESHOLD;
+	/**
+	 * @since 8.4.0
+	 */
+	private int myIncludeLoadingThreadCount = 0;
+	/**
+	 * @since 8.4.0
+	 */
+	private int mySearchSqlTemplateCacheSize = DEFAULT_SEARCH_SQL_TEMPLATE_CACHE_SIZE;
+	/**
+	 * @since 8.4.0
+	 */
+	private int mySearchPartitionFanOutThreadCount = 0;
+	/**
+	 * @since 8.4.0
+	 */
+	private int mySearchChainMaterializationThreshold = 0;
+	/**
+	 * @since 8.4.0
+	 */
+	private boolean myResourceCountCacheIncrementalUpdates = false;
+	/**
+	 * @since 8.4.0
+	 */
+	private boolean myTransactionMultiTokenConditionalUrlPreFetchEnabled = false;
+	/**
+	 * @since 8.4.0
+	 */
+	private boolean myConditionalUrlMembershipFilterEnabled = false;
+	/**
+	 * @since 8.4.0
+	 */
+	private double myConditionalUrlMembershipFilterFalsePositiveRate = 0.01;
+
 	/**
 	 * Constructor
 	 */
@@ -2756,6 +2838,710 @@ public class JpaStorageSettings extends StorageSettings {
 		myWriteToSearchParamIdentityTable = theWriteToSearchParamIdentityTable;
 	}
 
+	/**
+	 * If enabled (default is <code>false</code>), new search parameter index rows (e.g. rows in
+	 * <code>HFJ_SPIDX_TOKEN</code> or <code>HFJ_RES_LINK</code>) are not persisted individually through
+	 * the JPA persistence context. Instead they are accumulated and written using multi-row
+	 * <code>INSERT</code> statements (one per table for each group of rows) every time the
+	 * persistence context is flushed, and index rows which are no longer needed are removed using
+	 * multi-row <code>DELETE</code> statements. This reduces the number of statements sent to the
+	 * database for resources with many index rows. Whether this improves overall write throughput
+	 * depends on the database and JDBC driver, so it should be measured before being enabled.
+	 * <p>
+	 * This setting has no effect if the database dialect does not support multi-row
+	 * <code>INSERT</code> statements (e.g. Oracle), or if search parameters are indexed using
+	 * Hibernate Search (see {@link #setHibernateSearchIndexSearchParams(boolean)}). Combo unique
+	 * index rows are always written through the persistence context.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isBatchIndexRowWritesEnabled() {
+		return myBatchIndexRowWritesEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), new search parameter index rows (e.g. rows in
+	 * <code>HFJ_SPIDX_TOKEN</code> or <code>HFJ_RES_LINK</code>) are not persisted individually through
+	 * the JPA persistence context. Instead they are accumulated and written using multi-row
+	 * <code>INSERT</code> statements (one per table for each group of rows) every time the
+	 * persistence context is flushed, and index rows which are no longer needed are removed using
+	 * multi-row <code>DELETE</code> statements. This reduces the number of statements sent to the
+	 * database for resources with many index rows. Whether this improves overall write throughput
+	 * depends on the database and JDBC driver, so it should be measured before being enabled.
+	 * <p>
+	 * This setting has no effect if the database dialect does not support multi-row
+	 * <code>INSERT</code> statements (e.g. Oracle), or if search parameters are indexed using
+	 * Hibernate Search (see {@link #setHibernateSearchIndexSearchParams(boolean)}). Combo unique
+	 * index rows are always written through the persistence context.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setBatchIndexRowWritesEnabled(boolean theBatchIndexRowWritesEnabled) {
+		myBatchIndexRowWritesEnabled = theBatchIndexRowWritesEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), a fingerprint of the search indexes written for
+	 * each resource is kept in a short-lived in-memory cache, keyed by the resource ID and version.
+	 * When a resource is updated and the fingerprint of the newly extracted indexes matches the one
+	 * recorded for the version being replaced, the existing index rows are not loaded, compared
+	 * or rewritten at all. This is useful for resources which are updated very frequently with
+	 * changes that don't affect any indexed values (e.g. devices re-sending the same observation).
+	 * <p>
+	 * The cache is local to each server, and entries are only trusted for the exact version they
+	 * were recorded against, so updates made by other servers in a cluster simply cause the
+	 * normal comparison to happen.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isSkipUnchangedIndexSynchronization() {
+		return mySkipUnchangedIndexSynchronization;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), a fingerprint of the search indexes written for
+	 * each resource is kept in a short-lived in-memory cache, keyed by the resource ID and version.
+	 * When a resource is updated and the fingerprint of the newly extracted indexes matches the one
+	 * recorded for the version being replaced, the existing index rows are not loaded, compared
+	 * or rewritten at all. This is useful for resources which are updated very frequently with
+	 * changes that don't affect any indexed values (e.g. devices re-sending the same observation).
+	 * <p>
+	 * The cache is local to each server, and entries are only trusted for the exact version they
+	 * were recorded against, so updates made by other servers in a cluster simply cause the
+	 * normal comparison to happen.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSkipUnchangedIndexSynchronization(boolean theSkipUnchangedIndexSynchronization) {
+		mySkipUnchangedIndexSynchronization = theSkipUnchangedIndexSynchronization;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>, meaning disabled),
+	 * the parsed body of each resource version loaded by the read, vread and search paths is kept
+	 * in an in-memory cache, up to approximately the given number of bytes in total. A cache hit
+	 * returns a copy of the cached resource, which avoids decompressing and parsing the stored body
+	 * and looking up provenance information again. DSTU2 resources, resources with contained
+	 * resources and resources parsed into custom types are not cached.
+	 * <p>
+	 * Entries are keyed by the resource ID, version and the last updated timestamp of the stored
+	 * version, so a version which is rewritten using history rewrite (including by another server
+	 * in a cluster) is loaded from the database again. Entries expire 10 minutes after being added.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public long getResourceBodyCacheMaximumBytes() {
+		return myResourceBodyCacheMaximumBytes;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>, meaning disabled),
+	 * the parsed body of each resource version loaded by the read, vread and search paths is kept
+	 * in an in-memory cache, up to approximately the given number of bytes in total. A cache hit
+	 * returns a copy of the cached resource, which avoids decompressing and parsing the stored body
+	 * and looking up provenance information again. DSTU2 resources, resources with contained
+	 * resources and resources parsed into custom types are not cached.
+	 * <p>
+	 * Entries are keyed by the resource ID, version and the last updated timestamp of the stored
+	 * version, so a version which is rewritten using history rewrite (including by another server
+	 * in a cluster) is loaded from the database again. Entries expire 10 minutes after being added.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setResourceBodyCacheMaximumBytes(long theResourceBodyCacheMaximumBytes) {
+		Validate.isTrue(theResourceBodyCacheMaximumBytes >= 0, "theResourceBodyCacheMaximumBytes must not be negative");
+		myResourceBodyCacheMaximumBytes = theResourceBodyCacheMaximumBytes;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>0</code>), large pages of
+	 * search results (and included resources) are decoded and parsed concurrently, using a shared
+	 * pool with at most this many threads in addition to the thread processing the request. All
+	 * database access (tags, provenance, externally stored resources) still happens on the request
+	 * thread, and results are always returned in the same order as they would be when parsing
+	 * serially.
+	 * <p>
+	 * When every pool thread is busy, the request thread parses the remaining resources itself,
+	 * so concurrent searches never queue behind each other.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public int getSearchResultParsingThreadCount() {
+		return mySearchResultParsingThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>0</code>), large pages of
+	 * search results (and included resources) are decoded and parsed concurrently, using a shared
+	 * pool with at most this many threads in addition to the thread processing the request. All
+	 * database access (tags, provenance, externally stored resources) still happens on the request
+	 * thread, and results are always returned in the same order as they would be when parsing
+	 * serially.
+	 * <p>
+	 * When every pool thread is busy, the request thread parses the remaining resources itself,
+	 * so concurrent searches never queue behind each other.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSearchResultParsingThreadCount(int theSearchResultParsingThreadCount) {
+		mySearchResultParsingThreadCount = theSearchResultParsingThreadCount;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), eligible searches are paged using the sort key of
+	 * the last returned resource (keyset or "seek" paging) instead of storing the search results in
+	 * the database and paging through them by offset. Each page is fetched by repeating the search
+	 * with a predicate which starts immediately after the previous page, so the cost of fetching a
+	 * page does not grow with its depth and no results are stored.
+	 * <p>
+	 * The <code>next</code> link of each page repeats the original search URL with an opaque
+	 * <code>_keyset</code> parameter. Keyset paged searches can only be paged forward, and do not
+	 * report a total. Keyset paging is used for type-level searches with no <code>_sort</code>, or
+	 * with a single <code>_sort</code> on <code>_id</code>, <code>_lastUpdated</code>, <code>_pid</code>,
+	 * or a date or token search parameter whose path can only ever hold a single value for a given
+	 * resource. Other searches, including those which request an offset, an accurate total, or
+	 * full-text criteria, are paged using stored results as usual.
+	 * </p>
+	 * <p>
+	 * The <code>_keyset</code> tokens are signed, see {@link #setKeysetPagingSigningKey(String)}.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isKeysetPagingEnabled() {
+		return myKeysetPagingEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), eligible searches are paged using the sort key of
+	 * the last returned resource (keyset or "seek" paging) instead of storing the search results in
+	 * the database and paging through them by offset. Each page is fetched by repeating the search
+	 * with a predicate which starts immediately after the previous page, so the cost of fetching a
+	 * page does not grow with its depth and no results are stored.
+	 * <p>
+	 * The <code>next</code> link of each page repeats the original search URL with an opaque
+	 * <code>_keyset</code> parameter. Keyset paged searches can only be paged forward, and do not
+	 * report a total. Keyset paging is used for type-level searches with no <code>_sort</code>, or
+	 * with a single <code>_sort</code> on <code>_id</code>, <code>_lastUpdated</code>, <code>_pid</code>,
+	 * or a date or token search parameter whose path can only ever hold a single value for a given
+	 * resource. Other searches, including those which request an offset, an accurate total, or
+	 * full-text criteria, are paged using stored results as usual.
+	 * </p>
+	 * <p>
+	 * The <code>_keyset</code> tokens are signed, see {@link #setKeysetPagingSigningKey(String)}.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setKeysetPagingEnabled(boolean theKeysetPagingEnabled) {
+		myKeysetPagingEnabled = theKeysetPagingEnabled;
+	}
+
+	/**
+	 * The secret used to sign the <code>_keyset</code> tokens issued when
+	 * {@link #setKeysetPagingEnabled(boolean) keyset paging} is enabled, so that clients can't
+	 * supply arbitrary keyset values. If not set (the default), a random key is generated when the
+	 * server starts, which means that outstanding <code>next</code> links stop working when the server
+	 * is restarted. In a clustered deployment, this must be set to the same value on every server.
+	 *
+	 * @since 8.4.0
+	 */
+	public String getKeysetPagingSigningKey() {
+		return myKeysetPagingSigningKey;
+	}
+
+	/**
+	 * The secret used to sign the <code>_keyset</code> tokens issued when
+	 * {@link #setKeysetPagingEnabled(boolean) keyset paging} is enabled, so that clients can't
+	 * supply arbitrary keyset values. If not set (the default), a random key is generated when the
+	 * server starts, which means that outstanding <code>next</code> links stop working when the server
+	 * is restarted. In a clustered deployment, this must be set to the same value on every server.
+	 *
+	 * @since 8.4.0
+	 */
+	public void setKeysetPagingSigningKey(String theKeysetPagingSigningKey) {
+		myKeysetPagingSigningKey = theKeysetPagingSigningKey;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>, meaning disabled),
+	 * the resource PIDs found by searches which are loaded asynchronously are also held in a
+	 * compact off-heap cache of up to approximately the given number of bytes, and pages of
+	 * search results are served from this cache instead of the <code>HFJ_SEARCH_RESULT</code>
+	 * table whenever the server holds the requested results. The least recently used searches
+	 * are evicted when the cache is full.
+	 * <p>
+	 * The PIDs are stored delta-encoded as variable length integers, which typically takes
+	 * 2-4 bytes per result instead of a database row.
+	 * </p>
+	 * <p>
+	 * This setting must be set before the application context is started.
+	 * </p>
+	 *
+	 * @see #setSearchResultOffHeapCacheOnly(boolean)
+	 * @since 8.4.0
+	 */
+	public long getSearchResultOffHeapCacheMaximumBytes() {
+		return mySearchResultOffHeapCacheMaximumBytes;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>, meaning disabled),
+	 * the resource PIDs found by searches which are loaded asynchronously are also held in a
+	 * compact off-heap cache of up to approximately the given number of bytes, and pages of
+	 * search results are served from this cache instead of the <code>HFJ_SEARCH_RESULT</code>
+	 * table whenever the server holds the requested results. The least recently used searches
+	 * are evicted when the cache is full.
+	 * <p>
+	 * The PIDs are stored delta-encoded as variable length integers, which typically takes
+	 * 2-4 bytes per result instead of a database row.
+	 * </p>
+	 * <p>
+	 * This setting must be set before the application context is started.
+	 * </p>
+	 *
+	 * @see #setSearchResultOffHeapCacheOnly(boolean)
+	 * @since 8.4.0
+	 */
+	public void setSearchResultOffHeapCacheMaximumBytes(long theSearchResultOffHeapCacheMaximumBytes) {
+		Validate.isTrue(
+				theSearchResultOffHeapCacheMaximumBytes >= 0,
+				"theSearchResultOffHeapCacheMaximumBytes must not be negative");
+		mySearchResultOffHeapCacheMaximumBytes = theSearchResultOffHeapCacheMaximumBytes;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>) and the
+	 * {@link #setSearchResultOffHeapCacheMaximumBytes(long) off-heap search result cache} is
+	 * enabled, search result PIDs are held only in the off-heap cache and are not written to
+	 * the <code>HFJ_SEARCH_RESULT</code> table at all, avoiding a row insert (and later delete)
+	 * per search result.
+	 * <p>
+	 * Only enable this on a single server, or in a cluster which routes every page request for a
+	 * given search to the server which performed the search (e.g. using sticky sessions).
+	 * If a page is requested from another server, or after the results have been evicted from
+	 * the cache, the search is treated as expired. A previous search with the same parameters
+	 * is only {@link #setReuseCachedSearchResultsForMillis(Long) reused} if this server holds
+	 * all of its results, and is otherwise performed again.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isSearchResultOffHeapCacheOnly() {
+		return mySearchResultOffHeapCacheOnly;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>) and the
+	 * {@link #setSearchResultOffHeapCacheMaximumBytes(long) off-heap search result cache} is
+	 * enabled, search result PIDs are held only in the off-heap cache and are not written to
+	 * the <code>HFJ_SEARCH_RESULT</code> table at all, avoiding a row insert (and later delete)
+	 * per search result.
+	 * <p>
+	 * Only enable this on a single server, or in a cluster which routes every page request for a
+	 * given search to the server which performed the search (e.g. using sticky sessions).
+	 * If a page is requested from another server, or after the results have been evicted from
+	 * the cache, the search is treated as expired. A previous search with the same parameters
+	 * is only {@link #setReuseCachedSearchResultsForMillis(Long) reused} if this server holds
+	 * all of its results, and is otherwise performed again.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSearchResultOffHeapCacheOnly(boolean theSearchResultOffHeapCacheOnly) {
+		mySearchResultOffHeapCacheOnly = theSearchResultOffHeapCacheOnly;
+	}
+
+	/**
+	 * When a client requests <code>_total=estimate</code>, up to this many matching
+	 * resources (default is {@value #DEFAULT_SEARCH_TOTAL_ESTIMATE_THRESHOLD}) are counted
+	 * exactly. If more resources than this match the search, the total is taken from the
+	 * database query planner's row estimate instead of being counted, and the response is
+	 * flagged as containing an estimated total.
+	 * <p>
+	 * Query planner estimates are currently only used on PostgreSQL. On other databases, and
+	 * whenever no planner estimate is available, no total is returned (as was previously the
+	 * case for <code>_total=estimated</code>) unless only the count was requested.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public int getSearchTotalEstimateThreshold() {
+		return mySearchTotalEstimateThreshold;
+	}
+
+	/**
+	 * When a client requests <code>_total=estimate</code>, up to this many matching
+	 * resources (default is {@value #DEFAULT_SEARCH_TOTAL_ESTIMATE_THRESHOLD}) are counted
+	 * exactly. If more resources than this match the search, the total is taken from the
+	 * database query planner's row estimate instead of being counted, and the response is
+	 * flagged as containing an estimated total.
+	 * <p>
+	 * Query planner estimates are currently only used on PostgreSQL. On other databases, and
+	 * whenever no planner estimate is available, no total is returned (as was previously the
+	 * case for <code>_total=estimated</code>) unless only the count was requested.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSearchTotalEstimateThreshold(int theSearchTotalEstimateThreshold) {
+		Validate.isTrue(theSearchTotalEstimateThreshold >= 0, "theSearchTotalEstimateThreshold must not be negative");
+		mySearchTotalEstimateThreshold = theSearchTotalEstimateThreshold;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>0</code>), the
+	 * <code>_include</code> and <code>_revinclude</code> specifications of a search which are
+	 * processed in the same round (e.g. all non-iterate includes, or each pass over the
+	 * <code>:iterate</code> includes) are loaded concurrently, using a shared pool with at most
+	 * this many threads. Each pool thread uses its own read-only database transaction (and
+	 * therefore its own database connection), so the connection pool should be sized accordingly.
+	 * <p>
+	 * When every pool thread is busy, the request thread loads the remaining includes itself,
+	 * so concurrent searches never queue behind each other.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public int getIncludeLoadingThreadCount() {
+		return myIncludeLoadingThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>0</code>), the
+	 * <code>_include</code> and <code>_revinclude</code> specifications of a search which are
+	 * processed in the same round (e.g. all non-iterate includes, or each pass over the
+	 * <code>:iterate</code> includes) are loaded concurrently, using a shared pool with at most
+	 * this many threads. Each pool thread uses its own read-only database transaction (and
+	 * therefore its own database connection), so the connection pool should be sized accordingly.
+	 * <p>
+	 * When every pool thread is busy, the request thread loads the remaining includes itself,
+	 * so concurrent searches never queue behind each other.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setIncludeLoadingThreadCount(int theIncludeLoadingThreadCount) {
+		Validate.isTrue(theIncludeLoadingThreadCount >= 0, "theIncludeLoadingThreadCount must not be negative");
+		myIncludeLoadingThreadCount = theIncludeLoadingThreadCount;
+	}
+
+	/**
+	 * Specifies the maximum number of distinct search structures (default is
+	 * {@value #DEFAULT_SEARCH_SQL_TEMPLATE_CACHE_SIZE}, meaning the cache is disabled) for which
+	 * the finished SQL statement, including the dialect-specific paging clause and the position
+	 * of each bind variable, is cached. Entries are keyed on the structure of the search (the
+	 * parameter names, the number of AND and OR values, modifiers, prefixes, date precisions and
+	 * which parts of each token are present) along with the sort, the partition and the requested
+	 * page, but not on the parameter values. A search with the same structure as an earlier one
+	 * binds its own values into the cached statement instead of rendering, validating and paging
+	 * it again. Searches which use built-in parameters such as <code>_id</code> or
+	 * <code>_tag</code>, or parameters resolved against stored data while the SQL is built (e.g.
+	 * reference and chained parameters, or value set expansions), are never cached.
+	 * <p>
+	 * This setting is read when the server starts, so changing it afterwards has no effect.
+	 * Cached statements reflect the other storage settings in effect when they were generated,
+	 * so if settings affecting search SQL are changed while the server is running, the cache
+	 * should be cleared by calling <code>SearchQueryTemplateCache#invalidateCaches()</code>.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public int getSearchSqlTemplateCacheSize() {
+		return mySearchSqlTemplateCacheSize;
+	}
+
+	/**
+	 * Specifies the maximum number of distinct search structures (default is
+	 * {@value #DEFAULT_SEARCH_SQL_TEMPLATE_CACHE_SIZE}, meaning the cache is disabled) for which
+	 * the finished SQL statement, including the dialect-specific paging clause and the position
+	 * of each bind variable, is cached. Entries are keyed on the structure of the search (the
+	 * parameter names, the number of AND and OR values, modifiers, prefixes, date precisions and
+	 * which parts of each token are present) along with the sort, the partition and the requested
+	 * page, but not on the parameter values. A search with the same structure as an earlier one
+	 * binds its own values into the cached statement instead of rendering, validating and paging
+	 * it again. Searches which use built-in parameters such as <code>_id</code> or
+	 * <code>_tag</code>, or parameters resolved against stored data while the SQL is built (e.g.
+	 * reference and chained parameters, or value set expansions), are never cached.
+	 * <p>
+	 * This setting is read when the server starts, so changing it afterwards has no effect.
+	 * Cached statements reflect the other storage settings in effect when they were generated,
+	 * so if settings affecting search SQL are changed while the server is running, the cache
+	 * should be cleared by calling <code>SearchQueryTemplateCache#invalidateCaches()</code>.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSearchSqlTemplateCacheSize(int theSearchSqlTemplateCacheSize) {
+		Validate.isTrue(theSearchSqlTemplateCacheSize >= 0, "theSearchSqlTemplateCacheSize must not be negative");
+		mySearchSqlTemplateCacheSize = theSearchSqlTemplateCacheSize;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>0</code>), a search which is
+	 * restricted to a list of several partitions is executed as one query per partition instead of a
+	 * single query with a <code>PARTITION_ID IN (...)</code> clause. This can allow databases with
+	 * declaratively partitioned tables to prune partitions. The per-partition queries run concurrently
+	 * using a shared pool with at most this many threads, each in its own read-only database transaction
+	 * (and therefore using its own database connection), and their results are merged into a single
+	 * stream in the requested sort order.
+	 * <p>
+	 * Searches with an offset, searches sorted on a string, token, reference, URI or location parameter,
+	 * and searches across all partitions are always executed as a single query. When every pool
+	 * thread is busy, the remaining partitions are queried by the request thread.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public int getSearchPartitionFanOutThreadCount() {
+		return mySearchPartitionFanOutThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>0</code>), a search which is
+	 * restricted to a list of several partitions is executed as one query per partition instead of a
+	 * single query with a <code>PARTITION_ID IN (...)</code> clause. This can allow databases with
+	 * declaratively partitioned tables to prune partitions. The per-partition queries run concurrently
+	 * using a shared pool with at most this many threads, each in its own read-only database transaction
+	 * (and therefore using its own database connection), and their results are merged into a single
+	 * stream in the requested sort order.
+	 * <p>
+	 * Searches with an offset, searches sorted on a string, token, reference, URI or location parameter,
+	 * and searches across all partitions are always executed as a single query. When every pool
+	 * thread is busy, the remaining partitions are queried by the request thread.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSearchPartitionFanOutThreadCount(int theSearchPartitionFanOutThreadCount) {
+		Validate.isTrue(
+				theSearchPartitionFanOutThreadCount >= 0, "theSearchPartitionFanOutThreadCount must not be negative");
+		mySearchPartitionFanOutThreadCount = theSearchPartitionFanOutThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>), the target side of a
+	 * chained search (e.g. the <code>Patient?identifier=...</code> part of
+	 * <code>Observation?subject:Patient.identifier=...</code>) and the source side of a reverse chained
+	 * search (e.g. the <code>Observation?code=...</code> part of
+	 * <code>Patient?_has:Observation:subject:code=...</code>) are first resolved by a separate query
+	 * into a list of resource IDs. If no more than this many resources match, the outer search uses
+	 * the list directly instead of joining to the nested query, which some databases plan poorly.
+	 * If more resources match, the nested query is used as normal.
+	 * <p>
+	 * Resolved lists are reused for the remainder of the same request only, since a list shared
+	 * between requests would not reflect resources created or modified afterwards. For the same
+	 * reason, lists are not reused while processing a transaction or batch.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public int getSearchChainMaterializationThreshold() {
+		return mySearchChainMaterializationThreshold;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>), the target side of a
+	 * chained search (e.g. the <code>Patient?identifier=...</code> part of
+	 * <code>Observation?subject:Patient.identifier=...</code>) and the source side of a reverse chained
+	 * search (e.g. the <code>Observation?code=...</code> part of
+	 * <code>Patient?_has:Observation:subject:code=...</code>) are first resolved by a separate query
+	 * into a list of resource IDs. If no more than this many resources match, the outer search uses
+	 * the list directly instead of joining to the nested query, which some databases plan poorly.
+	 * If more resources match, the nested query is used as normal.
+	 * <p>
+	 * Resolved lists are reused for the remainder of the same request only, since a list shared
+	 * between requests would not reflect resources created or modified afterwards. For the same
+	 * reason, lists are not reused while processing a transaction or batch.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSearchChainMaterializationThreshold(int theSearchChainMaterializationThreshold) {
+		Validate.isTrue(
+				theSearchChainMaterializationThreshold >= 0,
+				"theSearchChainMaterializationThreshold must not be negative");
+		mySearchChainMaterializationThreshold = theSearchChainMaterializationThreshold;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the cached resource counts shown in the server
+	 * CapabilityStatement and returned by <code>$get-resource-counts</code> are updated in memory as
+	 * resources are created, instead of only when the counts are periodically re-fetched from the
+	 * database. The periodic fetch still occurs, and corrects any drift (e.g. from expunged
+	 * resources). Counts of creations and deletions per resource type since the last fetch are also
+	 * made available through <code>ResourceCountCache#getStatistics()</code>.
+	 * <p>
+	 * Because the counts are kept current, enabling this setting also lengthens the interval between
+	 * the periodic fetches (which run a <code>GROUP BY</code> query over all resources) to at least
+	 * 24 hours.
+	 * </p>
+	 * <p>
+	 * This setting is read when the server starts, so changing it afterwards has no effect.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isResourceCountCacheIncrementalUpdates() {
+		return myResourceCountCacheIncrementalUpdates;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the cached resource counts shown in the server
+	 * CapabilityStatement and returned by <code>$get-resource-counts</code> are updated in memory as
+	 * resources are created, instead of only when the counts are periodically re-fetched from the
+	 * database. The periodic fetch still occurs, and corrects any drift (e.g. from expunged
+	 * resources). Counts of creations and deletions per resource type since the last fetch are also
+	 * made available through <code>ResourceCountCache#getStatistics()</code>.
+	 * <p>
+	 * Because the counts are kept current, enabling this setting also lengthens the interval between
+	 * the periodic fetches (which run a <code>GROUP BY</code> query over all resources) to at least
+	 * 24 hours.
+	 * </p>
+	 * <p>
+	 * This setting is read when the server starts, so changing it afterwards has no effect.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setResourceCountCacheIncrementalUpdates(boolean theResourceCountCacheIncrementalUpdates) {
+		myResourceCountCacheIncrementalUpdates = theResourceCountCacheIncrementalUpdates;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), conditional URLs in a FHIR transaction
+	 * (<code>ifNoneExist</code> URLs, conditional update/patch URLs and inline match URL references)
+	 * which consist of several token parameters, such as
+	 * <code>Patient?identifier=http://foo|1&amp;identifier=http://bar|1</code>, are resolved in bulk
+	 * before any resources are written. URLs with the same shape (same number of parameters) are
+	 * resolved together using a single query against the token index table, instead of performing
+	 * a separate search for each URL. Conditional URLs consisting of a single token parameter are
+	 * always resolved in bulk, regardless of this setting.
+	 * <p>
+	 * Any URL which matches more than one resource, or which can not be expressed purely in terms
+	 * of token index hashes, is resolved using a normal search as it would be if this setting was
+	 * disabled.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isTransactionMultiTokenConditionalUrlPreFetchEnabled() {
+		return myTransactionMultiTokenConditionalUrlPreFetchEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), conditional URLs in a FHIR transaction
+	 * (<code>ifNoneExist</code> URLs, conditional update/patch URLs and inline match URL references)
+	 * which consist of several token parameters, such as
+	 * <code>Patient?identifier=http://foo|1&amp;identifier=http://bar|1</code>, are resolved in bulk
+	 * before any resources are written. URLs with the same shape (same number of parameters) are
+	 * resolved together using a single query against the token index table, instead of performing
+	 * a separate search for each URL. Conditional URLs consisting of a single token parameter are
+	 * always resolved in bulk, regardless of this setting.
+	 * <p>
+	 * Any URL which matches more than one resource, or which can not be expressed purely in terms
+	 * of token index hashes, is resolved using a normal search as it would be if this setting was
+	 * disabled.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setTransactionMultiTokenConditionalUrlPreFetchEnabled(
+			boolean theTransactionMultiTokenConditionalUrlPreFetchEnabled) {
+		myTransactionMultiTokenConditionalUrlPreFetchEnabled = theTransactionMultiTokenConditionalUrlPreFetchEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), conditional URLs (such as <code>ifNoneExist</code>
+	 * URLs) which consist of a single token parameter with both a system and a value, such as
+	 * <code>Patient?identifier=http://foo|123</code>, are first checked against a probabilistic
+	 * membership filter (a Bloom filter) holding every token value indexed for that resource type and
+	 * search parameter. If the filter reports that the value has definitely never been indexed, the
+	 * search used to resolve the URL is skipped entirely. Otherwise the URL is resolved as normal.
+	 * <p>
+	 * Filters are held in memory on each server node. They are built in the background from the
+	 * token index table the first time a resource type and search parameter is used in a conditional
+	 * URL (URLs are resolved normally until the build completes), and then kept current from the
+	 * indexes written by this node. Filters are rebuilt automatically once they hold more values than
+	 * they were sized for.
+	 * </p>
+	 * <p>
+	 * Because filters only see the indexes written by the node holding them, this setting must only
+	 * be enabled on a node which is the only node writing the resources whose conditional URLs are
+	 * checked (for example a dedicated bulk loading node). Otherwise resources created by other nodes
+	 * may be missed and duplicated. This setting has no effect if partitioning is enabled.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isConditionalUrlMembershipFilterEnabled() {
+		return myConditionalUrlMembershipFilterEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), conditional URLs (such as <code>ifNoneExist</code>
+	 * URLs) which consist of a single token parameter with both a system and a value, such as
+	 * <code>Patient?identifier=http://foo|123</code>, are first checked against a probabilistic
+	 * membership filter (a Bloom filter) holding every token value indexed for that resource type and
+	 * search parameter. If the filter reports that the value has definitely never been indexed, the
+	 * search used to resolve the URL is skipped entirely. Otherwise the URL is resolved as normal.
+	 * <p>
+	 * Filters are held in memory on each server node. They are built in the background from the
+	 * token index table the first time a resource type and search parameter is used in a conditional
+	 * URL (URLs are resolved normally until the build completes), and then kept current from the
+	 * indexes written by this node. Filters are rebuilt automatically once they hold more values than
+	 * they were sized for.
+	 * </p>
+	 * <p>
+	 * Because filters only see the indexes written by the node holding them, this setting must only
+	 * be enabled on a node which is the only node writing the resources whose conditional URLs are
+	 * checked (for example a dedicated bulk loading node). Otherwise resources created by other nodes
+	 * may be missed and duplicated. This setting has no effect if partitioning is enabled.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	public void setConditionalUrlMembershipFilterEnabled(boolean theConditionalUrlMembershipFilterEnabled) {
+		myConditionalUrlMembershipFilterEnabled = theConditionalUrlMembershipFilterEnabled;
+	}
+
+	/**
+	 * The false positive rate targeted when sizing the membership filters used when
+	 * {@link #setConditionalUrlMembershipFilterEnabled(boolean)} is enabled, i.e. the fraction of
+	 * conditional URLs for values which have never been indexed that still need to be resolved
+	 * using a search. Lower values use more memory. Default is <code>0.01</code>.
+	 *
+	 * @since 8.4.0
+	 */
+	public double getConditionalUrlMembershipFilterFalsePositiveRate() {
+		return myConditionalUrlMembershipFilterFalsePositiveRate;
+	}
+
+	/**
+	 * The false positive rate targeted when sizing the membership filters used when
+	 * {@link #setConditionalUrlMembershipFilterEnabled(boolean)} is enabled, i.e. the fraction of
+	 * conditional URLs for values which have never been indexed that still need to be resolved
+	 * using a search. Lower values use more memory. Default is <code>0.01</code>.
+	 *
+	 * @since 8.4.0
+	 */
+	public void setConditionalUrlMembershipFilterFalsePositiveRate(
+			double theConditionalUrlMembershipFilterFalsePositiveRate) {
+		Validate.isTrue(
+				theConditionalUrlMembershipFilterFalsePositiveRate > 0
+						&& theConditionalUrlMembershipFilterFalsePositiveRate < 1,
+				"theConditionalUrlMembershipFilterFalsePositiveRate must be greater than 0 and less than 1");
+		myConditionalUrlMembershipFilterFalsePositiveRate = theConditionalUrlMembershipFilterFalsePositiveRate;
+	}
+
 	public enum StoreMetaSourceInformationEnum {
 		NONE(false, false),
 		SOURCE_URI(true, false),
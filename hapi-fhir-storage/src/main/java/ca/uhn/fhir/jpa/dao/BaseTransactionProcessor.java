@@ -87,14 +87,17 @@ import ca.uhn.fhir.util.AsyncUtil;
 import ca.uhn.fhir.util.BundleUtil;
 import ca.uhn.fhir.util.ElementUtil;
 import ca.uhn.fhir.util.FhirTerser;
+import ca.uhn.fhir.util.LazyThreadPool;
 import ca.uhn.fhir.util.ResourceReferenceInfo;
 import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.ThreadPoolUtil;
 import ca.uhn.fhir.util.UrlUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.ThreadUtils;
@@ -116,6 +119,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionCallback;
@@ -123,6 +127,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -140,6 +145,9 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -164,6 +172,7 @@ public abstract class BaseTransactionProcessor {
 	private static final String PUT = "PUT";
 	private static final String DELETE = "DELETE";
 	private static final String PATCH = "PATCH";
+	private static final int MIN_PREPARE_CHUNK_SIZE = 25;
 
 	@Autowired
 	private IRequestPartitionHelperSvc myRequestPartitionHelperService;
@@ -204,6 +213,11 @@ public abstract class BaseTransactionProcessor {
 
 	private TaskExecutor myExecutor;
 
+	private final LazyThreadPool myPrepareExecutor = new LazyThreadPool(() -> ThreadPoolUtil.newRequestWorkerThreadPool(
+			myStorageSettings.getTransactionPrepareThreadCount(),
+			"transaction-prepare-",
+			new ThreadPoolExecutor.CallerRunsPolicy()));
+
 	@Autowired
 	private IResourceVersionSvc myResourceVersionSvc;
 
@@ -231,6 +245,19 @@ public abstract class BaseTransactionProcessor {
 		return myExecutor;
 	}
 
+	@Nullable
+	private ThreadPoolTaskExecutor getPrepareExecutor() {
+		if (myStorageSettings.getTransactionPrepareThreadCount() > 1) {
+			return myPrepareExecutor.get();
+		}
+		return null;
+	}
+
+	@PreDestroy
+	public void stop() {
+		myPrepareExecutor.shutdown();
+	}
+
 	public <BUNDLE extends IBaseBundle> BUNDLE transaction(
 			RequestDetails theRequestDetails, BUNDLE theRequest, boolean theNestedMode) {
 		String actionName = "Transaction";
@@ -634,6 +661,7 @@ public abstract class BaseTransactionProcessor {
 			}
 		}
 		requestEntries.sort(new TransactionSorter(placeholderIds));
+		prepareTransactionEntries(requestEntries, transactionDetails, transactionStopWatch);
 
 		// perform all writes
 		prepareThenExecuteTransactionWriteOperations(
@@ -668,6 +696,110 @@ public abstract class BaseTransactionProcessor {
 		return response;
 	}
 
+	/**
+	 * Collects the placeholder IDs used by each write entry into a {@link TransactionDependencyGraph},
+	 * and reorders the entries so that entries whose conditional URLs use the placeholder ID of
+	 * another entry come after that entry. This happens before the database transaction is opened.
+	 * If {@link StorageSettings#getTransactionPrepareThreadCount()} is enabled, the references in
+	 * each resource are scanned too (concurrently for large bundles), and the graph is stored in
+	 * the transaction details so that the scanned references can be reused when pre-fetching.
+	 */
+	private void prepareTransactionEntries(
+			List<IBase> theEntries, TransactionDetails theTransactionDetails, StopWatch theTransactionStopWatch) {
+		List<IBase> writeEntries = new ArrayList<>(theEntries.size());
+		for (IBase next : theEntries) {
+			if (!"GET".equals(myVersionAdapter.getEntryRequestVerb(myContext, next))) {
+				writeEntries.add(next);
+			}
+		}
+		if (writeEntries.isEmpty()) {
+			return;
+		}
+
+		theTransactionStopWatch.startTask("Prepare " + writeEntries.size() + " write entries");
+
+		TransactionDependencyGraph.PreparedEntry[] prepared =
+				new TransactionDependencyGraph.PreparedEntry[writeEntries.size()];
+		boolean scanReferences = myStorageSettings.getTransactionPrepareThreadCount() > 0;
+		ThreadPoolTaskExecutor executor = scanReferences ? getPrepareExecutor() : null;
+		if (executor == null || writeEntries.size() < 2 * MIN_PREPARE_CHUNK_SIZE) {
+			prepareTransactionEntries(writeEntries, prepared, 0, writeEntries.size(), scanReferences);
+		} else {
+			// Scan in chunks, with this thread taking the last chunk itself
+			int threadCount = myStorageSettings.getTransactionPrepareThreadCount();
+			int chunkSize = Math.max(MIN_PREPARE_CHUNK_SIZE, (writeEntries.size() + threadCount) / (threadCount + 1));
+			List<Future<?>> futures = new ArrayList<>();
+			int chunkStart = 0;
+			while (chunkStart + chunkSize < writeEntries.size()) {
+				int from = chunkStart;
+				int to = chunkStart + chunkSize;
+				futures.add(executor.submit(() -> prepareTransactionEntries(writeEntries, prepared, from, to, true)));
+				chunkStart = to;
+			}
+			prepareTransactionEntries(writeEntries, prepared, chunkStart, writeEntries.size(), true);
+			for (Future<?> next : futures) {
+				awaitPrepare(next);
+			}
+		}
+
+		TransactionDependencyGraph graph = new TransactionDependencyGraph(Arrays.asList(prepared));
+		List<IBase> sortedEntries = graph.sortInDependencyOrder(theEntries);
+		for (int i = 0; i < sortedEntries.size(); i++) {
+			theEntries.set(i, sortedEntries.get(i));
+		}
+		if (scanReferences) {
+			theTransactionDetails.putUserData(TransactionDependencyGraph.TRANSACTION_DETAILS_KEY, graph);
+		}
+
+		theTransactionStopWatch.endCurrentTask();
+	}
+
+	private void prepareTransactionEntries(
+			List<IBase> theEntries,
+			TransactionDependencyGraph.PreparedEntry[] thePrepared,
+			int theFrom,
+			int theTo,
+			boolean theScanReferences) {
+		FhirTerser terser = myContext.newTerser();
+		for (int i = theFrom; i < theTo; i++) {
+			IBase entry = theEntries.get(i);
+			String verb = myVersionAdapter.getEntryRequestVerb(myContext, entry);
+			String fullUrl = myVersionAdapter.getFullUrl(entry);
+			Set<String> conditionalUrlPlaceholderIds =
+					TransactionDependencyGraph.extractPlaceholderIdsFromMatchUrl(toMatchUrl(entry));
+
+			List<IIdType> references = null;
+			IBaseResource resource = theScanReferences ? myVersionAdapter.getResource(entry) : null;
+			if (resource != null) {
+				List<ResourceReferenceInfo> referenceInfos = terser.getAllResourceReferences(resource);
+				references = new ArrayList<>(referenceInfos.size());
+				for (ResourceReferenceInfo next : referenceInfos) {
+					String referenceValue =
+							next.getResourceReference().getReferenceElement().getValue();
+					references.add(newIdType(referenceValue));
+				}
+			}
+
+			thePrepared[i] = new TransactionDependencyGraph.PreparedEntry(
+					entry, verb, fullUrl, conditionalUrlPlaceholderIds, references);
+		}
+	}
+
+	private static void awaitPrepare(Future<?> theFuture) {
+		try {
+			theFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2668) + "Interrupted while preparing transaction entries", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(
+					Msg.code(2669) + "Failed to prepare transaction entries: " + e.getCause(), e);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private void doTransactionReadOperations(
 			final RequestDetails theRequestDetails,
@@ -0,0 +1,83 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.Collection;
+
+/**
+ * Keeps a probabilistic record of the token values which have been indexed, in order to
+ * skip resolving conditional URLs (e.g. <code>ifNoneExist</code>) which can not possibly
+ * match anything.
+ *
+ * @see ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setConditionalUrlMembershipFilterEnabled(boolean)
+ * @since 8.4.0
+ */
+public interface IConditionalUrlMembershipFilterSvc {
+
+	/**
+	 * Checks whether a conditional URL could possibly match any resource
+	 *
+	 * @param theResourceType The resource type the URL applies to
+	 * @param theParamMap     The conditional URL, translated into a search parameter map
+	 * @param thePartitionId  The partition the URL is being resolved in
+	 */
+	@Nonnull
+	MembershipEnum check(
+			@Nonnull String theResourceType,
+			@Nonnull SearchParameterMap theParamMap,
+			@Nullable RequestPartitionId thePartitionId);
+
+	/**
+	 * Records the outcome of resolving a conditional URL for which {@link #check(String, SearchParameterMap, RequestPartitionId)}
+	 * returned {@link MembershipEnum#MAYBE_PRESENT}, which is used to track the observed
+	 * false positive rate
+	 *
+	 * @param theFound Did the URL match a resource?
+	 */
+	void recordMaybePresentOutcome(boolean theFound);
+
+	/**
+	 * Should be called whenever token index rows are written. The rows must already have
+	 * their hashes calculated.
+	 */
+	void tokensWritten(@Nonnull Collection<ResourceIndexedSearchParamToken> theTokens);
+
+	enum MembershipEnum {
+		/**
+		 * The URL can not match any resource, so there is no need to resolve it
+		 */
+		ABSENT,
+		/**
+		 * The URL might match a resource and needs to be resolved
+		 */
+		MAYBE_PRESENT,
+		/**
+		 * The URL can't be checked (e.g. because it isn't a single token parameter or the
+		 * filter hasn't been built yet) and needs to be resolved
+		 */
+		UNKNOWN
+	}
+}
@@ -30,6 +30,7 @@ import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import com.google.common.collect.Streams;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import org.apache.commons.io.IOUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -75,6 +76,28 @@ public interface ISearchBuilder<T extends IResourcePersistentId<?>> {
 			RequestDetails theRequest,
 			RequestPartitionId theRequestPartitionId);
 
+	/**
+	 * Returns the number of resources matching the given parameters, for use when the client
+	 * has requested <code>_total=estimate</code>. Up to <code>theExactCountThreshold</code>
+	 * matches are counted exactly, and any value greater than <code>theExactCountThreshold</code>
+	 * is an approximate count.
+	 * <p>
+	 * Returns <code>null</code> if no estimate can be obtained more cheaply than an exact count,
+	 * in which case no total should be reported. This is what the default implementation does.
+	 * </p>
+	 *
+	 * @since 8.4.0
+	 */
+	@Nullable
+	default Long createEstimatedCountQuery(
+			SearchParameterMap theParams,
+			String theSearchUuid,
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId,
+			int theExactCountThreshold) {
+		return null;
+	}
+
 	void setMaxResultsToFetch(Integer theMaxResultsToFetch);
 
 	void setDeduplicateInDatabase(boolean theShouldDeduplicateInDB);
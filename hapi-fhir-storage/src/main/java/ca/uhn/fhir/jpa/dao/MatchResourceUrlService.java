@@ -82,6 +82,9 @@ public class MatchResourceUrlService<T extends IResourcePersistentId> {
 	@Autowired
 	private MemoryCacheService myMemoryCacheService;
 
+	@Autowired(required = false)
+	private IConditionalUrlMembershipFilterSvc myConditionalUrlMembershipFilterSvc;
+
 	/**
 	 * Note that this will only return a maximum of 2 results!!
 	 */
@@ -136,7 +139,21 @@ public class MatchResourceUrlService<T extends IResourcePersistentId> {
 			}
 			paramMap.setLoadSynchronousUpTo(2);
 
-			retVal = search(paramMap, theResourceType, theRequest, theConditionalOperationTargetOrNull);
+			IConditionalUrlMembershipFilterSvc.MembershipEnum membership =
+					IConditionalUrlMembershipFilterSvc.MembershipEnum.UNKNOWN;
+			if (myConditionalUrlMembershipFilterSvc != null) {
+				membership = myConditionalUrlMembershipFilterSvc.check(resourceType, paramMap, thePartitionId);
+			}
+
+			if (membership == IConditionalUrlMembershipFilterSvc.MembershipEnum.ABSENT) {
+				ourLog.debug("Membership filter indicates match URL {} can not match any resource", matchUrl);
+				retVal = new HashSet<>();
+			} else {
+				retVal = search(paramMap, theResourceType, theRequest, theConditionalOperationTargetOrNull);
+				if (membership == IConditionalUrlMembershipFilterSvc.MembershipEnum.MAYBE_PRESENT) {
+					myConditionalUrlMembershipFilterSvc.recordMaybePresentOutcome(!retVal.isEmpty());
+				}
+			}
 		}
 
 		/*
@@ -0,0 +1,329 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.util.UrlUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Describes how the write entries in a FHIR transaction bundle depend on each other through
+ * placeholder IDs (e.g. <code>urn:uuid:...</code>). An entry depends on another entry if it
+ * references the placeholder ID in the other entry's <code>fullUrl</code>, either from within
+ * its resource or from its conditional URL.
+ * <p>
+ * Only dependencies through conditional URLs affect the order in which entries are
+ * processed, since placeholder IDs in conditional URLs are substituted as each entry is
+ * processed. References within resources are substituted once every entry has been
+ * processed, so they don't constrain the order.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public class TransactionDependencyGraph {
+
+	/**
+	 * The {@link ca.uhn.fhir.rest.api.server.storage.TransactionDetails} user data key under
+	 * which the graph for the current transaction is stored
+	 */
+	public static final String TRANSACTION_DETAILS_KEY = TransactionDependencyGraph.class.getName();
+
+	private final IdentityHashMap<IBase, PreparedEntry> myEntries = new IdentityHashMap<>();
+	private final Map<String, PreparedEntry> myPlaceholderIdToEntry = new HashMap<>();
+
+	/**
+	 * Constructor
+	 */
+	public TransactionDependencyGraph(@Nonnull Collection<PreparedEntry> thePreparedEntries) {
+		for (PreparedEntry next : thePreparedEntries) {
+			myEntries.put(next.getEntry(), next);
+			if (next.getPlaceholderId() != null) {
+				myPlaceholderIdToEntry.putIfAbsent(next.getPlaceholderId(), next);
+			}
+		}
+	}
+
+	/**
+	 * Returns the prepared details for the given request entry, or <code>null</code> if the
+	 * entry was not prepared (e.g. because it is a GET)
+	 */
+	@Nullable
+	public PreparedEntry getPreparedEntry(IBase theEntry) {
+		return myEntries.get(theEntry);
+	}
+
+	/**
+	 * Returns the other entries which provide a placeholder ID used by the given entry,
+	 * either within its resource or within its conditional URL
+	 */
+	@Nonnull
+	public List<IBase> getDependencies(IBase theEntry) {
+		PreparedEntry entry = myEntries.get(theEntry);
+		if (entry == null) {
+			return Collections.emptyList();
+		}
+		Set<IBase> retVal = Collections.newSetFromMap(new IdentityHashMap<>());
+		addDependencies(entry, entry.getConditionalUrlPlaceholderIds(), retVal);
+		addDependencies(entry, entry.getReferencedPlaceholderIds(), retVal);
+		return new ArrayList<>(retVal);
+	}
+
+	private void addDependencies(PreparedEntry theEntry, Set<String> thePlaceholderIds, Set<IBase> theDependencies) {
+		for (String next : thePlaceholderIds) {
+			PreparedEntry dependency = myPlaceholderIdToEntry.get(next);
+			if (dependency != null && dependency != theEntry) {
+				theDependencies.add(dependency.getEntry());
+			}
+		}
+	}
+
+	/**
+	 * Reorders the given entries so that within each run of consecutive entries with the same
+	 * verb, an entry whose conditional URL uses the placeholder ID of another entry in the run
+	 * comes after that entry. Otherwise the relative order of the entries is preserved. If the
+	 * entries in a run depend on each other in a cycle, the entries in the cycle are left in
+	 * their existing order.
+	 *
+	 * @param theEntries The entries, which are expected to already be grouped by verb
+	 * @return A new list containing the same entries
+	 */
+	@Nonnull
+	public List<IBase> sortInDependencyOrder(@Nonnull List<IBase> theEntries) {
+		List<IBase> retVal = new ArrayList<>(theEntries.size());
+		int runStart = 0;
+		while (runStart < theEntries.size()) {
+			String verb = getVerb(theEntries.get(runStart));
+			int runEnd = runStart + 1;
+			while (runEnd < theEntries.size() && Objects.equals(verb, getVerb(theEntries.get(runEnd)))) {
+				runEnd++;
+			}
+			sortRun(theEntries.subList(runStart, runEnd), retVal);
+			runStart = runEnd;
+		}
+		return retVal;
+	}
+
+	private void sortRun(List<IBase> theRun, List<IBase> theOutput) {
+		IdentityHashMap<IBase, Integer> positions = new IdentityHashMap<>();
+		for (int i = 0; i < theRun.size(); i++) {
+			positions.put(theRun.get(i), i);
+		}
+
+		int[] unsatisfiedDependencyCounts = new int[theRun.size()];
+		List<List<Integer>> dependents = null;
+		for (int i = 0; i < theRun.size(); i++) {
+			PreparedEntry entry = myEntries.get(theRun.get(i));
+			if (entry == null) {
+				continue;
+			}
+			for (String next : entry.getConditionalUrlPlaceholderIds()) {
+				PreparedEntry dependency = myPlaceholderIdToEntry.get(next);
+				Integer dependencyPosition = dependency != null ? positions.get(dependency.getEntry()) : null;
+				if (dependencyPosition != null && dependencyPosition != i) {
+					if (dependents == null) {
+						dependents = new ArrayList<>(theRun.size());
+						for (int j = 0; j < theRun.size(); j++) {
+							dependents.add(new ArrayList<>(1));
+						}
+					}
+					dependents.get(dependencyPosition).add(i);
+					unsatisfiedDependencyCounts[i]++;
+				}
+			}
+		}
+
+		if (dependents == null) {
+			theOutput.addAll(theRun);
+			return;
+		}
+
+		// Kahn's algorithm, always taking the earliest ready entry so the existing order is kept where possible
+		PriorityQueue<Integer> ready = new PriorityQueue<>();
+		for (int i = 0; i < theRun.size(); i++) {
+			if (unsatisfiedDependencyCounts[i] == 0) {
+				ready.add(i);
+			}
+		}
+		boolean[] added = new boolean[theRun.size()];
+		while (!ready.isEmpty()) {
+			int next = ready.poll();
+			added[next] = true;
+			theOutput.add(theRun.get(next));
+			for (int dependent : dependents.get(next)) {
+				if (--unsatisfiedDependencyCounts[dependent] == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+
+		// Anything left is part of (or depends on) a cycle
+		for (int i = 0; i < theRun.size(); i++) {
+			if (!added[i]) {
+				theOutput.add(theRun.get(i));
+			}
+		}
+	}
+
+	@Nullable
+	private String getVerb(IBase theEntry) {
+		PreparedEntry entry = myEntries.get(theEntry);
+		return entry != null ? entry.getVerb() : null;
+	}
+
+	/**
+	 * Extracts the placeholder IDs used as parameter values in the given conditional URL, in
+	 * the same way that {@link BaseTransactionProcessor#performIdSubstitutionsInMatchUrl} finds
+	 * the values to substitute
+	 */
+	@Nonnull
+	public static Set<String> extractPlaceholderIdsFromMatchUrl(@Nullable String theMatchUrl) {
+		if (isBlank(theMatchUrl) || !theMatchUrl.contains("urn")) {
+			return Collections.emptySet();
+		}
+		Set<String> retVal = null;
+		int questionMarkIdx = theMatchUrl.indexOf('?');
+		for (String nextParam : theMatchUrl.substring(questionMarkIdx + 1).split("&")) {
+			int equalsIdx = nextParam.indexOf('=');
+			if (equalsIdx == -1) {
+				continue;
+			}
+			String value = nextParam.substring(equalsIdx + 1);
+			if (value.startsWith(BaseTransactionProcessor.URN_PREFIX_ESCAPED)) {
+				value = UrlUtil.unescape(value);
+			}
+			if (value.startsWith(BaseTransactionProcessor.URN_PREFIX)) {
+				if (retVal == null) {
+					retVal = new LinkedHashSet<>();
+				}
+				retVal.add(value);
+			}
+		}
+		return retVal != null ? retVal : Collections.emptySet();
+	}
+
+	/**
+	 * The details collected about a single write entry in a transaction bundle
+	 */
+	public static class PreparedEntry {
+
+		private final IBase myEntry;
+		private final String myVerb;
+		private final String myPlaceholderId;
+		private final Set<String> myConditionalUrlPlaceholderIds;
+		private final Set<String> myReferencedPlaceholderIds;
+		private final List<IIdType> myReferences;
+
+		/**
+		 * Constructor
+		 *
+		 * @param theEntry                         The request entry
+		 * @param theVerb                          The request verb for the entry
+		 * @param theFullUrl                       The entry <code>fullUrl</code>, if any
+		 * @param theConditionalUrlPlaceholderIds  The placeholder IDs used in the entry conditional URL
+		 * @param theReferences                    Copies of the references found in the entry resource, or
+		 *                                         <code>null</code> if the resource was not scanned
+		 */
+		public PreparedEntry(
+				@Nonnull IBase theEntry,
+				@Nonnull String theVerb,
+				@Nullable String theFullUrl,
+				@Nonnull Set<String> theConditionalUrlPlaceholderIds,
+				@Nullable List<IIdType> theReferences) {
+			Validate.notNull(theEntry, "theEntry must not be null");
+			myEntry = theEntry;
+			myVerb = theVerb;
+			myPlaceholderId = isNotBlank(theFullUrl) && theFullUrl.startsWith(BaseTransactionProcessor.URN_PREFIX)
+					? theFullUrl
+					: null;
+			myConditionalUrlPlaceholderIds = theConditionalUrlPlaceholderIds;
+			myReferences = theReferences;
+
+			Set<String> referencedPlaceholderIds = null;
+			if (theReferences != null) {
+				for (IIdType next : theReferences) {
+					String value = next.getValue();
+					if (value != null && value.startsWith(BaseTransactionProcessor.URN_PREFIX)) {
+						if (referencedPlaceholderIds == null) {
+							referencedPlaceholderIds = new LinkedHashSet<>();
+						}
+						referencedPlaceholderIds.add(value);
+					}
+				}
+			}
+			myReferencedPlaceholderIds =
+					referencedPlaceholderIds != null ? referencedPlaceholderIds : Collections.emptySet();
+		}
+
+		@Nonnull
+		public IBase getEntry() {
+			return myEntry;
+		}
+
+		@Nonnull
+		public String getVerb() {
+			return myVerb;
+		}
+
+		/**
+		 * Returns the entry <code>fullUrl</code> if it is a placeholder ID, or <code>null</code>
+		 */
+		@Nullable
+		public String getPlaceholderId() {
+			return myPlaceholderId;
+		}
+
+		@Nonnull
+		public Set<String> getConditionalUrlPlaceholderIds() {
+			return myConditionalUrlPlaceholderIds;
+		}
+
+		@Nonnull
+		public Set<String> getReferencedPlaceholderIds() {
+			return myReferencedPlaceholderIds;
+		}
+
+		/**
+		 * Returns copies of the references found in the entry resource when the entry was
+		 * prepared, or <code>null</code> if the entry has no resource to scan
+		 */
+		@Nullable
+		public List<IIdType> getReferences() {
+			return myReferences;
+		}
+	}
+}
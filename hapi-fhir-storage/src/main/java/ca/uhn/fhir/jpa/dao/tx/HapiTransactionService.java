@@ -636,6 +636,17 @@ public class HapiTransactionService implements IHapiTransactionService {
 				"Transaction must not be active but found an active transaction");
 	}
 
+	/**
+	 * Returns <code>true</code> if the calling thread is in a read-write transaction, whose
+	 * writes are not visible to transactions on other threads until it commits
+	 *
+	 * @since 8.4.0
+	 */
+	public static boolean isReadWriteTransactionActive() {
+		return TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
 	/**
 	 * Throws an {@link IllegalArgumentException} if no transaction is active
 	 */
@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Near cache for the parsed body of individual resource versions. Entries are keyed by
+ * resource PID, version and the last updated timestamp of the history row, so a history rewrite
+ * (which updates that timestamp) simply causes the rewritten row to be looked up under a new key,
+ * and an expunged version can't be looked up at all. This means that entries never need to be
+ * evicted individually, including when an entry for a stale body is added by a transaction which
+ * commits after the rewrite. Stale entries are removed by size-based eviction, or once they
+ * expire.
+ * <p>
+ * Parsed resources are mutable and are routinely modified by the caller after being returned,
+ * so the cached instance must never be handed out. Callers should return a clone of it instead
+ * (see {@link ca.uhn.fhir.util.FhirTerser#clone(org.hl7.fhir.instance.model.api.IBase)}), which
+ * is much cheaper than decoding and parsing the stored text again.
+ * </p>
+ *
+ * @see ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setResourceBodyCacheMaximumBytes(long)
+ * @since 8.4.0
+ */
+public interface IResourceBodyCacheSvc {
+
+	/**
+	 * Returns <code>false</code> if caching is disabled, in which case all other methods are no-ops
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Returns the cached body for the given resource version, or <code>null</code> if it is not cached
+	 */
+	@Nullable
+	CachedResourceBody getIfPresent(@Nonnull BodyKey theKey);
+
+	/**
+	 * Adds an entry to the cache once the current transaction (if any) successfully commits
+	 */
+	void putAfterCommit(@Nonnull BodyKey theKey, @Nonnull CachedResourceBody theBody);
+
+	void evictAll();
+
+	long getHitCount();
+
+	long getMissCount();
+
+	long getEstimatedSize();
+
+	final class BodyKey {
+
+		private final JpaPid myPid;
+		private final long myVersion;
+		private final long myUpdated;
+		private final int myHashCode;
+
+		public BodyKey(@Nonnull JpaPid thePid, long theVersion, long theUpdated) {
+			Validate.notNull(thePid, "thePid must not be null");
+			myPid = thePid;
+			myVersion = theVersion;
+			myUpdated = theUpdated;
+			myHashCode = Objects.hash(thePid, theVersion, theUpdated);
+		}
+
+		/**
+		 * Creates a key for the body stored in the given history row
+		 */
+		public static BodyKey forHistoryEntity(@Nonnull ResourceHistoryTable theHistory) {
+			Date updated = theHistory.getUpdatedDate();
+			return new BodyKey(
+					theHistory.getResourceId(), theHistory.getVersion(), updated != null ? updated.getTime() : 0);
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof BodyKey)) {
+				return false;
+			}
+			BodyKey that = (BodyKey) theO;
+			return myVersion == that.myVersion && myUpdated == that.myUpdated && myPid.equals(that.myPid);
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+
+		@Override
+		public String toString() {
+			return myPid + "/_history/" + myVersion + "@" + myUpdated;
+		}
+	}
+
+	final class CachedResourceBody {
+
+		private final IBaseResource myResource;
+		private final String mySourceUri;
+		private final String myRequestId;
+		private final int myWeight;
+
+		/**
+		 * @param theResource   The parsed resource, which must not be modified after being cached
+		 * @param theTextLength The length of the text the resource was parsed from, used to estimate
+		 *                      the size of the entry
+		 */
+		public CachedResourceBody(
+				@Nonnull IBaseResource theResource,
+				int theTextLength,
+				@Nullable String theSourceUri,
+				@Nullable String theRequestId) {
+			Validate.notNull(theResource, "theResource must not be null");
+			myResource = theResource;
+			mySourceUri = theSourceUri;
+			myRequestId = theRequestId;
+
+			// A parsed resource typically occupies several times the size of its text
+			long weight = 64L + 8L * theTextLength;
+			if (theSourceUri != null) {
+				weight += 2L * theSourceUri.length();
+			}
+			if (theRequestId != null) {
+				weight += 2L * theRequestId.length();
+			}
+			myWeight = (int) Math.min(Integer.MAX_VALUE, weight);
+		}
+
+		/**
+		 * Returns the cached resource instance. This must not be modified or returned to a caller.
+		 */
+		@Nonnull
+		public IBaseResource getResource() {
+			return myResource;
+		}
+
+		@Nullable
+		public String getSourceUri() {
+			return mySourceUri;
+		}
+
+		@Nullable
+		public String getRequestId() {
+			return myRequestId;
+		}
+
+		/**
+		 * Approximate number of bytes held by this entry
+		 */
+		int getWeight() {
+			return myWeight;
+		}
+	}
+}
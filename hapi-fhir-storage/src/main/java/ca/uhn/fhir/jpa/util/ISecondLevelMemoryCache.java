@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A second-level cache which sits beneath the per-node caches in {@link MemoryCacheService}.
+ * Implementations are typically backed by a store which is shared by every node in a
+ * cluster (e.g. a distributed cache), so that identities resolved or created on one node
+ * can be used by every other node without querying the database.
+ * <p>
+ * When a bean implementing this interface is present in the application context, the
+ * {@link MemoryCacheService} consults it whenever an entry is missing from the local cache
+ * for any cache which {@link #isEnabledFor(MemoryCacheService.CacheEnum) is enabled},
+ * and writes every entry that it stores or invalidates through to it.
+ * </p>
+ * <p>
+ * Keys and values are the same objects that are stored in the local caches. Values may also
+ * be {@link NegativeEntry#INSTANCE}, which records that a key is known to have no value (e.g.
+ * that no resource exists with a given ID). Implementations should expire entries after
+ * a reasonable period of time.
+ * </p>
+ *
+ * @see LocalSecondLevelMemoryCache
+ * @since 8.4.0
+ */
+public interface ISecondLevelMemoryCache {
+
+	/**
+	 * Should this second-level cache be used for the given cache?
+	 */
+	boolean isEnabledFor(@Nonnull MemoryCacheService.CacheEnum theCache);
+
+	/**
+	 * Should keys which are known to have no value be recorded in this cache? See
+	 * {@link MemoryCacheService#putNegativeAfterCommit(MemoryCacheService.CacheEnum, Collection)}.
+	 * Default is <code>false</code>.
+	 */
+	default boolean isNegativeCachingEnabled() {
+		return false;
+	}
+
+	/**
+	 * Returns the entries present in the cache for any of the given keys. Keys which are not
+	 * present are simply absent from the returned map.
+	 */
+	@Nonnull
+	<K, V> Map<K, V> getAll(@Nonnull MemoryCacheService.CacheEnum theCache, @Nonnull Collection<K> theKeys);
+
+	/**
+	 * Stores the given entries, replacing any existing entries for the same keys
+	 */
+	<K, V> void putAll(@Nonnull MemoryCacheService.CacheEnum theCache, @Nonnull Map<K, V> theEntries);
+
+	/**
+	 * Stores each of the given entries only if there is no existing entry for the same key.
+	 * This is used for negative entries, so that a negative entry resolved before a
+	 * concurrent create never replaces the entry stored for that create.
+	 */
+	<K, V> void putAllIfAbsent(@Nonnull MemoryCacheService.CacheEnum theCache, @Nonnull Map<K, V> theEntries);
+
+	/**
+	 * Removes any entries for the given keys
+	 */
+	<K> void invalidateAll(@Nonnull MemoryCacheService.CacheEnum theCache, @Nonnull Collection<K> theKeys);
+
+	/**
+	 * Removes all entries for the given cache
+	 */
+	void invalidateAll(@Nonnull MemoryCacheService.CacheEnum theCache);
+
+	/**
+	 * Value stored to record that a key is known to have no value
+	 */
+	enum NegativeEntry {
+		INSTANCE
+	}
+}
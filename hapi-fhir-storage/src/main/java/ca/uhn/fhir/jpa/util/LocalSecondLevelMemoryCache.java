@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.Validate;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Reference implementation of {@link ISecondLevelMemoryCache} which keeps its entries in
+ * a cache local to the JVM. This is mostly useful for testing, since several
+ * {@link MemoryCacheService} instances (each representing a node in a cluster) can share
+ * a single instance of this class. A clustered deployment would use an implementation
+ * backed by a shared store instead.
+ * <p>
+ * By default, this cache is enabled for {@link MemoryCacheService.CacheEnum#RESOURCE_LOOKUP_BY_FORCED_ID}
+ * and {@link MemoryCacheService.CacheEnum#PID_TO_FORCED_ID}, which are used by the ID helper
+ * service to resolve resource IDs.
+ * </p>
+ *
+ * @since 8.4.0
+ */
+public class LocalSecondLevelMemoryCache implements ISecondLevelMemoryCache {
+
+	public static final long DEFAULT_TIMEOUT_MILLIS = MINUTES.toMillis(10);
+	public static final int DEFAULT_MAXIMUM_SIZE = 100_000;
+
+	private final Set<MemoryCacheService.CacheEnum> myEnabledCaches;
+	private final EnumMap<MemoryCacheService.CacheEnum, Cache<Object, Object>> myCaches =
+			new EnumMap<>(MemoryCacheService.CacheEnum.class);
+	private boolean myNegativeCachingEnabled;
+
+	/**
+	 * Constructor
+	 */
+	public LocalSecondLevelMemoryCache() {
+		this(
+				DEFAULT_TIMEOUT_MILLIS,
+				DEFAULT_MAXIMUM_SIZE,
+				EnumSet.of(
+						MemoryCacheService.CacheEnum.RESOURCE_LOOKUP_BY_FORCED_ID,
+						MemoryCacheService.CacheEnum.PID_TO_FORCED_ID));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theTimeoutMillis The time after which entries expire
+	 * @param theMaximumSize   The maximum number of entries per cache
+	 * @param theEnabledCaches The caches to store entries for
+	 */
+	public LocalSecondLevelMemoryCache(
+			long theTimeoutMillis, int theMaximumSize, @Nonnull Set<MemoryCacheService.CacheEnum> theEnabledCaches) {
+		Validate.notNull(theEnabledCaches, "theEnabledCaches must not be null");
+		myEnabledCaches = EnumSet.noneOf(MemoryCacheService.CacheEnum.class);
+		myEnabledCaches.addAll(theEnabledCaches);
+		for (MemoryCacheService.CacheEnum next : myEnabledCaches) {
+			myCaches.put(next, CacheFactory.build(theTimeoutMillis, theMaximumSize));
+		}
+	}
+
+	@Override
+	public boolean isEnabledFor(@Nonnull MemoryCacheService.CacheEnum theCache) {
+		return myEnabledCaches.contains(theCache);
+	}
+
+	@Override
+	public boolean isNegativeCachingEnabled() {
+		return myNegativeCachingEnabled;
+	}
+
+	public void setNegativeCachingEnabled(boolean theNegativeCachingEnabled) {
+		myNegativeCachingEnabled = theNegativeCachingEnabled;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Nonnull
+	@Override
+	public <K, V> Map<K, V> getAll(@Nonnull MemoryCacheService.CacheEnum theCache, @Nonnull Collection<K> theKeys) {
+		return (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
+	}
+
+	@Override
+	public <K, V> void putAll(@Nonnull MemoryCacheService.CacheEnum theCache, @Nonnull Map<K, V> theEntries) {
+		Cache<Object, Object> cache = getCache(theCache);
+		synchronized (cache) {
+			cache.putAll(theEntries);
+		}
+	}
+
+	@Override
+	public <K, V> void putAllIfAbsent(@Nonnull MemoryCacheService.CacheEnum theCache, @Nonnull Map<K, V> theEntries) {
+		Cache<Object, Object> cache = getCache(theCache);
+		synchronized (cache) {
+			for (Map.Entry<K, V> next : theEntries.entrySet()) {
+				if (cache.getIfPresent(next.getKey()) == null) {
+					cache.put(next.getKey(), next.getValue());
+				}
+			}
+		}
+	}
+
+	@Override
+	public <K> void invalidateAll(@Nonnull MemoryCacheService.CacheEnum theCache, @Nonnull Collection<K> theKeys) {
+		getCache(theCache).invalidateAll(theKeys);
+	}
+
+	@Override
+	public void invalidateAll(@Nonnull MemoryCacheService.CacheEnum theCache) {
+		getCache(theCache).invalidateAll();
+	}
+
+	public long getEstimatedSize(@Nonnull MemoryCacheService.CacheEnum theCache) {
+		return getCache(theCache).estimatedSize();
+	}
+
+	@Nonnull
+	private Cache<Object, Object> getCache(@Nonnull MemoryCacheService.CacheEnum theCache) {
+		Cache<Object, Object> retVal = myCaches.get(theCache);
+		Validate.notNull(retVal, "Second-level cache is not enabled for %s", theCache);
+		return retVal;
+	}
+}
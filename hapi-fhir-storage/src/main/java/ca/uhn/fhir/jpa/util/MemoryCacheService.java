@@ -36,8 +36,11 @@ import org.hl7.fhir.instance.model.api.IIdType;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -58,6 +61,7 @@ public class MemoryCacheService {
 
 	private final JpaStorageSettings myStorageSettings;
 	private final EnumMap<CacheEnum, Cache<?, ?>> myCaches = new EnumMap<>(CacheEnum.class);
+	private ISecondLevelMemoryCache mySecondLevelCache;
 
 	public MemoryCacheService(JpaStorageSettings theStorageSettings) {
 		myStorageSettings = theStorageSettings;
@@ -85,6 +89,7 @@ public class MemoryCacheService {
 				case TAG_DEFINITION:
 				case RESOURCE_CONDITIONAL_CREATE_VERSION:
 				case FHIRPATH_EXPRESSION:
+				case RESOURCE_INDEX_FINGERPRINT:
 				default:
 					timeoutSeconds = SECONDS.convert(1, MINUTES);
 					maximumSize = 10000;
@@ -100,6 +105,20 @@ public class MemoryCacheService {
 		}
 	}
 
+	/**
+	 * Sets a second-level cache (typically shared by all nodes in a cluster) to consult when
+	 * an entry is missing from the local caches, and to write entries through to.
+	 *
+	 * @since 8.4.0
+	 */
+	public void setSecondLevelCache(@Nullable ISecondLevelMemoryCache theSecondLevelCache) {
+		mySecondLevelCache = theSecondLevelCache;
+	}
+
+	private boolean isSecondLevelCacheEnabled(CacheEnum theCache) {
+		return mySecondLevelCache != null && mySecondLevelCache.isEnabledFor(theCache);
+	}
+
 	public <K, T> T get(CacheEnum theCache, K theKey, Function<K, T> theSupplier) {
 		assert theCache.getKeyType().isAssignableFrom(theKey.getClass());
 		return doGet(theCache, theKey, theSupplier);
@@ -107,9 +126,31 @@ public class MemoryCacheService {
 
 	protected <K, T> T doGet(CacheEnum theCache, K theKey, Function<K, T> theSupplier) {
 		Cache<K, T> cache = getCache(theCache);
+		if (isSecondLevelCacheEnabled(theCache)) {
+			return cache.get(theKey, key -> {
+				T retVal = getFromSecondLevelCache(theCache, key);
+				if (retVal == null) {
+					retVal = theSupplier.apply(key);
+					if (retVal != null) {
+						mySecondLevelCache.putAll(theCache, Collections.singletonMap(key, retVal));
+					}
+				}
+				return retVal;
+			});
+		}
 		return cache.get(theKey, theSupplier);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Nullable
+	private <K, V> V getFromSecondLevelCache(CacheEnum theCache, K theKey) {
+		Object retVal = mySecondLevelCache.getAll(theCache, List.of(theKey)).get(theKey);
+		if (retVal instanceof ISecondLevelMemoryCache.NegativeEntry) {
+			return null;
+		}
+		return (V) retVal;
+	}
+
 	/**
 	 * Fetch an item from the cache if it exists, and use the loading function to
 	 * obtain it otherwise.
@@ -132,7 +173,14 @@ public class MemoryCacheService {
 	}
 
 	protected <K, V> V doGetIfPresent(CacheEnum theCache, K theKey) {
-		return (V) getCache(theCache).getIfPresent(theKey);
+		V retVal = (V) getCache(theCache).getIfPresent(theKey);
+		if (retVal == null && isSecondLevelCacheEnabled(theCache)) {
+			retVal = getFromSecondLevelCache(theCache, theKey);
+			if (retVal != null) {
+				getCache(theCache).put(theKey, retVal);
+			}
+		}
+		return retVal;
 	}
 
 	public <K, V> void put(CacheEnum theCache, K theKey, V theValue) {
@@ -144,6 +192,9 @@ public class MemoryCacheService {
 
 	protected <K, V> void doPut(CacheEnum theCache, K theKey, V theValue) {
 		getCache(theCache).put(theKey, theValue);
+		if (isSecondLevelCacheEnabled(theCache)) {
+			mySecondLevelCache.putAll(theCache, Collections.singletonMap(theKey, theValue));
+		}
 	}
 
 	/**
@@ -173,18 +224,154 @@ public class MemoryCacheService {
 		}
 	}
 
+	/**
+	 * Like {@link #putAfterCommit(CacheEnum, Object, Object)}, but stores several entries at once
+	 *
+	 * @since 8.4.0
+	 */
+	public <K, V> void putAllAfterCommit(CacheEnum theCache, Map<K, V> theEntries) {
+		if (theEntries.isEmpty()) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					doPutAll(theCache, theEntries);
+				}
+			});
+		} else {
+			doPutAll(theCache, theEntries);
+		}
+	}
+
+	private <K, V> void doPutAll(CacheEnum theCache, Map<K, V> theEntries) {
+		getCache(theCache).putAll(theEntries);
+		if (isSecondLevelCacheEnabled(theCache)) {
+			mySecondLevelCache.putAll(theCache, theEntries);
+		}
+	}
+
+	/**
+	 * Records in the second-level cache that the given keys are known to have no value, once the
+	 * current database transaction (if any) successfully commits. Negative entries are never stored
+	 * in the local caches, since other nodes have no way of invalidating them, and they never replace
+	 * an existing entry. This method does nothing unless a second-level cache is enabled for the given
+	 * cache and {@link ISecondLevelMemoryCache#isNegativeCachingEnabled() supports negative caching}.
+	 *
+	 * @see #getAllPresent(CacheEnum, Collection, Collection)
+	 * @since 8.4.0
+	 */
+	public <K> void putNegativeAfterCommit(CacheEnum theCache, Collection<K> theKeys) {
+		if (theKeys.isEmpty() || !isNegativeCachingEnabled(theCache)) {
+			return;
+		}
+		Map<K, ISecondLevelMemoryCache.NegativeEntry> entries = new HashMap<>(theKeys.size());
+		for (K next : theKeys) {
+			entries.put(next, ISecondLevelMemoryCache.NegativeEntry.INSTANCE);
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					mySecondLevelCache.putAllIfAbsent(theCache, entries);
+				}
+			});
+		} else {
+			mySecondLevelCache.putAllIfAbsent(theCache, entries);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if {@link #putNegativeAfterCommit(CacheEnum, Collection)} stores
+	 * anything for the given cache
+	 *
+	 * @since 8.4.0
+	 */
+	public boolean isNegativeCachingEnabled(CacheEnum theCache) {
+		return isSecondLevelCacheEnabled(theCache) && mySecondLevelCache.isNegativeCachingEnabled();
+	}
+
 	@SuppressWarnings("unchecked")
 	public <K, V> Map<K, V> getAllPresent(CacheEnum theCache, Collection<K> theKeys) {
 		return doGetAllPresent(theCache, theKeys);
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Like {@link #getAllPresent(CacheEnum, Collection)}, but any keys which the second-level cache
+	 * has recorded as having no value (see {@link #putNegativeAfterCommit(CacheEnum, Collection)})
+	 * are added to {@literal theNegativeKeysOutput}
+	 *
+	 * @since 8.4.0
+	 */
+	public <K, V> Map<K, V> getAllPresent(
+			CacheEnum theCache, Collection<K> theKeys, Collection<K> theNegativeKeysOutput) {
+		return doGetAllPresent(theCache, theKeys, theNegativeKeysOutput);
+	}
+
 	protected <K, V> Map<K, V> doGetAllPresent(CacheEnum theCache, Collection<K> theKeys) {
-		return (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
+		return doGetAllPresent(theCache, theKeys, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <K, V> Map<K, V> doGetAllPresent(
+			CacheEnum theCache, Collection<K> theKeys, @Nullable Collection<K> theNegativeKeysOutput) {
+		Map<K, V> retVal = (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
+		if (retVal.size() < theKeys.size() && isSecondLevelCacheEnabled(theCache)) {
+			List<K> missingKeys = new ArrayList<>(theKeys.size() - retVal.size());
+			for (K next : theKeys) {
+				if (!retVal.containsKey(next)) {
+					missingKeys.add(next);
+				}
+			}
+
+			Map<K, Object> secondLevelEntries = mySecondLevelCache.getAll(theCache, missingKeys);
+			if (!secondLevelEntries.isEmpty()) {
+				retVal = new HashMap<>(retVal);
+				Map<K, V> entriesToPromote = new HashMap<>(secondLevelEntries.size());
+				for (Map.Entry<K, Object> next : secondLevelEntries.entrySet()) {
+					if (next.getValue() instanceof ISecondLevelMemoryCache.NegativeEntry) {
+						if (theNegativeKeysOutput != null) {
+							theNegativeKeysOutput.add(next.getKey());
+						}
+					} else {
+						entriesToPromote.put(next.getKey(), (V) next.getValue());
+					}
+				}
+				getCache(theCache).putAll(entriesToPromote);
+				retVal.putAll(entriesToPromote);
+			}
+		}
+		return retVal;
 	}
 
 	public void invalidateAllCaches() {
 		myCaches.values().forEach(Cache::invalidateAll);
+		if (mySecondLevelCache != null) {
+			for (CacheEnum next : myCaches.keySet()) {
+				if (mySecondLevelCache.isEnabledFor(next)) {
+					mySecondLevelCache.invalidateAll(next);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Invalidates every entry in the local caches, but only the given keys in the second-level
+	 * cache (if any). Since the second-level cache is typically shared by every node, this avoids
+	 * flushing it when only a few known entries are affected (e.g. when a resource is expunged).
+	 * Any other entries in the second-level cache are left in place.
+	 *
+	 * @param theSecondLevelKeys The keys to invalidate in the second-level cache, by cache
+	 * @since 8.4.0
+	 */
+	public void invalidateAllCaches(Map<CacheEnum, ? extends Collection<?>> theSecondLevelKeys) {
+		myCaches.values().forEach(Cache::invalidateAll);
+		for (Map.Entry<CacheEnum, ? extends Collection<?>> next : theSecondLevelKeys.entrySet()) {
+			if (!next.getValue().isEmpty() && isSecondLevelCacheEnabled(next.getKey())) {
+				mySecondLevelCache.invalidateAll(next.getKey(), next.getValue());
+			}
+		}
 	}
 
 	private <K, T> Cache<K, T> getCache(CacheEnum theCache) {
@@ -195,9 +382,20 @@ public class MemoryCacheService {
 		return getCache(theCache).estimatedSize();
 	}
 
+	public <K> void invalidate(CacheEnum theCache, K theKey) {
+		assert theCache.getKeyType().isAssignableFrom(theKey.getClass());
+		getCache(theCache).invalidate(theKey);
+		if (isSecondLevelCacheEnabled(theCache)) {
+			mySecondLevelCache.invalidateAll(theCache, List.of(theKey));
+		}
+	}
+
 	public void invalidateCaches(CacheEnum... theCaches) {
 		for (CacheEnum next : theCaches) {
 			getCache(next).invalidateAll();
+			if (isSecondLevelCacheEnabled(next)) {
+				mySecondLevelCache.invalidateAll(next);
+			}
 		}
 	}
 
@@ -219,7 +417,12 @@ public class MemoryCacheService {
 		HISTORY_COUNT(HistoryCountKey.class),
 		NAME_TO_PARTITION(String.class),
 		ID_TO_PARTITION(Integer.class),
-		HASH_IDENTITY_TO_SEARCH_PARAM_IDENTITY(Long.class);
+		HASH_IDENTITY_TO_SEARCH_PARAM_IDENTITY(Long.class),
+		/**
+		 * Key type: {@link JpaPid}
+		 * Value type: {@literal ResourceIndexFingerprint}
+		 */
+		RESOURCE_INDEX_FINGERPRINT(JpaPid.class);
 
 		private final Class<?> myKeyType;
 
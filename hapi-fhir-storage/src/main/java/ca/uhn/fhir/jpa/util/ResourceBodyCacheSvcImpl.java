@@ -0,0 +1,118 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link IResourceBodyCacheSvc} implementation, which holds entries in a cache bounded by
+ * the approximate total size of the cached bodies. Entries also expire a fixed time after being
+ * added, which bounds how long an entry for a body which can no longer be looked up (e.g. because
+ * its version was rewritten or expunged) occupies space.
+ */
+public class ResourceBodyCacheSvcImpl implements IResourceBodyCacheSvc {
+
+	public static final long EXPIRE_AFTER_WRITE_MILLIS = 10 * DateUtils.MILLIS_PER_MINUTE;
+
+	private final Cache<BodyKey, CachedResourceBody> myCache;
+	private final LongAdder myHitCount = new LongAdder();
+	private final LongAdder myMissCount = new LongAdder();
+
+	public ResourceBodyCacheSvcImpl(JpaStorageSettings theStorageSettings) {
+		long maximumBytes = theStorageSettings.getResourceBodyCacheMaximumBytes();
+		if (maximumBytes > 0) {
+			myCache = CacheFactory.buildWeighted(EXPIRE_AFTER_WRITE_MILLIS, maximumBytes, (k, v) -> v.getWeight());
+		} else {
+			myCache = null;
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return myCache != null;
+	}
+
+	@Nullable
+	@Override
+	public CachedResourceBody getIfPresent(@Nonnull BodyKey theKey) {
+		if (myCache == null) {
+			return null;
+		}
+		CachedResourceBody retVal = myCache.getIfPresent(theKey);
+		if (retVal != null) {
+			myHitCount.increment();
+		} else {
+			myMissCount.increment();
+		}
+		return retVal;
+	}
+
+	@Override
+	public void putAfterCommit(@Nonnull BodyKey theKey, @Nonnull CachedResourceBody theBody) {
+		if (myCache == null) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					myCache.put(theKey, theBody);
+				}
+			});
+		} else {
+			myCache.put(theKey, theBody);
+		}
+	}
+
+	@Override
+	public void evictAll() {
+		if (myCache != null) {
+			myCache.invalidateAll();
+		}
+	}
+
+	@Override
+	public long getHitCount() {
+		return myHitCount.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return myMissCount.sum();
+	}
+
+	@Override
+	public long getEstimatedSize() {
+		if (myCache == null) {
+			return 0;
+		}
+		myCache.cleanUp();
+		return myCache.estimatedSize();
+	}
+}
@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2025 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.util;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.function.Supplier;
+
+/**
+ * Holds a thread pool which is only created the first time it is needed, so that
+ * services whose concurrency is disabled by default don't start threads they never use.
+ * The pool is created at most once until {@link #shutdown()} is called.
+ *
+ * @since 8.4.0
+ */
+public class LazyThreadPool {
+
+	private final Supplier<ThreadPoolTaskExecutor> myFactory;
+	private volatile ThreadPoolTaskExecutor myExecutor;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theFactory Creates the pool. This is called when the pool is first needed, so
+	 *                   any settings it reads are read at that point.
+	 */
+	public LazyThreadPool(@Nonnull Supplier<ThreadPoolTaskExecutor> theFactory) {
+		myFactory = theFactory;
+	}
+
+	/**
+	 * Returns the pool, creating it if this is the first call (or the first call since
+	 * {@link #shutdown()})
+	 */
+	@Nonnull
+	public ThreadPoolTaskExecutor get() {
+		ThreadPoolTaskExecutor retVal = myExecutor;
+		if (retVal == null) {
+			retVal = create();
+		}
+		return retVal;
+	}
+
+	private synchronized ThreadPoolTaskExecutor create() {
+		if (myExecutor == null) {
+			myExecutor = myFactory.get();
+		}
+		return myExecutor;
+	}
+
+	/**
+	 * Shuts down the pool if it has been created. A later call to {@link #get()} creates a new one.
+	 */
+	public synchronized void shutdown() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+}
@@ -59,6 +59,25 @@ public final class ThreadPoolUtil {
 				theRejectedExecutionHandler);
 	}
 
+	/**
+	 * Creates a fixed size pool with no queue, whose tasks run with the logging context (MDC)
+	 * of the thread that submitted them. This is the pool to use when a single request hands
+	 * parts of its own work to other threads.
+	 *
+	 * @since 8.4.0
+	 */
+	@Nonnull
+	public static ThreadPoolTaskExecutor newRequestWorkerThreadPool(
+			int theThreadCount, String theThreadNamePrefix, RejectedExecutionHandler theRejectedExecutionHandler) {
+		return newThreadPool(
+				theThreadCount,
+				theThreadCount,
+				theThreadNamePrefix,
+				0,
+				LogUtil::withLoggingContext,
+				theRejectedExecutionHandler);
+	}
+
 	@Nonnull
 	public static ThreadPoolTaskExecutor newThreadPool(
 			int theCorePoolSize,
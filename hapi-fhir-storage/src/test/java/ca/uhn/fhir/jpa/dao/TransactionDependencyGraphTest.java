@@ -0,0 +1,90 @@
+package ca.uhn.fhir.jpa.dao;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TransactionDependencyGraphTest {
+
+	@Test
+	void testExtractPlaceholderIdsFromMatchUrl() {
+		assertThat(TransactionDependencyGraph.extractPlaceholderIdsFromMatchUrl(null)).isEmpty();
+		assertThat(TransactionDependencyGraph.extractPlaceholderIdsFromMatchUrl("Patient?identifier=foo|bar")).isEmpty();
+		assertThat(TransactionDependencyGraph.extractPlaceholderIdsFromMatchUrl("Observation?subject=urn:uuid:1&code=foo|bar&encounter=urn%3Auuid%3A2"))
+			.containsExactly("urn:uuid:1", "urn:uuid:2");
+		assertThat(TransactionDependencyGraph.extractPlaceholderIdsFromMatchUrl("subject=urn:uuid:3"))
+			.containsExactly("urn:uuid:3");
+	}
+
+	@Test
+	void testSortInDependencyOrder_ChainedConditionals() {
+		Bundle.BundleEntryComponent observation = new Bundle.BundleEntryComponent();
+		Bundle.BundleEntryComponent encounter = new Bundle.BundleEntryComponent();
+		Bundle.BundleEntryComponent patient = new Bundle.BundleEntryComponent();
+		Bundle.BundleEntryComponent unrelated = new Bundle.BundleEntryComponent();
+		Bundle.BundleEntryComponent delete = new Bundle.BundleEntryComponent();
+
+		TransactionDependencyGraph graph = new TransactionDependencyGraph(List.of(
+			prepared(delete, "DELETE", null, Set.of(), null),
+			prepared(observation, "POST", "urn:uuid:obs", Set.of("urn:uuid:enc"), List.of(new IdType("urn:uuid:enc"))),
+			prepared(encounter, "POST", "urn:uuid:enc", Set.of("urn:uuid:pat"), List.of(new IdType("urn:uuid:pat"))),
+			prepared(unrelated, "POST", "urn:uuid:other", Set.of(), List.of(new IdType("Patient/123"))),
+			prepared(patient, "POST", "urn:uuid:pat", Set.of(), List.of())));
+
+		List<IBase> sorted = graph.sortInDependencyOrder(List.of(delete, observation, encounter, unrelated, patient));
+
+		assertThat(sorted).containsExactly(delete, unrelated, patient, encounter, observation);
+		assertThat(graph.getDependencies(observation)).containsExactly(encounter);
+		assertThat(graph.getDependencies(unrelated)).isEmpty();
+		assertEquals(Set.of("urn:uuid:pat"), graph.getPreparedEntry(encounter).getReferencedPlaceholderIds());
+	}
+
+	@Test
+	void testSortInDependencyOrder_DependenciesAcrossVerbsDontReorder() {
+		Bundle.BundleEntryComponent post = new Bundle.BundleEntryComponent();
+		Bundle.BundleEntryComponent put = new Bundle.BundleEntryComponent();
+
+		TransactionDependencyGraph graph = new TransactionDependencyGraph(List.of(
+			prepared(post, "POST", "urn:uuid:a", Set.of("urn:uuid:b"), null),
+			prepared(put, "PUT", "urn:uuid:b", Set.of(), null)));
+
+		assertThat(graph.sortInDependencyOrder(List.of(post, put))).containsExactly(post, put);
+	}
+
+	@Test
+	void testSortInDependencyOrder_Cycle() {
+		List<IBase> entries = new ArrayList<>();
+		List<TransactionDependencyGraph.PreparedEntry> prepared = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
+			entries.add(entry);
+			prepared.add(prepared(entry, "POST", "urn:uuid:" + i, Set.of("urn:uuid:" + ((i + 1) % 3)), null));
+		}
+		Bundle.BundleEntryComponent independent = new Bundle.BundleEntryComponent();
+		entries.add(independent);
+		prepared.add(prepared(independent, "POST", null, Set.of(), null));
+		Bundle.BundleEntryComponent get = new Bundle.BundleEntryComponent();
+		entries.add(get);
+
+		TransactionDependencyGraph graph = new TransactionDependencyGraph(prepared);
+
+		assertThat(graph.sortInDependencyOrder(entries))
+			.containsExactly(independent, entries.get(0), entries.get(1), entries.get(2), get);
+		assertNull(graph.getPreparedEntry(get));
+		assertThat(graph.getDependencies(get)).isEmpty();
+	}
+
+	private static TransactionDependencyGraph.PreparedEntry prepared(IBase theEntry, String theVerb, String theFullUrl, Set<String> theConditionalUrlPlaceholderIds, List<IIdType> theReferences) {
+		return new TransactionDependencyGraph.PreparedEntry(theEntry, theVerb, theFullUrl, theConditionalUrlPlaceholderIds, theReferences);
+	}
+}
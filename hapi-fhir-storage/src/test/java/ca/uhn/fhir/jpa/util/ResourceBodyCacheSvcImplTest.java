@@ -0,0 +1,132 @@
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.util.IResourceBodyCacheSvc.BodyKey;
+import ca.uhn.fhir.jpa.util.IResourceBodyCacheSvc.CachedResourceBody;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResourceBodyCacheSvcImplTest {
+
+	@AfterEach
+	void after() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void testDisabledByDefault() {
+		ResourceBodyCacheSvcImpl svc = new ResourceBodyCacheSvcImpl(new JpaStorageSettings());
+		assertFalse(svc.isEnabled());
+
+		svc.putAfterCommit(newKey(1L, 1, 1000L), newBody("{}"));
+		assertNull(svc.getIfPresent(newKey(1L, 1, 1000L)));
+		assertEquals(0, svc.getMissCount());
+	}
+
+	@Test
+	void testHitOnlyForMatchingKey() {
+		ResourceBodyCacheSvcImpl svc = newSvc(100_000);
+		CachedResourceBody body = newBody("{\"resourceType\":\"Patient\"}");
+		svc.putAfterCommit(newKey(1L, 2, 1000L), body);
+
+		assertSame(body, svc.getIfPresent(newKey(1L, 2, 1000L)));
+		assertNull(svc.getIfPresent(newKey(1L, 1, 1000L)));
+		assertNull(svc.getIfPresent(newKey(2L, 2, 1000L)));
+		assertEquals(1, svc.getHitCount());
+		assertEquals(2, svc.getMissCount());
+
+		// Several versions of the same resource can be cached
+		CachedResourceBody body3 = newBody("{}");
+		svc.putAfterCommit(newKey(1L, 3, 2000L), body3);
+		assertSame(body3, svc.getIfPresent(newKey(1L, 3, 2000L)));
+		assertSame(body, svc.getIfPresent(newKey(1L, 2, 1000L)));
+	}
+
+	@Test
+	void testHistoryRewriteChangesKey() {
+		ResourceBodyCacheSvcImpl svc = newSvc(100_000);
+		ResourceHistoryTable history = new ResourceHistoryTable();
+		history.setResourceId(1L);
+		history.setVersion(1);
+		history.setUpdated(new Date(1000L));
+
+		// A transaction which loaded the body before the rewrite commits after it
+		TransactionSynchronizationManager.initSynchronization();
+		svc.putAfterCommit(BodyKey.forHistoryEntity(history), newBody("{\"old\":true}"));
+		history.setUpdated(new Date(2000L));
+		TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		TransactionSynchronizationManager.clearSynchronization();
+
+		// The rewritten row doesn't find the stale body
+		assertNull(svc.getIfPresent(BodyKey.forHistoryEntity(history)));
+		assertThat(svc.getIfPresent(newKey(1L, 1, 1000L))).isNotNull();
+	}
+
+	@Test
+	void testPutDeferredUntilCommit() {
+		ResourceBodyCacheSvcImpl svc = newSvc(100_000);
+
+		TransactionSynchronizationManager.initSynchronization();
+		svc.putAfterCommit(newKey(1L, 1, 1000L), newBody("{}"));
+		assertNull(svc.getIfPresent(newKey(1L, 1, 1000L)));
+		TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		TransactionSynchronizationManager.clearSynchronization();
+
+		assertThat(svc.getIfPresent(newKey(1L, 1, 1000L))).isNotNull();
+	}
+
+	@Test
+	void testEvictAll() {
+		ResourceBodyCacheSvcImpl svc = newSvc(100_000);
+		svc.putAfterCommit(newKey(1L, 1, 1000L), newBody("{}"));
+		svc.putAfterCommit(newKey(2L, 1, 1000L), newBody("{}"));
+
+		svc.evictAll();
+		assertNull(svc.getIfPresent(newKey(1L, 1, 1000L)));
+		assertNull(svc.getIfPresent(newKey(2L, 1, 1000L)));
+	}
+
+	@Test
+	void testBoundedByWeight() {
+		ResourceBodyCacheSvcImpl svc = newSvc(100_000);
+		String text = StringUtils.repeat('a', 1000);
+		for (long i = 0; i < 1000; i++) {
+			svc.putAfterCommit(newKey(i, 1, 1000L), newBody(text));
+		}
+
+		// Each entry weighs a little over 8000 bytes
+		assertThat(svc.getEstimatedSize()).isLessThan(50);
+		assertTrue(svc.isEnabled());
+	}
+
+	private static ResourceBodyCacheSvcImpl newSvc(long theMaximumBytes) {
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setResourceBodyCacheMaximumBytes(theMaximumBytes);
+		return new ResourceBodyCacheSvcImpl(storageSettings);
+	}
+
+	private static BodyKey newKey(long thePid, long theVersion, long theUpdated) {
+		return new BodyKey(JpaPid.fromId(thePid), theVersion, theUpdated);
+	}
+
+	private static CachedResourceBody newBody(String theText) {
+		return new CachedResourceBody(new Patient(), theText.length(), null, null);
+	}
+}
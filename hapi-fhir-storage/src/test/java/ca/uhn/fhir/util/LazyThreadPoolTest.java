@@ -0,0 +1,47 @@
+package ca.uhn.fhir.util;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LazyThreadPoolTest {
+
+	@Test
+	void testCreatedOnFirstUseOnly() {
+		AtomicInteger created = new AtomicInteger();
+		LazyThreadPool pool = new LazyThreadPool(() -> {
+			created.incrementAndGet();
+			return ThreadPoolUtil.newRequestWorkerThreadPool(2, "lazy-test-", new ThreadPoolExecutor.CallerRunsPolicy());
+		});
+		assertThat(created.get()).isEqualTo(0);
+
+		ThreadPoolTaskExecutor first = pool.get();
+		assertThat(pool.get()).isSameAs(first);
+		assertThat(created.get()).isEqualTo(1);
+
+		pool.shutdown();
+		assertThat(first.getThreadPoolExecutor().isShutdown()).isTrue();
+		ThreadPoolTaskExecutor second = pool.get();
+		assertThat(second).isNotSameAs(first);
+		assertThat(created.get()).isEqualTo(2);
+		pool.shutdown();
+	}
+
+	@Test
+	void testRequestWorkerThreadPoolCopiesLoggingContext() throws Exception {
+		ThreadPoolTaskExecutor executor =
+				ThreadPoolUtil.newRequestWorkerThreadPool(1, "lazy-test-", new ThreadPoolExecutor.AbortPolicy());
+		try {
+			MDC.put("requestId", "abc");
+			assertThat(executor.submit(() -> MDC.get("requestId")).get()).isEqualTo("abc");
+		} finally {
+			MDC.clear();
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package ca.uhn.fhir.context;
+
+import ca.uhn.fhir.util.ClasspathUtil;
+import ca.uhn.fhir.util.FhirTerser;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.StringType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parse, encode and terser throughput using reflective and method handle child accessors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChildAccessorBenchmark {
+
+	@Param({"false", "true"})
+	private boolean myMethodHandleChildAccessors;
+
+	private FhirContext myCtx;
+	private String myEncoded;
+	private Bundle myBundle;
+
+	@Setup
+	public void setup() {
+		myCtx = FhirContext.forR4();
+		if (myMethodHandleChildAccessors) {
+			myCtx.setPerformanceOptions(PerformanceOptionsEnum.METHOD_HANDLE_CHILD_ACCESSORS);
+		}
+		myEncoded = ClasspathUtil.loadResource("/org/hl7/fhir/r4/model/sp/search-parameters.json");
+		myBundle = myCtx.newJsonParser().parseResource(Bundle.class, myEncoded);
+	}
+
+	@Benchmark
+	public IBaseResource parse() {
+		return myCtx.newJsonParser().parseResource(myEncoded);
+	}
+
+	@Benchmark
+	public String encode() {
+		return myCtx.newJsonParser().encodeResourceToString(myBundle);
+	}
+
+	@Benchmark
+	public List<StringType> terser() {
+		FhirTerser terser = myCtx.newTerser();
+		return terser.getAllPopulatedChildElementsOfType(myBundle, StringType.class);
+	}
+}
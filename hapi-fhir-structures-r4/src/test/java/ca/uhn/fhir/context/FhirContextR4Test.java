@@ -1,11 +1,29 @@
 package ca.uhn.fhir.context;
 
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.util.ClasspathUtil;
+import ca.uhn.fhir.context.support.IValidationSupport;
+import ca.uhn.fhir.i18n.HapiLocalizer;
+import ca.uhn.fhir.util.FhirTerser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class FhirContextR4Test {
 
@@ -45,4 +63,99 @@ public class FhirContextR4Test {
 
 		assertThatExceptionOfType(ConfigurationException.class).isThrownBy(() -> fhirContext.getAllResourceDefinitions());
 	}
+
+	@Test
+	void methodHandleChildAccessors() {
+		final FhirContext fhirContext = FhirContext.forR4();
+		fhirContext.setPerformanceOptions(PerformanceOptionsEnum.METHOD_HANDLE_CHILD_ACCESSORS);
+
+		String input = ClasspathUtil.loadResource("/bundle-with-two-patient-resources.json");
+		Bundle bundle = fhirContext.newJsonParser().parseResource(Bundle.class, input);
+		String expected = FhirContext.forR4Cached().newJsonParser().encodeResourceToString(
+			FhirContext.forR4Cached().newJsonParser().parseResource(Bundle.class, input));
+		assertEquals(expected, fhirContext.newJsonParser().encodeResourceToString(bundle));
+
+		Patient patient = new Patient();
+		FhirTerser terser = fhirContext.newTerser();
+		terser.addElement(patient, "name.family", "Smith");
+		terser.addElement(patient, "name.given", "John");
+		terser.setElement(patient, "active", "true");
+		assertEquals("Smith", patient.getNameFirstRep().getFamily());
+		assertEquals("John", patient.getNameFirstRep().getGivenAsSingleString());
+		assertTrue(patient.getActive());
+
+		BaseRuntimeChildDefinition nameChild = fhirContext.getResourceDefinition(patient).getChildByName("name");
+		assertTrue(((BaseRuntimeDeclaredChildDefinition) nameChild).isUsingMethodHandleAccessors());
+		BaseRuntimeChildDefinition defaultNameChild = FhirContext.forR4Cached().getResourceDefinition(patient).getChildByName("name");
+		assertFalse(((BaseRuntimeDeclaredChildDefinition) defaultNameChild).isUsingMethodHandleAccessors());
+		nameChild.getMutator().remove(patient, 0);
+		assertThat(patient.getName()).isEmpty();
+		assertThat(nameChild.getAccessor().getValues(patient)).isEmpty();
+	}
+
+	@Test
+	void deferredResourceClassLoading() {
+		final FhirContext fhirContext = FhirContext.forR4();
+		fhirContext.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_RESOURCE_CLASS_LOADING);
+
+		String input = ClasspathUtil.loadResource("/bundle-with-two-patient-resources.json");
+		Bundle bundle = fhirContext.newJsonParser().parseResource(Bundle.class, input);
+		String expected = FhirContext.forR4Cached().newJsonParser().encodeResourceToString(
+			FhirContext.forR4Cached().newJsonParser().parseResource(Bundle.class, input));
+		assertEquals(expected, fhirContext.newJsonParser().encodeResourceToString(bundle));
+
+		RuntimeResourceDefinition observationDef = fhirContext.getResourceDefinition("observation");
+		assertEquals(Observation.class, observationDef.getImplementingClass());
+		assertEquals("Observation", observationDef.getName());
+		assertTrue(observationDef.isStandardType());
+		assertThat(observationDef.getSearchParam("code")).isNotNull();
+		assertSame(observationDef, fhirContext.getResourceDefinition(Observation.class));
+		assertTrue(fhirContext.getResourceDefinition(Patient.class).isStandardType());
+
+		assertEquals(FhirContext.forR4Cached().getResourceTypes(), fhirContext.getResourceTypes());
+		assertThatExceptionOfType(DataFormatException.class)
+			.isThrownBy(() -> fhirContext.getResourceDefinition("FooResource"))
+			.withMessageContaining("Unknown resource name \"FooResource\"");
+	}
+
+	@Test
+	void lazyDefinitionsAreSharedAcrossThreads() throws Exception {
+		final FhirContext fhirContext = FhirContext.forR4();
+		fhirContext.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_RESOURCE_CLASS_LOADING);
+		fhirContext.setLocalizer(null);
+
+		int threadCount = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<Object[]>> futures = new ArrayList<>();
+			for (int i = 0; i < threadCount; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return new Object[] {
+						fhirContext.getResourceDefinition("Observation"),
+						fhirContext.getResourceDefinition("Encounter"),
+						fhirContext.getLocalizer(),
+						fhirContext.getValidationSupport()
+					};
+				}));
+			}
+			start.countDown();
+
+			Object[] expected = futures.get(0).get();
+			for (Future<Object[]> next : futures) {
+				Object[] actual = next.get();
+				for (int i = 0; i < expected.length; i++) {
+					assertSame(expected[i], actual[i]);
+				}
+			}
+			assertSame(expected[0], fhirContext.getResourceDefinition(Observation.class));
+			assertSame(expected[2], fhirContext.getLocalizer());
+			assertSame(expected[3], fhirContext.getValidationSupport());
+			assertThat(expected[2]).isInstanceOf(HapiLocalizer.class);
+			assertThat(expected[3]).isInstanceOf(IValidationSupport.class);
+		} finally {
+			executor.shutdown();
+		}
+	}
 }
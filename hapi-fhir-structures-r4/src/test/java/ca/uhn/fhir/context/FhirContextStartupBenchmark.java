@@ -0,0 +1,41 @@
+package ca.uhn.fhir.context;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from a cold JVM to the first parsed resource, with and without deferred loading.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class FhirContextStartupBenchmark {
+
+	private static final String PATIENT = "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Smith\"}]}";
+
+	@Param({"false", "true"})
+	private boolean myDeferredResourceClassLoading;
+
+	@Benchmark
+	public IBaseResource timeToFirstParse() {
+		FhirContext ctx = FhirContext.forR4Cached();
+		if (myDeferredResourceClassLoading) {
+			ctx.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_RESOURCE_CLASS_LOADING);
+		}
+		return ctx.newJsonParser().parseResource(PATIENT);
+	}
+}
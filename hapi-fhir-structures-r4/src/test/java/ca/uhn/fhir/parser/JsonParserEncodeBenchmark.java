@@ -0,0 +1,99 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import org.apache.commons.io.output.NullOutputStream;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares ways of writing a large searchset Bundle to a (optionally GZipped) response stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonParserEncodeBenchmark {
+
+	@Param({"false", "true"})
+	private boolean myGzip;
+
+	private FhirContext myCtx;
+	private Bundle myBundle;
+
+	@Setup
+	public void setup() {
+		myCtx = FhirContext.forR4();
+		myBundle = new Bundle();
+		myBundle.setType(Bundle.BundleType.SEARCHSET);
+		for (int i = 0; i < 1000; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/" + i + "/_history/1");
+			patient.getMeta().setLastUpdatedElement(new InstantType("2025-01-01T12:00:00.000Z"));
+			patient.addIdentifier().setSystem("http://example.com/mrn").setValue("MRN" + i);
+			patient.addName().setFamily("Family" + i).addGiven("Given").addGiven("Middle");
+			patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+			patient.getBirthDateElement().setValueAsString("1980-01-01");
+			patient.addAddress().addLine("123 Main Street").setCity("Toronto").setCountry("Canada");
+			patient.addTelecom().setValue("555-555-" + i);
+			myBundle.addEntry().setFullUrl("http://example.com/fhir/Patient/" + i).setResource(patient);
+		}
+	}
+
+	@Benchmark
+	public OutputStream encodeToString() throws IOException {
+		OutputStream outputStream = newResponseStream();
+		String encoded = myCtx.newJsonParser().encodeResourceToString(myBundle);
+		Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+		writer.write(encoded);
+		writer.close();
+		return outputStream;
+	}
+
+	@Benchmark
+	public OutputStream encodeToWriter() throws IOException {
+		OutputStream outputStream = newResponseStream();
+		Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+		myCtx.newJsonParser().encodeResourceToWriter(myBundle, writer);
+		writer.close();
+		return outputStream;
+	}
+
+	@Benchmark
+	public OutputStream encodeToOutputStream() throws IOException {
+		OutputStream outputStream = newResponseStream();
+		myCtx.newJsonParser().encodeResourceToOutputStream(myBundle, outputStream);
+		outputStream.close();
+		return outputStream;
+	}
+
+	private OutputStream newResponseStream() throws IOException {
+		OutputStream retVal = NullOutputStream.INSTANCE;
+		if (myGzip) {
+			retVal = new GZIPOutputStream(retVal, 8192);
+		}
+		return retVal;
+	}
+}
@@ -60,6 +60,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -67,7 +68,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
@@ -1298,6 +1301,27 @@ public class JsonParserR4Test extends BaseTest {
 		assertEquals("Organization/1", target.getAssigner().getReference());
 	}
 
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testEncodeResourceToOutputStream(boolean thePrettyPrint) throws IOException {
+		Patient patient = new Patient();
+		patient.setId("123");
+		patient.addName().setFamily("Ñandú").addGiven("名");
+		patient.getBirthDateElement().setValueAsString("2020-01-01");
+		patient.getBirthDateElement().addExtension("http://foo", new DecimalType("1.10"));
+		patient.setActive(true);
+
+		IParser parser = ourCtx.newJsonParser().setPrettyPrint(thePrettyPrint);
+		String expected = parser.encodeResourceToString(patient);
+
+		// Test
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		parser.encodeResourceToOutputStream(patient, outputStream);
+
+		// Verify
+		assertEquals(expected, outputStream.toString(StandardCharsets.UTF_8));
+	}
+
 	@Test
 	public void testParseIntoObject_InvalidValue() {
 		// Test
@@ -0,0 +1,59 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.ClasspathUtil;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares tree-based and streaming JSON parsing of a large Bundle and of NDJSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonParserStreamingBenchmark {
+
+	@Param({"false", "true"})
+	private boolean myStreamingJsonParsing;
+
+	private FhirContext myCtx;
+	private String myBundle;
+	private String myNdJson;
+
+	@Setup
+	public void setup() {
+		myCtx = FhirContext.forR4();
+		myBundle = ClasspathUtil.loadResource("/org/hl7/fhir/r4/model/sp/search-parameters.json");
+
+		Bundle bundle = myCtx.newJsonParser().parseResource(Bundle.class, myBundle);
+		myNdJson = myCtx.newNDJsonParser().encodeResourceToString(bundle);
+
+		myCtx.getParserOptions().setStreamingJsonParsing(myStreamingJsonParsing);
+	}
+
+	@Benchmark
+	public IBaseResource parseBundle() {
+		return myCtx.newJsonParser().parseResource(myBundle);
+	}
+
+	@Benchmark
+	public IBaseResource parseNdJson() {
+		return myCtx.newNDJsonParser().parseResource(Bundle.class, myNdJson);
+	}
+}
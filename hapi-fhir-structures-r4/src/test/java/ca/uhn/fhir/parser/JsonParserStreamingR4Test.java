@@ -0,0 +1,175 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.ClasspathUtil;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that parsing with {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsing(boolean)}
+ * enabled produces the same results as the default tree-based parsing
+ */
+public class JsonParserStreamingR4Test {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private final FhirContext myStreamingCtx = FhirContext.forR4();
+
+	@BeforeEach
+	public void before() {
+		myStreamingCtx.getParserOptions().setStreamingJsonParsing(true);
+	}
+
+	@AfterEach
+	public void after() {
+		myStreamingCtx.getParserOptions().setStreamingJsonParsing(false);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"/bundle-circ-ref.json",
+		"/bundle-with-two-patient-resources.json",
+		"/entities-from-cerner.json",
+		"/multi-thread-parsing-issue-bundle.json",
+		"/observation-decimal-element-with-leading-plus.json",
+		"/static-capabilitystatement.json",
+		"/org/hl7/fhir/r4/model/sp/search-parameters.json"
+	})
+	public void testParseFileMatchesTreeParser(String theFile) {
+		String input = ClasspathUtil.loadResource(theFile);
+		assertSameAsTreeParser(input);
+	}
+
+	@Test
+	public void testPrimitiveWithAlternateBeforeAndAfterValue() {
+		String input = """
+			{
+			  "resourceType": "Patient",
+			  "_gender": { "id": "G", "extension": [ { "url": "http://foo", "valueString": "A" } ] },
+			  "gender": "male",
+			  "birthDate": "2020-01-01",
+			  "_birthDate": { "id": "B" },
+			  "_active": { "id": "ORPHAN" },
+			  "name": [ { "given": [ "A", "B", null ], "_given": [ null, { "id": "GB" }, { "id": "GC" } ] } ]
+			}""";
+		Patient patient = assertSameAsTreeParser(input);
+
+		assertEquals("G", patient.getGenderElement().getId());
+		assertEquals("B", patient.getBirthDateElement().getId());
+		assertEquals("ORPHAN", patient.getActiveElement().getId());
+		assertEquals("GB", patient.getNameFirstRep().getGiven().get(1).getId());
+		assertEquals("GC", patient.getNameFirstRep().getGiven().get(2).getId());
+	}
+
+	@Test
+	public void testResourceTypeNotFirstProperty() {
+		String input = """
+			{
+			  "id": "A",
+			  "resourceType": "Bundle",
+			  "type": "collection",
+			  "entry": [ {
+			    "fullUrl": "http://example.com/Patient/1",
+			    "resource": { "id": "1", "active": true, "resourceType": "Patient" }
+			  }, {
+			    "resource": { "resourceType": "Observation", "id": "2", "status": "final",
+			      "contained": [ { "id": "c1", "resourceType": "Patient" } ] }
+			  } ]
+			}""";
+		Bundle bundle = assertSameAsTreeParser(input);
+
+		assertEquals("Patient/1", bundle.getEntry().get(0).getResource().getIdElement().toUnqualifiedVersionless().getValue());
+		Observation obs = (Observation) bundle.getEntry().get(1).getResource();
+		assertThat(obs.getContained()).hasSize(1);
+	}
+
+	@Test
+	public void testExtensionWithUrlAfterValue() {
+		String input = """
+			{
+			  "resourceType": "Patient",
+			  "extension": [ { "valueString": "A", "url": "http://foo" } ],
+			  "modifierExtension": [ { "extension": [ { "valueString": "B", "url": "http://child" } ], "url": "http://bar" } ]
+			}""";
+		Patient patient = assertSameAsTreeParser(input);
+
+		Extension ext = patient.getExtensionByUrl("http://foo");
+		assertEquals("A", ((StringType) ext.getValue()).getValue());
+		assertThat(patient.getModifierExtension()).hasSize(1);
+	}
+
+	@Test
+	public void testParseTrailingContent() {
+		String input = "{\"resourceType\":\"Patient\"} {}";
+		assertThatThrownBy(() -> myStreamingCtx.newJsonParser().parseResource(input))
+			.isInstanceOf(DataFormatException.class)
+			.hasMessageContaining("Trailing token");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"",
+		"   ",
+		"[]",
+		"{\"resourceType\":\"Patient\", \"active\": tru}",
+		"{\"resourceType\":\"Patient\", \"name\": [ { \"family\": \"A\" }",
+		"{\"active\": true}",
+		"{\"resourceType\": 123}"
+	})
+	public void testInvalidContentFailsWithSameMessage(String theInput) {
+		String treeMessage = null;
+		try {
+			ourCtx.newJsonParser().parseResource(theInput);
+		} catch (DataFormatException e) {
+			treeMessage = e.getMessage();
+		}
+
+		String streamingMessage = null;
+		try {
+			myStreamingCtx.newJsonParser().parseResource(theInput);
+		} catch (DataFormatException e) {
+			streamingMessage = e.getMessage();
+		}
+
+		assertThat(treeMessage).isNotNull();
+		assertThat(streamingMessage).isNotNull();
+		assertEquals(treeMessage.replaceAll("HAPI-[0-9]+: ", ""), streamingMessage.replaceAll("HAPI-[0-9]+: ", ""));
+	}
+
+	@Test
+	public void testParseNdJson() {
+		String input = """
+			{"resourceType":"Patient","id":"1","active":true}
+			{"id":"2","resourceType":"Patient","_active":{"id":"X"},"active":false}
+			""";
+		Bundle treeBundle = ourCtx.newNDJsonParser().parseResource(Bundle.class, input);
+		Bundle streamingBundle = myStreamingCtx.newNDJsonParser().parseResource(Bundle.class, input);
+
+		assertThat(streamingBundle.getEntry()).hasSize(2);
+		assertEquals(encode(treeBundle), encode(streamingBundle));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends IBaseResource> T assertSameAsTreeParser(String theInput) {
+		IBaseResource treeResource = ourCtx.newJsonParser().parseResource(theInput);
+		IBaseResource streamingResource = myStreamingCtx.newJsonParser().parseResource(theInput);
+		assertEquals(encode(treeResource), encode(streamingResource));
+		return (T) streamingResource;
+	}
+
+	private static String encode(IBaseResource theResource) {
+		return ourCtx.newJsonParser().setPrettyPrint(true).encodeResourceToString(theResource);
+	}
+}
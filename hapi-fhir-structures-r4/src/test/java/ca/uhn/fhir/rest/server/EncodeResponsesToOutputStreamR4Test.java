@@ -0,0 +1,173 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.test.utilities.server.RestfulServerExtension;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EncodeResponsesToOutputStreamR4Test {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private static CloseableHttpClient ourClient;
+
+	@RegisterExtension
+	public RestfulServerExtension myServer = new RestfulServerExtension(ourCtx)
+		.registerProvider(new PatientProvider())
+		.setDefaultResponseEncoding(EncodingEnum.JSON);
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"",
+		"&_format=json",
+		"&_format=json&_pretty=true",
+		"&_format=xml",
+		"&_format=xml&_pretty=true",
+		"&_summary=true",
+		"&_elements=name"
+	})
+	public void testResponseMatchesWriterResponse(String theParams) throws IOException {
+		String url = myServer.getBaseUrl() + "/Patient?_count=1000" + theParams;
+
+		myServer.getRestfulServer().setEncodeResponsesToOutputStream(false);
+		String expected = executeGet(url, false);
+
+		myServer.getRestfulServer().setEncodeResponsesToOutputStream(true);
+		String actual = executeGet(url, false);
+
+		assertEquals(normalize(expected), normalize(actual));
+		assertThat(actual).contains("Ñandú");
+	}
+
+	@Test
+	public void testGzipResponse() throws IOException {
+		myServer.getRestfulServer().setEncodeResponsesToOutputStream(true);
+
+		String url = myServer.getBaseUrl() + "/Patient?_count=1000";
+		String response = executeGet(url, true);
+
+		Bundle bundle = ourCtx.newJsonParser().parseResource(Bundle.class, response);
+		assertThat(bundle.getEntry()).hasSize(PatientProvider.COUNT);
+		assertEquals("Ñandú", ((Patient) bundle.getEntry().get(0).getResource()).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testWriterStillUsedWhenOutgoingWriterHooksAreRegistered() throws IOException {
+		myServer.getRestfulServer().setEncodeResponsesToOutputStream(true);
+		WriterCountingInterceptor interceptor = new WriterCountingInterceptor();
+		myServer.registerInterceptor(interceptor);
+
+		String url = myServer.getBaseUrl() + "/Patient?_count=1000";
+		String response = executeGet(url, false);
+
+		assertEquals(1, interceptor.myWriterCount.get());
+		assertThat(response).contains("Ñandú");
+	}
+
+	/**
+	 * Strips the generated Bundle ID and timestamp, which differ between requests
+	 */
+	private static String normalize(String theResponse) {
+		return theResponse
+			.replaceAll("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", "UUID")
+			.replaceAll("[0-9]{4}-[0-9]{2}-[0-9]{2}T[0-9:.]+(Z|[+-][0-9:]+)", "DATE");
+	}
+
+	private String executeGet(String theUrl, boolean theGzip) throws IOException {
+		HttpGet get = new HttpGet(theUrl);
+		if (theGzip) {
+			get.addHeader(Constants.HEADER_ACCEPT_ENCODING, Constants.ENCODING_GZIP);
+		}
+		try (CloseableHttpResponse status = ourClient.execute(get)) {
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertThat(status.getEntity().getContentType().getValue()).containsIgnoringCase("charset=UTF-8");
+
+			Header contentEncoding = status.getFirstHeader(Constants.HEADER_CONTENT_ENCODING);
+			InputStream content = status.getEntity().getContent();
+			if (theGzip) {
+				assertEquals(Constants.ENCODING_GZIP, contentEncoding.getValue());
+				content = new GZIPInputStream(content);
+			} else {
+				assertNull(contentEncoding);
+			}
+			return IOUtils.toString(content, StandardCharsets.UTF_8);
+		}
+	}
+
+	@BeforeAll
+	public static void beforeAll() {
+		ourClient = HttpClientBuilder.create().disableContentCompression().build();
+	}
+
+	@AfterAll
+	public static void afterAll() throws IOException {
+		ourClient.close();
+	}
+
+	public static class WriterCountingInterceptor {
+
+		private final AtomicInteger myWriterCount = new AtomicInteger();
+
+		@Hook(Pointcut.SERVER_OUTGOING_WRITER_CREATED)
+		public Writer writerCreated(Writer theWriter) {
+			assertNotNull(theWriter);
+			myWriterCount.incrementAndGet();
+			return theWriter;
+		}
+	}
+
+	public static class PatientProvider implements IResourceProvider {
+
+		static final int COUNT = 200;
+
+		@Override
+		public Class<Patient> getResourceType() {
+			return Patient.class;
+		}
+
+		@Search
+		public List<IBaseResource> search() {
+			List<IBaseResource> retVal = new ArrayList<>();
+			for (int i = 0; i < COUNT; i++) {
+				Patient patient = new Patient();
+				patient.setId("Patient/" + i);
+				patient.addName().setFamily("Ñandú").addGiven("Given " + i);
+				patient.addIdentifier().setSystem("http://foo").setValue("value-" + i);
+				patient.setActive(i % 2 == 0);
+				retVal.add(patient);
+			}
+			return retVal;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.test.utilities.HttpClientExtension;
+import ca.uhn.fhir.test.utilities.server.RestfulServerExtension;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SearchTotalModeHeaderR4Test {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private static SimpleBundleProvider ourNextBundleProvider;
+
+	@RegisterExtension
+	public RestfulServerExtension ourServer = new RestfulServerExtension(ourCtx)
+		.registerProvider(new DummyPatientResourceProvider());
+
+	@RegisterExtension
+	private HttpClientExtension ourClient = new HttpClientExtension();
+
+	@BeforeEach
+	public void before() {
+		Patient patient = new Patient();
+		patient.setId("Patient/1");
+		ourNextBundleProvider = new SimpleBundleProvider(patient);
+	}
+
+	@Test
+	public void testEstimatedTotal() throws Exception {
+		ourNextBundleProvider.setSize(5000);
+		ourNextBundleProvider.setSizeEstimated(true);
+
+		HttpGet httpGet = new HttpGet(ourServer.getBaseUrl() + "/Patient?_total=estimate");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertEquals("estimated", status.getFirstHeader(Constants.HEADER_X_SEARCH_TOTAL_MODE).getValue());
+			Bundle bundle = ourCtx.newJsonParser().parseResource(Bundle.class, responseContent);
+			assertEquals(5000, bundle.getTotal());
+		}
+	}
+
+	@Test
+	public void testEstimateRequestedButTotalIsExact() throws Exception {
+		HttpGet httpGet = new HttpGet(ourServer.getBaseUrl() + "/Patient?_total=estimate");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertEquals("accurate", status.getFirstHeader(Constants.HEADER_X_SEARCH_TOTAL_MODE).getValue());
+		}
+	}
+
+	@Test
+	public void testNoHeaderWhenEstimateNotRequested() throws Exception {
+		HttpGet httpGet = new HttpGet(ourServer.getBaseUrl() + "/Patient");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertNull(status.getFirstHeader(Constants.HEADER_X_SEARCH_TOTAL_MODE));
+		}
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IBaseResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Search
+		public IBundleProvider search() {
+			return ourNextBundleProvider;
+		}
+
+	}
+
+}